@@ -43,11 +43,8 @@ dependencies {
     implementation("androidx.navigation:navigation-fragment:2.5.3")
     implementation("androidx.navigation:navigation-ui:2.5.3")
 
-    // MPAndroidChart for charting functionality
-    implementation("com.github.PhilJay:MPAndroidChart:v3.1.0")
-
-    // JTransforms for FFT
-    implementation("com.github.wendykierp:JTransforms:3.1")
+    // Signal processing core (brings in JTransforms)
+    implementation(project(":dsp"))
 
     testImplementation("junit:junit:4.13.2")
     androidTestImplementation("androidx.test.ext:junit:1.1.5")
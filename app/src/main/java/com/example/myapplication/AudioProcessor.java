@@ -3,42 +3,239 @@ package com.example.myapplication;
 import android.Manifest;
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.media.AudioAttributes;
 import android.media.AudioFormat;
 import android.media.AudioRecord;
+import android.media.AudioTrack;
 import android.media.MediaRecorder;
 import android.os.Build;
+import android.os.Process;
 import android.util.Log;
 
 import androidx.core.content.ContextCompat;
 
-import java.util.Arrays;
+import com.example.myapplication.dsp.AudioBlock;
+import com.example.myapplication.dsp.AudioBlockPool;
+import com.example.myapplication.dsp.AudioInput;
+import com.example.myapplication.dsp.AudioSink;
+import com.example.myapplication.dsp.BandSnrAnalyzer;
+import com.example.myapplication.dsp.CaptureHub;
+import com.example.myapplication.dsp.CaptureSession;
+import com.example.myapplication.dsp.DecimatorStage;
+import com.example.myapplication.dsp.FftPlans;
+import com.example.myapplication.dsp.FloatPcmReader;
+import com.example.myapplication.dsp.FrequencyResponseAnalyzer;
+import com.example.myapplication.dsp.LatencyHistogram;
+import com.example.myapplication.dsp.MetricsRegistry;
+import com.example.myapplication.dsp.NoiseFloorTracker;
+import com.example.myapplication.dsp.NoiseProfile;
+import com.example.myapplication.dsp.PcmMath;
+import com.example.myapplication.dsp.PitchTracker;
+import com.example.myapplication.dsp.PolyphaseDecimator;
+import com.example.myapplication.dsp.ProcessingGraph;
+import com.example.myapplication.dsp.SegmentalSnrEstimator;
+import com.example.myapplication.dsp.SessionMetricsLog;
+import com.example.myapplication.dsp.SignalStatistics;
+import com.example.myapplication.dsp.SlidingWindowSnrEstimator;
+import com.example.myapplication.dsp.StftAnalyzer;
+import com.example.myapplication.dsp.SteppedSineStimulus;
+import com.example.myapplication.dsp.VoiceActivityDetector;
+import com.example.myapplication.dsp.WelchPsdEstimator;
+import com.example.myapplication.dsp.WavFileSink;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 public class AudioProcessor {
     private static final String TAG = "AudioProcessor";
 
     public static final int SAMPLE_RATE = 44100; // Hz
     private static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
+    // Fallback when the device cannot capture float; blocks are 16-bit PCM either way
     private static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
-    private static final int BUFFER_SIZE = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
+    // getMinBufferSize() is in bytes; blocks are one minimum buffer of 16-bit audio, in samples
+    private static final int MIN_BUFFER_BYTES = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, AUDIO_FORMAT);
+    private static final int BLOCK_SAMPLES = MIN_BUFFER_BYTES / Short.BYTES;
+    // The record itself buffers this many blocks, so a late wake-up of the audio thread does not overrun it
+    private static final int RECORD_BUFFER_BLOCKS = 4;
+    // Reads are non-blocking; after an empty one the audio thread sleeps a quarter of a block,
+    // a sixteenth of what the record can hold
+    private static final long EMPTY_READ_PARK_NANOS = BLOCK_SAMPLES * 1_000_000_000L / SAMPLE_RATE / 4;
+    // Hub queue depths in blocks of up to BLOCK_SAMPLES samples. The decimation feed holds
+    // ~1.3 s with a typical 3.5 KiB minimum buffer.
+    private static final int DECIMATION_DEPTH = 32;
+    private static final int FILE_DEPTH = 16;
+    private static final int ANALYSIS_DEPTH = 16;
+    private static final int TEST_DEPTH = 8;
+    // Every queue full at once (decimation plus baseline and session files), one block in flight
+    private static final int BLOCK_POOL_SIZE = DECIMATION_DEPTH + 2 * FILE_DEPTH + 2;
+    // Same for the decimated blocks: session analysis, baseline and microphone test
+    private static final int ANALYSIS_POOL_SIZE = 2 * ANALYSIS_DEPTH + TEST_DEPTH + 2;
+    // Bound on how long stopping capture waits for queued blocks to be decimated
+    private static final long DRAIN_TIMEOUT_SECONDS = 2;
+    // SNR readings come out at a fixed rate whatever size blocks AudioRecord delivers
+    private static final double SNR_OUTPUT_RATE_HZ = 30;
+    private static final double SNR_SMOOTHING_SECONDS = 0.1;
+    // Minimum-statistics search over the last 3 s of SNR-window powers. Those powers are already
+    // averaged over the SNR window, so the tracker adds no smoothing of its own and short
+    // pauses between words still reach the floor.
+    private static final double NOISE_SEARCH_WINDOW_SECONDS = 3.0;
+    private static final int NOISE_SUB_WINDOWS = 6;
+    private static final double NOISE_SMOOTHING_SECONDS = 0;
+    // The minimum of ~90 window powers sits roughly 1 dB under their mean for band-limited room noise
+    private static final double NOISE_BIAS_COMPENSATION = 1.25;
+    // Band SNR frames: Hann windows of at least ~46 ms at 50% overlap
+    private static final double BAND_FRAME_SECONDS = 0.046;
+    private static final double BAND_SMOOTHING_SECONDS = 0.15;
+    // Windows and FFTs run in float; against double the bin powers differ by far less than the
+    // 16-bit quantisation noise (see SinglePrecisionAccuracyTest) at half the memory traffic
+    private static final FftPlans.Precision SPECTRUM_PRECISION = FftPlans.Precision.SINGLE;
+    // Spectrogram frames: ~30 ms at 50% overlap, i.e. 30+ columns per second at any analysis rate
+    private static final double SPECTROGRAM_FRAME_SECONDS = 0.03;
+    // Electrolarynx content sits below 5 kHz, so analysis defaults to 44.1 kHz / 3 = 14.7 kHz
+    private static final int DEFAULT_ANALYSIS_DECIMATION = 3;
+    private static final int MAX_ANALYSIS_DECIMATION = 6;
+    // F0 search range around the 70-200 Hz electrolarynx fundamental, one estimate every 10 ms
+    private static final double PITCH_MIN_HZ = 60;
+    private static final double PITCH_MAX_HZ = 400;
+    private static final double PITCH_HOP_SECONDS = 0.01;
+    // F0 estimates below this confidence are logged as unvoiced
+    private static final double METRICS_MIN_PITCH_CONFIDENCE = 0.8;
+    // Activity detection on 10 ms frames: 6 dB over the noise floor with a buzz-like crossing
+    // rate, held for 200 ms so short dips inside words stay active
+    private static final double VAD_FRAME_SECONDS = 0.01;
+    private static final double VAD_THRESHOLD_DB = 6;
+    private static final double VAD_MAX_ZERO_CROSSING_RATE = 0.3;
+    private static final double VAD_HANGOVER_SECONDS = 0.2;
+    // Displayed SNR: mean frame SNR over the buzz frames of the last second. The upper clamp
+    // is the top of the SNR bar rather than the textbook 35 dB, so very clean takes still rate.
+    private static final double SEGMENTAL_WINDOW_SECONDS = 1.0;
+    private static final double SEGMENTAL_MIN_FRAME_SNR_DB = -10;
+    private static final double SEGMENTAL_MAX_FRAME_SNR_DB = 80;
+    // Microphone test: Welch frames of at least 0.2 s (3.6 Hz bins at 14.7 kHz), and a partial
+    // spectrum for the UI every 0.25 s. Memory does not depend on the test length.
+    private static final double DEFAULT_TEST_SECONDS = 3;
+    private static final double TEST_FRAME_SECONDS = 0.2;
+    private static final double TEST_PARTIAL_INTERVAL_SECONDS = 0.25;
+
+    // Frequency-response test at the capture rate: 4096-sample frames (10.8 Hz bins), four per
+    // tone, so 18 tones play for 6.7 s. A second of room noise is measured before the stimulus
+    // and a second of capture after it covers the output and input latency.
+    private static final int RESPONSE_FRAME_SIZE = 4096;
+    private static final int RESPONSE_FRAMES_PER_STEP = 4;
+    private static final double RESPONSE_AMPLITUDE = 0.25;
+    private static final double RESPONSE_NOISE_SECONDS = 1.0;
+    private static final double RESPONSE_TAIL_SECONDS = 1.0;
 
-    private AudioRecord audioRecord;
-    private boolean isRecording;
-    private double[] baselineNoiseValues;
-    private double baselineNoisePower = 0;
+    // Created on first use; owns the AudioRecord and the audio thread until release()
+    private CaptureSession session;
+    // Raw blocks from the audio thread, and the same audio decimated once for every
+    // analysis-rate consumer. Capture runs while anything is subscribed to either.
+    private final CaptureHub captureHub = new CaptureHub(SAMPLE_RATE);
+    private CaptureHub analysisHub = new CaptureHub(SAMPLE_RATE / DEFAULT_ANALYSIS_DECIMATION);
+    private CaptureHub.Subscription decimation;
+    private boolean capturing;
+    // Bumped for every capture started; a stopping task only ends hub state nothing newer owns
+    private long captureGeneration;
+    private CaptureHub.Subscription baselineAnalysis;
+    private CaptureHub.Subscription baselineFile;
+    private CaptureHub.Subscription sessionAnalysis;
+    private CaptureHub.Subscription sessionFile;
+    private CaptureHub.Subscription microphoneTest;
+    private CaptureHub.Subscription frequencyResponseTest;
+    private short[] baselineNoiseValues;
+    // Seeded by recordBaseline() and kept up to date by the noise-floor tracker while recording
+    private volatile double baselineNoisePower = 0;
+    // Power and band spectrum measured by the last baseline; written into every recording.
+    // Immutable, so a running session picks a new one up safely at its next block.
+    private volatile NoiseProfile baselineProfile;
     private RecordingCallback recordingCallback;
-    private TestingCallback testingCallback;
     private Context context;
+    private AudioBlockPool blockPool;
+    private int analysisDecimation = DEFAULT_ANALYSIS_DECIMATION;
+    private CaptureHub.Policy decimationPolicy = CaptureHub.Policy.DROP_OLDEST;
+    private double snrWindowSeconds = 0.25;
+    private double microphoneTestSeconds = DEFAULT_TEST_SECONDS;
+    private boolean saveRecordings = true;
+    // Always on: recording costs a few atomic increments per block
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final LatencyHistogram readLatency = metrics.histogram("capture.read");
+    private final MetricsRegistry.Counter readFailures = metrics.counter("capture.readFailures");
+    private final MetricsRegistry.Counter emptyReads = metrics.counter("capture.emptyReads");
+    private final LatencyHistogram captureStepLatency = metrics.histogram("capture.step");
+    private final LatencyHistogram analysisStepLatency = metrics.histogram("analysis.step");
 
     public AudioProcessor(Context context, RecordingCallback recordingCallback) {
         this.context = context;
         this.recordingCallback = recordingCallback;
     }
 
+    // The signal processing lives in the dsp module; this class only adapts AudioRecord to it.
+    // Created once per session and reused by every task; only the session's audio thread uses it.
+    // Float records are read through a direct buffer, 16-bit ones straight into the pooled block.
+    private final class AudioRecordInput implements AudioInput {
+        private final AudioRecord record;
+        // Null when the record captures 16-bit PCM
+        private final FloatPcmReader floatReader;
+
+        AudioRecordInput(AudioRecord record) {
+            this.record = record;
+            if (record.getAudioFormat() == AudioFormat.ENCODING_PCM_FLOAT) {
+                floatReader = new FloatPcmReader(BLOCK_SAMPLES,
+                        (buffer, size) -> record.read(buffer, size, AudioRecord.READ_NON_BLOCKING));
+                metrics.gauge("capture.clippedSamples", floatReader::getClippedSamples);
+            } else {
+                floatReader = null;
+            }
+        }
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            long start = System.nanoTime();
+            int read = floatReader != null
+                    ? floatReader.read(buffer, offset, length)
+                    : record.read(buffer, offset, length, AudioRecord.READ_NON_BLOCKING);
+            readLatency.recordSince(start);
+            if (read < 0) {
+                readFailures.increment();
+            } else if (read == 0) {
+                emptyReads.increment();
+            }
+            return read;
+        }
+
+        @Override
+        public void start() {
+            record.startRecording();
+        }
+
+        @Override
+        public void stop() {
+            if (record.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
+                record.stop();
+            }
+        }
+
+        @Override
+        public void release() {
+            record.release();
+        }
+    }
+
     // Initialize AudioRecord with the appropriate audio source
-    private boolean initializeAudioRecord() {
-        if (BUFFER_SIZE == AudioRecord.ERROR || BUFFER_SIZE == AudioRecord.ERROR_BAD_VALUE) {
-            Log.e(TAG, "Invalid buffer size: " + BUFFER_SIZE);
-            return false;
+    private AudioRecord initializeAudioRecord() {
+        if (MIN_BUFFER_BYTES == AudioRecord.ERROR || MIN_BUFFER_BYTES == AudioRecord.ERROR_BAD_VALUE) {
+            Log.e(TAG, "Invalid buffer size: " + MIN_BUFFER_BYTES);
+            return null;
         }
 
         if (ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED) {
@@ -49,282 +246,989 @@ public class AudioProcessor {
                 audioSource = MediaRecorder.AudioSource.MIC;
             }
 
-            try {
-                audioRecord = new AudioRecord(
-                        audioSource,
-                        SAMPLE_RATE,
-                        CHANNEL_CONFIG,
-                        AUDIO_FORMAT,
-                        BUFFER_SIZE
-                );
-
-                if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
-                    Log.e(TAG, "AudioRecord initialization failed. Check the parameters.");
-                    audioRecord.release();
-                    audioRecord = null;
-                    return false;
-                }
-                return true;
-            } catch (IllegalArgumentException e) {
-                Log.e(TAG, "Invalid AudioRecord parameters", e);
-                audioRecord = null;
-                return false;
+            // Float shows clipping, which 16-bit capture hides; not every device offers it
+            AudioRecord audioRecord = null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                audioRecord = createAudioRecord(audioSource, AudioFormat.ENCODING_PCM_FLOAT);
             }
+            if (audioRecord == null) {
+                audioRecord = createAudioRecord(audioSource, AUDIO_FORMAT);
+            }
+            if (audioRecord == null) {
+                Log.e(TAG, "AudioRecord initialization failed. Check the parameters.");
+                return null;
+            }
+            Log.i(TAG, "Capturing " + (audioRecord.getAudioFormat() == AudioFormat.ENCODING_PCM_FLOAT
+                    ? "float" : "16-bit") + " PCM");
+            if (blockPool == null) {
+                blockPool = new AudioBlockPool(BLOCK_POOL_SIZE, BLOCK_SAMPLES);
+            }
+            return audioRecord;
         } else {
             Log.e(TAG, "RECORD_AUDIO permission not granted.");
-            return false;
+            return null;
         }
     }
 
-    public void recordBaseline() {
-        if (!initializeAudioRecord()) {
-            return;
+    // Returns an initialised record with the given encoding, or null if the device refuses it
+    private AudioRecord createAudioRecord(int audioSource, int encoding) {
+        int minBufferBytes = AudioRecord.getMinBufferSize(SAMPLE_RATE, CHANNEL_CONFIG, encoding);
+        if (minBufferBytes <= 0) {
+            return null;
         }
+        int bytesPerSample = encoding == AudioFormat.ENCODING_PCM_FLOAT ? Float.BYTES : Short.BYTES;
+        try {
+            // RECORD_BUFFER_BLOCKS blocks in the requested encoding
+            AudioRecord audioRecord = new AudioRecord(audioSource, SAMPLE_RATE, CHANNEL_CONFIG, encoding,
+                    Math.max(minBufferBytes, RECORD_BUFFER_BLOCKS * BLOCK_SAMPLES * bytesPerSample));
+            if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                audioRecord.release();
+                return null;
+            }
+            return audioRecord;
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            Log.e(TAG, "Invalid AudioRecord parameters for encoding " + encoding, e);
+            return null;
+        }
+    }
 
-        isRecording = true;
-        new Thread(this::processBaseline).start();
+    // The AudioRecord and the audio thread are created on first use and kept until release()
+    private CaptureSession ensureSession() {
+        if (session == null || session.getState() == CaptureSession.State.CLOSED) {
+            AudioRecord audioRecord = initializeAudioRecord();
+            if (audioRecord == null) {
+                return null;
+            }
+            session = new CaptureSession(new AudioRecordInput(audioRecord), runnable -> new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                runnable.run();
+            }, "AudioSession"));
+        }
+        return session;
+    }
+
+    /**
+     * Subscribes {@code sink} to {@code hub}, starting the capture if it is not running and the
+     * shared decimation if this is the first analysis-rate subscriber. Returns null if the
+     * microphone cannot be opened.
+     */
+    private synchronized CaptureHub.Subscription subscribe(CaptureHub hub, String name, CaptureHub.Policy policy,
+                                                           int depth, AudioSink sink) {
+        if (!capturing) {
+            CaptureSession captureSession = ensureSession();
+            if (captureSession == null) {
+                return null;
+            }
+            // A capture task that has just seen its last subscriber leave may still be finishing
+            captureSession.stop();
+            captureSession.start(new CaptureTask(++captureGeneration));
+            capturing = true;
+        }
+        // A decimation left over from a capture that has ended feeds nothing any more
+        if (hub == analysisHub && (decimation == null || decimation.isClosed())) {
+            // Decimated once here for every analysis-rate subscriber; closing the hub is left
+            // to the capture task, so the stage forwards blocks only
+            DecimatorStage decimatorStage = new DecimatorStage(analysisDecimation, BLOCK_SAMPLES, ANALYSIS_POOL_SIZE);
+            CaptureHub target = analysisHub;
+            decimatorStage.to(target::accept);
+            decimation = subscribe(captureHub, "AudioDecimation", decimationPolicy, DECIMATION_DEPTH,
+                    AudioSink.timed(metrics.histogram("analysis.decimate"), decimatorStage));
+        }
+        CaptureHub.Subscription subscription = hub.subscribe(name, policy, depth, sink);
+        metrics.gauge("hub." + name + ".backlogBlocks", subscription::getBacklog);
+        metrics.gauge("hub." + name + ".droppedBlocks", subscription::getDroppedBlocks);
+        metrics.gauge("hub." + name + ".droppedSamples", subscription::getDroppedSamples);
+        metrics.gauge("hub." + name + ".underruns", subscription::getUnderruns);
+        return subscription;
+    }
+
+    private static void closeSubscription(CaptureHub.Subscription subscription) {
+        if (subscription != null) {
+            subscription.close();
+        }
     }
 
-    private void processBaseline() {
-        if (audioRecord != null) {
-            audioRecord.startRecording();
-            int totalReadSamples = 0;
-            int totalDesiredSamples = SAMPLE_RATE * 2; // Record for 2 seconds
-            short[] totalAudioBuffer = new short[totalDesiredSamples];
+    // Reads AudioRecord on the session's audio thread and publishes every block to the capture
+    // hub for as long as anything is subscribed
+    private final class CaptureTask implements CaptureSession.Task {
+        private final long generation;
+        private ProcessingGraph graph;
+        private long failuresAtStart;
 
-            while (isRecording && totalReadSamples < totalDesiredSamples) {
-                short[] audioBuffer = new short[BUFFER_SIZE];
-                int readSamples = audioRecord.read(audioBuffer, 0, BUFFER_SIZE);
+        CaptureTask(long generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onStart(AudioInput input) {
+            // Publishes only; the hub's subscriptions are ended in onFinish(), not by the graph
+            graph = new ProcessingGraph(input, blockPool, BLOCK_SAMPLES, captureHub::accept);
+            failuresAtStart = readFailures.get();
+        }
+
+        @Override
+        public boolean step() {
+            long start = System.nanoTime();
+            int read = graph.step();
+            captureStepLatency.recordSince(start);
+            if (read <= 0) {
+                // Nothing buffered (or a failed read, which must not spin either). A short read
+                // is followed straight away by another; a stop request unparks the thread early.
+                LockSupport.parkNanos(EMPTY_READ_PARK_NANOS);
+            }
+            return hasSubscribers();
+        }
+
+        @Override
+        public void onFailure(RuntimeException e) {
+            Log.e(TAG, "Capture failed", e);
+        }
 
-                if (readSamples > 0) {
-                    int samplesToCopy = Math.min(readSamples, totalDesiredSamples - totalReadSamples);
-                    System.arraycopy(audioBuffer, 0, totalAudioBuffer, totalReadSamples, samplesToCopy);
-                    totalReadSamples += samplesToCopy;
-                } else {
-                    Log.e(TAG, "Failed to read audio data for baseline.");
+        @Override
+        public void onFinish() {
+            if (graph != null) {
+                // Failed reads are counted in the metrics rather than logged one by one
+                Log.i(TAG, "Capture stopped. Blocks dropped for lack of buffers: " + graph.getDroppedBlocks()
+                        + ", failed reads: " + (readFailures.get() - failuresAtStart));
+            }
+            // Between the last step and here the input was stopped without the lock, so a new
+            // capture may already have started and subscribed; its subscriptions are left alone
+            CaptureHub.Subscription draining;
+            CaptureHub.Subscription[] analysisSubscriptions;
+            synchronized (AudioProcessor.this) {
+                if (generation != captureGeneration) {
+                    return;
+                }
+                capturing = false;
+                // Ends whatever this capture still fed, the decimation included. Nothing can
+                // subscribe meanwhile, and anything that does later starts a new capture.
+                captureHub.close();
+                draining = decimation;
+                analysisSubscriptions = analysisHub.getSubscriptions();
+                decimation = null;
+            }
+            if (draining != null) {
+                // Analysis subscribers end once the decimation has pushed its backlog through.
+                // Waited for without the lock, so the UI thread is never held up by a drain.
+                try {
+                    draining.awaitClosed(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
                 }
+                synchronized (AudioProcessor.this) {
+                    // A capture started during the drain feeds these subscribers from now on
+                    if (generation == captureGeneration) {
+                        for (CaptureHub.Subscription subscription : analysisSubscriptions) {
+                            subscription.close();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Decided under the lock subscribe() takes, so a new subscriber either keeps this capture
+    // running or sees capturing == false and starts the next one
+    private synchronized boolean hasSubscribers() {
+        if (decimation != null && analysisHub.getSubscriberCount() == 0) {
+            decimation.close();
+            decimation = null;
+        }
+        if (captureHub.getSubscriberCount() == 0) {
+            capturing = false;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops any capture and frees the AudioRecord and the audio thread. Call when the owning
+     * screen goes away; a later start creates them again.
+     */
+    public void release() {
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+    }
+
+    // A hub subscriber that can end its own subscription, e.g. once it has enough audio
+    private abstract static class ModeSink implements AudioSink {
+        private volatile CaptureHub.Subscription subscription;
+        private volatile boolean complete;
+
+        // Either this sees complete or complete() sees the subscription
+        void attach(CaptureHub.Subscription subscription) {
+            this.subscription = subscription;
+            if (complete) {
+                subscription.close();
+            }
+        }
+
+        // Called from accept(); blocks already queued are still delivered, then close() runs
+        void complete() {
+            complete = true;
+            CaptureHub.Subscription current = subscription;
+            if (current != null) {
+                current.close();
+            }
+        }
+
+        boolean isComplete() {
+            return complete;
+        }
+    }
+
+    // Saved raw next to the analysis; null when recordings are not saved
+    private CaptureHub.Subscription subscribeFile(String name, WavFileSink file) {
+        if (file == null) {
+            return null;
+        }
+        metrics.gauge("wav.droppedSamples", file::getDroppedSamples);
+        return subscribe(captureHub, name, CaptureHub.Policy.BLOCK, FILE_DEPTH, file);
+    }
+
+    public synchronized void recordBaseline() {
+        stopBaselineRecording();
+        WavFileSink file = createRecordingSink(timestampedName("baseline"));
+        BaselineSink sink = new BaselineSink(file);
+        // The sink closes the file once the profile is in it, so it has to know it first
+        baselineFile = subscribeFile("BaselineFile", file);
+        sink.fileSubscription = baselineFile;
+        // Lossless: the sink only copies, and a baseline with gaps would read low
+        baselineAnalysis = subscribe(analysisHub, "BaselineAnalysis", CaptureHub.Policy.BLOCK, ANALYSIS_DEPTH, sink);
+        if (baselineAnalysis == null) {
+            closeSubscription(baselineFile);
+            baselineFile = null;
+            return;
+        }
+        sink.attach(baselineAnalysis);
+    }
+
+    // Collects two seconds at the analysis rate, then measures the noise power and spectrum
+    private final class BaselineSink extends ModeSink {
+        private final WavFileSink file;
+        private CaptureHub.Subscription fileSubscription;
+        private int decimation;
+        private int totalDesiredSamples;
+        private short[] analysisBaseline;
+        private int analysisSamples;
+
+        BaselineSink(WavFileSink file) {
+            this.file = file;
+        }
+
+        @Override
+        public void open(int sampleRate) {
+            decimation = SAMPLE_RATE / sampleRate;
+            totalDesiredSamples = sampleRate * 2; // Record for 2 seconds
+            analysisBaseline = new short[totalDesiredSamples];
+        }
+
+        @Override
+        public void accept(AudioBlock block) {
+            int samplesToCopy = Math.min(block.length(), totalDesiredSamples - analysisSamples);
+            block.copyTo(0, analysisBaseline, analysisSamples, samplesToCopy);
+            analysisSamples += samplesToCopy;
+            if (analysisSamples == totalDesiredSamples && !isComplete()) {
+                complete();
             }
-            isRecording = false;
-            stopAudioRecord();
+        }
 
-            // Convert to double[] and normalize
-            baselineNoiseValues = new double[totalReadSamples];
-            for (int i = 0; i < totalReadSamples; i++) {
-                baselineNoiseValues[i] = totalAudioBuffer[i] / 32768.0; // Normalize to [-1,1]
+        @Override
+        public void close() {
+            if (analysisSamples < totalDesiredSamples) {
+                // Stopped early: a short baseline would be saved and reloaded as if it were
+                // complete, so it is dropped and the previous profile stays in use
+                closeSubscription(fileSubscription);
+                Log.i(TAG, "Baseline discarded after " + analysisSamples + " of " + totalDesiredSamples + " samples");
+                if (recordingCallback != null) {
+                    recordingCallback.onBaselineDiscarded();
+                }
+                return;
             }
 
+            // Skip the filter's start-up transient
+            double delay = new PolyphaseDecimator(decimation).getDelaySamples();
+            int settle = Math.min(analysisSamples, (int) Math.ceil(2 * delay));
+            int baselineLength = analysisSamples - settle;
+            baselineNoiseValues = analysisBaseline;
+
             // Calculate baseline noise power
-            baselineNoisePower = calculatePower(baselineNoiseValues);
+            baselineNoisePower = PcmMath.power(analysisBaseline, settle, baselineLength);
             Log.d(TAG, "Baseline noise power: " + baselineNoisePower);
 
+            // Per-bin noise spectrum for the band-limited SNR, learned on this thread by an
+            // analyzer of its own; a running session takes it over through the profile
+            BandSnrAnalyzer noiseAnalyzer = createBandSnrAnalyzer(SAMPLE_RATE / decimation);
+            noiseAnalyzer.learnNoise(analysisBaseline, settle, baselineLength);
+            baselineProfile = new NoiseProfile(SAMPLE_RATE / decimation, baselineNoisePower,
+                    noiseAnalyzer.hasNoiseSpectrum() ? noiseAnalyzer.getNoiseSpectrum() : new double[0]);
+
+            // The profile has to be set before the file's subscription closes it
+            if (file != null) {
+                file.setNoiseProfile(baselineProfile);
+            }
+            closeSubscription(fileSubscription);
+
             // Notify that baseline recording is complete
             if (recordingCallback != null) {
                 recordingCallback.onBaselineRecorded();
             }
-        } else {
-            Log.e(TAG, "AudioRecord object is null.");
         }
     }
 
-    public void stopBaselineRecording() {
-        if (isRecording) {
-            isRecording = false;
-            stopAudioRecord();
-        }
+    // Ends the baseline early; what was collected so far is discarded
+    public synchronized void stopBaselineRecording() {
+        closeSubscription(baselineAnalysis);
+        baselineAnalysis = null;
+        baselineFile = null;
     }
 
-    public void startRecording() {
-        if (!initializeAudioRecord()) {
+    public synchronized void startRecording() {
+        // No baseline required: the noise-floor tracker starts from the baseline if there is
+        // one and otherwise learns the floor during the first few seconds
+        stopRecording();
+        // The session's WAV and metrics log share a name
+        String sessionName = timestampedName("session");
+        // Only the rest of the graph waits for a slow analysis step, never the capture
+        sessionAnalysis = subscribe(analysisHub, "AudioAnalysis", CaptureHub.Policy.DROP_OLDEST, ANALYSIS_DEPTH,
+                new SessionAnalysis(sessionName));
+        if (sessionAnalysis == null) {
             return;
         }
+        WavFileSink file = createRecordingSink(sessionName);
+        if (file != null) {
+            file.setNoiseProfile(baselineProfile);
+        }
+        sessionFile = subscribeFile("SessionFile", file);
+    }
 
-        if (baselineNoisePower == 0) {
-            Log.e(TAG, "Baseline noise power is zero or not set.");
-            return;
+    // Live SNR, band SNR, pitch, spectrogram and graph data at the analysis rate, on the
+    // subscription's own thread
+    private final class SessionAnalysis implements AudioSink {
+        private final String sessionName;
+        private AudioSink analysis;
+        private SessionMetricsLog metricsLog;
+        private int analysisRate;
+        private BandSnrAnalyzer bandAnalyzer;
+        private NoiseProfile appliedProfile;
+
+        SessionAnalysis(String sessionName) {
+            this.sessionName = sessionName;
         }
 
-        isRecording = true;
-        new Thread(this::processRecording).start();
-    }
+        @Override
+        public void open(int analysisRate) {
+            this.analysisRate = analysisRate;
+            SlidingWindowSnrEstimator snrEstimator = new SlidingWindowSnrEstimator(
+                    analysisRate, snrWindowSeconds, SNR_OUTPUT_RATE_HZ, SNR_SMOOTHING_SECONDS);
+            NoiseFloorTracker noiseTracker = new NoiseFloorTracker(SNR_OUTPUT_RATE_HZ, NOISE_SEARCH_WINDOW_SECONDS,
+                    NOISE_SUB_WINDOWS, NOISE_SMOOTHING_SECONDS, NOISE_BIAS_COMPENSATION);
+            noiseTracker.seed(baselineNoisePower);
+            snrEstimator.setNoisePower(baselineNoisePower);
+            SegmentalSnrEstimator segmentalSnr = new SegmentalSnrEstimator(
+                    new VoiceActivityDetector(analysisRate, VAD_FRAME_SECONDS, VAD_THRESHOLD_DB,
+                            VAD_MAX_ZERO_CROSSING_RATE, VAD_HANGOVER_SECONDS),
+                    SEGMENTAL_WINDOW_SECONDS, SEGMENTAL_MIN_FRAME_SNR_DB, SEGMENTAL_MAX_FRAME_SNR_DB);
+            segmentalSnr.setNoisePower(baselineNoisePower);
+            // One row per SNR reading, carrying the last confident F0 since the previous row
+            SessionMetricsLog log = createMetricsLog(sessionName);
+            metricsLog = log;
+            if (log != null) {
+                metrics.gauge("metricsLog.droppedRows", log::getDroppedRows);
+            }
+            double[] latestF0 = {Double.NaN};
+            // The sliding window sets the reading rate and feeds the noise floor; the value shown
+            // and logged is the segmental SNR, NaN (held by the bar) while nobody is speaking
+            SlidingWindowSnrEstimator.Listener snrListener = (snrValue, signalPower) -> {
+                double segmentalDb = segmentalSnr.getSnrDb();
+                if (!Double.isNaN(segmentalDb)) {
+                    recordingCallback.onSNRCalculated(segmentalDb);
+                }
+                if (log != null) {
+                    log.record(segmentalDb, toDb(snrEstimator.getNoisePower()), toDb(signalPower), latestF0[0]);
+                    latestF0[0] = Double.NaN;
+                }
+                // Track the floor from the unsmoothed window power; used from the next reading on
+                double noiseFloor = noiseTracker.update(snrEstimator.getWindowPower());
+                if (noiseTracker.hasEstimate()) {
+                    baselineNoisePower = noiseFloor;
+                    snrEstimator.setNoisePower(noiseFloor);
+                    segmentalSnr.setNoisePower(noiseFloor);
+                }
+            };
+            BandSnrAnalyzer bandAnalyzer = createBandSnrAnalyzer(analysisRate);
+            this.bandAnalyzer = bandAnalyzer;
+            applyNoiseSpectrum();
+            BandSnrAnalyzer.Listener bandListener = (bandSnr, perBandSnr) ->
+                    recordingCallback.onBandSNRCalculated(bandSnr, perBandSnr);
+            PitchTracker pitchTracker = new PitchTracker(analysisRate, PITCH_MIN_HZ, PITCH_MAX_HZ, PITCH_HOP_SECONDS);
+            PitchTracker.Listener pitchListener = (f0Hz, confidence) -> {
+                recordingCallback.onPitchDetected(f0Hz, confidence);
+                if (confidence >= METRICS_MIN_PITCH_CONFIDENCE) {
+                    latestF0[0] = f0Hz;
+                }
+            };
+            int spectrogramFftSize = getSpectrogramFftSize();
+            StftAnalyzer spectrogramStft = new StftAnalyzer(spectrogramFftSize, spectrogramFftSize / 2,
+                    SPECTRUM_PRECISION);
+            StftAnalyzer.FrameListener spectrumListener = powerSpectrum -> recordingCallback.onSpectrumFrame(powerSpectrum);
 
-    private void processRecording() {
-        if (audioRecord != null) {
-            audioRecord.startRecording();
-            short[] audioBuffer = new short[BUFFER_SIZE];
+            // Band SNR and pitch only run while the detector is active. Both restart after a
+            // pause, so no audio from before it leaks into the next segment.
+            AudioSink voiced = AudioSink.fanOut(
+                    // Band-limited SNR against the baseline noise spectrum (no-op without a baseline)
+                    AudioSink.timed(metrics.histogram("analysis.bandSnr"),
+                            block -> bandAnalyzer.process(block, bandListener)),
+                    AudioSink.timed(metrics.histogram("analysis.pitch"),
+                            block -> pitchTracker.process(block, pitchListener)));
+            MetricsRegistry.Counter skippedBlocks = metrics.counter("analysis.silentBlocks");
+            boolean[] wasActive = {false};
+            AudioSink activityGate = block -> {
+                if (!segmentalSnr.isActive()) {
+                    wasActive[0] = false;
+                    skippedBlocks.increment();
+                    return;
+                }
+                if (!wasActive[0]) {
+                    wasActive[0] = true;
+                    bandAnalyzer.reset();
+                    pitchTracker.reset();
+                }
+                voiced.accept(block);
+            };
 
-            while (isRecording) {
-                int readSamples = audioRecord.read(audioBuffer, 0, BUFFER_SIZE);
-                if (readSamples > 0) {
-                    short[] trimmedBuffer = Arrays.copyOf(audioBuffer, readSamples);
+            analysis = AudioSink.timed(analysisStepLatency, AudioSink.fanOut(
+                    AudioSink.timed(metrics.histogram("analysis.callback"),
+                            block -> recordingCallback.onAudioDataReceived(block)),
+                    // Activity and segmental SNR first, so the gate below sees this block's decision
+                    AudioSink.timed(metrics.histogram("analysis.vad"), segmentalSnr::process),
+                    // Calculate SNR over the sliding window
+                    AudioSink.timed(metrics.histogram("analysis.snr"),
+                            block -> snrEstimator.process(block, snrListener)),
+                    activityGate,
+                    AudioSink.timed(metrics.histogram("analysis.spectrogram"),
+                            block -> spectrogramStft.process(block, spectrumListener))));
+        }
 
-                    if (recordingCallback != null) {
-                        recordingCallback.onAudioDataReceived(trimmedBuffer);
+        @Override
+        public void accept(AudioBlock block) {
+            applyNoiseSpectrum();
+            analysis.accept(block);
+        }
 
-                        // Calculate SNR
-                        double snrValue = calculateSNR(trimmedBuffer);
-                        recordingCallback.onSNRCalculated(snrValue);
-                    }
-                } else {
-                    Log.e(TAG, "Failed to read audio data.");
+        // Takes over the spectrum of a baseline recorded or applied since the last block. The
+        // analyzer is only ever touched on this thread.
+        private void applyNoiseSpectrum() {
+            NoiseProfile profile = baselineProfile;
+            if (profile == appliedProfile) {
+                return;
+            }
+            appliedProfile = profile;
+            if (profile != null && profile.getSampleRate() == analysisRate
+                    && profile.getSpectrum().length == bandAnalyzer.getBinCount()) {
+                bandAnalyzer.setNoiseSpectrum(profile.getSpectrum());
+            }
+        }
+
+        @Override
+        public void close() {
+            if (metricsLog != null) {
+                metricsLog.close();
+                if (metricsLog.getError() != null) {
+                    Log.e(TAG, "Failed to write " + metricsLog.getFile().getName(), metricsLog.getError());
+                } else if (metricsLog.getDroppedRows() > 0) {
+                    Log.w(TAG, "Metrics log dropped " + metricsLog.getDroppedRows() + " rows");
                 }
             }
-            stopAudioRecord();
-        } else {
-            Log.e(TAG, "AudioRecord object is null.");
         }
     }
 
-    public void stopRecording() {
-        if (isRecording) {
-            isRecording = false;
-            stopAudioRecord();
+    // Queued analysis is finished and the files are completed on their own threads
+    public synchronized void stopRecording() {
+        closeSubscription(sessionAnalysis);
+        closeSubscription(sessionFile);
+        sessionAnalysis = null;
+        sessionFile = null;
+    }
+
+    // Policy of the feed into the shared decimation; applies from the next time analysis starts.
+    // DROP_OLDEST keeps the live display current, BLOCK trades capture stalls for no gaps.
+    public synchronized void setDropPolicy(CaptureHub.Policy decimationPolicy) {
+        this.decimationPolicy = decimationPolicy;
+    }
+
+    // Pipeline latencies and counters; snapshot() it from any thread, e.g. for the debug overlay
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    // Whether baselines and sessions are saved as WAV files; applies to the next recording
+    public void setSaveRecordings(boolean saveRecordings) {
+        this.saveRecordings = saveRecordings;
+    }
+
+    // Length of the SNR power window (e.g. 0.05, 0.25 or 1.0 s); applies to the next startRecording()
+    public void setSnrWindowSeconds(double snrWindowSeconds) {
+        this.snrWindowSeconds = snrWindowSeconds;
+    }
+
+    /**
+     * Selects the rate SNR, spectrum, pitch and graph data are computed at. Must divide
+     * SAMPLE_RATE, e.g. 22050, 14700, 11025 or 8820. The band noise spectrum is tied to the
+     * rate, so record the baseline again after changing it.
+     */
+    public synchronized void setAnalysisSampleRate(int analysisSampleRate) {
+        int factor = analysisSampleRate > 0 ? SAMPLE_RATE / analysisSampleRate : 0;
+        if (factor < 1 || factor > MAX_ANALYSIS_DECIMATION || SAMPLE_RATE % analysisSampleRate != 0) {
+            throw new IllegalArgumentException("Unsupported analysis rate: " + analysisSampleRate);
         }
+        if (factor != analysisDecimation) {
+            if (analysisHub.getSubscriberCount() > 0) {
+                throw new IllegalStateException("Analysis rate cannot change while analysis is running");
+            }
+            analysisDecimation = factor;
+            analysisHub = new CaptureHub(analysisSampleRate);
+        }
+    }
+
+    // Rate of the blocks handed to callbacks and of the test spectrum
+    public int getAnalysisSampleRate() {
+        return SAMPLE_RATE / analysisDecimation;
+    }
+
+    // FFT size of the frames passed to onSpectrumFrame at the current analysis rate
+    public int getSpectrogramFftSize() {
+        return FftPlans.nextPowerOfTwo((int) Math.ceil(getAnalysisSampleRate() * SPECTROGRAM_FRAME_SECONDS));
     }
 
     public boolean isBaselineRecorded() {
         return baselineNoisePower > 0;
     }
 
-    // *** Added testMicrophone Method ***
-    public void testMicrophone(TestingCallback testingCallback) {
-        if (!initializeAudioRecord()) {
-            return;
+    // Profile of the last recorded or applied baseline, or null
+    public NoiseProfile getBaselineProfile() {
+        return baselineProfile;
+    }
+
+    /**
+     * Uses a saved baseline instead of recording a new one. The noise floor is seeded from its
+     * power at the next startRecording(). The analysis rate is switched to the profile's, so its
+     * band spectrum can be used as well; the rate stays as it is while analysis runs. The
+     * spectrum is never written into a live analyzer: a running session takes it over on its
+     * own thread at its next block if the rates match.
+     */
+    public synchronized void applyNoiseProfile(NoiseProfile profile) {
+        if (profile.getSampleRate() != getAnalysisSampleRate()) {
+            try {
+                setAnalysisSampleRate(profile.getSampleRate());
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                Log.e(TAG, "Noise profile rate not usable for band SNR: " + profile.getSampleRate(), e);
+            }
         }
+        baselineNoisePower = profile.getNoisePower();
+        baselineProfile = profile;
+    }
 
-        this.testingCallback = testingCallback;
-        isRecording = true;
+    // *** Added testMicrophone Method ***
+    // Runs alongside a recording if there is one; both read the same decimated stream.
+    // Returns false, and never calls back, if the microphone cannot be opened.
+    public synchronized boolean testMicrophone(TestingCallback testingCallback) {
+        stopMicrophoneTest();
+        MicrophoneTestSink sink = new MicrophoneTestSink(testingCallback, microphoneTestSeconds);
+        microphoneTest = subscribe(analysisHub, "MicrophoneTest", CaptureHub.Policy.DROP_OLDEST, TEST_DEPTH, sink);
+        if (microphoneTest == null) {
+            return false;
+        }
+        sink.attach(microphoneTest);
+        return true;
+    }
 
-        new Thread(() -> {
-            if (audioRecord == null) {
-                Log.e(TAG, "AudioRecord not properly initialized for testing");
-                return;
-            }
+    // Analyses the test as it runs: levels, a Welch spectrum and F0. Nothing is buffered, so
+    // the results are ready with the last block and the test can run for any length.
+    private final class MicrophoneTestSink extends ModeSink {
+        private final TestingCallback testingCallback;
+        private final double testSeconds;
+        private long totalDesiredSamples;
+        private long totalReadSamples;
+        private int partialInterval;
+        private int samplesUntilPartial;
+        private SignalStatistics levels;
+        private WelchPsdEstimator welch;
+        private double[] spectrum;
+        private PitchTracker pitchTracker;
+        private PitchTracker.Listener pitchListener;
+        private boolean reported;
 
-            audioRecord.startRecording();
-            int totalReadSamples = 0;
-            int totalDesiredSamples = SAMPLE_RATE * 3; // Record for 3 seconds
-            short[] totalAudioBuffer = new short[totalDesiredSamples];
+        MicrophoneTestSink(TestingCallback testingCallback, double testSeconds) {
+            this.testingCallback = testingCallback;
+            this.testSeconds = testSeconds;
+        }
 
-            while (isRecording && totalReadSamples < totalDesiredSamples) {
-                short[] audioBuffer = new short[BUFFER_SIZE];
-                int readSamples = audioRecord.read(audioBuffer, 0, BUFFER_SIZE);
+        @Override
+        public void open(int analysisRate) {
+            totalDesiredSamples = Math.round(analysisRate * testSeconds);
+            partialInterval = (int) Math.round(analysisRate * TEST_PARTIAL_INTERVAL_SECONDS);
+            samplesUntilPartial = partialInterval;
+            levels = new SignalStatistics();
+            welch = new WelchPsdEstimator(analysisRate,
+                    FftPlans.nextPowerOfTwo((int) Math.ceil(analysisRate * TEST_FRAME_SECONDS)), SPECTRUM_PRECISION);
+            spectrum = new double[welch.getBinCount()];
+            pitchTracker = new PitchTracker(analysisRate, PITCH_MIN_HZ, PITCH_MAX_HZ, PITCH_HOP_SECONDS);
+            pitchListener = (f0Hz, confidence) -> testingCallback.onPitchDetected(f0Hz, confidence);
+        }
 
-                if (readSamples > 0) {
-                    int samplesToCopy = Math.min(readSamples, totalDesiredSamples - totalReadSamples);
-                    System.arraycopy(audioBuffer, 0, totalAudioBuffer, totalReadSamples, samplesToCopy);
-                    totalReadSamples += samplesToCopy;
+        @Override
+        public void accept(AudioBlock block) {
+            if (isComplete()) {
+                return;
+            }
+            // The block that completes the test is analysed whole
+            int length = block.length();
+            levels.process(block);
+            welch.process(block);
+            totalReadSamples += length;
 
-                    // Callback to notify new audio data
-                    if (testingCallback != null) {
-                        short[] trimmedBuffer = Arrays.copyOf(audioBuffer, readSamples);
-                        testingCallback.onTestingDataReceived(trimmedBuffer);
-                    }
-                } else {
-                    Log.e(TAG, "Failed to read audio data.");
+            // Callback to notify new audio data
+            if (testingCallback != null) {
+                testingCallback.onTestingDataReceived(block);
+                pitchTracker.process(block, pitchListener);
+                samplesUntilPartial -= length;
+                if (samplesUntilPartial <= 0 && welch.getFrameCount() > 0) {
+                    samplesUntilPartial = partialInterval;
+                    testingCallback.onTestingDataReceived(welch.getPowerSpectrum(spectrum), welch.getBinWidthHz(), levels);
                 }
             }
-            isRecording = false;
-            stopAudioRecord();
+            if (totalReadSamples >= totalDesiredSamples) {
+                report();
+                complete();
+            }
+        }
 
-            // Analyze audio after recording
-            double amplitude = calculateAmplitude(totalAudioBuffer);
-            double[] frequencySpectrum = calculateFrequencySpectrum(totalAudioBuffer);
+        @Override
+        public void close() {
+            // Stopped early or the capture ended: report what was measured
+            report();
+        }
 
+        private void report() {
+            if (reported || levels == null) {
+                return;
+            }
+            reported = true;
             if (testingCallback != null) {
-                testingCallback.onTestCompleted(amplitude, frequencySpectrum);
+                testingCallback.onTestCompleted(levels, welch.getPowerSpectrum(spectrum), welch.getBinWidthHz());
             }
+        }
+    }
 
-        }).start();
+    // Length of the next microphone test; memory use is the same for any length
+    public synchronized void setMicrophoneTestSeconds(double seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Test length must be positive: " + seconds);
+        }
+        microphoneTestSeconds = seconds;
+    }
+
+    public synchronized void stopMicrophoneTest() {
+        closeSubscription(microphoneTest);
+        microphoneTest = null;
     }
 
-    public void stopMicrophoneTest() {
-        if (isRecording) {
-            isRecording = false;
-            stopAudioRecord();
+    /**
+     * Plays a stepped sine through the speaker and measures it with the microphone: the
+     * response, SNR and THD of the whole speaker-room-microphone path per tone across the
+     * electrolarynx band. Analysed as the capture arrives; the callback hears of each tone once
+     * it is measured. Returns false, and never calls back, if the microphone cannot be opened.
+     */
+    public synchronized boolean testFrequencyResponse(FrequencyResponseCallback callback) {
+        stopFrequencyResponseTest();
+        SteppedSineStimulus stimulus = new SteppedSineStimulus(SAMPLE_RATE, RESPONSE_FRAME_SIZE,
+                SteppedSineStimulus.ELECTROLARYNX_BAND_TONES_HZ, RESPONSE_FRAMES_PER_STEP, RESPONSE_AMPLITUDE);
+        FrequencyResponseSink sink = new FrequencyResponseSink(stimulus, callback);
+        // Raw and lossless: a gap inside a frame would smear its tone over the neighbouring bins
+        frequencyResponseTest = subscribe(captureHub, "FrequencyResponse", CaptureHub.Policy.BLOCK, TEST_DEPTH, sink);
+        if (frequencyResponseTest == null) {
+            return false;
         }
+        sink.attach(frequencyResponseTest);
+        return true;
     }
 
-    // Utility Methods
-    private void stopAudioRecord() {
-        if (audioRecord != null) {
-            try {
-                if (audioRecord.getRecordingState() == AudioRecord.RECORDSTATE_RECORDING) {
-                    audioRecord.stop();
+    public synchronized void stopFrequencyResponseTest() {
+        closeSubscription(frequencyResponseTest);
+        frequencyResponseTest = null;
+    }
+
+    // Learns the noise, starts playback, then measures until the stimulus has had time to arrive
+    private final class FrequencyResponseSink extends ModeSink {
+        private final FrequencyResponseAnalyzer analyzer;
+        private final FrequencyResponseCallback callback;
+        private long noiseSamples;
+        private long tailSamples;
+        private long learnedSamples;
+        private long samplesAfterPlayback;
+        private StimulusPlayer player;
+        private boolean reported;
+
+        FrequencyResponseSink(SteppedSineStimulus stimulus, FrequencyResponseCallback callback) {
+            this.analyzer = new FrequencyResponseAnalyzer(stimulus);
+            this.callback = callback;
+        }
+
+        @Override
+        public void open(int sampleRate) {
+            noiseSamples = Math.round(sampleRate * RESPONSE_NOISE_SECONDS);
+            tailSamples = Math.round(sampleRate * RESPONSE_TAIL_SECONDS);
+            if (callback != null) {
+                analyzer.setListener(tone -> callback.onToneMeasured(analyzer, tone));
+            }
+        }
+
+        @Override
+        public void accept(AudioBlock block) {
+            if (isComplete()) {
+                return;
+            }
+            if (player == null) {
+                analyzer.learnNoise(block);
+                learnedSamples += block.length();
+                if (learnedSamples >= noiseSamples) {
+                    player = StimulusPlayer.start(analyzer.getStimulus());
+                    if (player == null) {
+                        complete();
+                    }
+                }
+                return;
+            }
+            analyzer.process(block);
+            if (player.isFinished()) {
+                samplesAfterPlayback += block.length();
+                if (samplesAfterPlayback >= tailSamples) {
+                    report();
+                    complete();
                 }
-            } catch (IllegalStateException e) {
-                Log.e(TAG, "Error stopping AudioRecord", e);
-            } finally {
-                audioRecord.release();
-                audioRecord = null;
             }
         }
-    }
 
-    private double calculateSNR(short[] signalBuffer) {
-        double[] signal = new double[signalBuffer.length];
-        for (int i = 0; i < signalBuffer.length; i++) {
-            signal[i] = signalBuffer[i] / 32768.0; // Normalize to [-1,1]
+        @Override
+        public void close() {
+            if (player != null) {
+                player.release();
+            }
+            // Stopped early or the capture ended: report the tones measured so far
+            report();
+        }
+
+        private void report() {
+            if (reported) {
+                return;
+            }
+            reported = true;
+            analyzer.finish();
+            if (callback != null) {
+                callback.onFrequencyResponseCompleted(analyzer);
+            }
         }
+    }
 
-        double signalPower = calculatePower(signal);
+    // Streams a stimulus to the speaker on its own thread
+    private static final class StimulusPlayer implements Runnable {
+        private final AudioTrack track;
+        private final SteppedSineStimulus stimulus;
+        private final Thread thread;
+        private volatile boolean stopped;
+        private volatile boolean finished;
 
-        if (baselineNoisePower == 0) {
-            Log.e(TAG, "Baseline noise power is zero, cannot calculate SNR");
-            return 0;
+        private StimulusPlayer(AudioTrack track, SteppedSineStimulus stimulus) {
+            this.track = track;
+            this.stimulus = stimulus;
+            this.thread = new Thread(this, "ResponseStimulus");
         }
 
-        double snr = 10 * Math.log10(signalPower / baselineNoisePower);
+        // Returns the running player, or null if the output cannot be opened
+        static StimulusPlayer start(SteppedSineStimulus stimulus) {
+            int minBufferBytes = AudioTrack.getMinBufferSize(SAMPLE_RATE, AudioFormat.CHANNEL_OUT_MONO,
+                    AudioFormat.ENCODING_PCM_16BIT);
+            if (minBufferBytes <= 0) {
+                Log.e(TAG, "Invalid AudioTrack buffer size: " + minBufferBytes);
+                return null;
+            }
+            AudioTrack track;
+            try {
+                track = new AudioTrack.Builder()
+                        .setAudioAttributes(new AudioAttributes.Builder()
+                                .setUsage(AudioAttributes.USAGE_MEDIA)
+                                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                                .build())
+                        .setAudioFormat(new AudioFormat.Builder()
+                                .setSampleRate(SAMPLE_RATE)
+                                .setChannelMask(AudioFormat.CHANNEL_OUT_MONO)
+                                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                                .build())
+                        .setBufferSizeInBytes(
+                                Math.max(minBufferBytes, RECORD_BUFFER_BLOCKS * BLOCK_SAMPLES * Short.BYTES))
+                        .setTransferMode(AudioTrack.MODE_STREAM)
+                        .build();
+            } catch (IllegalArgumentException | UnsupportedOperationException e) {
+                Log.e(TAG, "Invalid AudioTrack parameters", e);
+                return null;
+            }
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+                Log.e(TAG, "AudioTrack initialization failed");
+                track.release();
+                return null;
+            }
+            stimulus.rewind();
+            StimulusPlayer player = new StimulusPlayer(track, stimulus);
+            player.thread.start();
+            return player;
+        }
 
-        // Log values for debugging
-        Log.d(TAG, "Signal Power: " + signalPower);
-        Log.d(TAG, "Baseline Noise Power: " + baselineNoisePower);
-        Log.d(TAG, "Calculated SNR: " + snr);
+        // True once the last sample is queued or playback has failed
+        boolean isFinished() {
+            return finished;
+        }
 
-        return snr;
-    }
+        @Override
+        public void run() {
+            short[] chunk = new short[BLOCK_SAMPLES];
+            try {
+                track.play();
+                while (!stopped && !stimulus.isFinished()) {
+                    int length = stimulus.read(chunk, 0, chunk.length);
+                    for (int offset = 0; offset < length && !stopped; ) {
+                        int written = track.write(chunk, offset, length - offset);
+                        if (written < 0) {
+                            Log.e(TAG, "Stimulus playback failed: " + written);
+                            return;
+                        }
+                        offset += written;
+                    }
+                }
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Stimulus playback failed", e);
+            } finally {
+                finished = true;
+            }
+        }
 
-    private double calculatePower(double[] buffer) {
-        double sum = 0;
-        for (double value : buffer) {
-            sum += value * value;
+        // Stops playback and frees the track; stop() also releases a write blocked on a full buffer
+        void release() {
+            stopped = true;
+            try {
+                track.stop();
+                thread.join();
+            } catch (IllegalStateException e) {
+                Log.e(TAG, "Failed to stop stimulus playback", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            track.release();
         }
-        return sum / buffer.length;
     }
 
-    private double calculateAmplitude(short[] audioBuffer) {
-        long sum = 0;
-        for (short sample : audioBuffer) {
-            sum += Math.abs(sample);
+    // Utility Methods
+    private static String timestampedName(String prefix) {
+        return prefix + "_" + new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+    }
+
+    // File in the directory "View Saved Files" lists, or null if recordings are not saved
+    private File recordingFile(String fileName) {
+        if (!saveRecordings) {
+            return null;
         }
-        return (double) sum / audioBuffer.length;
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            Log.e(TAG, "External files directory unavailable; not saving " + fileName);
+            return null;
+        }
+        return new File(directory, fileName);
     }
 
-    private double[] calculateFrequencySpectrum(short[] audioBuffer) {
-        // Convert short[] to double[] for FFT
-        double[] audioDataDouble = new double[audioBuffer.length];
-        for (int i = 0; i < audioBuffer.length; i++) {
-            audioDataDouble[i] = audioBuffer[i] / 32768.0; // Normalize
+    private WavFileSink createRecordingSink(String name) {
+        File file = recordingFile(name + ".wav");
+        if (file == null) {
+            return null;
         }
+        return new WavFileSink(file, sink -> {
+            if (sink.getError() != null) {
+                Log.e(TAG, "Failed to save " + file.getName(), sink.getError());
+            } else {
+                Log.i(TAG, "Saved " + file.getName() + ": " + sink.getDataBytes() / 2 + " samples, "
+                        + sink.getDroppedSamples() + " dropped");
+            }
+        });
+    }
 
-        // Implement FFT or use a library
-        // Placeholder for FFT calculation
-        double[] frequencySpectrum = new double[audioDataDouble.length / 2];
+    private SessionMetricsLog createMetricsLog(String name) {
+        File file = recordingFile(name + SessionMetricsLog.EXTENSION);
+        return file != null ? new SessionMetricsLog(file, SNR_OUTPUT_RATE_HZ, System.currentTimeMillis()) : null;
+    }
 
-        // TODO: Implement FFT and fill frequencySpectrum array
+    // Power normalised to full scale in dBFS; NaN when there is no measurement yet
+    private static double toDb(double power) {
+        return power > 0 ? 10 * Math.log10(power) : Double.NaN;
+    }
 
-        return frequencySpectrum;
+    private static BandSnrAnalyzer createBandSnrAnalyzer(int analysisRate) {
+        int fftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(analysisRate * BAND_FRAME_SECONDS));
+        return new BandSnrAnalyzer(analysisRate, fftSize, fftSize / 2,
+                BandSnrAnalyzer.ELECTROLARYNX_BAND_EDGES_HZ, BAND_SMOOTHING_SECONDS, SPECTRUM_PRECISION);
     }
 
     // Define the RecordingCallback interface
     public interface RecordingCallback {
-        void onAudioDataReceived(short[] audioBuffer);
+        // Blocks are at getAnalysisSampleRate() and only valid during the call; retain() to keep one longer
+        void onAudioDataReceived(AudioBlock audioBlock);
         void onBaselineRecorded();
+
+        // The baseline was stopped before its full duration; no profile was taken from it
+        default void onBaselineDiscarded() {
+        }
+
+        // Segmental SNR over the last second's buzz frames; not called while nobody speaks
         void onSNRCalculated(double snrValue);
+
+        // SNR over the electrolarynx bands (70-4000 Hz) and per band while speech is detected;
+        // perBandSnr is reused between calls
+        default void onBandSNRCalculated(double bandSnr, double[] perBandSnr) {
+        }
+
+        // Every 10 ms while speech is detected; f0Hz is NaN when no pitch is found
+        default void onPitchDetected(double f0Hz, double confidence) {
+        }
+
+        // One-sided power spectrum of getSpectrogramFftSize() samples; reused, copy to keep it
+        default void onSpectrumFrame(double[] powerSpectrum) {
+        }
+    }
+
+    // Called on the capture's consumer thread; the analyzer is only safe to read during the call
+    public interface FrequencyResponseCallback {
+        // A tone is measured and its results are final
+        default void onToneMeasured(FrequencyResponseAnalyzer analyzer, int tone) {
+        }
+
+        // Every tone is in, or the test was stopped; tones never measured read NaN
+        void onFrequencyResponseCompleted(FrequencyResponseAnalyzer analyzer);
     }
 
     // Define the TestingCallback interface
     public interface TestingCallback {
-        void onTestingDataReceived(short[] audioBuffer);
-        void onTestCompleted(double amplitude, double[] frequencySpectrum);
+        void onTestingDataReceived(AudioBlock audioBlock);
+
+        // Every 0.25 s: the Welch power spectrum so far (bin k at k * binWidthHz, bins sum to
+        // the mean-square level) and the running levels. Both are reused; copy to keep them.
+        default void onTestingDataReceived(double[] partialSpectrum, double binWidthHz, SignalStatistics levels) {
+        }
+
+        // Called as soon as the last sample is in, or with what was measured if the test is stopped early
+        void onTestCompleted(SignalStatistics levels, double[] powerSpectrum, double binWidthHz);
+
+        // Every 10 ms during the test; f0Hz is NaN when no pitch is found
+        default void onPitchDetected(double f0Hz, double confidence) {
+        }
     }
 }
@@ -1,8 +1,9 @@
 package com.example.myapplication;
 
 import android.Manifest;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
-import android.graphics.Color;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.widget.Button;
@@ -15,28 +16,40 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
 import com.example.myapplication.databinding.ActivityMainBinding;
-import com.github.mikephil.charting.charts.LineChart;
-import com.github.mikephil.charting.data.Entry;
-import com.github.mikephil.charting.data.LineData;
-import com.github.mikephil.charting.data.LineDataSet;
+import com.example.myapplication.dsp.AudioBlock;
+import com.example.myapplication.dsp.BatchAnalyzer;
+import com.example.myapplication.dsp.NoiseProfile;
+import com.example.myapplication.dsp.NoiseProfileStore;
+import com.example.myapplication.dsp.RecordingSummary;
+import com.example.myapplication.dsp.SessionMetricsLog;
+import com.example.myapplication.dsp.SessionMetricsReader;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";  // Added TAG for logging
     private static final int REQUEST_RECORD_AUDIO_PERMISSION = 200;
+    private static final String PREFERENCES = "baseline";
+    private static final String KEY_ROOM_LABEL = "room_label";
+    private static final String DEFAULT_ROOM_LABEL = "Default room";
+    // Baseline profiles are kept per device, since every microphone has its own noise floor
+    private static final String DEVICE_LABEL = Build.MANUFACTURER + " " + Build.MODEL;
     private boolean permissionToRecordAccepted = false;
 
     private AudioProcessor audioProcessor;
-    private LineChart audioChart;
-    private LineDataSet dataSet;
-    private LineData lineData;
+    private WaveformView waveformView;
+    private SpectrogramView spectrogramView;
     private SNRBar snrBar; // Custom SNR Bar
+    private MetricsOverlayView metricsOverlay;
+    private NoiseProfileStore profileStore;
+    private String roomLabel = DEFAULT_ROOM_LABEL;
 
-    private long lastGraphUpdateTime = 0;  // Last update time for graph
-    private static final int GRAPH_UPDATE_INTERVAL = 100;  // Update interval for graph (milliseconds)
     private boolean isRecordingBaseline = false; // Flag to track if baseline recording is in progress
 
     private Button recordBaselineButton;
@@ -60,6 +73,15 @@ public class MainActivity extends AppCompatActivity {
         stopRecordButton = binding.buttonStopRecord;
         viewSavedFilesButton = binding.buttonViewSavedFiles;
         snrBar = binding.snrBar;
+        waveformView = binding.waveformView;
+        spectrogramView = binding.spectrogramView;
+        metricsOverlay = binding.metricsOverlay;
+
+        // Long-press the SNR bar for the pipeline metrics overlay
+        snrBar.setOnLongClickListener(view -> {
+            metricsOverlay.toggle();
+            return true;
+        });
 
         // Hide stop recording button initially
         stopRecordButton.setVisibility(Button.GONE);
@@ -83,21 +105,37 @@ public class MainActivity extends AppCompatActivity {
 
         // Set View Saved Files button listener
         viewSavedFilesButton.setOnClickListener(view -> viewSavedBaselineFiles());
+    }
 
-        // Initialize chart and audio monitoring
-        initializeChart(binding);
+    // Shared with MicrophoneTestFragment; null until the RECORD_AUDIO permission is granted
+    public AudioProcessor getAudioProcessor() {
+        return audioProcessor;
     }
 
     private void initializeAudioProcessor() {
+        File directory = getExternalFilesDir(null);
+        if (directory != null) {
+            profileStore = new NoiseProfileStore(directory);
+        }
+        SharedPreferences preferences = getSharedPreferences(PREFERENCES, MODE_PRIVATE);
+        roomLabel = preferences.getString(KEY_ROOM_LABEL, DEFAULT_ROOM_LABEL);
+
         // Instantiate AudioProcessor after permission is granted
         audioProcessor = new AudioProcessor(this, new AudioProcessor.RecordingCallback() {
             @Override
-            public void onAudioDataReceived(short[] audioBuffer) {
-                updateGraph(audioBuffer);
+            public void onAudioDataReceived(AudioBlock audioBlock) {
+                waveformView.append(audioBlock);
+            }
+
+            @Override
+            public void onSpectrumFrame(double[] powerSpectrum) {
+                spectrogramView.append(powerSpectrum);
             }
 
             @Override
             public void onBaselineRecorded() {
+            // Still on the baseline thread, so the file write stays off the UI thread
+            saveBaselineProfile(audioProcessor.getBaselineProfile());
             runOnUiThread(() -> {
             Toast.makeText(MainActivity.this, "Baseline recorded successfully.", Toast.LENGTH_SHORT).show();
         // Enable the start recording button after baseline is recorded
@@ -105,28 +143,68 @@ public class MainActivity extends AppCompatActivity {
     });
 }
 
+            @Override
+            public void onBaselineDiscarded() {
+                runOnUiThread(() -> Toast.makeText(MainActivity.this,
+                        "Baseline stopped early and was not saved.", Toast.LENGTH_SHORT).show());
+            }
+
 
             @Override
             public void onSNRCalculated(double snrValue) {
-                Log.d(TAG, "SNR Value: " + snrValue);
+                // Readings are kept in the session's metrics log; nothing is logged per reading here
                 updateSNRBar(snrValue);
             }
         });
+        snrBar.setUpdateLagHistogram(audioProcessor.getMetrics().histogram("ui.snrLag"));
+        metricsOverlay.setRegistry(audioProcessor.getMetrics());
+        loadLastBaselineProfile();
+    }
+
+    // Starts from the newest saved baseline for this device so SNR is available without a new baseline
+    private void loadLastBaselineProfile() {
+        if (profileStore == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        NoiseProfileStore.Entry entry = profileStore.latest(DEVICE_LABEL);
+        if (entry != null) {
+            audioProcessor.applyNoiseProfile(entry.getProfile());
+            setRoomLabel(entry.getRoom());
+            Log.i(TAG, "Loaded baseline for " + entry.getRoom() + " in " + (System.nanoTime() - start) / 1000 + " us");
+        }
+    }
+
+    private void saveBaselineProfile(NoiseProfile profile) {
+        if (profileStore == null || profile == null) {
+            return;
+        }
+        try {
+            profileStore.save(DEVICE_LABEL, roomLabel, profile);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save baseline profile", e);
+        }
     }
 
-    private void initializeChart(ActivityMainBinding binding) {
-        audioChart = binding.audioChart;
-        dataSet = new LineDataSet(new ArrayList<>(), "Audio Levels");
-        dataSet.setDrawCircles(false);
-        dataSet.setColor(Color.BLUE);
-        dataSet.setLineWidth(1f);
-        dataSet.setMode(LineDataSet.Mode.LINEAR);
-        lineData = new LineData(dataSet);
-        audioChart.setData(lineData);
-        audioChart.getDescription().setEnabled(false);
-        audioChart.getLegend().setEnabled(false);
-        audioChart.setTouchEnabled(false);
-        audioChart.setViewPortOffsets(0, 0, 0, 0);
+    private void applySavedBaseline(File file) {
+        try {
+            NoiseProfileStore.Entry entry = NoiseProfileStore.load(file);
+            if (audioProcessor != null) {
+                audioProcessor.applyNoiseProfile(entry.getProfile());
+            }
+            setRoomLabel(entry.getRoom());
+            Toast.makeText(this, "Using baseline for " + entry.getRoom() + " (" + entry.getDevice() + ")",
+                    Toast.LENGTH_SHORT).show();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load baseline profile " + file, e);
+            Toast.makeText(this, "Could not load " + file.getName(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // New baselines are saved under the room of the last profile used
+    private void setRoomLabel(String room) {
+        roomLabel = room;
+        getSharedPreferences(PREFERENCES, MODE_PRIVATE).edit().putString(KEY_ROOM_LABEL, room).apply();
     }
 
     private void requestRecordAudioPermission() {
@@ -151,6 +229,15 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        // Stops any capture and frees the AudioRecord and its thread
+        if (audioProcessor != null) {
+            audioProcessor.release();
+        }
+        super.onDestroy();
+    }
+
     private void recordBaseline() {
         if (!permissionToRecordAccepted) {
             requestRecordAudioPermission();
@@ -179,10 +266,11 @@ private void startRecording() {
     }
 
     if (audioProcessor != null) {
-        if (!audioProcessor.isBaselineRecorded()) {
-            Toast.makeText(this, "Please record baseline noise first.", Toast.LENGTH_SHORT).show();
-            return;
-        }
+        // A baseline is optional now: the noise floor is tracked continuously while recording
+        waveformView.setSampleRate(audioProcessor.getAnalysisSampleRate());
+        waveformView.start();
+        spectrogramView.configure(audioProcessor.getAnalysisSampleRate(), audioProcessor.getSpectrogramFftSize());
+        spectrogramView.start();
         audioProcessor.startRecording();
         // Update button visibility
         runOnUiThread(() -> {
@@ -204,6 +292,8 @@ private void startRecording() {
                 isRecordingBaseline = false;
             } else {
                 audioProcessor.stopRecording();
+                waveformView.stop();
+                spectrogramView.stop();
             }
             // Update button visibility
             runOnUiThread(() -> {
@@ -215,34 +305,6 @@ private void startRecording() {
         }
     }
 
-    private void updateGraph(short[] buffer) {
-        long currentTime = System.currentTimeMillis();
-        if (currentTime - lastGraphUpdateTime < GRAPH_UPDATE_INTERVAL) {
-            return;
-        }
-        lastGraphUpdateTime = currentTime;
-
-        runOnUiThread(() -> {
-            int currentX = dataSet.getEntryCount();
-
-            for (short amplitude : buffer) {
-                float normalizedAmplitude = amplitude / 32768f;
-                dataSet.addEntry(new Entry(currentX++, normalizedAmplitude));
-            }
-
-            // Limit the number of points to prevent performance issues
-            int maxVisiblePoints = 500;
-            while (dataSet.getEntryCount() > maxVisiblePoints) {
-                dataSet.removeFirst();
-            }
-
-            dataSet.notifyDataSetChanged();
-            lineData.notifyDataChanged();
-            audioChart.notifyDataSetChanged();
-            audioChart.invalidate();
-        });
-    }
-
     private void updateSNRBar(double snrValue) {
         snrBar.setSNRValue(snrValue);
     }
@@ -259,13 +321,31 @@ private void startRecording() {
                     fileNames[i] = files[i].getName();
                 }
 
-                new AlertDialog.Builder(this)
+                List<File> recordings = new ArrayList<>();
+                for (File file : files) {
+                    if (file.getName().toLowerCase().endsWith(".wav")) {
+                        recordings.add(file);
+                    }
+                }
+
+                AlertDialog.Builder builder = new AlertDialog.Builder(this)
                         .setTitle("Saved Baseline Files")
                         .setItems(fileNames, (dialog, which) -> {
                             String selectedFile = fileNames[which];
-                            Toast.makeText(this, "Selected file: " + selectedFile, Toast.LENGTH_SHORT).show();
-                        })
-                        .show();
+                            if (recordings.contains(files[which])) {
+                                analyzeRecordings(Collections.singletonList(files[which]));
+                            } else if (selectedFile.endsWith(SessionMetricsLog.EXTENSION)) {
+                                showSessionLog(files[which]);
+                            } else if (selectedFile.endsWith(NoiseProfileStore.EXTENSION)) {
+                                applySavedBaseline(files[which]);
+                            } else {
+                                Toast.makeText(this, "Selected file: " + selectedFile, Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                if (recordings.size() > 1) {
+                    builder.setPositiveButton("Analyze all", (dialog, which) -> analyzeRecordings(recordings));
+                }
+                builder.show();
             } else {
                 Toast.makeText(this, "No saved baseline files found", Toast.LENGTH_SHORT).show();
             }
@@ -273,4 +353,63 @@ private void startRecording() {
             Toast.makeText(this, "Directory not found", Toast.LENGTH_SHORT).show();
         }
     }
+
+    // Summarizes saved recordings off the UI thread; files are spread over the common fork-join pool
+    private void analyzeRecordings(List<File> recordings) {
+        Toast.makeText(this, "Analyzing " + recordings.size() + " recording(s)...", Toast.LENGTH_SHORT).show();
+        new Thread(() -> {
+            List<RecordingSummary> summaries = new BatchAnalyzer().analyzeAll(recordings);
+            StringBuilder message = new StringBuilder();
+            for (RecordingSummary summary : summaries) {
+                if (message.length() > 0) {
+                    message.append("\n\n");
+                }
+                message.append(summary.describe());
+            }
+            runOnUiThread(() -> new AlertDialog.Builder(this)
+                    .setTitle("Recording Analysis")
+                    .setMessage(message.toString())
+                    .setPositiveButton("OK", null)
+                    .show());
+        }, "BatchAnalysis").start();
+    }
+
+    // Summarizes a session's metrics log; only the needed columns are decoded
+    private void showSessionLog(File file) {
+        new Thread(() -> {
+            String message;
+            try (SessionMetricsReader reader = new SessionMetricsReader(file)) {
+                double[] snr = reader.readColumn(SessionMetricsLog.Column.SNR_DB);
+                double[] f0 = reader.readColumn(SessionMetricsLog.Column.F0_HZ);
+                double snrSum = 0;
+                int snrCount = 0;
+                double f0Sum = 0;
+                int voiced = 0;
+                for (int i = 0; i < snr.length; i++) {
+                    if (!Double.isNaN(snr[i])) {
+                        snrSum += snr[i];
+                        snrCount++;
+                    }
+                    if (!Double.isNaN(f0[i])) {
+                        f0Sum += f0[i];
+                        voiced++;
+                    }
+                }
+                message = String.format(Locale.US, "%.1f s, %d readings\nMean SNR: %.1f dB\nMean F0: %.0f Hz (voiced %.0f%%)",
+                        reader.getDurationSeconds(), reader.getRowCount(),
+                        snrCount > 0 ? snrSum / snrCount : Double.NaN,
+                        voiced > 0 ? f0Sum / voiced : Double.NaN,
+                        snr.length > 0 ? 100.0 * voiced / snr.length : 0);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to read " + file, e);
+                message = "Could not read " + file.getName();
+            }
+            String summary = message;
+            runOnUiThread(() -> new AlertDialog.Builder(this)
+                    .setTitle(file.getName())
+                    .setMessage(summary)
+                    .setPositiveButton("OK", null)
+                    .show());
+        }, "SessionLogReader").start();
+    }
 }
@@ -0,0 +1,78 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.myapplication.dsp.MetricsRegistry;
+
+/**
+ * Debug overlay listing the pipeline metrics. While visible it takes a snapshot twice a
+ * second and draws one line per metric; when hidden or detached it does nothing.
+ */
+public class MetricsOverlayView extends View {
+    private static final long REFRESH_MILLIS = 500;
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Runnable refresh = this::refresh;
+    private MetricsRegistry registry;
+    private String[] lines = new String[0];
+
+    public MetricsOverlayView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        textPaint.setColor(ContextCompat.getColor(context, R.color.metrics_overlay_text));
+        textPaint.setTypeface(Typeface.MONOSPACE);
+        textPaint.setTextSize(24f);
+        setBackgroundColor(ContextCompat.getColor(context, R.color.metrics_overlay_background));
+    }
+
+    public void setRegistry(MetricsRegistry registry) {
+        this.registry = registry;
+        refresh();
+    }
+
+    public void toggle() {
+        setVisibility(getVisibility() == VISIBLE ? GONE : VISIBLE);
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        removeCallbacks(refresh);
+        if (isShown()) {
+            refresh();
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        removeCallbacks(refresh);
+        super.onDetachedFromWindow();
+    }
+
+    private void refresh() {
+        removeCallbacks(refresh);
+        if (registry == null || !isShown()) {
+            return;
+        }
+        lines = registry.snapshot().describe().split("\n");
+        invalidate();
+        postDelayed(refresh, REFRESH_MILLIS);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        float lineHeight = textPaint.getFontSpacing();
+        float y = getPaddingTop() + lineHeight;
+        for (String line : lines) {
+            canvas.drawText(line, getPaddingLeft(), y, textPaint);
+            y += lineHeight;
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.myapplication;
 
 import android.os.Bundle;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -10,22 +9,39 @@ import android.widget.TextView;
 
 import androidx.fragment.app.Fragment;
 
+import com.example.myapplication.dsp.AudioBlock;
+import com.example.myapplication.dsp.FrequencyResponseAnalyzer;
+import com.example.myapplication.dsp.SignalStatistics;
 import com.google.android.material.button.MaterialButton;
 
-public class MicrophoneTestFragment extends Fragment implements AudioProcessor.TestingCallback {
+public class MicrophoneTestFragment extends Fragment {
 
     private static final String TAG = "MicrophoneTestFragment";
 
-    // Placeholder threshold value for amplitude (adjust based on real conditions)
-    private static final double SOME_THRESHOLD_VALUE = 0.01;
+    // Level test: an electrolarynx held to the phone should reach this RMS; full-scale samples mean clipping
+    private static final double MIN_TEST_RMS_DBFS = -50;
+
+    // Response test: every tone within this of the 1 kHz tone, clear of the noise and of distortion
+    private static final double RESPONSE_REFERENCE_HZ = 1000;
+    private static final double MAX_RESPONSE_DEVIATION_DB = 10;
+    private static final double MIN_TONE_SNR_DB = 20;
+    private static final double MAX_THD_PERCENT = 5;
+
+    // Only pitch estimates at least this confident count towards the reported F0
+    private static final double MIN_PITCH_CONFIDENCE = 0.8;
+
+    // Below the electrolarynx fundamental; keeps DC and hum out of the dominant frequency
+    private static final double MIN_DOMINANT_FREQUENCY_HZ = 50;
 
     private AudioProcessor audioProcessor;
     private TextView testInstructions;
     private MaterialButton buttonStartTest;
+    private MaterialButton buttonResponseTest;
     private TextView testFeedback;
     private LinearLayout advancedInfoLayout;
     private TextView amplitudeInfo;
     private TextView frequencyInfo;
+    private TextView responseInfo;
     private MaterialButton buttonToggleAdvanced;
     private boolean advancedVisible = false;
 
@@ -36,24 +52,46 @@ public class MicrophoneTestFragment extends Fragment implements AudioProcessor.T
         // Initialize UI elements
         testInstructions = view.findViewById(R.id.test_instructions);
         buttonStartTest = view.findViewById(R.id.button_start_test);
+        buttonResponseTest = view.findViewById(R.id.button_frequency_response);
         testFeedback = view.findViewById(R.id.test_feedback);
         advancedInfoLayout = view.findViewById(R.id.advanced_info_layout);
         amplitudeInfo = view.findViewById(R.id.amplitude_info);
         frequencyInfo = view.findViewById(R.id.frequency_info);
+        responseInfo = view.findViewById(R.id.response_info);
         buttonToggleAdvanced = view.findViewById(R.id.button_toggle_advanced);
 
-        // Set up audioProcessor and callbacks
-        audioProcessor = new AudioProcessor(requireContext(), null);
+        // Share the activity's AudioProcessor, so the test and a running recording read the
+        // same capture instead of competing for the microphone
+        if (requireActivity() instanceof MainActivity) {
+            audioProcessor = ((MainActivity) requireActivity()).getAudioProcessor();
+        }
 
         // Handle "Start Test" button
         buttonStartTest.setOnClickListener(v -> {
-            if (audioProcessor != null) {
-                audioProcessor.testMicrophone(this);
-                testFeedback.setVisibility(View.GONE);
-                advancedInfoLayout.setVisibility(View.GONE);
-                buttonStartTest.setEnabled(false);
-                buttonStartTest.setText("Testing...");
+            if (!ensureAudioProcessor()) {
+                return;
             }
+            if (!audioProcessor.testMicrophone(new LevelTest())) {
+                showMicrophoneUnavailable();
+                return;
+            }
+            testFeedback.setVisibility(View.GONE);
+            advancedInfoLayout.setVisibility(View.GONE);
+            setTestRunning(buttonStartTest);
+        });
+
+        // Handle "Frequency Response Test" button
+        buttonResponseTest.setOnClickListener(v -> {
+            if (!ensureAudioProcessor()) {
+                return;
+            }
+            if (!audioProcessor.testFrequencyResponse(new ResponseTest())) {
+                showMicrophoneUnavailable();
+                return;
+            }
+            responseInfo.setText("");
+            testFeedback.setVisibility(View.GONE);
+            setTestRunning(buttonResponseTest);
         });
 
         // Handle "Toggle Advanced Info" button
@@ -67,59 +105,209 @@ public class MicrophoneTestFragment extends Fragment implements AudioProcessor.T
     }
 
     @Override
-    public void onTestingDataReceived(short[] audioBuffer) {
-        // Optional: Show real-time data to the user or store it for analysis
-        // For now, we will log the data size
-        Log.d(TAG, "Received audio buffer of size: " + audioBuffer.length);
+    public void onDestroyView() {
+        // The processor belongs to the activity; only this fragment's test ends here
+        if (audioProcessor != null) {
+            audioProcessor.stopMicrophoneTest();
+            audioProcessor.stopFrequencyResponseTest();
+        }
+        super.onDestroyView();
     }
 
-    @Override
-    public void onTestCompleted(double amplitude, double[] frequencySpectrum) {
-        // Analyze the amplitude and frequency data
-        requireActivity().runOnUiThread(() -> {
-            // Re-enable the "Start Test" button
-            buttonStartTest.setEnabled(true);
-            buttonStartTest.setText("Start Test");
-
-            // Provide user feedback based on amplitude
-            if (amplitude < SOME_THRESHOLD_VALUE) {
-                testFeedback.setText("Microphone may not be suitable for capturing electrolarynx sounds.");
-            } else {
-                testFeedback.setText("Microphone seems suitable for capturing electrolarynx sounds.");
+    // The activity creates its processor once the permission is granted
+    private boolean ensureAudioProcessor() {
+        if (audioProcessor == null && requireActivity() instanceof MainActivity) {
+            audioProcessor = ((MainActivity) requireActivity()).getAudioProcessor();
+        }
+        return audioProcessor != null;
+    }
+
+    // One test at a time; the pressed button shows that it is running
+    private void setTestRunning(MaterialButton running) {
+        buttonStartTest.setEnabled(false);
+        buttonResponseTest.setEnabled(false);
+        running.setText("Testing...");
+    }
+
+    // The test never started, so the buttons stay as they are
+    private void showMicrophoneUnavailable() {
+        testFeedback.setText("Could not open the microphone. Check that no other app is using it and try again.");
+        testFeedback.setVisibility(View.VISIBLE);
+    }
+
+    private void setTestFinished() {
+        buttonStartTest.setEnabled(true);
+        buttonStartTest.setText(R.string.start_test);
+        buttonResponseTest.setEnabled(true);
+        buttonResponseTest.setText(R.string.frequency_response_test);
+    }
+
+    // One level test's callbacks, all on its analysis thread. A new instance per test, so the
+    // F0 statistics are never shared with the UI thread or with an earlier test still ending.
+    private final class LevelTest implements AudioProcessor.TestingCallback {
+        private double pitchSum;
+        private int pitchCount;
+
+        @Override
+        public void onTestingDataReceived(AudioBlock audioBlock) {
+            // Called for every block on the audio thread; partial spectra and the results arrive below
+        }
+
+        @Override
+        public void onPitchDetected(double f0Hz, double confidence) {
+            if (!Double.isNaN(f0Hz) && confidence >= MIN_PITCH_CONFIDENCE) {
+                pitchSum += f0Hz;
+                pitchCount++;
             }
-            testFeedback.setVisibility(View.VISIBLE);
+        }
+
+        @Override
+        public void onTestingDataReceived(double[] partialSpectrum, double binWidthHz, SignalStatistics levels) {
+            // Read the reused spectrum and levels here on the audio thread, show them on the UI thread
+            double dominantFrequency = findDominantFrequency(partialSpectrum, binWidthHz);
+            String level = formatLevels(levels);
+            runOnUiThread(() -> {
+                amplitudeInfo.setText(level);
+                frequencyInfo.setText(String.format("Dominant Frequency: %.2f Hz", dominantFrequency));
+            });
+        }
+
+        @Override
+        public void onTestCompleted(SignalStatistics levels, double[] powerSpectrum, double binWidthHz) {
+            double amplitude = levels.getMeanAbs();
+            double rmsDb = 20 * Math.log10(levels.getRms());
+            boolean clipped = levels.hasFullScaleSamples();
+            String level = formatLevels(levels);
+            double dominantFrequency = findDominantFrequency(powerSpectrum, binWidthHz);
+            String fundamental = pitchCount > 0
+                    ? String.format("%.1f Hz", pitchSum / pitchCount)
+                    : "not detected";
+
+            // Analyze the amplitude and frequency data
+            runOnUiThread(() -> {
+                setTestFinished();
+
+                // Provide user feedback based on the measured level
+                if (clipped) {
+                    testFeedback.setText("The input clipped. Hold the electrolarynx further from the microphone.");
+                } else if (!(rmsDb >= MIN_TEST_RMS_DBFS)) {
+                    testFeedback.setText(String.format(
+                            "The input is too quiet (%.1f dBFS). Microphone may not be suitable for capturing"
+                                    + " electrolarynx sounds.",
+                            rmsDb));
+                } else {
+                    testFeedback.setText("Microphone seems suitable for capturing electrolarynx sounds.");
+                }
+                testFeedback.setVisibility(View.VISIBLE);
 
-            // Update advanced info
-            amplitudeInfo.setText(String.format("Amplitude: %.2f", amplitude));
+                // Update advanced info
+                amplitudeInfo.setText(String.format("Amplitude: %.2f%n%s", amplitude, level));
+                frequencyInfo.setText(String.format("Dominant Frequency: %.2f Hz%nFundamental (F0): %s",
+                        dominantFrequency, fundamental));
+
+                if (advancedVisible) {
+                    advancedInfoLayout.setVisibility(View.VISIBLE);
+                }
+            });
+        }
+    }
 
-            double dominantFrequency = findDominantFrequency(frequencySpectrum);
-            frequencyInfo.setText(String.format("Dominant Frequency: %.2f Hz", dominantFrequency));
+    // One response test's callbacks, all on its capture thread, with its own per-tone lines
+    private final class ResponseTest implements AudioProcessor.FrequencyResponseCallback {
+        private final StringBuilder responseLines = new StringBuilder();
 
-            if (advancedVisible) {
-                advancedInfoLayout.setVisibility(View.VISIBLE);
+        @Override
+        public void onToneMeasured(FrequencyResponseAnalyzer analyzer, int tone) {
+            // Absolute until the reference tone is in; the summary shows the response relative to it
+            responseLines.append(String.format("%.0f Hz: %+.1f dB, SNR %.1f dB, THD %.2f%%%n",
+                    analyzer.getToneFrequencyHz(tone), analyzer.getResponseDb(tone), analyzer.getSnrDb(tone),
+                    analyzer.getThdPercent(tone)));
+            String lines = responseLines.toString();
+            runOnUiThread(() -> responseInfo.setText(lines));
+        }
+
+        @Override
+        public void onFrequencyResponseCompleted(FrequencyResponseAnalyzer analyzer) {
+            String feedback = judgeResponse(analyzer);
+            String summary = formatResponse(analyzer);
+            runOnUiThread(() -> {
+                setTestFinished();
+                testFeedback.setText(feedback);
+                testFeedback.setVisibility(View.VISIBLE);
+                responseInfo.setText(summary);
+                if (advancedVisible) {
+                    advancedInfoLayout.setVisibility(View.VISIBLE);
+                }
+            });
+        }
+    }
+
+    private static String judgeResponse(FrequencyResponseAnalyzer analyzer) {
+        int reference = analyzer.getNearestTone(RESPONSE_REFERENCE_HZ);
+        if (analyzer.getMeasuredFrames(reference) == 0) {
+            return "The test tones were not picked up. Turn up the media volume and try again in a quiet room.";
+        }
+        int failed = 0;
+        for (int tone = 0; tone < analyzer.getToneCount(); tone++) {
+            // NaN (a tone lost in the noise) fails every comparison
+            boolean flat = Math.abs(analyzer.getRelativeResponseDb(tone, reference)) <= MAX_RESPONSE_DEVIATION_DB;
+            boolean clear = analyzer.getSnrDb(tone) >= MIN_TONE_SNR_DB;
+            boolean clean = !(analyzer.getThdPercent(tone) > MAX_THD_PERCENT);
+            if (!flat || !clear || !clean) {
+                failed++;
             }
-        });
+        }
+        if (failed == 0) {
+            return "Microphone and speaker cover the electrolarynx band evenly.";
+        }
+        return String.format("%d of %d tones fall outside +/-%.0f dB of 1 kHz, below %.0f dB SNR or above %.0f%% THD."
+                        + " Microphone may not be suitable for capturing electrolarynx sounds.",
+                failed, analyzer.getToneCount(), MAX_RESPONSE_DEVIATION_DB, MIN_TONE_SNR_DB, MAX_THD_PERCENT);
+    }
+
+    private static String formatResponse(FrequencyResponseAnalyzer analyzer) {
+        int reference = analyzer.getNearestTone(RESPONSE_REFERENCE_HZ);
+        StringBuilder summary = new StringBuilder(
+                String.format("Noise floor: %.1f dBFS%n", analyzer.getNoiseFloorDb()));
+        for (int tone = 0; tone < analyzer.getToneCount(); tone++) {
+            summary.append(String.format("%.0f Hz: %+.1f dB, SNR %.1f dB, THD %.2f%%%n",
+                    analyzer.getToneFrequencyHz(tone), analyzer.getRelativeResponseDb(tone, reference),
+                    analyzer.getSnrDb(tone), analyzer.getThdPercent(tone)));
+        }
+        return summary.toString();
     }
 
-    // Method to find the dominant frequency from the frequency spectrum
-    private double findDominantFrequency(double[] frequencySpectrum) {
-        if (frequencySpectrum == null || frequencySpectrum.length == 0) {
+    // Results arrive on the audio thread, possibly after the fragment has gone
+    private void runOnUiThread(Runnable action) {
+        if (getActivity() != null) {
+            getActivity().runOnUiThread(() -> {
+                if (getView() != null) {
+                    action.run();
+                }
+            });
+        }
+    }
+
+    private static String formatLevels(SignalStatistics levels) {
+        return String.format("RMS: %.1f dBFS, Peak: %.1f dBFS, Crest Factor: %.1f dB",
+                20 * Math.log10(levels.getRms()), 20 * Math.log10(levels.getPeak()), levels.getCrestFactorDb());
+    }
+
+    // Method to find the dominant frequency from the Welch power spectrum
+    private static double findDominantFrequency(double[] powerSpectrum, double binWidthHz) {
+        if (powerSpectrum == null || powerSpectrum.length == 0) {
             return 0.0;
         }
 
-        double maxAmplitude = Double.NEGATIVE_INFINITY;
-        int maxIndex = -1;
-        for (int i = 0; i < frequencySpectrum.length; i++) {
-            if (frequencySpectrum[i] > maxAmplitude) {
-                maxAmplitude = frequencySpectrum[i];
+        // Start above DC and hum so an offset is never reported as the dominant frequency
+        double maxPower = Double.NEGATIVE_INFINITY;
+        int maxIndex = 0;
+        for (int i = Math.max(1, (int) Math.ceil(MIN_DOMINANT_FREQUENCY_HZ / binWidthHz)); i < powerSpectrum.length; i++) {
+            if (powerSpectrum[i] > maxPower) {
+                maxPower = powerSpectrum[i];
                 maxIndex = i;
             }
         }
-
-        // The frequency bins depend on the sample rate and the size of the FFT
-        // For the placeholder FFT, let's assume each index corresponds to a frequency bin
-        // In a real FFT result, you'd calculate the frequency as (index * sampleRate / FFT_length)
-        double freqPerBin = (double) AudioProcessor.SAMPLE_RATE / (frequencySpectrum.length * 2);
-        return maxIndex * freqPerBin;
+        return maxIndex * binWidthHz;
     }
 }
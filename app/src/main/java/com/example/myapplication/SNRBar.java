@@ -8,18 +8,46 @@ import android.graphics.Paint;
 import android.graphics.RectF;
 import android.graphics.Shader;
 import android.util.AttributeSet;
+import android.view.Choreographer;
 import android.view.View;
 
 import androidx.core.content.ContextCompat;
 
-public class SNRBar extends View {
-    private float currentSNR = 0;
-    private float maxSNR = 0;
+import com.example.myapplication.dsp.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class SNRBar extends View implements Choreographer.FrameCallback {
+    // Bit pattern that never comes out of doubleToRawLongBits for a real reading
+    private static final long NO_VALUE = 0x7ff8dead0000beefL;
+    // Time constant of the bar following new readings
+    private static final float BAR_TIME_CONSTANT_SECONDS = 0.08f;
+    // Peak hold stays put this long, then falls at a constant rate
+    private static final float PEAK_HOLD_SECONDS = 1.5f;
+    private static final float PEAK_DECAY_DB_PER_SECOND = 10f;
+    private static final float MIN_DISPLAY_SNR = -20f;
+    private static final float DISPLAY_RANGE_DB = 100f;
+
+    private final AtomicLong latestSNR = new AtomicLong(NO_VALUE);
+    // When the latest reading arrived, for measuring how long it waits for a frame
+    private final AtomicLong latestSNRNanos = new AtomicLong();
+    private volatile LatencyHistogram updateLag;
+    private final AtomicBoolean framesScheduled = new AtomicBoolean();
+    private final Runnable scheduleFrames = () -> Choreographer.getInstance().postFrameCallback(this);
+    private final RectF barRect = new RectF();
+
+    private float targetSNR = MIN_DISPLAY_SNR;
+    private float currentSNR = MIN_DISPLAY_SNR;
+    private float peakSNR = MIN_DISPLAY_SNR;
+    private float peakHoldRemaining;
+    private long lastFrameNanos;
     private Paint snrPaint;
     private Paint maxSNRPaint;
     private Paint textPaint;
     private String snrCategory = "";
-    private LinearGradient gradient;
+    private int startColor;
+    private int endColor;
 
     public SNRBar(Context context, AttributeSet attrs) {
         super(context, attrs);
@@ -40,8 +68,8 @@ public class SNRBar extends View {
         textPaint.setTextAlign(Paint.Align.CENTER);
 
         // Initialize gradient colors from resources or defaults
-        int startColor = ContextCompat.getColor(context, R.color.snrbar_start_color);
-        int endColor = ContextCompat.getColor(context, R.color.snrbar_end_color);
+        startColor = ContextCompat.getColor(context, R.color.snrbar_start_color);
+        endColor = ContextCompat.getColor(context, R.color.snrbar_end_color);
 
         // Handle custom attributes (if any)
         if (attrs != null) {
@@ -54,57 +82,111 @@ public class SNRBar extends View {
             }
         }
 
-        gradient = new LinearGradient(0, 0, 0, getHeight(), startColor, endColor, Shader.TileMode.CLAMP);
-        snrPaint.setShader(gradient);
-
         setWillNotDraw(false);
     }
 
+    /**
+     * Safe to call from any thread at any rate. Only the most recent value is kept; it is
+     * picked up on the next vsync, so bursts of readings cost one frame, not one message each.
+     * NaN readings are ignored, since the bar could never settle on them; infinite ones are
+     * clamped to the displayed range.
+     */
     public void setSNRValue(final double snrValue) {
-        // Ensure updates happen on the main thread
-        post(() -> {
-            currentSNR = (float) snrValue;
+        if (Double.isNaN(snrValue)) {
+            return;
+        }
+        latestSNRNanos.set(System.nanoTime());
+        latestSNR.set(Double.doubleToRawLongBits(snrValue));
+        if (framesScheduled.compareAndSet(false, true)) {
+            post(scheduleFrames);
+        }
+    }
+
+    // Records the delay from setSNRValue() to the frame that picks the value up
+    public void setUpdateLagHistogram(LatencyHistogram updateLag) {
+        this.updateLag = updateLag;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // The gradient only depends on the height, so it is built once per layout
+        snrPaint.setShader(new LinearGradient(0, 0, 0, h, startColor, endColor, Shader.TileMode.CLAMP));
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        Choreographer.getInstance().removeFrameCallback(this);
+        framesScheduled.set(false);
+        super.onDetachedFromWindow();
+    }
 
-            // Update max SNR if the current value is greater
-            if (currentSNR > maxSNR) {
-                maxSNR = currentSNR;
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        float elapsed = lastFrameNanos == 0 ? 0 : (frameTimeNanos - lastFrameNanos) / 1e9f;
+        lastFrameNanos = frameTimeNanos;
+
+        long bits = latestSNR.getAndSet(NO_VALUE);
+        if (bits != NO_VALUE) {
+            LatencyHistogram lag = updateLag;
+            if (lag != null) {
+                lag.recordSince(latestSNRNanos.get());
             }
+            float snr = (float) Double.longBitsToDouble(bits);
+            snrCategory = getSNRRating(snr);
+            // Animate within the displayed range so an infinite reading cannot stall the bar
+            targetSNR = Math.max(MIN_DISPLAY_SNR, Math.min(snr, MIN_DISPLAY_SNR + DISPLAY_RANGE_DB));
+        }
 
-            // Update SNR category
-            snrCategory = getSNRRating(currentSNR);
+        // Exponential approach, independent of the frame rate
+        currentSNR += (targetSNR - currentSNR) * (1f - (float) Math.exp(-elapsed / BAR_TIME_CONSTANT_SECONDS));
 
-            // Trigger redraw
-            invalidate();
-        });
+        if (currentSNR >= peakSNR) {
+            peakSNR = currentSNR;
+            peakHoldRemaining = PEAK_HOLD_SECONDS;
+        } else if (peakHoldRemaining > 0) {
+            peakHoldRemaining -= elapsed;
+        } else {
+            peakSNR = Math.max(currentSNR, peakSNR - PEAK_DECAY_DB_PER_SECOND * elapsed);
+        }
+        invalidate();
+
+        // Keep running until the bar has settled and the peak marker is back on the bar
+        boolean settled = Math.abs(targetSNR - currentSNR) < 0.01f && peakSNR <= currentSNR;
+        if (settled) {
+            lastFrameNanos = 0;
+            framesScheduled.set(false);
+            // A value may have arrived after the check above
+            if (latestSNR.get() != NO_VALUE && framesScheduled.compareAndSet(false, true)) {
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+        } else {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
+        float width = getWidth();
+        float height = getHeight();
 
-        // Recreate gradient with updated height
-        gradient = new LinearGradient(0, 0, 0, getHeight(),
-                ContextCompat.getColor(getContext(), R.color.snrbar_start_color),
-                ContextCompat.getColor(getContext(), R.color.snrbar_end_color),
-                Shader.TileMode.CLAMP);
-        snrPaint.setShader(gradient);
-
-        // Normalize SNR value to a 0-1 range for the bar height
-        float normalizedSNR = (currentSNR + 20) / 100;  // Adjust based on expected SNR range
-        normalizedSNR = Math.max(0, Math.min(normalizedSNR, 1));  // Clamp between 0 and 1
-
-        float barHeight = getHeight() * normalizedSNR;
-        RectF rect = new RectF(0, getHeight() - barHeight, getWidth(), getHeight());
-        canvas.drawRect(rect, snrPaint);
+        float barHeight = height * normalize(currentSNR);
+        barRect.set(0, height - barHeight, width, height);
+        canvas.drawRect(barRect, snrPaint);
 
-        // Draw the maximum SNR indicator
-        float normalizedMaxSNR = (maxSNR + 20) / 100;
-        normalizedMaxSNR = Math.max(0, Math.min(normalizedMaxSNR, 1));
-        float maxSNRHeight = getHeight() * normalizedMaxSNR;
-        canvas.drawLine(0, getHeight() - maxSNRHeight, getWidth(), getHeight() - maxSNRHeight, maxSNRPaint);
+        // Draw the peak-hold indicator
+        float peakY = height - height * normalize(peakSNR);
+        canvas.drawLine(0, peakY, width, peakY, maxSNRPaint);
 
         // Draw the SNR category text
-        canvas.drawText(snrCategory, getWidth() / 2, getHeight() / 2, textPaint);
+        canvas.drawText(snrCategory, width / 2, height / 2, textPaint);
+    }
+
+    // Map SNR to a 0-1 range for the bar height
+    private static float normalize(float snr) {
+        float normalized = (snr - MIN_DISPLAY_SNR) / DISPLAY_RANGE_DB;
+        return Math.max(0, Math.min(normalized, 1));
     }
 
     // Provide feedback on the SNR quality
@@ -0,0 +1,119 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.View;
+
+import com.example.myapplication.dsp.SpectrogramColumns;
+
+/**
+ * Scrolling spectrogram, newest column on the right.
+ *
+ * STFT frames are colour-mapped into {@link SpectrogramColumns} on the analysis thread
+ * ({@link #append}). Once per vsync the UI thread copies any new columns into a fixed-size
+ * Bitmap used as a ring, then draws it as two stretched slices so it appears to scroll. The
+ * bitmap, column buffer and rectangles are allocated once.
+ */
+public class SpectrogramView extends View implements Choreographer.FrameCallback {
+    private static final int BITMAP_COLUMNS = 256;
+    private static final int BITMAP_ROWS = 128;
+    private static final int RING_COLUMNS = 1024;
+    private static final double MAX_FREQUENCY_HZ = 5000;
+    private static final double MIN_DB = -100;
+    private static final double MAX_DB = -20;
+
+    private final Bitmap bitmap = Bitmap.createBitmap(BITMAP_COLUMNS, BITMAP_ROWS, Bitmap.Config.ARGB_8888);
+    private final int[] columnPixels = new int[BITMAP_ROWS];
+    private final Paint bitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+    private volatile SpectrogramColumns columns;
+    private long copiedColumns;
+    private int writeX;
+    private boolean running;
+
+    public SpectrogramView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        bitmap.eraseColor(SpectrogramColumns.colorMap()[0]);
+    }
+
+    /** Sets the format of the spectra passed to append(); call from the UI thread before start(). */
+    public void configure(int sampleRate, int fftSize) {
+        columns = new SpectrogramColumns(sampleRate, fftSize / 2 + 1, BITMAP_ROWS,
+                MAX_FREQUENCY_HZ, MIN_DB, MAX_DB, RING_COLUMNS);
+        copiedColumns = 0;
+        writeX = 0;
+        bitmap.eraseColor(SpectrogramColumns.colorMap()[0]);
+        invalidate();
+    }
+
+    // Called from the analysis thread with a one-sided power spectrum; the array is not kept
+    public void append(double[] powerSpectrum) {
+        SpectrogramColumns current = columns;
+        if (current != null) {
+            current.onFrame(powerSpectrum);
+        }
+    }
+
+    public void start() {
+        if (!running) {
+            running = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stop();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        SpectrogramColumns current = columns;
+        if (current != null) {
+            long written = current.getColumnsWritten();
+            // After a long stall only the newest columns are still safe to read
+            copiedColumns = Math.max(copiedColumns, written - current.capacity() / 2);
+            if (copiedColumns < written) {
+                for (; copiedColumns < written; copiedColumns++) {
+                    current.copyColumn(copiedColumns, columnPixels, 0);
+                    bitmap.setPixels(columnPixels, 0, 1, writeX, 0, 1, BITMAP_ROWS);
+                    writeX = writeX + 1 == BITMAP_COLUMNS ? 0 : writeX + 1;
+                }
+                invalidate();
+            }
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int width = getWidth();
+        int height = getHeight();
+        // Oldest columns [writeX, BITMAP_COLUMNS) on the left, newest [0, writeX) on the right
+        int split = width * (BITMAP_COLUMNS - writeX) / BITMAP_COLUMNS;
+        src.set(writeX, 0, BITMAP_COLUMNS, BITMAP_ROWS);
+        dst.set(0, 0, split, height);
+        canvas.drawBitmap(bitmap, src, dst, bitmapPaint);
+        if (writeX > 0) {
+            src.set(0, 0, writeX, BITMAP_ROWS);
+            dst.set(split, 0, width, height);
+            canvas.drawBitmap(bitmap, src, dst, bitmapPaint);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.Choreographer;
+import android.view.View;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.myapplication.dsp.AudioBlock;
+import com.example.myapplication.dsp.FftPlans;
+import com.example.myapplication.dsp.WaveformPeaks;
+
+/**
+ * Scrolling min/max waveform, one column per pixel.
+ *
+ * Audio blocks are reduced to peaks on the thread that delivers them ({@link #append}); the
+ * UI thread only copies the visible columns into a preallocated point array and draws them
+ * with a single drawLines call. Scrolling is driven by Choreographer at the display rate and
+ * advances at the nominal column rate rather than in block-sized jumps.
+ */
+public class WaveformView extends View implements Choreographer.FrameCallback {
+    private static final float WINDOW_SECONDS = 3f;
+    // Columns are drawn this far behind the newest one so block-sized bursts scroll smoothly
+    private static final float LATENCY_SECONDS = 0.12f;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final Paint wavePaint = new Paint();
+    private volatile WaveformPeaks peaks;
+    private int sampleRate = AudioProcessor.SAMPLE_RATE;
+    private float[] linePoints = new float[0];
+    private double displayedColumn;
+    private long drawnColumn = -1;
+    private long lastFrameNanos;
+    private boolean running;
+
+    public WaveformView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        wavePaint.setColor(ContextCompat.getColor(context, R.color.waveform_color));
+        wavePaint.setStrokeWidth(1f);
+        wavePaint.setAntiAlias(false);
+        configure(1);
+    }
+
+    // Sample rate of the blocks passed to append(); call from the UI thread before start()
+    public void setSampleRate(int sampleRate) {
+        this.sampleRate = sampleRate;
+        configure(getWidth());
+    }
+
+    // Called from the analysis thread; copies peaks out of the block, nothing is retained
+    public void append(AudioBlock block) {
+        peaks.add(block);
+    }
+
+    public void start() {
+        if (!running) {
+            running = true;
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    public void stop() {
+        running = false;
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        configure(w);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        stop();
+        super.onDetachedFromWindow();
+    }
+
+    private void configure(int width) {
+        int columns = Math.max(1, width);
+        int samplesPerColumn = Math.max(1, Math.round(sampleRate * WINDOW_SECONDS / columns));
+        int capacity = Math.max(MIN_CAPACITY, FftPlans.nextPowerOfTwo(2 * columns));
+        peaks = new WaveformPeaks(capacity, samplesPerColumn);
+        linePoints = new float[4 * columns];
+        displayedColumn = 0;
+        drawnColumn = -1;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!running) {
+            return;
+        }
+        WaveformPeaks current = peaks;
+        double columnsPerSecond = (double) sampleRate / current.getSamplesPerColumn();
+        double latency = LATENCY_SECONDS * columnsPerSecond;
+        long written = current.getColumnsWritten();
+        double target = written - latency;
+
+        if (lastFrameNanos != 0) {
+            double elapsed = (frameTimeNanos - lastFrameNanos) / 1e9;
+            // Nudge the scroll speed towards the target instead of jumping to it
+            double speed = columnsPerSecond * Math.max(0.5, Math.min(2.0, 1 + (target - displayedColumn) / latency));
+            displayedColumn = Math.min(displayedColumn + elapsed * speed, written);
+        }
+        // Snap after a stall or a reconfiguration rather than scrolling through stale data
+        if (Math.abs(target - displayedColumn) > current.capacity() / 4.0) {
+            displayedColumn = Math.max(0, target);
+        }
+        lastFrameNanos = frameTimeNanos;
+
+        if ((long) displayedColumn != drawnColumn) {
+            invalidate();
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        drawnColumn = (long) displayedColumn;
+        int count = peaks.fillLines(linePoints, drawnColumn, linePoints.length / 4, 1f, getHeight());
+        if (count > 0) {
+            canvas.drawLines(linePoints, 0, count, wavePaint);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    jmh(project(":dsp"))
+}
+
+// ./gradlew :benchmarks:jmh
+// Scores are ns per sample unless a benchmark says otherwise; the gc profiler adds
+// gc.alloc.rate.norm (bytes per sample)
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.add("avgt")
+    timeUnit.set("ns")
+    profilers.add("gc")
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    resultFormat.set("JSON")
+}
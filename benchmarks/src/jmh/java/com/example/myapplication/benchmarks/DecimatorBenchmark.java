@@ -0,0 +1,42 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.PolyphaseDecimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/** 44.1 kHz capture down to the analysis rate; scores are per input sample. */
+@State(Scope.Thread)
+public class DecimatorBenchmark {
+    @Param({"2", "3", "4", "5"})
+    public int factor;
+
+    @Param({"256", "3528"})
+    public int blockSize;
+
+    private short[] samples;
+    private short[] output;
+    private PolyphaseDecimator decimator;
+
+    @Setup
+    public void setUp() {
+        samples = Signals.buzz(44100, SAMPLES_PER_INVOCATION);
+        output = new short[blockSize / factor + 1];
+        decimator = new PolyphaseDecimator(factor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public short decimate() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            decimator.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off), output, 0);
+        }
+        return output[0];
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.LatencyHistogram;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Cost of the latency histograms left on in the capture path. Scores are ns per record; a capture
+ * block is several milliseconds of audio, so tens of nanoseconds are negligible.
+ */
+@State(Scope.Thread)
+public class MetricsBenchmark {
+    private static final int RECORDS = 1024;
+
+    private final LatencyHistogram histogram = new LatencyHistogram("benchmark");
+
+    // Spread over the buckets a real stage hits, up to about a millisecond
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void record() {
+        for (int i = 0; i < RECORDS; i++) {
+            histogram.record((i * 977L) & 0xFFFFF);
+        }
+    }
+
+    // What AudioSink.timed pays per block, including the clock read
+    @Benchmark
+    @OperationsPerInvocation(RECORDS)
+    public void recordSince() {
+        for (int i = 0; i < RECORDS; i++) {
+            histogram.recordSince(System.nanoTime());
+        }
+    }
+}
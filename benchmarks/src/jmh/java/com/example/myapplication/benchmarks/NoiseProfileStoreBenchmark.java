@@ -0,0 +1,46 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.NoiseProfile;
+import com.example.myapplication.dsp.NoiseProfileStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Loading the saved baseline at startup: a 2048-point profile (1025 bins) read back from its
+ * file. Scores are ns per load and should stay well under a millisecond.
+ */
+@State(Scope.Thread)
+public class NoiseProfileStoreBenchmark {
+    private File directory;
+    private File file;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("profiles").toFile();
+        double[] spectrum = new double[1025];
+        for (int k = 0; k < spectrum.length; k++) {
+            spectrum[k] = 1e-6 / (k + 1);
+        }
+        file = new NoiseProfileStore(directory).save("phone", "room", new NoiseProfile(14700, 1e-6, spectrum))
+                .getFile();
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+        directory.delete();
+    }
+
+    @Benchmark
+    public NoiseProfileStore.Entry load() throws IOException {
+        return NoiseProfileStore.load(file);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.PcmMath;
+import com.example.myapplication.dsp.WaveformPeaks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/** Per-block reductions: power (calculatePower), mean absolute amplitude and waveform peaks. */
+@State(Scope.Thread)
+public class PcmMathBenchmark {
+    @Param({"256", "1024", "3528"})
+    public int blockSize;
+
+    private short[] samples;
+    private WaveformPeaks peaks;
+
+    @Setup
+    public void setUp() {
+        samples = Signals.buzz(44100, SAMPLES_PER_INVOCATION);
+        peaks = new WaveformPeaks(4096, 44);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public double power() {
+        double sum = 0;
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            sum += PcmMath.power(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public double meanAbs() {
+        double sum = 0;
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            sum += PcmMath.meanAbs(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public long waveformPeaks() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            peaks.add(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off));
+        }
+        return peaks.getColumnsWritten();
+    }
+}
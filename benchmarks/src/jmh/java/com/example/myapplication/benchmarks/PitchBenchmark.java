@@ -0,0 +1,42 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.PitchTracker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/** YIN pitch tracking at the app's 60-400 Hz range and 10 ms hop. */
+@State(Scope.Thread)
+public class PitchBenchmark {
+    @Param({"8820", "14700", "44100"})
+    public int sampleRate;
+
+    @Param({"256", "3528"})
+    public int blockSize;
+
+    private short[] samples;
+    private PitchTracker tracker;
+    private PitchTracker.Listener listener;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        samples = Signals.buzz(sampleRate, SAMPLES_PER_INVOCATION);
+        tracker = new PitchTracker(sampleRate, 60, 400, 0.01);
+        listener = (f0Hz, confidence) -> blackhole.consume(f0Hz);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public void yin() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            tracker.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off), listener);
+        }
+    }
+}
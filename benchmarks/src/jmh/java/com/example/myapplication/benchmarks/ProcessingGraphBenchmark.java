@@ -0,0 +1,77 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.AudioSource;
+import com.example.myapplication.dsp.DecimatorStage;
+import com.example.myapplication.dsp.PitchTracker;
+import com.example.myapplication.dsp.ProcessingGraph;
+import com.example.myapplication.dsp.SlidingWindowSnrEstimator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/**
+ * The whole analysis graph as the microphone test builds it: 44.1 kHz capture decimated by 3
+ * into pitch tracking and sliding-window SNR. Scores are per captured sample; real time is
+ * about 22700 ns per sample.
+ */
+@State(Scope.Thread)
+public class ProcessingGraphBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Param({"256", "3528"})
+    public int blockSize;
+
+    private short[] samples;
+    private int position;
+    private ProcessingGraph graph;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        samples = Signals.buzz(SAMPLE_RATE, SAMPLES_PER_INVOCATION);
+        // Replays the buzz from the start on every run()
+        AudioSource source = new AudioSource() {
+            @Override
+            public int getSampleRate() {
+                return SAMPLE_RATE;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return position == samples.length;
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                int n = Math.min(length, samples.length - position);
+                System.arraycopy(samples, position, buffer, offset, n);
+                position += n;
+                return n;
+            }
+        };
+        PitchTracker pitchTracker = new PitchTracker(SAMPLE_RATE / 3, 60, 400, 0.01);
+        PitchTracker.Listener pitchListener = (f0Hz, confidence) -> blackhole.consume(f0Hz);
+        SlidingWindowSnrEstimator snr = new SlidingWindowSnrEstimator(SAMPLE_RATE / 3, 0.25, 30, 0.1);
+        snr.setNoisePower(1e-6);
+        SlidingWindowSnrEstimator.Listener snrListener = (snrDb, power) -> blackhole.consume(snrDb);
+
+        DecimatorStage decimator = new DecimatorStage(3, blockSize);
+        graph = new ProcessingGraph(source, blockSize, decimator.to(
+                block -> pitchTracker.process(block, pitchListener),
+                block -> snr.process(block, snrListener)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public long graph() {
+        position = 0;
+        graph.run();
+        return graph.getSamplesProcessed();
+    }
+}
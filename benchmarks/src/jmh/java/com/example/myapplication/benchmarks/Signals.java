@@ -0,0 +1,29 @@
+package com.example.myapplication.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Test signals shared by the benchmarks. Every benchmark pushes {@link #SAMPLES_PER_INVOCATION}
+ * samples per invocation and declares it with {@code @OperationsPerInvocation}, so JMH scores
+ * read directly as time (and, with the gc profiler, bytes) per input sample.
+ */
+final class Signals {
+    static final int SAMPLES_PER_INVOCATION = 1 << 17;
+
+    private Signals() {
+    }
+
+    // Electrolarynx-like buzz: 110 Hz harmonic series over a little white noise
+    static short[] buzz(int sampleRate, int length) {
+        Random random = new Random(42);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            double value = 0;
+            for (int h = 1; h <= 20; h++) {
+                value += Math.sin(2 * Math.PI * 110 * h * i / sampleRate) / h;
+            }
+            samples[i] = (short) Math.max(-32768, Math.min(32767, value * 6000 + random.nextGaussian() * 300));
+        }
+        return samples;
+    }
+}
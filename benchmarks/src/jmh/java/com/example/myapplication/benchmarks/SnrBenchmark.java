@@ -0,0 +1,70 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.NoiseFloorTracker;
+import com.example.myapplication.dsp.SegmentalSnrEstimator;
+import com.example.myapplication.dsp.SlidingWindowSnrEstimator;
+import com.example.myapplication.dsp.VoiceActivityDetector;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/** Sliding-window SNR (calculateSNR) with the noise floor tracker in the loop, as on the analysis thread. */
+@State(Scope.Thread)
+public class SnrBenchmark {
+    @Param({"8820", "14700", "44100"})
+    public int sampleRate;
+
+    @Param({"0.05", "0.25", "1.0"})
+    public double windowSeconds;
+
+    @Param({"256", "3528"})
+    public int blockSize;
+
+    private short[] samples;
+    private SlidingWindowSnrEstimator estimator;
+    private NoiseFloorTracker noiseTracker;
+    private SegmentalSnrEstimator segmentalSnr;
+    private Blackhole blackhole;
+    private SlidingWindowSnrEstimator.Listener listener;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        samples = Signals.buzz(sampleRate, SAMPLES_PER_INVOCATION);
+        estimator = new SlidingWindowSnrEstimator(sampleRate, windowSeconds, 30, 0.1);
+        estimator.setNoisePower(1e-6);
+        noiseTracker = new NoiseFloorTracker(30, 3.0, 6, 0, 1.25);
+        segmentalSnr = new SegmentalSnrEstimator(new VoiceActivityDetector(sampleRate, 0.01, 6, 0.3, 0.2),
+                windowSeconds, -10, 80);
+        segmentalSnr.setNoisePower(1e-6);
+        listener = (snrDb, signalPower) -> {
+            this.blackhole.consume(snrDb);
+            this.blackhole.consume(noiseTracker.update(estimator.getWindowPower()));
+        };
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public void slidingWindowSnr() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            estimator.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off), listener);
+        }
+    }
+
+    // Activity detection plus segmental SNR, which runs on every block ahead of the gated stages
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public double segmentalSnr() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            segmentalSnr.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off));
+        }
+        return segmentalSnr.getSnrDb();
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.FftPlans;
+import com.example.myapplication.dsp.SpectrumAnalyzer;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/**
+ * Whole-capture spectrum (calculateFrequencySpectrum) over windows of the given length.
+ * Consecutive windows cover the same total number of samples whatever the window length.
+ * naive is the baseline the cached analyzer replaced: a fresh plan and buffers per window,
+ * always padded to a power of two in double precision, so framing and precision do not
+ * affect it.
+ */
+@State(Scope.Thread)
+public class SpectrumBenchmark {
+    @Param({"14700", "44100"})
+    public int sampleRate;
+
+    @Param({"0.5", "3.0"})
+    public double windowSeconds;
+
+    @Param({"EXACT", "POWER_OF_TWO"})
+    public SpectrumAnalyzer.Framing framing;
+
+    @Param({"DOUBLE", "SINGLE"})
+    public FftPlans.Precision precision;
+
+    private short[] samples;
+    private short[] window;
+    private SpectrumAnalyzer analyzer;
+
+    @Setup
+    public void setUp() {
+        samples = Signals.buzz(sampleRate, SAMPLES_PER_INVOCATION);
+        window = new short[(int) (sampleRate * windowSeconds)];
+        analyzer = new SpectrumAnalyzer(framing, precision);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public void spectrum(Blackhole blackhole) {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += window.length) {
+            int length = Math.min(window.length, SAMPLES_PER_INVOCATION - off);
+            // analyze() reads from index 0, so each window is staged like the capture buffer
+            System.arraycopy(samples, off, window, 0, length);
+            blackhole.consume(analyzer.analyze(window, length)[1]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public void naive(Blackhole blackhole) {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += window.length) {
+            int length = Math.min(window.length, SAMPLES_PER_INVOCATION - off);
+            System.arraycopy(samples, off, window, 0, length);
+            blackhole.consume(naiveSpectrum(window, length)[1]);
+        }
+    }
+
+    // Same as SpectrumAnalyzerEquivalenceTest.naiveSpectrum, which checks analyze() against it
+    private static double[] naiveSpectrum(short[] samples, int length) {
+        int size = Integer.highestOneBit(length - 1) << 1;
+        double[] data = new double[size];
+        double windowSum = 0;
+        for (int i = 0; i < length; i++) {
+            double w = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / length);
+            windowSum += w;
+            data[i] = samples[i] / 32768.0 * w;
+        }
+        new DoubleFFT_1D(size).realForward(data);
+        double[] spectrum = new double[size / 2];
+        spectrum[0] = Math.abs(data[0]) / windowSum;
+        for (int k = 1; k < size / 2; k++) {
+            spectrum[k] = Math.hypot(data[2 * k], data[2 * k + 1]) * 2.0 / windowSum;
+        }
+        return spectrum;
+    }
+}
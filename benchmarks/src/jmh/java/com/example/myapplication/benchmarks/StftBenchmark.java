@@ -0,0 +1,71 @@
+package com.example.myapplication.benchmarks;
+
+import com.example.myapplication.dsp.BandSnrAnalyzer;
+import com.example.myapplication.dsp.FftPlans;
+import com.example.myapplication.dsp.SpectrogramColumns;
+import com.example.myapplication.dsp.StftAnalyzer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+
+import static com.example.myapplication.benchmarks.Signals.SAMPLES_PER_INVOCATION;
+
+/** STFT consumers on the analysis thread: band SNR and spectrogram columns, sized as in AudioProcessor. */
+@State(Scope.Thread)
+public class StftBenchmark {
+    @Param({"8820", "14700", "44100"})
+    public int sampleRate;
+
+    @Param({"256", "3528"})
+    public int blockSize;
+
+    @Param({"DOUBLE", "SINGLE"})
+    public FftPlans.Precision precision;
+
+    private short[] samples;
+    private BandSnrAnalyzer bandSnr;
+    private StftAnalyzer spectrogramStft;
+    private SpectrogramColumns spectrogram;
+    private BandSnrAnalyzer.Listener bandListener;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        samples = Signals.buzz(sampleRate, SAMPLES_PER_INVOCATION);
+
+        int bandFftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(sampleRate * 0.046));
+        bandSnr = new BandSnrAnalyzer(sampleRate, bandFftSize, bandFftSize / 2,
+                BandSnrAnalyzer.ELECTROLARYNX_BAND_EDGES_HZ, 0.15, precision);
+        double[] noise = new double[bandSnr.getBinCount()];
+        Arrays.fill(noise, 1e-9);
+        bandSnr.setNoiseSpectrum(noise);
+        bandListener = (bandSnrDb, perBandSnrDb) -> blackhole.consume(bandSnrDb);
+
+        int spectrogramFftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(sampleRate * 0.03));
+        spectrogramStft = new StftAnalyzer(spectrogramFftSize, spectrogramFftSize / 2, precision);
+        spectrogram = new SpectrogramColumns(sampleRate, spectrogramStft.getBinCount(), 128, 5000, -100, -20, 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public void bandSnr() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            bandSnr.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off), bandListener);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES_PER_INVOCATION)
+    public long spectrogram() {
+        for (int off = 0; off < SAMPLES_PER_INVOCATION; off += blockSize) {
+            spectrogramStft.process(samples, off, Math.min(blockSize, SAMPLES_PER_INVOCATION - off), spectrogram);
+        }
+        return spectrogram.getColumnsWritten();
+    }
+}
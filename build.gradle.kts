@@ -1,6 +1,7 @@
 // Top-level build file where you can add configuration options common to all sub-projects/modules.
 plugins {
     alias(libs.plugins.android.application) apply false
+    alias(libs.plugins.jmh) apply false
 }
 
 // The `buildscript` block is not needed for modern Gradle setups.
@@ -0,0 +1,24 @@
+plugins {
+    `java-library`
+}
+
+// Signal processing core: plain Java with no Android dependencies, so it can be unit-tested,
+// benchmarked and run over WAV files on a desktop JVM.
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+dependencies {
+    // JTransforms for FFT; FftPlans hands out its transform objects
+    api("com.github.wendykierp:JTransforms:3.1")
+
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Summarizes a regression corpus: ./gradlew :dsp:analyzeWavs -Pwavs=dir1:dir2/file.wav
+tasks.register<JavaExec>("analyzeWavs") {
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("com.example.myapplication.dsp.BatchAnalyzer")
+    args((findProperty("wavs") as String? ?: ".").split(File.pathSeparator))
+}
@@ -0,0 +1,81 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only view of one captured block of 16-bit PCM, backed by a pooled buffer.
+ *
+ * A block is only valid for the duration of the callback it is handed to. A consumer that
+ * needs it longer (for example to finish work on the UI thread) calls {@link #retain()} and
+ * must balance it with {@link #release()}; the buffer returns to its pool when the last
+ * reference is released.
+ */
+public final class AudioBlock {
+    private final short[] samples;
+    private final AudioBlockPool pool;
+    private final AtomicInteger references = new AtomicInteger();
+    private int length;
+
+    AudioBlock(int capacity, AudioBlockPool pool) {
+        this.samples = new short[capacity];
+        this.pool = pool;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int capacity() {
+        return samples.length;
+    }
+
+    public short get(int index) {
+        if (index >= length) {
+            throw new IndexOutOfBoundsException("Index " + index + " >= length " + length);
+        }
+        return samples[index];
+    }
+
+    public void copyTo(int srcPos, short[] dst, int dstPos, int count) {
+        if (srcPos < 0 || count < 0 || srcPos + count > length) {
+            throw new IndexOutOfBoundsException("Range " + srcPos + "+" + count + " outside length " + length);
+        }
+        System.arraycopy(samples, srcPos, dst, dstPos, count);
+    }
+
+    public double power() {
+        return PcmMath.power(samples, 0, length);
+    }
+
+    public double meanAbs() {
+        return PcmMath.meanAbs(samples, 0, length);
+    }
+
+    public AudioBlock retain() {
+        references.incrementAndGet();
+        return this;
+    }
+
+    public void release() {
+        int remaining = references.decrementAndGet();
+        if (remaining == 0) {
+            pool.recycle(this);
+        } else if (remaining < 0) {
+            throw new IllegalStateException("AudioBlock released more often than retained");
+        }
+    }
+
+    // Writable access for the capture side and DSP code in this package only
+    short[] buffer() {
+        return samples;
+    }
+
+    void setLength(int length) {
+        this.length = length;
+    }
+
+    void acquired() {
+        length = 0;
+        references.set(1);
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Live source that stays open between captures, such as an initialised AudioRecord. A
+ * {@link CaptureSession} calls every method from its audio thread, so an implementation never
+ * sees release() racing read().
+ */
+public interface AudioInput extends AudioSource {
+
+    // Begins delivering samples; cheap compared to creating the input
+    void start();
+
+    // Stops delivering samples but keeps the input ready for the next start()
+    void stop();
+
+    // Frees the underlying device; the input is not used afterwards
+    void release();
+}
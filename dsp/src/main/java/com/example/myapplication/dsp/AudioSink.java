@@ -0,0 +1,71 @@
+package com.example.myapplication.dsp;
+
+/**
+ * End point (or intermediate {@link AudioStage}) of a processing graph. Blocks are pushed in
+ * stream order on a single thread and are only valid during {@link #accept}; retain() a block
+ * to keep it longer.
+ */
+public interface AudioSink {
+
+    // Called once before the first block with the rate of the blocks that follow
+    default void open(int sampleRate) {
+    }
+
+    void accept(AudioBlock block);
+
+    // Called once after the last block
+    default void close() {
+    }
+
+    /** Delivers every block to each of {@code sinks} in order. */
+    static AudioSink fanOut(AudioSink... sinks) {
+        if (sinks.length == 1) {
+            return sinks[0];
+        }
+        AudioSink[] targets = sinks.clone();
+        return new AudioSink() {
+            @Override
+            public void open(int sampleRate) {
+                for (AudioSink sink : targets) {
+                    sink.open(sampleRate);
+                }
+            }
+
+            @Override
+            public void accept(AudioBlock block) {
+                for (AudioSink sink : targets) {
+                    sink.accept(block);
+                }
+            }
+
+            @Override
+            public void close() {
+                for (AudioSink sink : targets) {
+                    sink.close();
+                }
+            }
+        };
+    }
+
+    /** Records the time spent in each of {@code sink}'s accept() calls in {@code histogram}. */
+    static AudioSink timed(LatencyHistogram histogram, AudioSink sink) {
+        return new AudioSink() {
+            @Override
+            public void open(int sampleRate) {
+                sink.open(sampleRate);
+            }
+
+            @Override
+            public void accept(AudioBlock block) {
+                long start = System.nanoTime();
+                sink.accept(block);
+                histogram.recordSince(start);
+            }
+
+            @Override
+            public void close() {
+                sink.close();
+            }
+        };
+    }
+}
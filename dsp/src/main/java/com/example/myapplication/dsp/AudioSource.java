@@ -0,0 +1,32 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Start of a processing graph: 16-bit mono PCM at a fixed sample rate.
+ *
+ * {@link #read} follows the AudioRecord contract (samples read, 0 if nothing is available
+ * right now, negative on error). Finite sources such as files report the end of the stream
+ * through {@link #isFinished()}; live sources never finish.
+ */
+public interface AudioSource extends CaptureLoop.SampleSource {
+
+    int getSampleRate();
+
+    default boolean isFinished() {
+        return false;
+    }
+
+    // Wraps a live reader such as AudioRecord::read or FloatPcmReader::read
+    static AudioSource of(int sampleRate, CaptureLoop.SampleSource reader) {
+        return new AudioSource() {
+            @Override
+            public int getSampleRate() {
+                return sampleRate;
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                return reader.read(buffer, offset, length);
+            }
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.myapplication.dsp;
+
+/**
+ * A sink that transforms blocks and pushes the result further down the graph. Subclasses
+ * write into their own pooled blocks and call {@link #emit}.
+ */
+public abstract class AudioStage implements AudioSink {
+    private AudioSink downstream = block -> { };
+
+    /** Connects the stage to one or more sinks and returns it, so graphs read left to right. */
+    public AudioStage to(AudioSink... sinks) {
+        downstream = AudioSink.fanOut(sinks);
+        return this;
+    }
+
+    // Rate of the emitted blocks for a given input rate
+    protected int outputSampleRate(int inputSampleRate) {
+        return inputSampleRate;
+    }
+
+    @Override
+    public void open(int sampleRate) {
+        downstream.open(outputSampleRate(sampleRate));
+    }
+
+    @Override
+    public void close() {
+        downstream.close();
+    }
+
+    protected final void emit(AudioBlock block) {
+        downstream.accept(block);
+    }
+}
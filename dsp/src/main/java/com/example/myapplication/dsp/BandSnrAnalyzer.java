@@ -0,0 +1,184 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Frequency-domain SNR restricted to the bands where an electrolarynx has energy.
+ *
+ * A per-bin noise spectrum is learned from a baseline recording. While measuring, each STFT
+ * frame's power is summed per band, smoothed over time and compared with the noise power in
+ * the same bins. Hum below the first band edge and hiss above the last one do not affect the
+ * reading, unlike the broadband time-domain SNR.
+ */
+public class BandSnrAnalyzer {
+
+    public interface Listener {
+        // perBandSnrDb is reused between calls; copy it to keep it
+        void onBandSnr(double bandSnrDb, double[] perBandSnrDb);
+    }
+
+    // Fundamental (70-200 Hz) and the harmonic regions that carry most of the buzz energy
+    public static final double[] ELECTROLARYNX_BAND_EDGES_HZ = {70, 200, 500, 1000, 2000, 4000};
+
+    private final StftAnalyzer stft;
+    private final int[] bandStartBins;
+    private final int bandCount;
+    private final double smoothingCoefficient;
+
+    private final double[] noiseSpectrum;
+    private final double[] noiseBandPower;
+    private double noiseTotalPower;
+    private boolean hasNoiseSpectrum;
+
+    private final double[] smoothedBandPower;
+    private final double[] perBandSnrDb;
+    private boolean primed;
+
+    private final StftAnalyzer.FrameListener noiseAccumulator;
+    private int noiseFrames;
+
+    // Bound once so process() does not allocate a lambda per block
+    private final StftAnalyzer.FrameListener measurementListener = this::onFrame;
+    private Listener listener;
+
+    /**
+     * @param bandEdgesHz              ascending edges; band i covers [edges[i], edges[i + 1])
+     * @param smoothingTimeConstantSec smoothing of band powers across frames
+     */
+    public BandSnrAnalyzer(int sampleRate, int fftSize, int hopSize, double[] bandEdgesHz,
+                           double smoothingTimeConstantSec) {
+        this(sampleRate, fftSize, hopSize, bandEdgesHz, smoothingTimeConstantSec, FftPlans.Precision.DOUBLE);
+    }
+
+    public BandSnrAnalyzer(int sampleRate, int fftSize, int hopSize, double[] bandEdgesHz,
+                           double smoothingTimeConstantSec, FftPlans.Precision precision) {
+        if (bandEdgesHz.length < 2) {
+            throw new IllegalArgumentException("Need at least one band");
+        }
+        this.stft = new StftAnalyzer(fftSize, hopSize, precision);
+        this.bandCount = bandEdgesHz.length - 1;
+        this.bandStartBins = new int[bandEdgesHz.length];
+        for (int i = 0; i < bandEdgesHz.length; i++) {
+            if (i > 0 && bandEdgesHz[i] <= bandEdgesHz[i - 1]) {
+                throw new IllegalArgumentException("Band edges must be ascending");
+            }
+            bandStartBins[i] = StftAnalyzer.binAtOrAbove(bandEdgesHz[i], fftSize, sampleRate);
+        }
+        double framesPerSecond = (double) sampleRate / hopSize;
+        this.smoothingCoefficient = smoothingTimeConstantSec <= 0
+                ? 1.0
+                : 1.0 - Math.exp(-1.0 / (smoothingTimeConstantSec * framesPerSecond));
+
+        int bins = stft.getBinCount();
+        this.noiseSpectrum = new double[bins];
+        this.noiseBandPower = new double[bandCount];
+        this.smoothedBandPower = new double[bandCount];
+        this.perBandSnrDb = new double[bandCount];
+        this.noiseAccumulator = spectrum -> {
+            for (int k = 0; k < bins; k++) {
+                noiseSpectrum[k] += spectrum[k];
+            }
+            noiseFrames++;
+        };
+    }
+
+    public int getBandCount() {
+        return bandCount;
+    }
+
+    public int getBinCount() {
+        return stft.getBinCount();
+    }
+
+    public boolean hasNoiseSpectrum() {
+        return hasNoiseSpectrum;
+    }
+
+    // Per-bin mean noise power as learned or set; owned by the analyzer
+    public double[] getNoiseSpectrum() {
+        return noiseSpectrum;
+    }
+
+    /** Averages the STFT power of a noise-only recording into the per-bin noise spectrum. */
+    public void learnNoise(short[] samples, int offset, int length) {
+        Arrays.fill(noiseSpectrum, 0);
+        noiseFrames = 0;
+        stft.reset();
+        stft.process(samples, offset, length, noiseAccumulator);
+        stft.reset();
+        if (noiseFrames == 0) {
+            hasNoiseSpectrum = false;
+            return;
+        }
+        for (int k = 0; k < noiseSpectrum.length; k++) {
+            noiseSpectrum[k] /= noiseFrames;
+        }
+        updateNoiseBands();
+    }
+
+    public void setNoiseSpectrum(double[] spectrum) {
+        if (spectrum.length != noiseSpectrum.length) {
+            throw new IllegalArgumentException("Expected " + noiseSpectrum.length + " bins, got " + spectrum.length);
+        }
+        System.arraycopy(spectrum, 0, noiseSpectrum, 0, spectrum.length);
+        updateNoiseBands();
+    }
+
+    public void reset() {
+        stft.reset();
+        primed = false;
+    }
+
+    public void process(AudioBlock block, Listener listener) {
+        process(block.buffer(), 0, block.length(), listener);
+    }
+
+    public void process(short[] samples, int offset, int length, Listener listener) {
+        if (!hasNoiseSpectrum) {
+            return;
+        }
+        this.listener = listener;
+        stft.process(samples, offset, length, measurementListener);
+    }
+
+    private void onFrame(double[] spectrum) {
+        double signalTotal = 0;
+        for (int b = 0; b < bandCount; b++) {
+            double power = 0;
+            for (int k = bandStartBins[b], end = bandStartBins[b + 1]; k < end; k++) {
+                power += spectrum[k];
+            }
+            if (!primed) {
+                smoothedBandPower[b] = power;
+            } else {
+                smoothedBandPower[b] += smoothingCoefficient * (power - smoothedBandPower[b]);
+            }
+            perBandSnrDb[b] = toDb(smoothedBandPower[b], noiseBandPower[b]);
+            signalTotal += smoothedBandPower[b];
+        }
+        primed = true;
+        if (listener != null) {
+            listener.onBandSnr(toDb(signalTotal, noiseTotalPower), perBandSnrDb);
+        }
+    }
+
+    private void updateNoiseBands() {
+        noiseTotalPower = 0;
+        for (int b = 0; b < bandCount; b++) {
+            double power = 0;
+            for (int k = bandStartBins[b], end = bandStartBins[b + 1]; k < end; k++) {
+                power += noiseSpectrum[k];
+            }
+            noiseBandPower[b] = power;
+            noiseTotalPower += power;
+        }
+        hasNoiseSpectrum = noiseTotalPower > 0;
+    }
+
+    private static double toDb(double signal, double noise) {
+        if (noise <= 0) {
+            return Double.NaN;
+        }
+        return 10 * Math.log10(Math.max(signal, Double.MIN_NORMAL) / noise);
+    }
+}
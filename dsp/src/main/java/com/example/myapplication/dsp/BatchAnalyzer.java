@@ -0,0 +1,167 @@
+package com.example.myapplication.dsp;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Offline analysis of recordings: each file is streamed through decimation, sliding-window
+ * SNR with noise-floor tracking, an averaged STFT and the pitch tracker in fixed-size chunks,
+ * and reduced to a {@link RecordingSummary}. Files are analyzed in parallel on a fork-join
+ * pool, one task per file; every task builds its own stages, so nothing is shared but the
+ * read-only FFT plans.
+ *
+ * Also runs from the command line over files or directories of WAVs:
+ * {@code ./gradlew :dsp:analyzeWavs -Pwavs=corpus/}
+ */
+public class BatchAnalyzer {
+    private static final int BLOCK_SIZE = 4096;
+    // Decimate by the largest factor that keeps the analysis rate at or above 14 kHz
+    private static final int MIN_ANALYSIS_RATE = 14000;
+    // Same stage settings as the live analysis in the app
+    private static final double SNR_WINDOW_SECONDS = 0.25;
+    private static final double SNR_OUTPUT_RATE_HZ = 30;
+    private static final double SNR_SMOOTHING_SECONDS = 0.1;
+    private static final double NOISE_SEARCH_WINDOW_SECONDS = 3.0;
+    private static final int NOISE_SUB_WINDOWS = 6;
+    private static final double NOISE_BIAS_COMPENSATION = 1.25;
+    private static final double SPECTRUM_FRAME_SECONDS = 0.046;
+    private static final double PITCH_HOP_SECONDS = 0.01;
+    // Frames below this confidence count as unvoiced, as in the microphone test
+    private static final double MIN_PITCH_CONFIDENCE = 0.8;
+
+    private final ForkJoinPool pool;
+
+    public BatchAnalyzer() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public BatchAnalyzer(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /** Analyzes all files in parallel; results are in the same order as {@code files}. */
+    public List<RecordingSummary> analyzeAll(List<File> files) {
+        List<ForkJoinTask<RecordingSummary>> tasks = new ArrayList<>(files.size());
+        for (File file : files) {
+            tasks.add(pool.submit(() -> analyze(file)));
+        }
+        List<RecordingSummary> summaries = new ArrayList<>(files.size());
+        for (ForkJoinTask<RecordingSummary> task : tasks) {
+            summaries.add(task.join());
+        }
+        return summaries;
+    }
+
+    /** Analyzes one WAV file on the calling thread. Read errors end up in the summary. */
+    public static RecordingSummary analyze(File file) {
+        try (WavFileSource source = new WavFileSource(file)) {
+            return analyze(file.getName(), source);
+        } catch (IOException | UncheckedIOException e) {
+            return RecordingSummary.failed(file.getName(), e.getMessage());
+        }
+    }
+
+    /** Analyzes a finite source, e.g. a {@link SyntheticSource}, on the calling thread. */
+    public static RecordingSummary analyze(String name, AudioSource source) {
+        int factor = Math.max(1, source.getSampleRate() / MIN_ANALYSIS_RATE);
+        int rate = source.getSampleRate() / factor;
+
+        // SNR readings go straight into a 0.1 dB histogram
+        int snrBins = (int) Math.round((RecordingSummary.SNR_MAX_DB - RecordingSummary.SNR_MIN_DB) / RecordingSummary.SNR_BIN_DB);
+        int[] snrHistogram = new int[snrBins];
+        double[] snrTotals = new double[2];
+        SlidingWindowSnrEstimator snrEstimator = new SlidingWindowSnrEstimator(
+                rate, SNR_WINDOW_SECONDS, SNR_OUTPUT_RATE_HZ, SNR_SMOOTHING_SECONDS);
+        NoiseFloorTracker noiseTracker = new NoiseFloorTracker(SNR_OUTPUT_RATE_HZ, NOISE_SEARCH_WINDOW_SECONDS,
+                NOISE_SUB_WINDOWS, 0, NOISE_BIAS_COMPENSATION);
+        SlidingWindowSnrEstimator.Listener snrListener = (snrDb, signalPower) -> {
+            if (!Double.isNaN(snrDb)) {
+                int bin = (int) ((snrDb - RecordingSummary.SNR_MIN_DB) / RecordingSummary.SNR_BIN_DB);
+                snrHistogram[Math.max(0, Math.min(snrBins - 1, bin))]++;
+                snrTotals[0] += snrDb;
+                snrTotals[1]++;
+            }
+            double noiseFloor = noiseTracker.update(snrEstimator.getWindowPower());
+            if (noiseTracker.hasEstimate()) {
+                snrEstimator.setNoisePower(noiseFloor);
+            }
+        };
+
+        int fftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(rate * SPECTRUM_FRAME_SECONDS));
+        StftAnalyzer stft = new StftAnalyzer(fftSize, fftSize / 2);
+        double[] spectrumSum = new double[stft.getBinCount()];
+        StftAnalyzer.FrameListener spectrumListener = powerSpectrum -> {
+            for (int k = 0; k < spectrumSum.length; k++) {
+                spectrumSum[k] += powerSpectrum[k];
+            }
+        };
+
+        int f0Bins = (int) Math.round((RecordingSummary.F0_MAX_HZ - RecordingSummary.F0_MIN_HZ) / RecordingSummary.F0_BIN_HZ);
+        int[] f0Histogram = new int[f0Bins];
+        long[] pitchFrames = new long[1];
+        PitchTracker pitchTracker = new PitchTracker(rate, RecordingSummary.F0_MIN_HZ, RecordingSummary.F0_MAX_HZ,
+                PITCH_HOP_SECONDS);
+        PitchTracker.Listener pitchListener = (f0Hz, confidence) -> {
+            pitchFrames[0]++;
+            if (!Double.isNaN(f0Hz) && confidence >= MIN_PITCH_CONFIDENCE) {
+                int bin = (int) ((f0Hz - RecordingSummary.F0_MIN_HZ) / RecordingSummary.F0_BIN_HZ);
+                f0Histogram[Math.max(0, Math.min(f0Bins - 1, bin))]++;
+            }
+        };
+
+        AudioSink stages = AudioSink.fanOut(
+                block -> snrEstimator.process(block, snrListener),
+                block -> stft.process(block, spectrumListener),
+                block -> pitchTracker.process(block, pitchListener));
+        AudioSink input = factor == 1 ? stages : new DecimatorStage(factor, BLOCK_SIZE).to(stages);
+        ProcessingGraph graph = new ProcessingGraph(source, BLOCK_SIZE, input);
+        if (graph.run() < 0) {
+            return RecordingSummary.failed(name, "Read error");
+        }
+
+        long frames = Math.max(1, stft.getFramesProduced());
+        for (int k = 0; k < spectrumSum.length; k++) {
+            spectrumSum[k] /= frames;
+        }
+        double meanSnr = snrTotals[1] == 0 ? Double.NaN : snrTotals[0] / snrTotals[1];
+        return new RecordingSummary(name, source.getSampleRate(),
+                (double) graph.getSamplesProcessed() / source.getSampleRate(),
+                snrHistogram, (long) snrTotals[1], meanSnr, f0Histogram, pitchFrames[0],
+                spectrumSum, (double) rate / fftSize);
+    }
+
+    // Files as given, directories expanded to the .wav files directly inside them
+    static List<File> collectWavFiles(String... paths) {
+        List<File> files = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            File[] children = file.listFiles((dir, fileName) -> fileName.toLowerCase().endsWith(".wav"));
+            if (children != null) {
+                Arrays.sort(children);
+                files.addAll(Arrays.asList(children));
+            } else {
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    public static void main(String[] args) {
+        List<File> files = collectWavFiles(args);
+        long start = System.nanoTime();
+        List<RecordingSummary> summaries = new BatchAnalyzer().analyzeAll(files);
+        double audioSeconds = 0;
+        for (RecordingSummary summary : summaries) {
+            System.out.println(summary.describe());
+            audioSeconds += summary.getDurationSeconds();
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d files, %.0f s of audio in %.1f s%n", summaries.size(), audioSeconds, elapsed);
+    }
+}
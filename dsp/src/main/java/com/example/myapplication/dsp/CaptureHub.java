@@ -0,0 +1,293 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes each captured block once to any number of subscribers, each on its own thread.
+ *
+ * The hub is an {@link AudioSink} on the capture thread. A published block is not copied:
+ * every subscription retains it into its own preallocated ring of block references and
+ * releases it once its sink has seen it, so the pooled buffer goes back only when the slowest
+ * subscriber is done. Each subscription has its own cursor and {@link Policy}, so a stalled
+ * display never holds up the file writer or the other way round.
+ *
+ * Size the upstream {@link AudioBlockPool} for the sum of the subscription depths plus the
+ * block in flight, otherwise the capture loop runs out of buffers and drops blocks itself.
+ *
+ * Each subscription accounts for both ways a queue can go wrong: overruns (blocks and samples
+ * dropped because the sink fell behind) and underruns (times the sink caught up and had to
+ * wait for the publisher).
+ */
+public class CaptureHub implements AudioSink {
+
+    public enum Policy {
+        // Bounded lag: when the ring is full the oldest queued block is discarded
+        DROP_OLDEST,
+        // Lossless: the publisher waits for room, so only use it for sinks that keep up
+        BLOCK,
+        // Only the newest block is queued; depth is ignored
+        LATEST
+    }
+
+    // Poll interval of a publisher waiting on a BLOCK subscription
+    private static final long BLOCK_PARK_NANOS = 100_000L;
+    private static final Subscription[] NONE = new Subscription[0];
+
+    private final int sampleRate;
+    // Copied on write so publishing iterates without locking or allocating
+    private volatile Subscription[] subscriptions = NONE;
+
+    public CaptureHub(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    // The subscriptions taking blocks right now; later subscribe() and close() calls do not change it
+    public Subscription[] getSubscriptions() {
+        return subscriptions.clone();
+    }
+
+    /**
+     * Starts a thread named {@code name} that opens {@code sink} at the hub's rate and then
+     * delivers every block published from now on, subject to {@code policy}. The subscription
+     * ends when it is closed or when the hub is closed; in both cases queued blocks are still
+     * delivered before the sink is closed.
+     */
+    public synchronized Subscription subscribe(String name, Policy policy, int depth, AudioSink sink) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Depth must be positive: " + depth);
+        }
+        Subscription subscription = new Subscription(name, policy, policy == Policy.LATEST ? 1 : depth, sink);
+        Subscription[] current = subscriptions;
+        Subscription[] next = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, next, 0, current.length);
+        next[current.length] = subscription;
+        subscriptions = next;
+        subscription.thread.start();
+        return subscription;
+    }
+
+    private synchronized void remove(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] next = current.length == 1 ? NONE : new Subscription[current.length - 1];
+                System.arraycopy(current, 0, next, 0, i);
+                System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                subscriptions = next;
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void open(int sampleRate) {
+        if (sampleRate != this.sampleRate) {
+            throw new IllegalArgumentException("Hub runs at " + this.sampleRate + " Hz, source at " + sampleRate);
+        }
+    }
+
+    // Publisher thread only
+    @Override
+    public void accept(AudioBlock block) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(block);
+        }
+    }
+
+    /** End of stream: closes every current subscription. New ones can be added afterwards. */
+    @Override
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * One subscriber's cursor into the stream. The publisher writes {@code head}; the delivery
+     * thread advances {@code tail}, and so does the publisher when it drops the oldest block.
+     * Whoever moves {@code tail} past a slot owns the reference in it.
+     */
+    public final class Subscription {
+        private final String name;
+        private final Policy policy;
+        private final AudioSink sink;
+        private final AudioBlock[] slots;
+        private final int mask;
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong droppedSamples = new AtomicLong();
+        private final Thread thread;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean closed;
+        private volatile long delivered;
+        // Written by the delivery thread only
+        private volatile long underruns;
+        private volatile RuntimeException error;
+
+        private Subscription(String name, Policy policy, int depth, AudioSink sink) {
+            this.name = name;
+            this.policy = policy;
+            this.sink = sink;
+            this.slots = new AudioBlock[FftPlans.nextPowerOfTwo(depth)];
+            this.mask = slots.length - 1;
+            this.thread = new Thread(this::deliver, name);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Policy getPolicy() {
+            return policy;
+        }
+
+        // Blocks queued and not yet delivered
+        public int getBacklog() {
+            return (int) (head.get() - tail.get());
+        }
+
+        public long getDroppedBlocks() {
+            return dropped.get();
+        }
+
+        // Samples in the dropped blocks; a lossless subscription reports 0
+        public long getDroppedSamples() {
+            return droppedSamples.get();
+        }
+
+        // Times the delivery thread found nothing queued and waited for the publisher
+        public long getUnderruns() {
+            return underruns;
+        }
+
+        public long getDeliveredBlocks() {
+            return delivered;
+        }
+
+        // First exception thrown by the sink, after which the subscription closed itself
+        public RuntimeException getError() {
+            return error;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /** Stops taking new blocks; queued ones are delivered, then the sink is closed. Any thread. */
+        public void close() {
+            remove(this);
+            closed = true;
+            LockSupport.unpark(thread);
+        }
+
+        public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+            return finished.await(timeout, unit);
+        }
+
+        private void offer(AudioBlock block) {
+            if (closed) {
+                return;
+            }
+            long h = head.get();
+            while (h - tail.get() >= slots.length) {
+                if (policy == Policy.BLOCK) {
+                    if (closed) {
+                        return;
+                    }
+                    LockSupport.unpark(thread);
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                } else {
+                    long t = tail.get();
+                    if (h - t >= slots.length && tail.compareAndSet(t, t + 1)) {
+                        AudioBlock oldest = slots[(int) (t & mask)];
+                        droppedSamples.addAndGet(oldest.length());
+                        dropped.incrementAndGet();
+                        oldest.release();
+                    }
+                }
+            }
+            slots[(int) (h & mask)] = block.retain();
+            // A full write, not lazySet: it has to be ordered before the read of closed below
+            head.set(h + 1);
+            if (closed) {
+                // The delivery thread may already have drained and exited
+                reclaim();
+            }
+            LockSupport.unpark(thread);
+        }
+
+        // Claims one queued block, or returns null if there is none
+        private AudioBlock poll() {
+            while (true) {
+                long t = tail.get();
+                if (t == head.get()) {
+                    return null;
+                }
+                AudioBlock block = slots[(int) (t & mask)];
+                if (tail.compareAndSet(t, t + 1)) {
+                    return block;
+                }
+            }
+        }
+
+        private void reclaim() {
+            AudioBlock block;
+            while ((block = poll()) != null) {
+                block.release();
+            }
+        }
+
+        private void deliver() {
+            try {
+                sink.open(sampleRate);
+                while (true) {
+                    AudioBlock block = poll();
+                    if (block == null) {
+                        if (closed) {
+                            // Anything published before closed was set is visible by now
+                            if (tail.get() == head.get()) {
+                                break;
+                            }
+                            continue;
+                        }
+                        underruns++;
+                        LockSupport.park(this);
+                        continue;
+                    }
+                    try {
+                        if (error == null) {
+                            sink.accept(block);
+                            delivered++;
+                        }
+                    } catch (RuntimeException e) {
+                        error = e;
+                        close();
+                    } finally {
+                        block.release();
+                    }
+                }
+                sink.close();
+            } catch (RuntimeException e) {
+                if (error == null) {
+                    error = e;
+                }
+                close();
+                reclaim();
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+}
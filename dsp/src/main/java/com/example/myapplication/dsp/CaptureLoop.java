@@ -0,0 +1,64 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Reads fixed-size blocks from a {@link SampleSource} into pooled buffers and hands each one
+ * to a consumer. Nothing is allocated per block.
+ */
+public class CaptureLoop {
+
+    public interface SampleSource {
+        // Same contract as AudioRecord.read(short[], int, int): samples read, or a negative error code
+        int read(short[] buffer, int offset, int length);
+    }
+
+    public interface BlockConsumer {
+        void onBlock(AudioBlock block);
+    }
+
+    private final SampleSource source;
+    private final AudioBlockPool pool;
+    private final int blockSize;
+    // Drains the source when consumers are holding every pooled block
+    private final short[] overflowBuffer;
+    private long droppedBlocks;
+
+    public CaptureLoop(SampleSource source, AudioBlockPool pool, int blockSize) {
+        if (blockSize <= 0 || blockSize > pool.getBlockCapacity()) {
+            throw new IllegalArgumentException("Block size " + blockSize + " does not fit pool capacity " + pool.getBlockCapacity());
+        }
+        this.source = source;
+        this.pool = pool;
+        this.blockSize = blockSize;
+        this.overflowBuffer = new short[blockSize];
+    }
+
+    /**
+     * Reads one block and passes it to {@code consumer} if the read succeeded. Returns the
+     * source's result, so callers can handle errors the same way as AudioRecord.read.
+     */
+    public int readBlock(BlockConsumer consumer) {
+        AudioBlock block = pool.acquire();
+        if (block == null) {
+            droppedBlocks++;
+            return source.read(overflowBuffer, 0, blockSize);
+        }
+        try {
+            int read = source.read(block.buffer(), 0, blockSize);
+            if (read > 0) {
+                block.setLength(read);
+                consumer.onBlock(block);
+            }
+            return read;
+        } finally {
+            block.release();
+        }
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getDroppedBlocks() {
+        return droppedBlocks;
+    }
+}
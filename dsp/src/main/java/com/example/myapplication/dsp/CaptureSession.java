@@ -0,0 +1,208 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs capture tasks (baseline, measurement, microphone test) one at a time on a single
+ * long-lived audio thread, over one {@link AudioInput} that stays warm between them.
+ *
+ * Only the audio thread touches the input. It starts the input before a task's first step,
+ * stops it after the last one and releases it when the session is closed. {@link #stop()}
+ * only asks the running task to end after its current step, so no other thread ever stops or
+ * frees the input while a read is in progress. Tasks that park between non-blocking reads
+ * are unparked by it, so they see the request without waiting out their pause.
+ *
+ * State moves IDLE -> RUNNING -> STOPPING -> IDLE, and to CLOSED from any state. A task passed
+ * to {@link #start} while the previous one is still stopping is queued and runs right after
+ * it, so switching modes costs one read rather than a new thread and a new AudioRecord.
+ */
+public class CaptureSession implements AutoCloseable {
+
+    public enum State { IDLE, RUNNING, STOPPING, CLOSED }
+
+    /** Work for the audio thread. All methods are called on it. */
+    public interface Task {
+        // Called before the input starts, e.g. to build a graph or start a consumer
+        default void onStart(AudioInput input) {
+        }
+
+        // One unit of work, typically graph.step(); return false once the task is complete
+        boolean step();
+
+        // Called with an exception thrown by this task or the input, before onFinish()
+        default void onFailure(RuntimeException e) {
+        }
+
+        // Always called once the input has stopped, whether the task completed, was stopped or failed
+        default void onFinish() {
+        }
+    }
+
+    private final AudioInput input;
+    private final Thread thread;
+    private State state = State.IDLE;
+    private Task pending;
+    private volatile boolean stopRequested;
+    private volatile RuntimeException lastFailure;
+
+    public CaptureSession(AudioInput input) {
+        this(input, runnable -> new Thread(runnable, "AudioSession"));
+    }
+
+    /** @param threadFactory creates the audio thread, e.g. one that raises its priority */
+    public CaptureSession(AudioInput input, ThreadFactory threadFactory) {
+        this.input = input;
+        this.thread = threadFactory.newThread(this::runTasks);
+        this.thread.start();
+    }
+
+    public AudioInput getInput() {
+        return input;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    // True when the current task should finish; tasks with their own inner loops should check it
+    public boolean isStopRequested() {
+        return stopRequested;
+    }
+
+    // The last exception thrown by a task, or null
+    public RuntimeException getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Runs {@code task} once the audio thread is free. Throws IllegalStateException if a task
+     * is already running or queued, or the session is closed.
+     */
+    public synchronized void start(Task task) {
+        if (state == State.CLOSED) {
+            throw new IllegalStateException("Capture session is closed");
+        }
+        if (state == State.RUNNING || pending != null) {
+            throw new IllegalStateException("Capture session is busy");
+        }
+        pending = task;
+        notifyAll();
+    }
+
+    /** Asks the running task to finish after its current step; returns immediately. */
+    public synchronized void stop() {
+        pending = null;
+        if (state == State.RUNNING) {
+            state = State.STOPPING;
+            stopRequested = true;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /** Waits until no task is running or queued. Returns false on timeout. */
+    public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while ((state == State.RUNNING || state == State.STOPPING || pending != null) && state != State.CLOSED) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /** Stops the current task, then releases the input on the audio thread and ends it. */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (state == State.CLOSED) {
+                return;
+            }
+            pending = null;
+            state = State.CLOSED;
+            stopRequested = true;
+            notifyAll();
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /** Waits for the audio thread to finish after {@link #close()}. */
+    public boolean awaitClosed(long timeout, TimeUnit unit) throws InterruptedException {
+        thread.join(Math.max(1, unit.toMillis(timeout)));
+        return !thread.isAlive();
+    }
+
+    private void runTasks() {
+        try {
+            while (true) {
+                Task task;
+                synchronized (this) {
+                    while (pending == null && state != State.CLOSED) {
+                        wait();
+                    }
+                    if (state == State.CLOSED) {
+                        return;
+                    }
+                    task = pending;
+                    pending = null;
+                    state = State.RUNNING;
+                    stopRequested = false;
+                }
+                runTask(task);
+                synchronized (this) {
+                    if (state != State.CLOSED) {
+                        state = State.IDLE;
+                    }
+                    notifyAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            input.release();
+            synchronized (this) {
+                state = State.CLOSED;
+                notifyAll();
+            }
+        }
+    }
+
+    private void runTask(Task task) {
+        boolean started = false;
+        try {
+            task.onStart(input);
+            input.start();
+            started = true;
+            while (!stopRequested && task.step()) {
+                // The task decides how much each step does
+            }
+        } catch (RuntimeException e) {
+            fail(task, e);
+        } finally {
+            try {
+                if (started) {
+                    input.stop();
+                }
+            } catch (RuntimeException e) {
+                fail(task, e);
+            }
+            try {
+                task.onFinish();
+            } catch (RuntimeException e) {
+                fail(task, e);
+            }
+        }
+    }
+
+    private void fail(Task task, RuntimeException e) {
+        lastFailure = e;
+        try {
+            task.onFailure(e);
+        } catch (RuntimeException ignored) {
+            // Reporting must not take the audio thread down
+        }
+    }
+}
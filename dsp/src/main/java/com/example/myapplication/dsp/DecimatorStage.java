@@ -0,0 +1,65 @@
+package com.example.myapplication.dsp;
+
+/** {@link PolyphaseDecimator} as a graph stage; emits one block per input block. */
+public class DecimatorStage extends AudioStage {
+    private final PolyphaseDecimator decimator;
+    private final AudioBlockPool pool;
+    private final short[] overflowBuffer;
+    private long droppedBlocks;
+
+    /**
+     * @param maxInputLength largest block this stage will receive
+     */
+    public DecimatorStage(int factor, int maxInputLength) {
+        // One block in flight plus one a downstream sink may still be holding
+        this(factor, maxInputLength, 2);
+    }
+
+    /**
+     * @param poolSize output blocks; more than 2 when downstream sinks queue them, e.g. a
+     *                 {@link CaptureHub}
+     */
+    public DecimatorStage(int factor, int maxInputLength, int poolSize) {
+        this.decimator = new PolyphaseDecimator(factor);
+        this.pool = new AudioBlockPool(poolSize, maxInputLength / factor + 1);
+        this.overflowBuffer = new short[maxInputLength / factor + 1];
+    }
+
+    public PolyphaseDecimator getDecimator() {
+        return decimator;
+    }
+
+    public long getDroppedBlocks() {
+        return droppedBlocks;
+    }
+
+    @Override
+    protected int outputSampleRate(int inputSampleRate) {
+        return inputSampleRate / decimator.getFactor();
+    }
+
+    @Override
+    public void open(int sampleRate) {
+        decimator.reset();
+        super.open(sampleRate);
+    }
+
+    @Override
+    public void accept(AudioBlock block) {
+        AudioBlock out = pool.acquire();
+        if (out == null) {
+            // Every output block is still retained downstream: keep the filter state, drop the output
+            decimator.process(block.buffer(), 0, block.length(), overflowBuffer, 0);
+            droppedBlocks++;
+            return;
+        }
+        try {
+            decimator.process(block, out);
+            if (out.length() > 0) {
+                emit(out);
+            }
+        } finally {
+            out.release();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide cache of JTransforms plans. Building a plan computes the twiddle and
+ * bit-reversal tables, which costs far more than the transform itself for one-off use,
+ * so every analyzer shares the plan for a given size.
+ */
+public final class FftPlans {
+
+    /** Arithmetic of an analyzer's window and transform; spectra are handed out as double either way. */
+    public enum Precision {
+        // Double work arrays and DoubleFFT_1D; the reference
+        DOUBLE,
+        // Float work arrays and FloatFFT_1D: half the memory traffic, and rounding error stays
+        // well below the quantisation noise of 16-bit input
+        SINGLE
+    }
+
+    private static final Map<Integer, DoubleFFT_1D> PLANS = new ConcurrentHashMap<>();
+    private static final Map<Integer, FloatFFT_1D> SINGLE_PLANS = new ConcurrentHashMap<>();
+
+    private FftPlans() {
+    }
+
+    public static DoubleFFT_1D get(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("FFT size must be at least 2: " + size);
+        }
+        return PLANS.computeIfAbsent(size, n -> new DoubleFFT_1D(n));
+    }
+
+    public static FloatFFT_1D getSingle(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("FFT size must be at least 2: " + size);
+        }
+        return SINGLE_PLANS.computeIfAbsent(size, n -> new FloatFFT_1D(n));
+    }
+
+    public static boolean isPowerOfTwo(int n) {
+        return n > 0 && (n & (n - 1)) == 0;
+    }
+
+    public static int nextPowerOfTwo(int n) {
+        if (n <= 1) {
+            return 1;
+        }
+        int highest = Integer.highestOneBit(n - 1) << 1;
+        if (highest <= 0) {
+            throw new IllegalArgumentException("No power of two >= " + n);
+        }
+        return highest;
+    }
+}
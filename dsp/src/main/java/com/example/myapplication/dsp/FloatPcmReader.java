@@ -0,0 +1,85 @@
+package com.example.myapplication.dsp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Feeds float PCM (e.g. an AudioRecord opened with ENCODING_PCM_FLOAT) into the 16-bit graph.
+ *
+ * The graph stays 16-bit: its blocks, exact integer level sums and WAV files are all built on
+ * short samples, so headroom above full scale is not carried past this point. What the float
+ * encoding adds is knowing when the input went over: values outside [-1, 1) saturate here and
+ * are counted, which a 16-bit record clips silently inside the framework.
+ *
+ * The rounding pass is the float-to-16-bit conversion a 16-bit record would otherwise run in
+ * the framework, moved here. The device writes into one direct buffer allocated up front and
+ * the samples are rounded straight from a float view of it into the caller's block, with no
+ * per-read float[] or byte[] in between.
+ */
+public class FloatPcmReader implements CaptureLoop.SampleSource {
+
+    /** Fills the buffer from its start, like AudioRecord.read(ByteBuffer, int, int); returns bytes or an error code. */
+    public interface ByteReader {
+        int read(ByteBuffer buffer, int sizeInBytes);
+    }
+
+    private final ByteBuffer bytes;
+    private final FloatBuffer floats;
+    private final ByteReader reader;
+    // Written by the reading thread only
+    private volatile long clippedSamples;
+
+    public FloatPcmReader(int maxSamples, ByteReader reader) {
+        if (maxSamples <= 0) {
+            throw new IllegalArgumentException("Buffer must hold at least one sample");
+        }
+        // Device data is native endian
+        this.bytes = ByteBuffer.allocateDirect(maxSamples * Float.BYTES).order(ByteOrder.nativeOrder());
+        this.floats = bytes.asFloatBuffer();
+        this.reader = reader;
+    }
+
+    public int getCapacity() {
+        return floats.capacity();
+    }
+
+    // Samples outside [-1, 1) since construction; -1 itself is representable and not counted
+    public long getClippedSamples() {
+        return clippedSamples;
+    }
+
+    /** Reads up to {@code length} samples (at most the capacity); same result contract as AudioRecord. */
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int request = Math.min(length, floats.capacity());
+        int read = reader.read(bytes, request * Float.BYTES);
+        if (read <= 0) {
+            return read;
+        }
+        // Devices deliver whole frames; a stray partial sample would be dropped here
+        int samples = Math.min(read / Float.BYTES, request);
+        int clipped = toPcm16(floats, buffer, offset, samples);
+        if (clipped > 0) {
+            clippedSamples += clipped;
+        }
+        return samples;
+    }
+
+    // Rounds samples in [-1, 1) to 16-bit PCM, saturating outside it. Returns how many saturated.
+    static int toPcm16(FloatBuffer source, short[] target, int offset, int length) {
+        int clipped = 0;
+        for (int i = 0; i < length; i++) {
+            int s = Math.round(source.get(i) * (float) PcmMath.FULL_SCALE);
+            if (s > Short.MAX_VALUE) {
+                s = Short.MAX_VALUE;
+                clipped++;
+            } else if (s < Short.MIN_VALUE) {
+                s = Short.MIN_VALUE;
+                clipped++;
+            }
+            target[offset + i] = (short) s;
+        }
+        return clipped;
+    }
+}
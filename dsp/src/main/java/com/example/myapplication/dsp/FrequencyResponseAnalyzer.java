@@ -0,0 +1,308 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+
+import java.util.Arrays;
+
+/**
+ * Measures a playback-to-capture path from the recording of a {@link SteppedSineStimulus}:
+ * the level of every tone relative to what was played, its harmonic distortion, and the
+ * noise floor, all per frequency across the stimulus band.
+ *
+ * The capture is cut into rectangular frames of the stimulus frame size as it arrives. Each
+ * tone fills exactly one bin of such a frame wherever the frame starts, so no latency estimate
+ * or alignment is needed: a frame is attributed to a tone when that tone's bin holds 20 dB more
+ * than every other tone's bin and than the frame's mean bin power, and it is only measured when
+ * the frames on both sides are attributed to the same tone. Frames that straddle a step change,
+ * and the silence before the stimulus arrives, are skipped that way.
+ *
+ * Call {@link #learnNoise} with capture taken before playback starts, then {@link #process}
+ * with everything after. Results for a tone are final once the listener has been told; memory
+ * is fixed by the frame size and the number of tones.
+ */
+public class FrequencyResponseAnalyzer {
+
+    public interface Listener {
+        // A tone's frames are all in; its results will not change any more
+        void onToneMeasured(int tone);
+    }
+
+    // Harmonics 2-5 count towards THD, as far as they stay below Nyquist
+    private static final int MAX_HARMONIC = 5;
+    private static final double DOMINANCE_RATIO = 100;
+
+    private final SteppedSineStimulus stimulus;
+    private final int frameSize;
+    private final int binCount;
+    private final DoubleFFT_1D fft;
+    private final short[] frame;
+    private final double[] work;
+    private final double[] binPower;
+    private int framePosition;
+    private boolean learningNoise;
+
+    private final double[] noiseSum;
+    private long noiseFrames;
+
+    private final double[] fundamentalSum;
+    private final double[] harmonicSum;
+    private final int[] measuredFrames;
+
+    // Attribution of the two frames before the current one; the later of them is pending
+    private int toneBeforePending = -1;
+    private int pendingTone = -1;
+    private double pendingFundamental;
+    private double pendingHarmonics;
+    private int lastMeasuredTone = -1;
+    private int lastReportedTone = -1;
+    private Listener listener;
+
+    public FrequencyResponseAnalyzer(SteppedSineStimulus stimulus) {
+        this.stimulus = stimulus;
+        this.frameSize = stimulus.getFrameSize();
+        this.binCount = frameSize / 2 + 1;
+        this.fft = FftPlans.get(frameSize);
+        this.frame = new short[frameSize];
+        this.work = new double[frameSize];
+        this.binPower = new double[binCount];
+        this.noiseSum = new double[binCount];
+        int tones = stimulus.getToneCount();
+        this.fundamentalSum = new double[tones];
+        this.harmonicSum = new double[tones];
+        this.measuredFrames = new int[tones];
+    }
+
+    public SteppedSineStimulus getStimulus() {
+        return stimulus;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public int getToneCount() {
+        return stimulus.getToneCount();
+    }
+
+    public double getToneFrequencyHz(int tone) {
+        return stimulus.getToneFrequencyHz(tone);
+    }
+
+    public long getNoiseFrames() {
+        return noiseFrames;
+    }
+
+    public int getMeasuredFrames(int tone) {
+        return measuredFrames[tone];
+    }
+
+    /** Capture from before the stimulus plays; sets the noise floor. */
+    public void learnNoise(short[] samples, int offset, int length) {
+        switchMode(true);
+        feed(samples, offset, length);
+    }
+
+    public void learnNoise(AudioBlock block) {
+        switchMode(true);
+        feed(block.buffer(), 0, block.length());
+    }
+
+    /** Capture while and after the stimulus plays, in any block sizes. */
+    public void process(short[] samples, int offset, int length) {
+        switchMode(false);
+        feed(samples, offset, length);
+    }
+
+    public void process(AudioBlock block) {
+        switchMode(false);
+        feed(block.buffer(), 0, block.length());
+    }
+
+    /** End of capture: reports the last tone. Later calls do nothing. */
+    public void finish() {
+        if (lastMeasuredTone >= 0 && lastMeasuredTone != lastReportedTone) {
+            report(lastMeasuredTone);
+        }
+    }
+
+    // Tone level in dBFS as captured; NaN if the tone was never measured
+    public double getLevelDb(int tone) {
+        return measuredFrames[tone] == 0 ? Double.NaN : 10 * Math.log10(fundamentalSum[tone] / measuredFrames[tone]);
+    }
+
+    /** Captured level relative to the played one, in dB: the frequency response including the speaker. */
+    public double getResponseDb(int tone) {
+        return getLevelDb(tone) - 10 * Math.log10(stimulus.getTonePower());
+    }
+
+    // Response relative to another tone, e.g. the one nearest 1 kHz
+    public double getRelativeResponseDb(int tone, int referenceTone) {
+        return getLevelDb(tone) - getLevelDb(referenceTone);
+    }
+
+    // Noise power in the tone's bin before playback, in dBFS; NaN without noise frames
+    public double getNoiseFloorDb(int tone) {
+        return noiseFrames == 0 ? Double.NaN : 10 * Math.log10(noiseSum[stimulus.getToneBin(tone)] / noiseFrames);
+    }
+
+    /** Broadband noise level before playback in dBFS RMS, DC excluded. */
+    public double getNoiseFloorDb() {
+        if (noiseFrames == 0) {
+            return Double.NaN;
+        }
+        double total = 0;
+        for (int k = 1; k < binCount; k++) {
+            total += noiseSum[k];
+        }
+        return 10 * Math.log10(total / noiseFrames);
+    }
+
+    public double getSnrDb(int tone) {
+        return getLevelDb(tone) - getNoiseFloorDb(tone);
+    }
+
+    /**
+     * Harmonics 2-5 over the fundamental in percent, with the noise expected in the harmonic
+     * bins taken off; NaN if the tone was not measured or has no harmonic below Nyquist.
+     */
+    public double getThdPercent(int tone) {
+        int frames = measuredFrames[tone];
+        int bin = stimulus.getToneBin(tone);
+        if (frames == 0 || 2 * bin >= binCount - 1) {
+            return Double.NaN;
+        }
+        double harmonics = harmonicSum[tone] / frames;
+        if (noiseFrames > 0) {
+            for (int h = 2; h <= MAX_HARMONIC && h * bin < binCount - 1; h++) {
+                harmonics -= noiseSum[h * bin] / noiseFrames;
+            }
+        }
+        return 100 * Math.sqrt(Math.max(0, harmonics) / (fundamentalSum[tone] / frames));
+    }
+
+    // Tone whose frequency is closest to frequencyHz
+    public int getNearestTone(double frequencyHz) {
+        int nearest = 0;
+        for (int t = 1; t < getToneCount(); t++) {
+            if (Math.abs(getToneFrequencyHz(t) - frequencyHz) < Math.abs(getToneFrequencyHz(nearest) - frequencyHz)) {
+                nearest = t;
+            }
+        }
+        return nearest;
+    }
+
+    public void reset() {
+        framePosition = 0;
+        Arrays.fill(noiseSum, 0);
+        noiseFrames = 0;
+        Arrays.fill(fundamentalSum, 0);
+        Arrays.fill(harmonicSum, 0);
+        Arrays.fill(measuredFrames, 0);
+        toneBeforePending = -1;
+        pendingTone = -1;
+        lastMeasuredTone = -1;
+        lastReportedTone = -1;
+    }
+
+    // A partial frame never mixes noise and stimulus
+    private void switchMode(boolean noise) {
+        if (noise != learningNoise) {
+            learningNoise = noise;
+            framePosition = 0;
+        }
+    }
+
+    private void feed(short[] samples, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int chunk = Math.min(end - i, frameSize - framePosition);
+            System.arraycopy(samples, i, frame, framePosition, chunk);
+            framePosition += chunk;
+            i += chunk;
+            if (framePosition == frameSize) {
+                framePosition = 0;
+                computeBinPowers();
+                if (learningNoise) {
+                    for (int k = 0; k < binCount; k++) {
+                        noiseSum[k] += binPower[k];
+                    }
+                    noiseFrames++;
+                } else {
+                    classifyFrame();
+                }
+            }
+        }
+    }
+
+    // Rectangular window: a tone on bin k with peak amplitude A reads exactly A^2 / 2
+    private void computeBinPowers() {
+        for (int n = 0; n < frameSize; n++) {
+            work[n] = frame[n] / PcmMath.FULL_SCALE;
+        }
+        fft.realForward(work);
+        double scale = 1.0 / ((double) frameSize * frameSize);
+        int half = frameSize / 2;
+        binPower[0] = work[0] * work[0] * scale;
+        binPower[half] = work[1] * work[1] * scale;
+        for (int k = 1; k < half; k++) {
+            double re = work[2 * k];
+            double im = work[2 * k + 1];
+            binPower[k] = 2 * (re * re + im * im) * scale;
+        }
+    }
+
+    private void classifyFrame() {
+        double mean = 0;
+        for (int k = 1; k < binCount; k++) {
+            mean += binPower[k];
+        }
+        mean /= binCount - 1;
+        int strongest = -1;
+        double strongestPower = 0;
+        double competitor = mean;
+        for (int t = 0; t < stimulus.getToneCount(); t++) {
+            double power = binPower[stimulus.getToneBin(t)];
+            if (power > strongestPower) {
+                competitor = Math.max(competitor, strongestPower);
+                strongestPower = power;
+                strongest = t;
+            } else {
+                competitor = Math.max(competitor, power);
+            }
+        }
+        int tone = strongest >= 0 && strongestPower >= DOMINANCE_RATIO * competitor ? strongest : -1;
+
+        if (pendingTone >= 0 && pendingTone == toneBeforePending && pendingTone == tone) {
+            measure(pendingTone, pendingFundamental, pendingHarmonics);
+        }
+        toneBeforePending = pendingTone;
+        pendingTone = tone;
+        if (tone >= 0) {
+            int bin = stimulus.getToneBin(tone);
+            pendingFundamental = binPower[bin];
+            double harmonics = 0;
+            for (int h = 2; h <= MAX_HARMONIC && h * bin < binCount - 1; h++) {
+                harmonics += binPower[h * bin];
+            }
+            pendingHarmonics = harmonics;
+        }
+    }
+
+    private void measure(int tone, double fundamental, double harmonics) {
+        if (lastMeasuredTone >= 0 && tone != lastMeasuredTone && lastMeasuredTone != lastReportedTone) {
+            report(lastMeasuredTone);
+        }
+        fundamentalSum[tone] += fundamental;
+        harmonicSum[tone] += harmonics;
+        measuredFrames[tone]++;
+        lastMeasuredTone = tone;
+    }
+
+    private void report(int tone) {
+        lastReportedTone = tone;
+        if (listener != null) {
+            listener.onToneMeasured(tone);
+        }
+    }
+}
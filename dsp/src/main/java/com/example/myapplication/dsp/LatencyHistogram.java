@@ -0,0 +1,147 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size histogram of durations in nanoseconds, laid out like HdrHistogram. Values below
+ * 64 ns are counted exactly. Above that, each power of two is split into 32 linear
+ * sub-buckets, so any value is resolved to within about 3%, up to about a minute. Larger
+ * values are counted in the top bucket.
+ *
+ * {@link #record} is a handful of integer operations and atomic increments, with no locks and
+ * no allocation, so it is cheap enough to call from the capture thread on every block.
+ * Readers can take a {@link #snapshot()} from any thread at any time.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_HALF_MAGNITUDE = 5;
+    private static final int SUB_BUCKET_HALF_COUNT = 1 << SUB_BUCKET_HALF_MAGNITUDE;
+    private static final long SUB_BUCKET_MASK = 2 * SUB_BUCKET_HALF_COUNT - 1;
+    private static final int LEADING_ZERO_BASE = 64 - SUB_BUCKET_HALF_MAGNITUDE - 1;
+    // 2^36 ns is about 69 s
+    private static final long MAX_VALUE = (1L << 36) - 1;
+    static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        long max = maxNanos.get();
+        while (value > max && !maxNanos.compareAndSet(max, value)) {
+            max = maxNanos.get();
+        }
+    }
+
+    // Records the time elapsed since startNanos, a System.nanoTime() reading
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Copies the counts. Values recorded while the copy is taken may be partly included, which
+     * is harmless for monitoring.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(name, copy, count, totalNanos.get(), maxNanos.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+    }
+
+    static int indexOf(long value) {
+        int bucket = LEADING_ZERO_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+        int subBucket = (int) (value >>> bucket);
+        return ((bucket + 1) << SUB_BUCKET_HALF_MAGNITUDE) + (subBucket - SUB_BUCKET_HALF_COUNT);
+    }
+
+    // Largest value that lands in the same bucket as index
+    static long highestValueAt(int index) {
+        int bucket = (index >> SUB_BUCKET_HALF_MAGNITUDE) - 1;
+        int subBucket = (index & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+        if (bucket < 0) {
+            subBucket -= SUB_BUCKET_HALF_COUNT;
+            bucket = 0;
+        }
+        return (((long) subBucket + 1) << bucket) - 1;
+    }
+
+    /** Immutable copy of a histogram at one point in time. */
+    public static final class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        Snapshot(String name, long[] counts, long count, long totalNanos, long maxNanos) {
+            this.name = name;
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0 : (double) totalNanos / count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /** Value at or below which {@code percent}% of the recorded values fall, within ~3%. */
+        public long getPercentileNanos(double percent) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percent / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueAt(i), maxNanos);
+                }
+            }
+            return maxNanos;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.myapplication.dsp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and latency histograms for the audio pipeline.
+ *
+ * Stages look up their metrics once when they are set up and keep the references. The hot
+ * path only increments atomics, so the registry can stay enabled in release builds. A
+ * {@link #snapshot()} reads everything without stopping the writers.
+ */
+public class MetricsRegistry {
+
+    /** Monotonic event count, e.g. failed reads. */
+    public static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    private final Map<String, Counter> counters = new ConcurrentSkipListMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    // Sampled when a snapshot is taken; registering the same name again replaces the gauge
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public Snapshot snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, LongSupplier> entry : gauges.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsLong());
+        }
+        List<LatencyHistogram.Snapshot> latencies = new ArrayList<>(histograms.size());
+        for (LatencyHistogram histogram : histograms.values()) {
+            latencies.add(histogram.snapshot());
+        }
+        return new Snapshot(System.nanoTime(), values, latencies);
+    }
+
+    /** Counter and gauge values plus histogram copies at one point in time, in name order. */
+    public static final class Snapshot {
+        private final long takenAtNanos;
+        private final Map<String, Long> values;
+        private final List<LatencyHistogram.Snapshot> latencies;
+
+        Snapshot(long takenAtNanos, Map<String, Long> values, List<LatencyHistogram.Snapshot> latencies) {
+            this.takenAtNanos = takenAtNanos;
+            this.values = values;
+            this.latencies = latencies;
+        }
+
+        public long getTakenAtNanos() {
+            return takenAtNanos;
+        }
+
+        // Counter or gauge value, or 0 if there is none by that name
+        public long getValue(String name) {
+            Long value = values.get(name);
+            return value != null ? value : 0;
+        }
+
+        public Map<String, Long> getValues() {
+            return values;
+        }
+
+        public List<LatencyHistogram.Snapshot> getLatencies() {
+            return latencies;
+        }
+
+        // Null if no histogram by that name had been created
+        public LatencyHistogram.Snapshot getLatency(String name) {
+            for (LatencyHistogram.Snapshot latency : latencies) {
+                if (latency.getName().equals(name)) {
+                    return latency;
+                }
+            }
+            return null;
+        }
+
+        /** One line per metric, latencies in microseconds; used by the debug overlay. */
+        public String describe() {
+            StringBuilder text = new StringBuilder();
+            for (LatencyHistogram.Snapshot latency : latencies) {
+                text.append(String.format(Locale.US, "%-18s n=%-7d p50 %7.1f  p99 %7.1f  max %8.1f us%n",
+                        latency.getName(), latency.getCount(), latency.getPercentileNanos(50) / 1e3,
+                        latency.getPercentileNanos(99) / 1e3, latency.getMaxNanos() / 1e3));
+            }
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                text.append(String.format(Locale.US, "%-18s %d%n", entry.getKey(), entry.getValue()));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Continuous noise-floor estimate using minimum statistics.
+ *
+ * Frame powers are lightly smoothed and the minimum is tracked over a search window split
+ * into a fixed number of sub-windows. Only the sub-window minima are stored, so memory is
+ * bounded by the sub-window count and each frame costs a compare, plus a scan of the
+ * sub-window minima once per completed sub-window. Speech and buzz raise the frame power
+ * but rarely its minimum, while a change in room noise shows up within one search window.
+ */
+public class NoiseFloorTracker {
+    // -120 dBFS; keeps SNR finite for digitally silent input
+    private static final double MIN_NOISE_POWER = 1e-12;
+
+    private final double smoothingCoefficient;
+    private final double biasCompensation;
+    private final int framesPerSubWindow;
+    private final double[] subWindowMinima;
+
+    private double smoothedPower = Double.NaN;
+    private double currentMinimum = Double.POSITIVE_INFINITY;
+    private double completedMinimum = Double.POSITIVE_INFINITY;
+    private int framesInSubWindow;
+    private int nextSubWindow;
+    private int completedSubWindows;
+    private double noiseFloor;
+
+    /**
+     * @param frameRateHz              rate at which {@link #update(double)} is called
+     * @param searchWindowSeconds      how far back the minimum is taken, typically 2-5 s
+     * @param subWindowCount           number of stored sub-window minima
+     * @param smoothingTimeConstantSec smoothing of the frame power before the minimum search
+     * @param biasCompensation         factor applied to the minimum, which sits below the mean
+     *                                 noise power; close to 1 for heavily averaged frames
+     */
+    public NoiseFloorTracker(double frameRateHz, double searchWindowSeconds, int subWindowCount,
+                             double smoothingTimeConstantSec, double biasCompensation) {
+        if (frameRateHz <= 0 || searchWindowSeconds <= 0 || subWindowCount <= 0 || biasCompensation <= 0) {
+            throw new IllegalArgumentException("Invalid noise tracker configuration");
+        }
+        int windowFrames = (int) Math.round(searchWindowSeconds * frameRateHz);
+        this.framesPerSubWindow = Math.max(1, windowFrames / subWindowCount);
+        this.subWindowMinima = new double[subWindowCount];
+        Arrays.fill(subWindowMinima, Double.POSITIVE_INFINITY);
+        this.smoothingCoefficient = smoothingTimeConstantSec <= 0
+                ? 1.0
+                : 1.0 - Math.exp(-1.0 / (smoothingTimeConstantSec * frameRateHz));
+        this.biasCompensation = biasCompensation;
+    }
+
+    // Starts the search from a known floor, e.g. a baseline recording, so estimates are available immediately
+    public void seed(double noisePower) {
+        if (noisePower <= 0) {
+            return;
+        }
+        double minimum = noisePower / biasCompensation;
+        Arrays.fill(subWindowMinima, minimum);
+        completedMinimum = minimum;
+        completedSubWindows = subWindowMinima.length;
+        noiseFloor = noisePower;
+    }
+
+    /** Feeds one frame's mean power and returns the updated noise floor (0 until one is known). */
+    public double update(double framePower) {
+        if (Double.isNaN(smoothedPower)) {
+            smoothedPower = framePower;
+        } else {
+            smoothedPower += smoothingCoefficient * (framePower - smoothedPower);
+        }
+        if (smoothedPower < currentMinimum) {
+            currentMinimum = smoothedPower;
+        }
+
+        if (++framesInSubWindow == framesPerSubWindow) {
+            subWindowMinima[nextSubWindow] = currentMinimum;
+            nextSubWindow = (nextSubWindow + 1) % subWindowMinima.length;
+            if (completedSubWindows < subWindowMinima.length) {
+                completedSubWindows++;
+            }
+            completedMinimum = Double.POSITIVE_INFINITY;
+            for (double minimum : subWindowMinima) {
+                if (minimum < completedMinimum) {
+                    completedMinimum = minimum;
+                }
+            }
+            currentMinimum = Double.POSITIVE_INFINITY;
+            framesInSubWindow = 0;
+        }
+
+        if (completedSubWindows > 0) {
+            noiseFloor = Math.max(Math.min(completedMinimum, currentMinimum) * biasCompensation, MIN_NOISE_POWER);
+        }
+        return noiseFloor;
+    }
+
+    public boolean hasEstimate() {
+        return noiseFloor > 0;
+    }
+
+    public double getNoiseFloor() {
+        return noiseFloor;
+    }
+
+    public int getFramesPerSubWindow() {
+        return framesPerSubWindow;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.myapplication.dsp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Background noise measured by a baseline recording: the mean power and, optionally, the
+ * per-bin power spectrum learned by {@link BandSnrAnalyzer}, both at the analysis rate.
+ *
+ * The binary form is little-endian: rate (int32), power (float64), bin count (int32) and the
+ * bins (float64 each). It is stored as a chunk of recorded WAV files.
+ */
+public final class NoiseProfile {
+    private final int sampleRate;
+    private final double noisePower;
+    private final double[] spectrum;
+
+    /**
+     * @param sampleRate rate the profile was measured at
+     * @param noisePower mean power of the noise in squared sample units
+     * @param spectrum   one-sided per-bin noise power, or an empty array if not measured
+     */
+    public NoiseProfile(int sampleRate, double noisePower, double[] spectrum) {
+        if (sampleRate <= 0 || !(noisePower >= 0)) {
+            throw new IllegalArgumentException("Invalid noise profile");
+        }
+        this.sampleRate = sampleRate;
+        this.noisePower = noisePower;
+        this.spectrum = spectrum.clone();
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public double getNoisePower() {
+        return noisePower;
+    }
+
+    public boolean hasSpectrum() {
+        return spectrum.length > 0;
+    }
+
+    // FFT size the spectrum was measured with; 0 without a spectrum
+    public int getFftSize() {
+        return spectrum.length > 0 ? 2 * (spectrum.length - 1) : 0;
+    }
+
+    public double[] getSpectrum() {
+        return spectrum.clone();
+    }
+
+    public int encodedLength() {
+        return 16 + 8 * spectrum.length;
+    }
+
+    /** Writes the binary form at the buffer's position, in little-endian order. */
+    public void writeTo(ByteBuffer target) {
+        ByteOrder order = target.order();
+        target.order(ByteOrder.LITTLE_ENDIAN);
+        target.putInt(sampleRate).putDouble(noisePower).putInt(spectrum.length);
+        for (double bin : spectrum) {
+            target.putDouble(bin);
+        }
+        target.order(order);
+    }
+
+    /** Reads the binary form at the buffer's position. */
+    public static NoiseProfile readFrom(ByteBuffer source) {
+        ByteOrder order = source.order();
+        source.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            int rate = source.getInt();
+            double power = source.getDouble();
+            int bins = source.getInt();
+            if (bins < 0 || bins > source.remaining() / 8) {
+                throw new IllegalArgumentException("Corrupt noise profile: " + bins + " bins");
+            }
+            double[] spectrum = new double[bins];
+            for (int k = 0; k < bins; k++) {
+                spectrum[k] = source.getDouble();
+            }
+            return new NoiseProfile(rate, power, spectrum);
+        } finally {
+            source.order(order);
+        }
+    }
+}
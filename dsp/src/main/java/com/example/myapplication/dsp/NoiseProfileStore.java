@@ -0,0 +1,179 @@
+package com.example.myapplication.dsp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Baseline noise profiles saved as small binary files, one per device and room label, so a
+ * measurement can start from a known floor without recording a new baseline.
+ *
+ * A file holds a magic number, format version, save time and the two labels, followed by the
+ * {@link NoiseProfile} binary form, all little-endian. Loading maps the file and decodes it
+ * in place; there is no text to parse, so a profile with a few hundred bins loads in
+ * microseconds.
+ */
+public class NoiseProfileStore {
+    public static final String EXTENSION = ".nprof";
+    // "NPRF" read as a little-endian int
+    private static final int MAGIC = 0x4652504E;
+    private static final int VERSION = 1;
+
+    /** A profile together with the labels and time it was saved under. */
+    public static final class Entry {
+        private final File file;
+        private final String device;
+        private final String room;
+        private final long savedAtMillis;
+        private final NoiseProfile profile;
+
+        Entry(File file, String device, String room, long savedAtMillis, NoiseProfile profile) {
+            this.file = file;
+            this.device = device;
+            this.room = room;
+            this.savedAtMillis = savedAtMillis;
+            this.profile = profile;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public String getDevice() {
+            return device;
+        }
+
+        public String getRoom() {
+            return room;
+        }
+
+        public long getSavedAtMillis() {
+            return savedAtMillis;
+        }
+
+        public NoiseProfile getProfile() {
+            return profile;
+        }
+    }
+
+    private final File directory;
+
+    public NoiseProfileStore(File directory) {
+        this.directory = directory;
+    }
+
+    // One file per device and room; labels are reduced to safe file-name characters
+    public File fileFor(String device, String room) {
+        return new File(directory, safeName(device) + "__" + safeName(room) + EXTENSION);
+    }
+
+    /** Saves the profile under the labels, replacing any earlier one for the same pair. */
+    public Entry save(String device, String room, NoiseProfile profile) throws IOException {
+        return save(device, room, profile, System.currentTimeMillis());
+    }
+
+    public Entry save(String device, String room, NoiseProfile profile, long savedAtMillis) throws IOException {
+        byte[] deviceBytes = device.getBytes(StandardCharsets.UTF_8);
+        byte[] roomBytes = room.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(24 + deviceBytes.length + roomBytes.length + profile.encodedLength())
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(savedAtMillis);
+        buffer.putInt(deviceBytes.length).put(deviceBytes);
+        buffer.putInt(roomBytes.length).put(roomBytes);
+        profile.writeTo(buffer);
+        buffer.flip();
+
+        File file = fileFor(device, room);
+        // Written next to the target and moved over it, so a reader never sees half a profile
+        File temp = new File(directory, file.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Could not replace " + file);
+        }
+        return new Entry(file, device, room, savedAtMillis, profile);
+    }
+
+    /** Returns the profile saved for the labels, or null if there is none. */
+    public Entry load(String device, String room) throws IOException {
+        File file = fileFor(device, room);
+        return file.isFile() ? load(file) : null;
+    }
+
+    public static Entry load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.remaining() < 16 || mapped.getInt() != MAGIC) {
+                throw new IOException("Not a noise profile: " + file);
+            }
+            int version = mapped.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported noise profile version " + version + ": " + file);
+            }
+            long savedAt = mapped.getLong();
+            String device = readLabel(mapped);
+            String room = readLabel(mapped);
+            return new Entry(file, device, room, savedAt, NoiseProfile.readFrom(mapped));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt noise profile: " + file, e);
+        }
+    }
+
+    /** All readable profiles in the directory, most recently saved first. */
+    public List<Entry> list() {
+        List<Entry> entries = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) {
+            return entries;
+        }
+        for (File file : files) {
+            try {
+                entries.add(load(file));
+            } catch (IOException e) {
+                // Skip damaged or foreign files; the rest are still usable
+            }
+        }
+        entries.sort((a, b) -> Long.compare(b.savedAtMillis, a.savedAtMillis));
+        return entries;
+    }
+
+    // Most recently saved profile for the device in any room, or null
+    public Entry latest(String device) {
+        for (Entry entry : list()) {
+            if (entry.device.equals(device)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static String readLabel(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0 || length > source.remaining()) {
+            throw new IllegalArgumentException("Bad label length " + length);
+        }
+        byte[] bytes = new byte[length];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String safeName(String label) {
+        String name = label.trim().replaceAll("[^A-Za-z0-9._-]+", "_");
+        return name.isEmpty() ? "_" : name;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Level measurements taken straight from 16-bit samples. Squares are accumulated as
+ * integers, which is exact for any realistic block size and avoids converting the block
+ * to double[] first.
+ */
+public final class PcmMath {
+    public static final double FULL_SCALE = 32768.0;
+    private static final double FULL_SCALE_SQUARED = FULL_SCALE * FULL_SCALE;
+
+    private PcmMath() {
+    }
+
+    public static long sumOfSquares(short[] samples, int offset, int length) {
+        long sum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int s = samples[i];
+            sum += s * s;
+        }
+        return sum;
+    }
+
+    // Mean power normalised to full scale, i.e. the same value as averaging (s / 32768)^2
+    public static double power(short[] samples, int offset, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        return sumOfSquares(samples, offset, length) / (FULL_SCALE_SQUARED * length);
+    }
+
+    // Mean absolute sample value in raw PCM units
+    public static double meanAbs(short[] samples, int offset, int length) {
+        if (length <= 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int s = samples[i];
+            sum += s < 0 ? -s : s;
+        }
+        return (double) sum / length;
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+
+import java.util.Arrays;
+
+/**
+ * Streaming fundamental-frequency tracker based on YIN.
+ *
+ * Every hop the last frame of audio is analysed: the lag correlation is computed for all lags
+ * at once with a real FFT, turned into the YIN difference function using running energy sums,
+ * and the first dip of the cumulative-mean-normalised difference below the threshold gives
+ * the period. Picking the first dip rather than the biggest spectral peak is what keeps the
+ * tracker on the fundamental of a harmonic buzz instead of one of its overtones.
+ *
+ * The per-frame cost is three FFTs of a fixed size plus linear passes over the lag range,
+ * whatever the input, and nothing is allocated after construction.
+ */
+public class PitchTracker {
+
+    public interface Listener {
+        // f0Hz is NaN for silent or aperiodic frames; confidence is in [0, 1]
+        void onPitch(double f0Hz, double confidence);
+    }
+
+    private static final double DEFAULT_THRESHOLD = 0.15;
+    // Frames quieter than about -70 dBFS are not analysed
+    private static final double SILENCE_POWER = 1e-7;
+
+    private final int sampleRate;
+    private final int minLag;
+    private final int maxLag;
+    private final int integrationLength;
+    private final int frameLength;
+    private final int hopSize;
+    private final double threshold;
+
+    private final DoubleFFT_1D fft;
+    private final int fftSize;
+
+    private final double[] history;
+    private int writePosition;
+    private int samplesUntilFrame;
+
+    private final double[] frame;
+    private final double[] frameSpectrum;
+    private final double[] headSpectrum;
+    private final double[] energyPrefix;
+    private final double[] normalizedDifference;
+
+    /**
+     * @param minF0Hz lowest fundamental to report; sets the longest lag and the frame length
+     * @param maxF0Hz highest fundamental to report
+     * @param hopSeconds interval between estimates, e.g. 0.01
+     */
+    public PitchTracker(int sampleRate, double minF0Hz, double maxF0Hz, double hopSeconds) {
+        this(sampleRate, minF0Hz, maxF0Hz, hopSeconds, DEFAULT_THRESHOLD);
+    }
+
+    public PitchTracker(int sampleRate, double minF0Hz, double maxF0Hz, double hopSeconds, double threshold) {
+        if (minF0Hz <= 0 || maxF0Hz <= minF0Hz || maxF0Hz >= sampleRate / 4.0) {
+            throw new IllegalArgumentException("Invalid F0 range " + minF0Hz + "-" + maxF0Hz);
+        }
+        this.sampleRate = sampleRate;
+        this.minLag = Math.max(2, (int) Math.floor(sampleRate / maxF0Hz));
+        this.maxLag = (int) Math.ceil(sampleRate / minF0Hz);
+        this.integrationLength = maxLag;
+        this.frameLength = integrationLength + maxLag + 1;
+        this.hopSize = Math.max(1, (int) Math.round(hopSeconds * sampleRate));
+        this.threshold = threshold;
+
+        // Correlating the first integrationLength samples against the whole frame never wraps
+        // as long as the transform covers the frame, so no extra zero padding is needed
+        this.fftSize = FftPlans.nextPowerOfTwo(frameLength);
+        this.fft = FftPlans.get(fftSize);
+
+        this.history = new double[frameLength];
+        this.frame = new double[frameLength];
+        this.frameSpectrum = new double[fftSize];
+        this.headSpectrum = new double[fftSize];
+        this.energyPrefix = new double[frameLength + 1];
+        this.normalizedDifference = new double[maxLag + 2];
+        this.samplesUntilFrame = frameLength;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public void reset() {
+        Arrays.fill(history, 0);
+        writePosition = 0;
+        samplesUntilFrame = frameLength;
+    }
+
+    public void process(AudioBlock block, Listener listener) {
+        process(block.buffer(), 0, block.length(), listener);
+    }
+
+    public void process(short[] samples, int offset, int length, Listener listener) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int chunk = Math.min(end - i, samplesUntilFrame);
+            for (int j = 0; j < chunk; j++) {
+                history[writePosition] = samples[i + j] / PcmMath.FULL_SCALE;
+                if (++writePosition == frameLength) {
+                    writePosition = 0;
+                }
+            }
+            i += chunk;
+            samplesUntilFrame -= chunk;
+            if (samplesUntilFrame == 0) {
+                samplesUntilFrame = hopSize;
+                analyzeFrame(listener);
+            }
+        }
+    }
+
+    private void analyzeFrame(Listener listener) {
+        // Unroll the circular history, oldest sample first, and build running energy sums
+        double energy = 0;
+        energyPrefix[0] = 0;
+        for (int n = 0; n < frameLength; n++) {
+            int index = writePosition + n;
+            double x = history[index < frameLength ? index : index - frameLength];
+            frame[n] = x;
+            energy += x * x;
+            energyPrefix[n + 1] = energy;
+        }
+        double headEnergy = energyPrefix[integrationLength];
+        if (headEnergy / integrationLength < SILENCE_POWER) {
+            emit(listener, Double.NaN, 0);
+            return;
+        }
+
+        // r(tau) = sum_{j < W} x[j] * x[j + tau] via conj(FFT(head)) * FFT(frame)
+        System.arraycopy(frame, 0, frameSpectrum, 0, frameLength);
+        Arrays.fill(frameSpectrum, frameLength, fftSize, 0);
+        System.arraycopy(frame, 0, headSpectrum, 0, integrationLength);
+        Arrays.fill(headSpectrum, integrationLength, fftSize, 0);
+        fft.realForward(frameSpectrum);
+        fft.realForward(headSpectrum);
+
+        frameSpectrum[0] *= headSpectrum[0];
+        frameSpectrum[1] *= headSpectrum[1];
+        for (int k = 2; k < fftSize; k += 2) {
+            double xr = frameSpectrum[k];
+            double xi = frameSpectrum[k + 1];
+            double hr = headSpectrum[k];
+            double hi = headSpectrum[k + 1];
+            frameSpectrum[k] = hr * xr + hi * xi;
+            frameSpectrum[k + 1] = hr * xi - hi * xr;
+        }
+        fft.realInverse(frameSpectrum, true);
+        double[] correlation = frameSpectrum;
+
+        // Cumulative-mean-normalised difference d'(tau)
+        double runningSum = 0;
+        normalizedDifference[0] = 1;
+        for (int tau = 1; tau <= maxLag; tau++) {
+            double lagEnergy = energyPrefix[tau + integrationLength] - energyPrefix[tau];
+            double difference = Math.max(0, headEnergy + lagEnergy - 2 * correlation[tau]);
+            runningSum += difference;
+            normalizedDifference[tau] = runningSum > 0 ? difference * tau / runningSum : 1;
+        }
+
+        int bestLag = -1;
+        for (int tau = minLag; tau <= maxLag; tau++) {
+            if (normalizedDifference[tau] < threshold) {
+                while (tau + 1 <= maxLag && normalizedDifference[tau + 1] < normalizedDifference[tau]) {
+                    tau++;
+                }
+                bestLag = tau;
+                break;
+            }
+        }
+        if (bestLag < 0) {
+            // No dip below the threshold: report the global minimum with its (low) confidence
+            bestLag = minLag;
+            for (int tau = minLag + 1; tau <= maxLag; tau++) {
+                if (normalizedDifference[tau] < normalizedDifference[bestLag]) {
+                    bestLag = tau;
+                }
+            }
+        }
+
+        double confidence = Math.max(0, Math.min(1, 1 - normalizedDifference[bestLag]));
+        if (bestLag <= minLag || bestLag >= maxLag) {
+            // Minimum on the edge of the search range: the pitch is outside the configured range
+            emit(listener, Double.NaN, confidence);
+            return;
+        }
+        emit(listener, sampleRate / refineLag(bestLag), confidence);
+    }
+
+    // Parabolic interpolation of d' around the chosen lag for sub-sample accuracy
+    private double refineLag(int tau) {
+        double left = normalizedDifference[tau - 1];
+        double centre = normalizedDifference[tau];
+        double right = normalizedDifference[tau + 1];
+        double denominator = left - 2 * centre + right;
+        if (denominator <= 0) {
+            return tau;
+        }
+        double shift = 0.5 * (left - right) / denominator;
+        return tau + Math.max(-0.5, Math.min(0.5, shift));
+    }
+
+    private static void emit(Listener listener, double f0Hz, double confidence) {
+        if (listener != null) {
+            listener.onPitch(f0Hz, confidence);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Drives a push-based graph: reads fixed-size blocks from an {@link AudioSource} into pooled
+ * buffers and pushes each one into the sink (typically a tree of {@link AudioStage}s). All
+ * buffers are allocated when the graph is built, so steady-state processing does not allocate.
+ *
+ * Use {@link #run()} to process a finite source to the end as fast as possible, or call
+ * {@link #step()} from a loop that decides when data is ready, as the live capture does.
+ */
+public class ProcessingGraph {
+    // One block in flight plus a few retained by sinks
+    private static final int DEFAULT_POOL_SIZE = 4;
+
+    private final AudioSource source;
+    private final AudioSink sink;
+    private final CaptureLoop loop;
+    private final CaptureLoop.BlockConsumer consumer;
+    private volatile boolean stopped;
+    private boolean open;
+    private long samplesProcessed;
+
+    public ProcessingGraph(AudioSource source, int blockSize, AudioSink sink) {
+        this(source, new AudioBlockPool(DEFAULT_POOL_SIZE, blockSize), blockSize, sink);
+    }
+
+    public ProcessingGraph(AudioSource source, AudioBlockPool pool, int blockSize, AudioSink sink) {
+        this.source = source;
+        this.sink = sink;
+        this.loop = new CaptureLoop(source, pool, blockSize);
+        this.consumer = block -> {
+            samplesProcessed += block.length();
+            sink.accept(block);
+        };
+    }
+
+    public int getSampleRate() {
+        return source.getSampleRate();
+    }
+
+    public long getSamplesProcessed() {
+        return samplesProcessed;
+    }
+
+    public long getDroppedBlocks() {
+        return loop.getDroppedBlocks();
+    }
+
+    /** Opens the sinks; called by the first step() if not done explicitly. */
+    public void open() {
+        if (!open) {
+            open = true;
+            sink.open(source.getSampleRate());
+        }
+    }
+
+    /**
+     * Reads and pushes one block. Returns the source's result: samples read, 0 if nothing was
+     * available, negative on a read error.
+     */
+    public int step() {
+        open();
+        return loop.readBlock(consumer);
+    }
+
+    /**
+     * Processes until the source is finished, a read fails or {@link #stop()} is called, then
+     * closes the sinks. Returns the last read result, so a negative value means a read error.
+     */
+    public int run() {
+        int result = 0;
+        while (!stopped && !source.isFinished()) {
+            result = step();
+            if (result < 0) {
+                break;
+            }
+        }
+        close();
+        return result;
+    }
+
+    // May be called from any thread
+    public void stop() {
+        stopped = true;
+    }
+
+    public void close() {
+        if (open) {
+            open = false;
+            sink.close();
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.myapplication.dsp;
+
+import java.util.Locale;
+
+/**
+ * Per-recording result of {@link BatchAnalyzer}: SNR distribution, F0 histogram and long-term
+ * average spectrum. SNR readings are kept as a 0.1 dB histogram, so the summary stays the
+ * same size however long the recording is.
+ */
+public final class RecordingSummary {
+    static final double SNR_MIN_DB = -30;
+    static final double SNR_MAX_DB = 90;
+    static final double SNR_BIN_DB = 0.1;
+    static final double F0_MIN_HZ = 60;
+    static final double F0_MAX_HZ = 400;
+    static final double F0_BIN_HZ = 10;
+
+    private final String name;
+    private final String error;
+    private final int sampleRate;
+    private final double durationSeconds;
+    private final int[] snrHistogram;
+    private final long snrReadings;
+    private final double meanSnrDb;
+    private final int[] f0Histogram;
+    private final long pitchFrames;
+    private final double[] averageSpectrum;
+    private final double spectrumBinHz;
+
+    RecordingSummary(String name, int sampleRate, double durationSeconds, int[] snrHistogram, long snrReadings,
+                     double meanSnrDb, int[] f0Histogram, long pitchFrames, double[] averageSpectrum,
+                     double spectrumBinHz) {
+        this.name = name;
+        this.error = null;
+        this.sampleRate = sampleRate;
+        this.durationSeconds = durationSeconds;
+        this.snrHistogram = snrHistogram;
+        this.snrReadings = snrReadings;
+        this.meanSnrDb = meanSnrDb;
+        this.f0Histogram = f0Histogram;
+        this.pitchFrames = pitchFrames;
+        this.averageSpectrum = averageSpectrum;
+        this.spectrumBinHz = spectrumBinHz;
+    }
+
+    private RecordingSummary(String name, String error) {
+        this.name = name;
+        this.error = error;
+        this.sampleRate = 0;
+        this.durationSeconds = 0;
+        this.snrHistogram = new int[0];
+        this.snrReadings = 0;
+        this.meanSnrDb = Double.NaN;
+        this.f0Histogram = new int[0];
+        this.pitchFrames = 0;
+        this.averageSpectrum = new double[0];
+        this.spectrumBinHz = 0;
+    }
+
+    static RecordingSummary failed(String name, String error) {
+        return new RecordingSummary(name, error);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // Null when the recording was analyzed, otherwise why it could not be
+    public String getError() {
+        return error;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public long getSnrReadings() {
+        return snrReadings;
+    }
+
+    // Mean of the dB readings; NaN if the noise floor was never established
+    public double getMeanSnrDb() {
+        return meanSnrDb;
+    }
+
+    /** SNR below which {@code percent}% of the readings fall, to 0.1 dB; NaN without readings. */
+    public double getSnrPercentile(double percent) {
+        if (snrReadings == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) Math.ceil(percent / 100.0 * snrReadings);
+        long seen = 0;
+        for (int i = 0; i < snrHistogram.length; i++) {
+            seen += snrHistogram[i];
+            if (seen >= Math.max(1, rank)) {
+                return SNR_MIN_DB + (i + 0.5) * SNR_BIN_DB;
+            }
+        }
+        return SNR_MAX_DB;
+    }
+
+    // Counts of voiced 10 ms frames per F0 bin, starting at getF0HistogramStartHz()
+    public int[] getF0Histogram() {
+        return f0Histogram.clone();
+    }
+
+    public double getF0HistogramStartHz() {
+        return F0_MIN_HZ;
+    }
+
+    public double getF0HistogramBinHz() {
+        return F0_BIN_HZ;
+    }
+
+    public double getVoicedFraction() {
+        long voiced = 0;
+        for (int count : f0Histogram) {
+            voiced += count;
+        }
+        return pitchFrames == 0 ? 0 : (double) voiced / pitchFrames;
+    }
+
+    // Centre of the most populated F0 bin; NaN if no frame was voiced
+    public double getModalF0Hz() {
+        int best = -1;
+        for (int i = 0; i < f0Histogram.length; i++) {
+            if (f0Histogram[i] > 0 && (best < 0 || f0Histogram[i] > f0Histogram[best])) {
+                best = i;
+            }
+        }
+        return best < 0 ? Double.NaN : F0_MIN_HZ + (best + 0.5) * F0_BIN_HZ;
+    }
+
+    // Mean STFT power per bin over the whole recording (bin k at k * getSpectrumBinHz())
+    public double[] getAverageSpectrum() {
+        return averageSpectrum.clone();
+    }
+
+    public double getSpectrumBinHz() {
+        return spectrumBinHz;
+    }
+
+    public double getDominantFrequencyHz() {
+        int best = 0;
+        for (int k = 1; k < averageSpectrum.length; k++) {
+            if (averageSpectrum[k] > averageSpectrum[best]) {
+                best = k;
+            }
+        }
+        return best * spectrumBinHz;
+    }
+
+    /** One line for logs, the CLI and the saved-files dialog. */
+    public String describe() {
+        if (error != null) {
+            return String.format(Locale.US, "%s: %s", name, error);
+        }
+        return String.format(Locale.US,
+                "%s: %.1f s, SNR mean %.1f dB (p10 %.1f, p50 %.1f, p90 %.1f), F0 %.0f Hz, voiced %.0f%%, peak %.0f Hz",
+                name, durationSeconds, meanSnrDb, getSnrPercentile(10), getSnrPercentile(50),
+                getSnrPercentile(90), getModalF0Hz(), 100 * getVoicedFraction(), getDominantFrequencyHz());
+    }
+
+    @Override
+    public String toString() {
+        return describe();
+    }
+}
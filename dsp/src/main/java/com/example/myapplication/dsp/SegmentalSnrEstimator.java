@@ -0,0 +1,109 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Segmental SNR over the frames of a sliding window that carry buzz.
+ *
+ * Every frame the {@link VoiceActivityDetector} detects as buzz contributes its own SNR in dB,
+ * clamped to a fixed range, and the reading is the mean over those frames in the last window.
+ * Hangover frames keep the detector active but are not averaged, as they are mostly noise.
+ * Pauses between words therefore neither pull the reading toward 0 dB nor count as samples;
+ * while the window holds no detected frames the reading is NaN and displays hold their last
+ * value. A single loud frame moves the mean by at most its clamped share.
+ *
+ * Frame values are kept in hundredths of a dB, so the window sum is an exact integer and the
+ * running mean never drifts.
+ */
+public class SegmentalSnrEstimator implements VoiceActivityDetector.Listener {
+    private static final int HUNDREDTHS_PER_DB = 100;
+
+    private final VoiceActivityDetector detector;
+    private final double minFrameSnrDb;
+    private final double maxFrameSnrDb;
+    // Clamped frame SNR in 0.01 dB, or Integer.MIN_VALUE for frames without detected buzz
+    private final int[] frameSnr;
+    private int position;
+    private int detectedInWindow;
+    private long sum;
+
+    /**
+     * @param windowSeconds  length of the averaging window, e.g. 1.0
+     * @param minFrameSnrDb  per-frame lower clamp, conventionally -10
+     * @param maxFrameSnrDb  per-frame upper clamp, conventionally 35; raise it to keep very
+     *                       clean recordings distinguishable
+     */
+    public SegmentalSnrEstimator(VoiceActivityDetector detector, double windowSeconds,
+                                 double minFrameSnrDb, double maxFrameSnrDb) {
+        int windowFrames = (int) Math.round(windowSeconds * detector.getFrameRateHz());
+        if (windowFrames < 1 || minFrameSnrDb >= maxFrameSnrDb) {
+            throw new IllegalArgumentException("Invalid segmental SNR configuration");
+        }
+        this.detector = detector;
+        this.minFrameSnrDb = minFrameSnrDb;
+        this.maxFrameSnrDb = maxFrameSnrDb;
+        this.frameSnr = new int[windowFrames];
+        Arrays.fill(frameSnr, Integer.MIN_VALUE);
+    }
+
+    public VoiceActivityDetector getDetector() {
+        return detector;
+    }
+
+    public void setNoisePower(double noisePower) {
+        detector.setNoisePower(noisePower);
+    }
+
+    // Whether the detector currently labels the input as active, hangover included
+    public boolean isActive() {
+        return detector.isActive();
+    }
+
+    /** Mean SNR in dB of the detected frames in the window; NaN if there are none or no noise floor yet. */
+    public double getSnrDb() {
+        return detectedInWindow == 0 ? Double.NaN : (double) sum / (detectedInWindow * HUNDREDTHS_PER_DB);
+    }
+
+    // Share of the window's frames with detected buzz
+    public double getDetectedFraction() {
+        return (double) detectedInWindow / frameSnr.length;
+    }
+
+    public void reset() {
+        detector.reset();
+        Arrays.fill(frameSnr, Integer.MIN_VALUE);
+        position = 0;
+        detectedInWindow = 0;
+        sum = 0;
+    }
+
+    public void process(AudioBlock block) {
+        detector.process(block, this);
+    }
+
+    public void process(short[] samples, int offset, int length) {
+        detector.process(samples, offset, length, this);
+    }
+
+    @Override
+    public void onFrame(double framePower, boolean detected, boolean active) {
+        int old = frameSnr[position];
+        if (old != Integer.MIN_VALUE) {
+            sum -= old;
+            detectedInWindow--;
+        }
+        double noisePower = detector.getNoisePower();
+        if (detected && noisePower > 0) {
+            double snrDb = 10 * Math.log10(Math.max(framePower, Double.MIN_NORMAL) / noisePower);
+            int value = (int) Math.round(Math.max(minFrameSnrDb, Math.min(maxFrameSnrDb, snrDb)) * HUNDREDTHS_PER_DB);
+            frameSnr[position] = value;
+            sum += value;
+            detectedInWindow++;
+        } else {
+            frameSnr[position] = Integer.MIN_VALUE;
+        }
+        if (++position == frameSnr.length) {
+            position = 0;
+        }
+    }
+}
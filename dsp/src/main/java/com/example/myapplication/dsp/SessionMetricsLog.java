@@ -0,0 +1,229 @@
+package com.example.myapplication.dsp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary time series of one recording session: SNR, noise floor, level and F0, one row per
+ * SNR reading. It replaces per-reading log lines.
+ *
+ * {@link #record} stores the row as fixed-point ints in the current block's column arrays.
+ * That is four array stores, with no formatting and no I/O. Full blocks go to a writer
+ * thread through a queue of preallocated blocks. The writer encodes each column as
+ * zigzag-varint deltas and appends the block to the file. Readings usually move by a few
+ * hundredths of a dB per row, so most values take one byte. If the writer falls behind and
+ * no block is free, rows are dropped and counted rather than blocking the caller.
+ *
+ * File layout, little-endian: magic, version, row rate (float64), start time (int64 ms),
+ * column count, then one scale (float64) per column. Blocks follow, each with a row count,
+ * the index of its first row, the encoded length of each column and the column data.
+ * {@link SessionMetricsReader} reads it back.
+ */
+public class SessionMetricsLog {
+
+    /** Logged quantities and the fixed-point steps they are stored in. */
+    public enum Column {
+        SNR_DB(100),
+        NOISE_FLOOR_DBFS(100),
+        LEVEL_DBFS(100),
+        F0_HZ(10);
+
+        // Stored value = round(value * scale)
+        final double scale;
+
+        Column(double scale) {
+            this.scale = scale;
+        }
+    }
+
+    public static final String EXTENSION = ".smlog";
+    static final int MAGIC = 0x474C4D53; // "SMLG"
+    static final int VERSION = 1;
+    // NaN (no reading) is stored as this value
+    static final int MISSING = Integer.MIN_VALUE;
+    // About 34 s of rows at 30 Hz per block, and two minutes of them queued at most
+    public static final int DEFAULT_BLOCK_ROWS = 1024;
+    public static final int DEFAULT_BLOCK_COUNT = 4;
+
+    private static final class Block {
+        final int[][] columns;
+        int rows;
+        long firstRow;
+
+        Block(int capacity) {
+            columns = new int[Column.values().length][capacity];
+        }
+    }
+
+    private final File file;
+    private final double rowRateHz;
+    private final long startMillis;
+    private final int blockRows;
+    private final ArrayBlockingQueue<Block> free;
+    private final ArrayBlockingQueue<Block> filled;
+    private final Block endOfStream = new Block(0);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private Block current;
+    private long nextRow;
+    private boolean closed;
+    private volatile long droppedRows;
+    private volatile IOException error;
+
+    public SessionMetricsLog(File file, double rowRateHz, long startMillis) {
+        this(file, rowRateHz, startMillis, DEFAULT_BLOCK_ROWS, DEFAULT_BLOCK_COUNT);
+    }
+
+    public SessionMetricsLog(File file, double rowRateHz, long startMillis, int blockRows, int blockCount) {
+        if (rowRateHz <= 0 || blockRows <= 0 || blockCount <= 0) {
+            throw new IllegalArgumentException("Invalid metrics log configuration");
+        }
+        this.file = file;
+        this.rowRateHz = rowRateHz;
+        this.startMillis = startMillis;
+        this.blockRows = blockRows;
+        this.free = new ArrayBlockingQueue<>(blockCount);
+        // One extra slot for the end-of-stream marker, so offers to it always succeed
+        this.filled = new ArrayBlockingQueue<>(blockCount + 1);
+        for (int i = 0; i < blockCount; i++) {
+            free.add(new Block(blockRows));
+        }
+        new Thread(this::writeBlocks, "MetricsWriter").start();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getRowsRecorded() {
+        return nextRow;
+    }
+
+    public long getDroppedRows() {
+        return droppedRows;
+    }
+
+    // Null unless writing the file failed
+    public IOException getError() {
+        return error;
+    }
+
+    /**
+     * Appends one row; NaN marks a missing value (e.g. no SNR before the noise floor is known,
+     * or an unvoiced frame for F0). Call from a single thread.
+     */
+    public void record(double snrDb, double noiseFloorDbfs, double levelDbfs, double f0Hz) {
+        long row = nextRow++;
+        if (closed) {
+            return;
+        }
+        if (current == null) {
+            current = free.poll();
+            if (current == null) {
+                droppedRows++;
+                return;
+            }
+            current.rows = 0;
+            current.firstRow = row;
+        }
+        int index = current.rows++;
+        current.columns[0][index] = toFixed(snrDb, Column.SNR_DB.scale);
+        current.columns[1][index] = toFixed(noiseFloorDbfs, Column.NOISE_FLOOR_DBFS.scale);
+        current.columns[2][index] = toFixed(levelDbfs, Column.LEVEL_DBFS.scale);
+        current.columns[3][index] = toFixed(f0Hz, Column.F0_HZ.scale);
+        if (current.rows == blockRows) {
+            filled.offer(current);
+            current = null;
+        }
+    }
+
+    /** Hands the last partial block to the writer; the file is complete once it finishes. */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null) {
+            filled.offer(current);
+            current = null;
+        }
+        filled.offer(endOfStream);
+    }
+
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    static int toFixed(double value, double scale) {
+        if (Double.isNaN(value)) {
+            return MISSING;
+        }
+        double scaled = Math.rint(value * scale);
+        return (int) Math.max(MISSING + 1, Math.min(Integer.MAX_VALUE, scaled));
+    }
+
+    // Writer thread: encodes and appends blocks, reusing one buffer
+    private void writeBlocks() {
+        int columnCount = Column.values().length;
+        // Worst case 10 bytes per zigzag varint of a 33-bit delta
+        ByteBuffer buffer = ByteBuffer.allocateDirect(12 + 4 * columnCount + 10 * columnCount * blockRows)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.putInt(MAGIC).putInt(VERSION).putDouble(rowRateHz).putLong(startMillis).putInt(columnCount);
+            for (Column column : Column.values()) {
+                buffer.putDouble(column.scale);
+            }
+            writeFully(channel, buffer);
+
+            for (Block block = filled.take(); block != endOfStream; block = filled.take()) {
+                buffer.clear();
+                buffer.putInt(block.rows).putLong(block.firstRow);
+                int lengths = buffer.position();
+                buffer.position(lengths + 4 * columnCount);
+                for (int c = 0; c < columnCount; c++) {
+                    int start = buffer.position();
+                    encodeDeltas(block.columns[c], block.rows, buffer);
+                    buffer.putInt(lengths + 4 * c, buffer.position() - start);
+                }
+                free.offer(block);
+                writeFully(channel, buffer);
+            }
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new IOException("Interrupted while writing " + file, e);
+            Thread.currentThread().interrupt();
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private static void encodeDeltas(int[] values, int count, ByteBuffer target) {
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long delta = values[i] - previous;
+            previous = values[i];
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                target.put((byte) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            target.put((byte) zigzag);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.myapplication.dsp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads files written by {@link SessionMetricsLog}. The file is memory-mapped, and opening it
+ * only walks the block headers. Reading one column decodes that column's bytes in each block
+ * and skips the others, so pulling the SNR trace out of a multi-hour session touches about a
+ * quarter of the file. A file cut short by a crash reads up to its last complete block.
+ */
+public class SessionMetricsReader implements Closeable {
+
+    public interface RowVisitor {
+        // Missing values are NaN
+        void onRow(long row, double snrDb, double noiseFloorDbfs, double levelDbfs, double f0Hz);
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer data;
+    private final double rowRateHz;
+    private final long startMillis;
+    private final double[] scales;
+    // Per block: offset of its first column, row count, first row index and column lengths
+    private final int[] blockOffsets;
+    private final int[] blockRows;
+    private final long[] blockFirstRows;
+    private final int[][] columnLengths;
+    private final long rowCount;
+
+    public SessionMetricsReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.remaining() < 24 || data.getInt() != SessionMetricsLog.MAGIC) {
+                throw new IOException("Not a session metrics log: " + file);
+            }
+            int version = data.getInt();
+            if (version != SessionMetricsLog.VERSION) {
+                throw new IOException("Unsupported metrics log version " + version + ": " + file);
+            }
+            rowRateHz = data.getDouble();
+            startMillis = data.getLong();
+            int columnCount = data.getInt();
+            if (columnCount < SessionMetricsLog.Column.values().length || columnCount > 64) {
+                throw new IOException("Unexpected column count " + columnCount + ": " + file);
+            }
+            scales = new double[columnCount];
+            for (int c = 0; c < columnCount; c++) {
+                scales[c] = data.getDouble();
+            }
+
+            int blocks = 0;
+            int[] offsets = new int[16];
+            int[] rows = new int[16];
+            long[] firstRows = new long[16];
+            int[][] lengths = new int[16][];
+            long total = 0;
+            while (data.remaining() >= 12 + 4 * columnCount) {
+                int blockRowCount = data.getInt();
+                long firstRow = data.getLong();
+                int[] blockLengths = new int[columnCount];
+                long payload = 0;
+                for (int c = 0; c < columnCount; c++) {
+                    blockLengths[c] = data.getInt();
+                    payload += blockLengths[c];
+                }
+                if (blockRowCount <= 0 || firstRow < 0 || payload > data.remaining()) {
+                    // Torn last block
+                    break;
+                }
+                if (blocks == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, 2 * blocks);
+                    rows = Arrays.copyOf(rows, 2 * blocks);
+                    firstRows = Arrays.copyOf(firstRows, 2 * blocks);
+                    lengths = Arrays.copyOf(lengths, 2 * blocks);
+                }
+                offsets[blocks] = data.position();
+                rows[blocks] = blockRowCount;
+                firstRows[blocks] = firstRow;
+                lengths[blocks] = blockLengths;
+                blocks++;
+                total = firstRow + blockRowCount;
+                data.position(data.position() + (int) payload);
+            }
+            blockOffsets = Arrays.copyOf(offsets, blocks);
+            blockRows = Arrays.copyOf(rows, blocks);
+            blockFirstRows = Arrays.copyOf(firstRows, blocks);
+            columnLengths = Arrays.copyOf(lengths, blocks);
+            rowCount = total;
+        } catch (BufferUnderflowException e) {
+            channel.close();
+            throw new IOException("Truncated metrics log header: " + file, e);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public double getRowRateHz() {
+        return rowRateHz;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    // Rows from the start of the session to the last one stored, including dropped ones
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getBlockCount() {
+        return blockOffsets.length;
+    }
+
+    public double getDurationSeconds() {
+        return rowCount / rowRateHz;
+    }
+
+    public double[] readColumn(SessionMetricsLog.Column column) {
+        return readColumn(column, 0, rowCount);
+    }
+
+    /** Values of one column for rows [fromRow, toRow); rows that were dropped are NaN. */
+    public double[] readColumn(SessionMetricsLog.Column column, long fromRow, long toRow) {
+        long end = Math.min(toRow, rowCount);
+        long start = Math.max(0, fromRow);
+        double[] values = new double[(int) Math.max(0, end - start)];
+        Arrays.fill(values, Double.NaN);
+        int c = column.ordinal();
+        double scale = scales[c];
+        int[] decoded = new int[0];
+        for (int b = 0; b < blockOffsets.length; b++) {
+            long first = blockFirstRows[b];
+            if (first + blockRows[b] <= start || first >= end) {
+                continue;
+            }
+            if (decoded.length < blockRows[b]) {
+                decoded = new int[blockRows[b]];
+            }
+            decodeColumn(b, c, decoded);
+            for (int i = 0; i < blockRows[b]; i++) {
+                long row = first + i;
+                if (row >= start && row < end) {
+                    values[(int) (row - start)] = fromFixed(decoded[i], scale);
+                }
+            }
+        }
+        return values;
+    }
+
+    /** Visits every stored row in order. */
+    public void scan(RowVisitor visitor) {
+        int columns = SessionMetricsLog.Column.values().length;
+        int[][] decoded = new int[columns][0];
+        for (int b = 0; b < blockOffsets.length; b++) {
+            for (int c = 0; c < columns; c++) {
+                if (decoded[c].length < blockRows[b]) {
+                    decoded[c] = new int[blockRows[b]];
+                }
+                decodeColumn(b, c, decoded[c]);
+            }
+            for (int i = 0; i < blockRows[b]; i++) {
+                visitor.onRow(blockFirstRows[b] + i,
+                        fromFixed(decoded[0][i], scales[0]), fromFixed(decoded[1][i], scales[1]),
+                        fromFixed(decoded[2][i], scales[2]), fromFixed(decoded[3][i], scales[3]));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void decodeColumn(int block, int column, int[] target) {
+        int position = blockOffsets[block];
+        for (int c = 0; c < column; c++) {
+            position += columnLengths[block][c];
+        }
+        long previous = 0;
+        for (int i = 0, rows = blockRows[block]; i < rows; i++) {
+            long zigzag = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                zigzag |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            target[i] = (int) previous;
+        }
+    }
+
+    private static double fromFixed(int value, double scale) {
+        return value == SessionMetricsLog.MISSING ? Double.NaN : value / scale;
+    }
+}
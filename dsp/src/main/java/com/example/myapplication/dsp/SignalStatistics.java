@@ -0,0 +1,78 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Running level statistics of a 16-bit stream: mean amplitude, RMS, peak and crest factor.
+ *
+ * Sums are exact integers and the state is a handful of fields, so a one-hour stream costs
+ * the same memory as a one-second one and the result is ready the moment the last block is in.
+ */
+public class SignalStatistics {
+    private long samples;
+    private long sumOfAbs;
+    private long sumOfSquares;
+    private int peak;
+
+    public void reset() {
+        samples = 0;
+        sumOfAbs = 0;
+        sumOfSquares = 0;
+        peak = 0;
+    }
+
+    public void process(AudioBlock block) {
+        process(block.buffer(), 0, block.length());
+    }
+
+    public void process(short[] buffer, int offset, int length) {
+        long abs = 0;
+        long squares = 0;
+        int max = peak;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int s = buffer[i];
+            int a = s < 0 ? -s : s;
+            abs += a;
+            squares += s * s;
+            if (a > max) {
+                max = a;
+            }
+        }
+        samples += length;
+        sumOfAbs += abs;
+        sumOfSquares += squares;
+        peak = max;
+    }
+
+    public long getSampleCount() {
+        return samples;
+    }
+
+    // Mean absolute sample value in raw PCM units, as the microphone test has always reported it
+    public double getMeanAbs() {
+        return samples == 0 ? 0 : (double) sumOfAbs / samples;
+    }
+
+    // Mean power normalised to full scale
+    public double getPower() {
+        return samples == 0 ? 0 : sumOfSquares / (PcmMath.FULL_SCALE * PcmMath.FULL_SCALE * samples);
+    }
+
+    public double getRms() {
+        return Math.sqrt(getPower());
+    }
+
+    // Largest absolute sample normalised to full scale
+    public double getPeak() {
+        return peak / PcmMath.FULL_SCALE;
+    }
+
+    // Clipped input shows up as samples at full scale
+    public boolean hasFullScaleSamples() {
+        return peak >= Short.MAX_VALUE;
+    }
+
+    /** Peak over RMS in dB: 3.01 for a sine, about 12 for speech; NaN before any signal. */
+    public double getCrestFactorDb() {
+        double rms = getRms();
+        return rms > 0 ? 20 * Math.log10(getPeak() / rms) : Double.NaN;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Streaming SNR over a fixed time window, independent of how the input is split into blocks.
+ *
+ * Squared samples are kept in a ring and the window sum is updated with one add and one
+ * subtract per sample. Because the squares are integers the running sum is exact and never
+ * drifts, however long the session runs. Readings are emitted at a fixed output rate and
+ * smoothed with a one-pole filter on the linear power before converting to dB.
+ */
+public class SlidingWindowSnrEstimator {
+
+    public interface Listener {
+        // snrDb is NaN while no noise reference is set; signalPower is the smoothed window power
+        void onSnr(double snrDb, double signalPower);
+    }
+
+    private static final double FULL_SCALE_SQUARED = PcmMath.FULL_SCALE * PcmMath.FULL_SCALE;
+
+    private final int sampleRate;
+    private final double outputRateHz;
+    private final int[] squares;
+    private final double smoothingCoefficient;
+
+    private int position;
+    private int filled;
+    private long sumOfSquares;
+    // Per-sample phase accumulator so non-integer sampleRate / outputRate ratios stay exact on average
+    private double outputPhase;
+
+    private double noisePower;
+    private double smoothedPower = Double.NaN;
+
+    /**
+     * @param windowSeconds             length of the power window, e.g. 0.05, 0.25 or 1.0
+     * @param outputRateHz              readings per second, e.g. 30
+     * @param smoothingTimeConstantSec  time constant of the output smoothing; 0 disables it
+     */
+    public SlidingWindowSnrEstimator(int sampleRate, double windowSeconds, double outputRateHz,
+                                     double smoothingTimeConstantSec) {
+        if (sampleRate <= 0 || windowSeconds <= 0 || outputRateHz <= 0 || outputRateHz > sampleRate) {
+            throw new IllegalArgumentException("Invalid estimator configuration");
+        }
+        this.sampleRate = sampleRate;
+        this.outputRateHz = outputRateHz;
+        this.squares = new int[Math.max(1, (int) Math.round(windowSeconds * sampleRate))];
+        this.smoothingCoefficient = smoothingTimeConstantSec <= 0
+                ? 1.0
+                : 1.0 - Math.exp(-1.0 / (smoothingTimeConstantSec * outputRateHz));
+    }
+
+    public void setNoisePower(double noisePower) {
+        this.noisePower = noisePower;
+    }
+
+    public double getNoisePower() {
+        return noisePower;
+    }
+
+    public int getWindowLength() {
+        return squares.length;
+    }
+
+    // Mean power over the samples currently in the window, normalised to full scale
+    public double getWindowPower() {
+        return filled == 0 ? 0 : sumOfSquares / (FULL_SCALE_SQUARED * filled);
+    }
+
+    public void reset() {
+        Arrays.fill(squares, 0);
+        position = 0;
+        filled = 0;
+        sumOfSquares = 0;
+        outputPhase = 0;
+        smoothedPower = Double.NaN;
+    }
+
+    public void process(AudioBlock block, Listener listener) {
+        process(block.buffer(), 0, block.length(), listener);
+    }
+
+    public void process(short[] samples, int offset, int length, Listener listener) {
+        int[] window = squares;
+        int windowLength = window.length;
+        int pos = position;
+        long sum = sumOfSquares;
+        double phase = outputPhase;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int s = samples[i];
+            int square = s * s;
+            sum += square - window[pos];
+            window[pos] = square;
+            if (++pos == windowLength) {
+                pos = 0;
+            }
+            if (filled < windowLength) {
+                filled++;
+            }
+
+            phase += outputRateHz;
+            if (phase >= sampleRate) {
+                phase -= sampleRate;
+                sumOfSquares = sum;
+                emit(listener);
+            }
+        }
+
+        position = pos;
+        sumOfSquares = sum;
+        outputPhase = phase;
+    }
+
+    private void emit(Listener listener) {
+        double power = getWindowPower();
+        if (Double.isNaN(smoothedPower)) {
+            smoothedPower = power;
+        } else {
+            smoothedPower += smoothingCoefficient * (power - smoothedPower);
+        }
+        if (listener == null) {
+            return;
+        }
+        if (noisePower <= 0) {
+            listener.onSnr(Double.NaN, smoothedPower);
+            return;
+        }
+        // Clamp silence to the smallest positive value so the reading stays finite
+        double ratio = Math.max(smoothedPower, Double.MIN_NORMAL) / noisePower;
+        listener.onSnr(10 * Math.log10(ratio), smoothedPower);
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Turns STFT power spectra into colour-mapped spectrogram columns.
+ *
+ * Each frame is reduced to {@code rows} values (the strongest bin under each row, highest
+ * frequency in row 0), converted to dB, clamped to {@code [minDb, maxDb]} and looked up in a
+ * 256 entry ARGB table. Columns are stored in a ring of packed int pixels so the UI thread can
+ * copy them into a Bitmap with setPixels. The row to bin mapping and the colour table are
+ * precomputed; {@link #onFrame} does no allocation and one log10 per row.
+ *
+ * Single producer (the thread running the STFT), single consumer, same as {@link WaveformPeaks}.
+ */
+public class SpectrogramColumns implements StftAnalyzer.FrameListener {
+    private static final int LUT_SIZE = 256;
+    // Below any real capture, keeps log10 finite on digital silence
+    private static final double MIN_POWER = 1e-20;
+
+    private final int rows;
+    private final int capacity;
+    private final int mask;
+    private final int[] rowFirstBin;
+    private final int[] rowEndBin;
+    private final int[] colors;
+    private final double minDb;
+    private final double lutPerDb;
+    private final int[] pixels;
+    private final AtomicLong columnsWritten = new AtomicLong();
+
+    /**
+     * @param binCount       bins per power spectrum, {@code fftSize / 2 + 1}
+     * @param maxFrequencyHz top of the displayed range, clipped to Nyquist
+     * @param capacity       columns kept in the ring, a power of two
+     */
+    public SpectrogramColumns(int sampleRate, int binCount, int rows, double maxFrequencyHz,
+                              double minDb, double maxDb, int capacity) {
+        if (!FftPlans.isPowerOfTwo(capacity)) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (rows < 1 || maxDb <= minDb) {
+            throw new IllegalArgumentException("Need rows >= 1 and maxDb > minDb");
+        }
+        this.rows = rows;
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.minDb = minDb;
+        this.lutPerDb = (LUT_SIZE - 1) / (maxDb - minDb);
+        this.colors = colorMap();
+        this.pixels = new int[capacity * rows];
+
+        // Bins [1, topBin] are spread over the rows; DC is left out
+        int fftSize = 2 * (binCount - 1);
+        int topBin = Math.max(1, Math.min(binCount - 1, (int) Math.round(maxFrequencyHz * fftSize / sampleRate)));
+        this.rowFirstBin = new int[rows];
+        this.rowEndBin = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            // Row 0 is the top of the image, i.e. the highest frequencies
+            int fromBottom = rows - 1 - row;
+            int first = 1 + (int) ((long) fromBottom * topBin / rows);
+            int end = 1 + (int) ((long) (fromBottom + 1) * topBin / rows);
+            rowFirstBin[row] = Math.min(first, topBin);
+            rowEndBin[row] = Math.max(end, rowFirstBin[row] + 1);
+        }
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long getColumnsWritten() {
+        return columnsWritten.get();
+    }
+
+    @Override
+    public void onFrame(double[] powerSpectrum) {
+        long written = columnsWritten.get();
+        int base = ((int) written & mask) * rows;
+        for (int row = 0; row < rows; row++) {
+            double peak = MIN_POWER;
+            for (int k = rowFirstBin[row], end = rowEndBin[row]; k < end; k++) {
+                if (powerSpectrum[k] > peak) {
+                    peak = powerSpectrum[k];
+                }
+            }
+            pixels[base + row] = colors[lutIndex(10 * Math.log10(peak))];
+        }
+        columnsWritten.lazySet(written + 1);
+    }
+
+    /**
+     * Copies one column, top row first, into {@code dst}. Only columns in
+     * {@code [getColumnsWritten() - capacity() / 2, getColumnsWritten())} are guaranteed not to
+     * be overwritten while they are copied.
+     */
+    public void copyColumn(long column, int[] dst, int dstOffset) {
+        System.arraycopy(pixels, ((int) column & mask) * rows, dst, dstOffset, rows);
+    }
+
+    int lutIndex(double db) {
+        int index = (int) ((db - minDb) * lutPerDb + 0.5);
+        return index < 0 ? 0 : Math.min(index, LUT_SIZE - 1);
+    }
+
+    /**
+     * Opaque ARGB colour table from near black through purple, red and orange to pale yellow,
+     * roughly the "inferno" map, so loudness reads as brightness.
+     */
+    public static int[] colorMap() {
+        double[][] stops = {
+                {0.00, 0, 0, 4},
+                {0.25, 66, 10, 104},
+                {0.50, 147, 38, 103},
+                {0.75, 221, 81, 58},
+                {0.90, 252, 165, 10},
+                {1.00, 252, 255, 164},
+        };
+        int[] lut = new int[LUT_SIZE];
+        for (int i = 0; i < LUT_SIZE; i++) {
+            double t = i / (double) (LUT_SIZE - 1);
+            int s = 1;
+            while (s < stops.length - 1 && t > stops[s][0]) {
+                s++;
+            }
+            double[] a = stops[s - 1];
+            double[] b = stops[s];
+            double f = (t - a[0]) / (b[0] - a[0]);
+            int r = (int) Math.round(a[1] + f * (b[1] - a[1]));
+            int g = (int) Math.round(a[2] + f * (b[2] - a[2]));
+            int bl = (int) Math.round(a[3] + f * (b[3] - a[3]));
+            lut[i] = 0xFF000000 | (r << 16) | (g << 8) | bl;
+        }
+        return lut;
+    }
+}
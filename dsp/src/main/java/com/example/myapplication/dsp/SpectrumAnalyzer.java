@@ -0,0 +1,157 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Windowed magnitude spectrum of a block of 16-bit PCM.
+ *
+ * The FFT plan, window and work arrays are kept between calls and only rebuilt when the
+ * input length changes, so repeated analysis of same-sized captures does not allocate.
+ * The returned array is owned by the analyzer and is overwritten by the next call.
+ *
+ * With {@link FftPlans.Precision#SINGLE} the window and transform run in float, which halves
+ * the work arrays of long captures; magnitudes are still computed and returned in double.
+ */
+public class SpectrumAnalyzer {
+
+    public enum Framing {
+        // One transform over exactly the input length; awkward sizes fall back to Bluestein
+        EXACT,
+        // Zero-pad up to the next power of two so the split-radix path is always used
+        POWER_OF_TWO
+    }
+
+    private final Framing framing;
+    private final FftPlans.Precision precision;
+
+    private DoubleFFT_1D fft;
+    private FloatFFT_1D singleFft;
+    private int fftSize;
+    private double[] work = new double[0];
+    private float[] singleWork = new float[0];
+    private double[] magnitudes = new double[0];
+    // The work arrays as read by magnitudes(); built once, so analyze() does not allocate
+    private final IntToDoubleFunction doubleSpectrum = i -> work[i];
+    private final IntToDoubleFunction singleSpectrum = i -> singleWork[i];
+
+    private int windowLength;
+    private double[] scaledWindow = new double[0];
+    private float[] singleWindow = new float[0];
+    private double magnitudeScale;
+
+    public SpectrumAnalyzer(Framing framing) {
+        this(framing, FftPlans.Precision.DOUBLE);
+    }
+
+    public SpectrumAnalyzer(Framing framing, FftPlans.Precision precision) {
+        this.framing = framing;
+        this.precision = precision;
+    }
+
+    public Framing getFraming() {
+        return framing;
+    }
+
+    public FftPlans.Precision getPrecision() {
+        return precision;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    /**
+     * Returns fftSize / 2 amplitude values; a full-scale sine reads close to 1.0 in its bin.
+     * Bin k is centred on k * sampleRate / fftSize.
+     */
+    public double[] analyze(short[] samples, int length) {
+        if (length < 2 || length > samples.length) {
+            throw new IllegalArgumentException("Invalid length " + length + " for buffer of " + samples.length);
+        }
+        prepare(length);
+        if (precision == FftPlans.Precision.SINGLE) {
+            float[] w = singleWindow;
+            float[] x = singleWork;
+            for (int i = 0; i < length; i++) {
+                x[i] = samples[i] * w[i];
+            }
+            Arrays.fill(x, length, fftSize, 0f);
+            singleFft.realForward(x);
+            return magnitudes(singleSpectrum);
+        }
+
+        double[] w = scaledWindow;
+        double[] x = work;
+        for (int i = 0; i < length; i++) {
+            x[i] = samples[i] * w[i];
+        }
+        Arrays.fill(x, length, fftSize, 0.0);
+        fft.realForward(x);
+        return magnitudes(doubleSpectrum);
+    }
+
+    // Amplitudes from realForward's packed output; squared and summed in double, so in single
+    // precision the transform is the only float rounding
+    private double[] magnitudes(IntToDoubleFunction packed) {
+        double[] mag = magnitudes;
+        int half = fftSize / 2;
+        double scale = magnitudeScale;
+        mag[0] = Math.abs(packed.applyAsDouble(0)) * scale * 0.5;
+        for (int k = 1; k < half; k++) {
+            double re = packed.applyAsDouble(2 * k);
+            double im = packed.applyAsDouble(2 * k + 1);
+            mag[k] = Math.sqrt(re * re + im * im) * scale;
+        }
+        return mag;
+    }
+
+    public static double binFrequency(int bin, int fftSize, double sampleRate) {
+        return bin * sampleRate / fftSize;
+    }
+
+    private void prepare(int length) {
+        int size = framing == Framing.POWER_OF_TWO
+                ? FftPlans.nextPowerOfTwo(length)
+                : length + (length & 1); // realForward's packed layout needs an even size
+        if (size != fftSize) {
+            fftSize = size;
+            if (precision == FftPlans.Precision.SINGLE) {
+                singleFft = FftPlans.getSingle(size);
+                if (singleWork.length < size) {
+                    singleWork = new float[size];
+                }
+            } else {
+                fft = FftPlans.get(size);
+                if (work.length < size) {
+                    work = new double[size];
+                }
+            }
+            magnitudes = new double[size / 2];
+        }
+        if (length != windowLength) {
+            double windowSum;
+            // Fold the 1/32768 PCM normalisation into the window so the hot loop is one multiply
+            if (precision == FftPlans.Precision.SINGLE) {
+                if (singleWindow.length < length) {
+                    singleWindow = new float[length];
+                }
+                windowSum = Windows.fillHann(singleWindow, length, 1 / 32768.0);
+            } else {
+                if (scaledWindow.length < length) {
+                    scaledWindow = new double[length];
+                }
+                Windows.fillHann(scaledWindow, length);
+                windowSum = Windows.sum(scaledWindow, length);
+                for (int i = 0; i < length; i++) {
+                    scaledWindow[i] /= 32768.0;
+                }
+            }
+            magnitudeScale = 2.0 / windowSum;
+            windowLength = length;
+        }
+    }
+}
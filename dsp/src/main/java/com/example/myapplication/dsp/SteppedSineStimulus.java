@@ -0,0 +1,128 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Test stimulus for a frequency-response measurement: one sine after another, each held for
+ * a whole number of analysis frames.
+ *
+ * Every tone is snapped to an FFT bin of {@code frameSize}, so it completes a whole number of
+ * cycles per frame. A frame cut anywhere out of a steady step therefore holds the tone exactly
+ * in one bin with no leakage, which is what lets {@link FrequencyResponseAnalyzer} work without
+ * knowing the playback latency. Each step also starts and ends at phase zero, so steps join
+ * without a jump in the waveform.
+ */
+public class SteppedSineStimulus implements AudioSource {
+    // Third-octave centres across the electrolarynx band, fundamental to upper harmonics
+    public static final double[] ELECTROLARYNX_BAND_TONES_HZ = {
+            80, 100, 125, 160, 200, 250, 315, 400, 500, 630, 800, 1000, 1250, 1600, 2000, 2500, 3150, 4000
+    };
+
+    private final int sampleRate;
+    private final int frameSize;
+    private final int framesPerStep;
+    private final int[] toneBins;
+    private final double amplitude;
+    // One cycle over a frame; tone k reads every k-th entry
+    private final short[] table;
+    private final long totalSamples;
+    private long position;
+
+    /**
+     * @param frameSize      analysis frame length, a power of two
+     * @param framesPerStep  frames per tone; at least 4, so whatever the alignment one frame and
+     *                       both its neighbours lie inside the step
+     * @param amplitude      peak level as a fraction of full scale
+     */
+    public SteppedSineStimulus(int sampleRate, int frameSize, double[] frequenciesHz, int framesPerStep,
+                               double amplitude) {
+        if (!FftPlans.isPowerOfTwo(frameSize) || framesPerStep < 4 || amplitude <= 0 || amplitude > 1
+                || frequenciesHz.length == 0) {
+            throw new IllegalArgumentException("Invalid stimulus configuration");
+        }
+        this.sampleRate = sampleRate;
+        this.frameSize = frameSize;
+        this.framesPerStep = framesPerStep;
+        this.amplitude = amplitude;
+        this.toneBins = new int[frequenciesHz.length];
+        for (int i = 0; i < frequenciesHz.length; i++) {
+            int bin = (int) Math.round(frequenciesHz[i] * frameSize / sampleRate);
+            if (bin < 1 || bin >= frameSize / 2 || (i > 0 && bin <= toneBins[i - 1])) {
+                throw new IllegalArgumentException("Tones must be ascending and fall in distinct bins: "
+                        + frequenciesHz[i] + " Hz");
+            }
+            toneBins[i] = bin;
+        }
+        this.table = new short[frameSize];
+        for (int i = 0; i < frameSize; i++) {
+            table[i] = (short) Math.round(amplitude * Short.MAX_VALUE * Math.sin(2 * Math.PI * i / frameSize));
+        }
+        this.totalSamples = (long) toneBins.length * framesPerStep * frameSize;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    public int getFramesPerStep() {
+        return framesPerStep;
+    }
+
+    public double getAmplitude() {
+        return amplitude;
+    }
+
+    // Mean power of each tone normalised to full scale, the 0 dB reference of the response
+    public double getTonePower() {
+        double peak = amplitude * Short.MAX_VALUE / PcmMath.FULL_SCALE;
+        return peak * peak / 2;
+    }
+
+    public int getToneCount() {
+        return toneBins.length;
+    }
+
+    public int getToneBin(int tone) {
+        return toneBins[tone];
+    }
+
+    // The frequency actually played, after snapping to a bin
+    public double getToneFrequencyHz(int tone) {
+        return (double) toneBins[tone] * sampleRate / frameSize;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public double getDurationSeconds() {
+        return (double) totalSamples / sampleRate;
+    }
+
+    public void rewind() {
+        position = 0;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return position >= totalSamples;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int count = (int) Math.min(length, totalSamples - position);
+        long stepSamples = (long) framesPerStep * frameSize;
+        int mask = frameSize - 1;
+        for (int i = 0; i < count; i++) {
+            long p = position + i;
+            int bin = toneBins[(int) (p / stepSamples)];
+            // Phase straight from the sample index, so nothing accumulates over a long test
+            buffer[offset + i] = table[(int) (p * bin) & mask];
+        }
+        position += count;
+        return count;
+    }
+}
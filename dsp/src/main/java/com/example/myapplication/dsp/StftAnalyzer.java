@@ -0,0 +1,204 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+import org.jtransforms.fft.FloatFFT_1D;
+
+import java.util.Arrays;
+
+/**
+ * Short-time power spectra of a sample stream, built incrementally.
+ *
+ * Samples go into a circular history of one frame; every {@code hopSize} samples the history
+ * is unrolled through a precomputed Hann window, transformed and reduced to a one-sided power
+ * spectrum. Input blocks may have any size and frames line up the same way regardless. All
+ * buffers are allocated up front; the spectrum handed to the listener is reused per frame.
+ *
+ * Bin values are scaled so that they sum to the mean-square power of the frame (Parseval),
+ * i.e. a full-scale sine reads 0.5 spread over its main lobe.
+ *
+ * The history keeps the raw 16-bit samples. With {@link FftPlans.Precision#SINGLE} the
+ * windowed frame and its transform are float; bin powers are still formed in double.
+ */
+public class StftAnalyzer {
+
+    public interface FrameListener {
+        void onFrame(double[] powerSpectrum);
+    }
+
+    private final int fftSize;
+    private final int hopSize;
+    private final int mask;
+    private final FftPlans.Precision precision;
+    // Only the pair matching the precision is allocated
+    private final DoubleFFT_1D fft;
+    private final double[] scaledWindow;
+    private final double[] work;
+    private final FloatFFT_1D singleFft;
+    private final float[] singleWindow;
+    private final float[] singleWork;
+    private final double powerScale;
+
+    private final short[] history;
+    private final double[] spectrum;
+    private int writePosition;
+    private int samplesUntilFrame;
+    private long framesProduced;
+
+    public StftAnalyzer(int fftSize, int hopSize) {
+        this(fftSize, hopSize, FftPlans.Precision.DOUBLE);
+    }
+
+    public StftAnalyzer(int fftSize, int hopSize, FftPlans.Precision precision) {
+        if (!FftPlans.isPowerOfTwo(fftSize) || fftSize < 4) {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 4: " + fftSize);
+        }
+        if (hopSize <= 0 || hopSize > fftSize) {
+            throw new IllegalArgumentException("Hop size must be in 1.." + fftSize + ": " + hopSize);
+        }
+        this.fftSize = fftSize;
+        this.hopSize = hopSize;
+        this.mask = fftSize - 1;
+        this.precision = precision;
+
+        double[] window = Windows.hann(fftSize);
+        double sumOfSquares = 0;
+        for (double w : window) {
+            sumOfSquares += w * w;
+        }
+        for (int i = 0; i < fftSize; i++) {
+            window[i] /= PcmMath.FULL_SCALE;
+        }
+        if (precision == FftPlans.Precision.SINGLE) {
+            this.fft = null;
+            this.scaledWindow = null;
+            this.work = null;
+            this.singleFft = FftPlans.getSingle(fftSize);
+            this.singleWindow = new float[fftSize];
+            for (int i = 0; i < fftSize; i++) {
+                singleWindow[i] = (float) window[i];
+            }
+            this.singleWork = new float[fftSize];
+        } else {
+            this.fft = FftPlans.get(fftSize);
+            this.scaledWindow = window;
+            this.work = new double[fftSize];
+            this.singleFft = null;
+            this.singleWindow = null;
+            this.singleWork = null;
+        }
+        this.powerScale = 1.0 / (fftSize * sumOfSquares);
+
+        this.history = new short[fftSize];
+        this.spectrum = new double[fftSize / 2 + 1];
+        // The first frame is emitted once a full frame of audio has arrived
+        this.samplesUntilFrame = fftSize;
+    }
+
+    public int getFftSize() {
+        return fftSize;
+    }
+
+    public int getHopSize() {
+        return hopSize;
+    }
+
+    public FftPlans.Precision getPrecision() {
+        return precision;
+    }
+
+    public int getBinCount() {
+        return spectrum.length;
+    }
+
+    public long getFramesProduced() {
+        return framesProduced;
+    }
+
+    public static double binFrequency(int bin, int fftSize, double sampleRate) {
+        return bin * sampleRate / fftSize;
+    }
+
+    // First bin whose centre is at or above the given frequency
+    public static int binAtOrAbove(double frequencyHz, int fftSize, double sampleRate) {
+        int bin = (int) Math.ceil(frequencyHz * fftSize / sampleRate);
+        return Math.max(0, Math.min(bin, fftSize / 2 + 1));
+    }
+
+    public void reset() {
+        Arrays.fill(history, (short) 0);
+        writePosition = 0;
+        samplesUntilFrame = fftSize;
+        framesProduced = 0;
+    }
+
+    public void process(AudioBlock block, FrameListener listener) {
+        process(block.buffer(), 0, block.length(), listener);
+    }
+
+    public void process(short[] samples, int offset, int length, FrameListener listener) {
+        int end = offset + length;
+        int i = offset;
+        while (i < end) {
+            int chunk = Math.min(end - i, samplesUntilFrame);
+            for (int j = 0; j < chunk; j++) {
+                history[writePosition] = samples[i + j];
+                writePosition = (writePosition + 1) & mask;
+            }
+            i += chunk;
+            samplesUntilFrame -= chunk;
+            if (samplesUntilFrame == 0) {
+                samplesUntilFrame = hopSize;
+                computeFrame();
+                framesProduced++;
+                if (listener != null) {
+                    listener.onFrame(spectrum);
+                }
+            }
+        }
+    }
+
+    private void computeFrame() {
+        if (precision == FftPlans.Precision.SINGLE) {
+            computeSingleFrame();
+            return;
+        }
+        // writePosition points at the oldest sample in the history
+        int start = writePosition;
+        for (int n = 0; n < fftSize; n++) {
+            work[n] = history[(start + n) & mask] * scaledWindow[n];
+        }
+        fft.realForward(work);
+
+        int half = fftSize / 2;
+        spectrum[0] = work[0] * work[0] * powerScale;
+        spectrum[half] = work[1] * work[1] * powerScale;
+        double twice = 2 * powerScale;
+        for (int k = 1; k < half; k++) {
+            double re = work[2 * k];
+            double im = work[2 * k + 1];
+            spectrum[k] = (re * re + im * im) * twice;
+        }
+    }
+
+    private void computeSingleFrame() {
+        int start = writePosition;
+        float[] x = singleWork;
+        for (int n = 0; n < fftSize; n++) {
+            x[n] = history[(start + n) & mask] * singleWindow[n];
+        }
+        singleFft.realForward(x);
+
+        // Squared and summed in double, so the transform is the only float rounding
+        int half = fftSize / 2;
+        double dc = x[0];
+        double nyquist = x[1];
+        spectrum[0] = dc * dc * powerScale;
+        spectrum[half] = nyquist * nyquist * powerScale;
+        double twice = 2 * powerScale;
+        for (int k = 1; k < half; k++) {
+            double re = x[2 * k];
+            double im = x[2 * k + 1];
+            spectrum[k] = (re * re + im * im) * twice;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generated test signal: a sum of sine partials plus optional white noise, for a fixed
+ * duration. Deterministic for a given seed, and as fast as the graph can pull it.
+ *
+ * Amplitudes are fractions of full scale; the sum is clipped to 16 bits.
+ */
+public class SyntheticSource implements AudioSource {
+    private final int sampleRate;
+    private final long totalSamples;
+    private double[] increments = new double[0];
+    private double[] amplitudes = new double[0];
+    private double[] phases = new double[0];
+    private double noiseRms;
+    private Random random;
+    private long position;
+
+    public SyntheticSource(int sampleRate, double seconds) {
+        this.sampleRate = sampleRate;
+        this.totalSamples = Math.round(seconds * sampleRate);
+    }
+
+    public SyntheticSource tone(double frequencyHz, double amplitude) {
+        int n = increments.length;
+        increments = Arrays.copyOf(increments, n + 1);
+        amplitudes = Arrays.copyOf(amplitudes, n + 1);
+        phases = Arrays.copyOf(phases, n + 1);
+        increments[n] = frequencyHz / sampleRate;
+        amplitudes[n] = amplitude;
+        return this;
+    }
+
+    // Harmonic series on f0: amplitudes[0] is the fundamental, amplitudes[1] the second harmonic, ...
+    public SyntheticSource harmonics(double f0Hz, double... harmonicAmplitudes) {
+        for (int h = 0; h < harmonicAmplitudes.length; h++) {
+            if ((h + 1) * f0Hz < sampleRate / 2.0) {
+                tone((h + 1) * f0Hz, harmonicAmplitudes[h]);
+            }
+        }
+        return this;
+    }
+
+    public SyntheticSource noise(double rms, long seed) {
+        this.noiseRms = rms;
+        this.random = new Random(seed);
+        return this;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return position >= totalSamples;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int count = (int) Math.min(length, totalSamples - position);
+        for (int i = 0; i < count; i++) {
+            double value = 0;
+            for (int p = 0; p < increments.length; p++) {
+                value += amplitudes[p] * Math.sin(2 * Math.PI * phases[p]);
+                double next = phases[p] + increments[p];
+                phases[p] = next - Math.floor(next);
+            }
+            if (random != null) {
+                value += random.nextGaussian() * noiseRms;
+            }
+            long scaled = Math.round(value * PcmMath.FULL_SCALE);
+            buffer[offset + i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, scaled));
+        }
+        position += count;
+        return count;
+    }
+}
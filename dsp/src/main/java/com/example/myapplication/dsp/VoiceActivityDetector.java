@@ -0,0 +1,152 @@
+package com.example.myapplication.dsp;
+
+/**
+ * Streaming frame-level activity detector for electrolarynx speech.
+ *
+ * Each frame (typically 10 ms) is active when its power is a fixed margin above the noise
+ * floor and its zero-crossing rate is low. The buzz puts most of its energy in the low
+ * harmonics and crosses zero a few times per pitch period, while hiss and fricative noise
+ * of the same level crosses at roughly every other sample. An active decision is held for a
+ * hangover time, so short dips inside words do not cut segments up.
+ *
+ * The per-sample work is one multiply-add for the energy and a sign test for the crossings;
+ * everything else happens once per frame.
+ */
+public class VoiceActivityDetector {
+
+    public interface Listener {
+        // Once per frame. detected: the frame itself passed the level and crossing tests;
+        // active: detected or within the hangover. framePower is normalised to full scale.
+        void onFrame(double framePower, boolean detected, boolean active);
+    }
+
+    private static final double FULL_SCALE_SQUARED = PcmMath.FULL_SCALE * PcmMath.FULL_SCALE;
+    // Without a noise floor, frames must still clear -60 dBFS to count as active
+    private static final double ABSOLUTE_MIN_POWER = 1e-6;
+
+    private final int sampleRate;
+    private final int frameLength;
+    private final double thresholdRatio;
+    private final int maxZeroCrossings;
+    private final int hangoverFrames;
+
+    private double noisePower;
+    private long frameSumOfSquares;
+    private int frameZeroCrossings;
+    private int framePosition;
+    private int previousSample;
+    private int hangoverRemaining;
+    private boolean active;
+    private long frames;
+    private long activeFrames;
+
+    /**
+     * @param frameSeconds         decision frame length, e.g. 0.01
+     * @param thresholdDb          margin a frame's power must exceed the noise floor by
+     * @param maxZeroCrossingRate  highest crossings per sample still counted as buzz, e.g. 0.3
+     * @param hangoverSeconds      how long a decision stays active after the last active frame
+     */
+    public VoiceActivityDetector(int sampleRate, double frameSeconds, double thresholdDb,
+                                 double maxZeroCrossingRate, double hangoverSeconds) {
+        if (sampleRate <= 0 || frameSeconds <= 0 || maxZeroCrossingRate <= 0 || hangoverSeconds < 0) {
+            throw new IllegalArgumentException("Invalid activity detector configuration");
+        }
+        this.sampleRate = sampleRate;
+        this.frameLength = Math.max(2, (int) Math.round(frameSeconds * sampleRate));
+        this.thresholdRatio = Math.pow(10, thresholdDb / 10);
+        this.maxZeroCrossings = (int) Math.floor(maxZeroCrossingRate * frameLength);
+        this.hangoverFrames = (int) Math.round(hangoverSeconds / frameSeconds);
+    }
+
+    // Power the thresholds are relative to, e.g. from NoiseFloorTracker; 0 until one is known
+    public void setNoisePower(double noisePower) {
+        this.noisePower = noisePower;
+    }
+
+    public double getNoisePower() {
+        return noisePower;
+    }
+
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    public double getFrameRateHz() {
+        return (double) sampleRate / frameLength;
+    }
+
+    // Decision for the last completed frame, hangover included
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public long getActiveFrameCount() {
+        return activeFrames;
+    }
+
+    public void reset() {
+        frameSumOfSquares = 0;
+        frameZeroCrossings = 0;
+        framePosition = 0;
+        previousSample = 0;
+        hangoverRemaining = 0;
+        active = false;
+        frames = 0;
+        activeFrames = 0;
+    }
+
+    public void process(AudioBlock block, Listener listener) {
+        process(block.buffer(), 0, block.length(), listener);
+    }
+
+    public void process(short[] samples, int offset, int length, Listener listener) {
+        long sum = frameSumOfSquares;
+        int crossings = frameZeroCrossings;
+        int position = framePosition;
+        int previous = previousSample;
+
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int s = samples[i];
+            sum += s * s;
+            // The sign bit of the XOR flags a crossing; exact zeros count as positive
+            crossings += (s ^ previous) >>> 31;
+            previous = s;
+            if (++position == frameLength) {
+                endFrame(sum, crossings, listener);
+                sum = 0;
+                crossings = 0;
+                position = 0;
+            }
+        }
+
+        frameSumOfSquares = sum;
+        frameZeroCrossings = crossings;
+        framePosition = position;
+        previousSample = previous;
+    }
+
+    private void endFrame(long sumOfSquares, int crossings, Listener listener) {
+        double power = sumOfSquares / (FULL_SCALE_SQUARED * frameLength);
+        double threshold = noisePower > 0 ? noisePower * thresholdRatio : ABSOLUTE_MIN_POWER;
+        boolean detected = power > threshold && crossings <= maxZeroCrossings;
+        if (detected) {
+            active = true;
+            hangoverRemaining = hangoverFrames;
+        } else if (hangoverRemaining > 0) {
+            hangoverRemaining--;
+        } else {
+            active = false;
+        }
+        frames++;
+        if (active) {
+            activeFrames++;
+        }
+        if (listener != null) {
+            listener.onFrame(power, detected, active);
+        }
+    }
+}
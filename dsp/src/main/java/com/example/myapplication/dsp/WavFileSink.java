@@ -0,0 +1,232 @@
+package com.example.myapplication.dsp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Graph sink that streams 16-bit mono PCM to a WAV file without doing I/O on the graph thread.
+ *
+ * Samples are copied into one of a fixed set of direct chunks allocated up front. Full chunks
+ * are handed to a writer thread through a queue and written with a FileChannel. The header
+ * is the start of the first chunk, so every write covers one whole chunk at a multiple of the
+ * chunk size, apart from the last one. The first write has zero lengths in the header, which
+ * {@link WavFileSource} reads to the end of the file. That keeps a recording cut off by a
+ * crash readable. After {@link #close()} the writer appends the noise profile, if one was
+ * set, patches the lengths and closes the file.
+ *
+ * {@link #accept} never blocks. If the writer falls so far behind that no chunk is free, the
+ * samples are dropped and counted. A sink records one stream; open it once.
+ */
+public class WavFileSink implements AudioSink {
+
+    public interface Listener {
+        // Called on the writer thread once the file is complete or has failed
+        void onFinished(WavFileSink sink);
+    }
+
+    // 64 KiB chunks, 16 of them: about 12 s of 44.1 kHz audio in flight before anything drops
+    public static final int DEFAULT_CHUNK_BYTES = 64 * 1024;
+    public static final int DEFAULT_CHUNK_COUNT = 16;
+    private static final int HEADER_BYTES = 44;
+    private static final int NOISE_PROFILE_CHUNK = fourCc("nprf");
+
+    private static final class Chunk {
+        final ByteBuffer bytes;
+        final ShortBuffer samples;
+
+        Chunk(int capacity) {
+            bytes = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            samples = bytes.asShortBuffer();
+        }
+    }
+
+    private final File file;
+    private final Listener listener;
+    private final ArrayBlockingQueue<Chunk> free;
+    private final ArrayBlockingQueue<Chunk> filled;
+    private final Chunk endOfStream = new Chunk(0);
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private Chunk current;
+    private int sampleRate;
+    private boolean opened;
+    private volatile NoiseProfile noiseProfile;
+    private volatile long droppedSamples;
+    private volatile long dataBytes;
+    private volatile IOException error;
+
+    public WavFileSink(File file) {
+        this(file, DEFAULT_CHUNK_COUNT, DEFAULT_CHUNK_BYTES, null);
+    }
+
+    public WavFileSink(File file, Listener listener) {
+        this(file, DEFAULT_CHUNK_COUNT, DEFAULT_CHUNK_BYTES, listener);
+    }
+
+    /**
+     * @param chunkCount number of preallocated chunks
+     * @param chunkBytes size of each chunk and of each write; a multiple of the file system
+     *                   block size (e.g. 4096) keeps the writes aligned
+     */
+    public WavFileSink(File file, int chunkCount, int chunkBytes, Listener listener) {
+        if (chunkCount < 2 || chunkBytes < 2 * HEADER_BYTES || chunkBytes % 2 != 0) {
+            throw new IllegalArgumentException("Invalid chunk configuration");
+        }
+        this.file = file;
+        this.listener = listener;
+        this.free = new ArrayBlockingQueue<>(chunkCount);
+        // One extra slot for the end-of-stream marker, so offers to it always succeed
+        this.filled = new ArrayBlockingQueue<>(chunkCount + 1);
+        for (int i = 0; i < chunkCount; i++) {
+            free.add(new Chunk(chunkBytes));
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Stored as an extra chunk after the audio. Set before {@link #close()}. */
+    public void setNoiseProfile(NoiseProfile noiseProfile) {
+        this.noiseProfile = noiseProfile;
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples;
+    }
+
+    // Audio bytes on disk; final once the sink has finished
+    public long getDataBytes() {
+        return dataBytes;
+    }
+
+    // Null unless opening or writing the file failed
+    public IOException getError() {
+        return error;
+    }
+
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    /** Waits for the writer to patch the header and close the file. */
+    public boolean awaitFinished(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    @Override
+    public void open(int sampleRate) {
+        if (opened) {
+            throw new IllegalStateException("WavFileSink records a single stream");
+        }
+        opened = true;
+        this.sampleRate = sampleRate;
+        current = free.poll();
+        putHeader(current.bytes, sampleRate, 0, 0);
+        current.samples.position(HEADER_BYTES / 2);
+        new Thread(this::writeChunks, "WavWriter").start();
+    }
+
+    @Override
+    public void accept(AudioBlock block) {
+        short[] samples = block.buffer();
+        int offset = 0;
+        int remaining = block.length();
+        while (remaining > 0) {
+            if (current == null && (current = free.poll()) == null) {
+                droppedSamples += remaining;
+                return;
+            }
+            int count = Math.min(remaining, current.samples.remaining());
+            current.samples.put(samples, offset, count);
+            offset += count;
+            remaining -= count;
+            if (!current.samples.hasRemaining()) {
+                submit(current);
+                current = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!opened) {
+            return;
+        }
+        if (current != null) {
+            submit(current);
+            current = null;
+        }
+        filled.offer(endOfStream);
+    }
+
+    private void submit(Chunk chunk) {
+        chunk.bytes.limit(2 * chunk.samples.position()).position(0);
+        filled.offer(chunk);
+    }
+
+    // Writer thread: the only place the file is touched
+    private void writeChunks() {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = 0;
+            for (Chunk chunk = filled.take(); chunk != endOfStream; chunk = filled.take()) {
+                while (chunk.bytes.hasRemaining()) {
+                    position += channel.write(chunk.bytes, position);
+                }
+                dataBytes = position - HEADER_BYTES;
+                chunk.bytes.clear();
+                chunk.samples.clear();
+                free.offer(chunk);
+            }
+
+            NoiseProfile profile = noiseProfile;
+            if (profile != null) {
+                ByteBuffer extra = ByteBuffer.allocate(8 + profile.encodedLength()).order(ByteOrder.LITTLE_ENDIAN);
+                extra.putInt(NOISE_PROFILE_CHUNK).putInt(profile.encodedLength());
+                profile.writeTo(extra);
+                extra.flip();
+                while (extra.hasRemaining()) {
+                    position += channel.write(extra, position);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(header, sampleRate, dataBytes, position - 8);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            error = e;
+        } catch (InterruptedException e) {
+            error = new IOException("Interrupted while writing " + file, e);
+            Thread.currentThread().interrupt();
+        } finally {
+            if (listener != null) {
+                listener.onFinished(this);
+            }
+            finished.countDown();
+        }
+    }
+
+    private static void putHeader(ByteBuffer target, int sampleRate, long dataBytes, long riffBytes) {
+        target.putInt(fourCc("RIFF")).putInt((int) riffBytes).putInt(fourCc("WAVE"));
+        target.putInt(fourCc("fmt ")).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(sampleRate).putInt(2 * sampleRate).putShort((short) 2).putShort((short) 16);
+        target.putInt(fourCc("data")).putInt((int) dataBytes);
+    }
+
+    private static int fourCc(String id) {
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.myapplication.dsp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads 16-bit PCM WAV files as a graph source. Multi-channel files are mixed down to mono by
+ * averaging. A data chunk length of 0 or past the end of the file (left by recorders that
+ * were interrupted before patching the header) is taken to run to the end of the file.
+ *
+ * A noise profile chunk written by {@link WavFileSink} is picked up if present.
+ *
+ * Sample data is memory-mapped one window at a time, so long recordings are streamed in
+ * bounded chunks without copying them through the Java heap.
+ */
+public class WavFileSource implements AudioSource, Closeable {
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    // Size of each mapped window, rounded down to whole frames when mapping
+    private static final int MAP_WINDOW_BYTES = 1 << 20;
+
+    private final FileChannel channel;
+    private final int sampleRate;
+    private final int channels;
+    private final long frameCount;
+    private final int frameBytes;
+    private long dataOffset;
+    private long framesRead;
+    private final NoiseProfile noiseProfile;
+    private MappedByteBuffer window;
+
+    public WavFileSource(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0);
+            if (header.getInt(0) != fourCc("RIFF") || header.getInt(8) != fourCc("WAVE")) {
+                throw new IOException("Not a RIFF/WAVE file: " + file);
+            }
+
+            int format = -1;
+            int rate = 0;
+            int channelCount = 0;
+            int bits = 0;
+            long dataStart = -1;
+            long dataLength = 0;
+            NoiseProfile profile = null;
+            ByteBuffer chunk = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+            long position = 12;
+            while (position + 8 <= channel.size()) {
+                chunk.clear().limit(8);
+                readFully(chunk, position);
+                int id = chunk.getInt(0);
+                long size = chunk.getInt(4) & 0xFFFFFFFFL;
+                if (id == fourCc("fmt ")) {
+                    chunk.clear().limit(16);
+                    readFully(chunk, position + 8);
+                    format = chunk.getShort(0) & 0xFFFF;
+                    channelCount = chunk.getShort(2);
+                    rate = chunk.getInt(4);
+                    bits = chunk.getShort(14);
+                } else if (id == fourCc("data")) {
+                    dataStart = position + 8;
+                    long available = channel.size() - dataStart;
+                    if (size == 0 || size > available) {
+                        dataLength = available;
+                        break;
+                    }
+                    dataLength = size;
+                } else if (id == fourCc("nprf") && size <= channel.size() - position - 8) {
+                    ByteBuffer payload = ByteBuffer.allocate((int) size);
+                    readFully(payload, position + 8);
+                    payload.flip();
+                    try {
+                        profile = NoiseProfile.readFrom(payload);
+                    } catch (RuntimeException e) {
+                        // A damaged profile does not make the audio unreadable
+                        profile = null;
+                    }
+                }
+                // Chunks are padded to an even length
+                position += 8 + size + (size & 1);
+            }
+
+            if (format != FORMAT_PCM && format != FORMAT_EXTENSIBLE) {
+                throw new IOException("Unsupported WAV format " + format + ": " + file);
+            }
+            if (bits != 16 || channelCount < 1 || rate <= 0) {
+                throw new IOException("Expected 16-bit PCM, got " + bits + " bits, " + channelCount + " channels: " + file);
+            }
+            if (dataStart < 0) {
+                throw new IOException("No data chunk: " + file);
+            }
+            this.sampleRate = rate;
+            this.channels = channelCount;
+            this.frameBytes = 2 * channelCount;
+            this.frameCount = dataLength / frameBytes;
+            this.dataOffset = dataStart;
+            this.noiseProfile = profile;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getChannelCount() {
+        return channels;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    // Baseline noise stored by WavFileSink, or null if the file has none
+    public NoiseProfile getNoiseProfile() {
+        return noiseProfile;
+    }
+
+    @Override
+    public boolean isFinished() {
+        return framesRead >= frameCount;
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) {
+        int total = (int) Math.min(length, frameCount - framesRead);
+        try {
+            int done = 0;
+            while (done < total) {
+                if (window == null || !window.hasRemaining()) {
+                    mapNextWindow();
+                }
+                int frames = Math.min(total - done, window.remaining() / frameBytes);
+                int base = window.position();
+                if (channels == 1) {
+                    for (int i = 0; i < frames; i++) {
+                        buffer[offset + done + i] = window.getShort(base + 2 * i);
+                    }
+                } else {
+                    for (int i = 0, b = base; i < frames; i++) {
+                        int sum = 0;
+                        for (int c = 0; c < channels; c++, b += 2) {
+                            sum += window.getShort(b);
+                        }
+                        buffer[offset + done + i] = (short) (sum / channels);
+                    }
+                }
+                window.position(base + frames * frameBytes);
+                done += frames;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        framesRead += total;
+        return total;
+    }
+
+    private void mapNextWindow() throws IOException {
+        long remainingBytes = (frameCount - framesRead) * frameBytes;
+        int size = (int) Math.min(remainingBytes, MAP_WINDOW_BYTES / frameBytes * frameBytes);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset, size);
+        window.order(ByteOrder.LITTLE_ENDIAN);
+        dataOffset += size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readFully(ByteBuffer target, long position) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position()) < 0) {
+                throw new IOException("Truncated WAV header");
+            }
+        }
+    }
+
+    private static int fourCc(String id) {
+        return (id.charAt(0)) | (id.charAt(1) << 8) | (id.charAt(2) << 16) | (id.charAt(3) << 24);
+    }
+}
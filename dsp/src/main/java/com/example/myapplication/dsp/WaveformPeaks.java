@@ -0,0 +1,112 @@
+package com.example.myapplication.dsp;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reduces a PCM stream to one min/max pair per display column.
+ *
+ * The analysis thread calls {@link #add} with each block; every {@code samplesPerColumn}
+ * samples become one column stored in a primitive float ring, normalized to [-1, 1]. The UI
+ * thread reads the most recent columns with {@link #fillLines}, which writes them straight into
+ * a {@code Canvas.drawLines} point array. Nothing is allocated after construction.
+ *
+ * Single producer, single consumer. The ring holds more columns than are ever drawn so the
+ * producer can run ahead of a slow frame without overwriting what is being read.
+ */
+public class WaveformPeaks {
+    private final int capacity;
+    private final int mask;
+    private final int samplesPerColumn;
+    private final float[] minima;
+    private final float[] maxima;
+    // Number of completed columns; published after the column values are written
+    private final AtomicLong columnsWritten = new AtomicLong();
+
+    private int pendingSamples;
+    private int pendingMin = Integer.MAX_VALUE;
+    private int pendingMax = Integer.MIN_VALUE;
+
+    public WaveformPeaks(int capacity, int samplesPerColumn) {
+        if (!FftPlans.isPowerOfTwo(capacity)) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (samplesPerColumn < 1) {
+            throw new IllegalArgumentException("Samples per column must be >= 1: " + samplesPerColumn);
+        }
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+        this.samplesPerColumn = samplesPerColumn;
+        this.minima = new float[capacity];
+        this.maxima = new float[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int getSamplesPerColumn() {
+        return samplesPerColumn;
+    }
+
+    public long getColumnsWritten() {
+        return columnsWritten.get();
+    }
+
+    public void add(AudioBlock block) {
+        add(block.buffer(), 0, block.length());
+    }
+
+    public void add(short[] samples, int offset, int length) {
+        long written = columnsWritten.get();
+        int count = pendingSamples;
+        int min = pendingMin;
+        int max = pendingMax;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            int value = samples[i];
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            if (++count == samplesPerColumn) {
+                int slot = (int) written & mask;
+                minima[slot] = (float) (min / PcmMath.FULL_SCALE);
+                maxima[slot] = (float) (max / PcmMath.FULL_SCALE);
+                columnsWritten.lazySet(++written);
+                count = 0;
+                min = Integer.MAX_VALUE;
+                max = Integer.MIN_VALUE;
+            }
+        }
+        pendingSamples = count;
+        pendingMin = min;
+        pendingMax = max;
+    }
+
+    /**
+     * Writes one vertical segment per column for the {@code columns} columns ending at
+     * {@code lastColumn} (exclusive), oldest at {@code x = 0} and one column every
+     * {@code spacing} pixels. Amplitudes map to {@code [0, height]} with full scale at the
+     * edges. Columns that have not been written yet are skipped.
+     *
+     * @return number of floats written to {@code points}, suitable for {@code drawLines}
+     */
+    public int fillLines(float[] points, long lastColumn, int columns, float spacing, float height) {
+        long newest = Math.min(lastColumn, columnsWritten.get());
+        columns = Math.min(columns, capacity / 2);
+        long first = Math.max(0, lastColumn - columns);
+        float centre = height / 2;
+        int count = 0;
+        for (long column = first; column < newest; column++) {
+            int slot = (int) column & mask;
+            float x = (column - (lastColumn - columns)) * spacing;
+            points[count++] = x;
+            points[count++] = centre - maxima[slot] * centre;
+            points[count++] = x;
+            // Keep silent columns visible as a one pixel line
+            points[count++] = centre - minima[slot] * centre + 1;
+        }
+        return count;
+    }
+}
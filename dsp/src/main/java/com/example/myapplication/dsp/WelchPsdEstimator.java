@@ -0,0 +1,104 @@
+package com.example.myapplication.dsp;
+
+import java.util.Arrays;
+
+/**
+ * Welch power spectrum of a stream: the mean of Hann-windowed, 50%-overlapped frame spectra.
+ *
+ * Frames come from an {@link StftAnalyzer} and are summed as they complete, so the estimate is
+ * available at any point during a capture and memory does not grow with its length. Averaging
+ * K frames cuts the variance of each bin by about K against one long periodogram, at the cost
+ * of resolution: bins are sampleRate / fftSize wide.
+ *
+ * Like the STFT frames, bin powers sum to the mean-square level of the input (Parseval);
+ * divide a bin by its width for a density per Hz.
+ */
+public class WelchPsdEstimator implements StftAnalyzer.FrameListener {
+    private final int sampleRate;
+    private final StftAnalyzer stft;
+    private final double[] sum;
+    private long frames;
+
+    public WelchPsdEstimator(int sampleRate, int fftSize, FftPlans.Precision precision) {
+        this.sampleRate = sampleRate;
+        this.stft = new StftAnalyzer(fftSize, fftSize / 2, precision);
+        this.sum = new double[stft.getBinCount()];
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public int getFftSize() {
+        return stft.getFftSize();
+    }
+
+    public int getBinCount() {
+        return sum.length;
+    }
+
+    public double getBinWidthHz() {
+        return (double) sampleRate / stft.getFftSize();
+    }
+
+    public double binFrequency(int bin) {
+        return StftAnalyzer.binFrequency(bin, stft.getFftSize(), sampleRate);
+    }
+
+    // Frames averaged so far; the first completes after one full frame of input
+    public long getFrameCount() {
+        return frames;
+    }
+
+    public void reset() {
+        stft.reset();
+        Arrays.fill(sum, 0);
+        frames = 0;
+    }
+
+    public void process(AudioBlock block) {
+        stft.process(block, this);
+    }
+
+    public void process(short[] samples, int offset, int length) {
+        stft.process(samples, offset, length, this);
+    }
+
+    @Override
+    public void onFrame(double[] powerSpectrum) {
+        for (int k = 0; k < sum.length; k++) {
+            sum[k] += powerSpectrum[k];
+        }
+        frames++;
+    }
+
+    /** Writes the mean power per bin into {@code target} (getBinCount() long); all zero before the first frame. */
+    public double[] getPowerSpectrum(double[] target) {
+        if (frames == 0) {
+            Arrays.fill(target, 0, sum.length, 0);
+            return target;
+        }
+        double scale = 1.0 / frames;
+        for (int k = 0; k < sum.length; k++) {
+            target[k] = sum[k] * scale;
+        }
+        return target;
+    }
+
+    /** Bin with the most power at or above {@code minHz}, e.g. to skip DC and hum; -1 before the first frame. */
+    public int getPeakBin(double minHz) {
+        if (frames == 0) {
+            return -1;
+        }
+        int from = StftAnalyzer.binAtOrAbove(minHz, stft.getFftSize(), sampleRate);
+        int peak = -1;
+        double max = -1;
+        for (int k = from; k < sum.length; k++) {
+            if (sum[k] > max) {
+                max = sum[k];
+                peak = k;
+            }
+        }
+        return peak;
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.myapplication.dsp;
+
+public final class Windows {
+    private Windows() {
+    }
+
+    // Periodic Hann window; sums to length / 2 and overlap-adds to a constant at 50% hop
+    public static double[] hann(int length) {
+        double[] window = new double[length];
+        fillHann(window, length);
+        return window;
+    }
+
+    public static void fillHann(double[] window, int length) {
+        for (int i = 0; i < length; i++) {
+            window[i] = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / length);
+        }
+    }
+
+    // Single-precision Hann times scale, computed in double; returns the unscaled window sum
+    public static double fillHann(float[] window, int length, double scale) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            double w = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / length);
+            sum += w;
+            window[i] = (float) (w * scale);
+        }
+        return sum;
+    }
+
+    public static double sum(double[] window, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += window[i];
+        }
+        return sum;
+    }
+}
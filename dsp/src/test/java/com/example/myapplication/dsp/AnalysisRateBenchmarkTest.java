@@ -0,0 +1,79 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the live analysis chain (band SNR, pitch, sliding SNR) over the same capture at the
+ * full 44.1 kHz rate and behind the decimator at 14.7 and 11.025 kHz, and checks the
+ * decimated chains still agree on pitch. Their cost is measured in the benchmarks module.
+ */
+public class AnalysisRateBenchmarkTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME = 3528;
+    private static final int SECONDS = 10;
+
+    private static short[] capture() {
+        Random random = new Random(3);
+        short[] samples = new short[SAMPLE_RATE * SECONDS];
+        for (int i = 0; i < samples.length; i++) {
+            double value = 0;
+            for (int h = 1; h <= 20; h++) {
+                value += Math.sin(2 * Math.PI * 110 * h * i / SAMPLE_RATE) / h;
+            }
+            samples[i] = (short) (value * 6000 + random.nextGaussian() * 200);
+        }
+        return samples;
+    }
+
+    private static final class Result {
+        double pitchSum;
+        int pitchCount;
+    }
+
+    private static Result run(short[] capture, int factor) {
+        int rate = SAMPLE_RATE / factor;
+        int fftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(rate * 0.046));
+        BandSnrAnalyzer band = new BandSnrAnalyzer(rate, fftSize, fftSize / 2,
+                BandSnrAnalyzer.ELECTROLARYNX_BAND_EDGES_HZ, 0.15);
+        double[] flatNoise = new double[band.getNoiseSpectrum().length];
+        Arrays.fill(flatNoise, 1e-9);
+        band.setNoiseSpectrum(flatNoise);
+        PitchTracker pitch = new PitchTracker(rate, 60, 400, 0.01);
+        SlidingWindowSnrEstimator snr = new SlidingWindowSnrEstimator(rate, 0.25, 30, 0.1);
+        snr.setNoisePower(1e-6);
+        PolyphaseDecimator decimator = new PolyphaseDecimator(factor);
+
+        Result result = new Result();
+        short[] out = new short[FRAME / factor];
+        BandSnrAnalyzer.Listener bandListener = (bandSnrDb, perBand) -> { };
+        SlidingWindowSnrEstimator.Listener snrListener = (snrDb, power) -> { };
+        PitchTracker.Listener pitchListener = (f0, confidence) -> {
+            if (!Double.isNaN(f0)) {
+                result.pitchSum += f0;
+                result.pitchCount++;
+            }
+        };
+        for (int off = 0; off + FRAME <= capture.length; off += FRAME) {
+            int n = decimator.process(capture, off, FRAME, out, 0);
+            snr.process(out, 0, n, snrListener);
+            band.process(out, 0, n, bandListener);
+            pitch.process(out, 0, n, pitchListener);
+        }
+        return result;
+    }
+
+    @Test
+    public void decimatedChainsAgreeOnPitch() {
+        short[] capture = capture();
+        for (int factor : new int[]{1, 3, 4}) {
+            Result result = run(capture, factor);
+            assertTrue(result.pitchCount > 0);
+            assertEquals(110, result.pitchSum / result.pitchCount, 1.0);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class BandSnrAnalyzerTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final double[] EDGES = BandSnrAnalyzer.ELECTROLARYNX_BAND_EDGES_HZ;
+
+    // Low rumble at 40 Hz plus broadband hiss, roughly an HVAC room
+    private static double roomNoise(Random random, int i) {
+        return 3000 * Math.sin(2 * Math.PI * 40 * i / SAMPLE_RATE) + 100 * random.nextGaussian();
+    }
+
+    private static short[] render(int length, long seed, boolean withBuzz, boolean loudRumble) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            double value = roomNoise(random, i) * (loudRumble ? 4 : 1);
+            if (withBuzz) {
+                // 100 Hz buzz with decaying harmonics up to 3 kHz
+                for (int h = 1; h <= 30; h++) {
+                    value += 1500.0 / h * Math.sin(2 * Math.PI * 100 * h * i / SAMPLE_RATE);
+                }
+            }
+            samples[i] = (short) Math.max(-32768, Math.min(32767, Math.round(value)));
+        }
+        return samples;
+    }
+
+    private static double[] lastReading(BandSnrAnalyzer analyzer, short[] samples, double[] perBand) {
+        double[] band = {Double.NaN};
+        analyzer.process(samples, 0, samples.length, (bandSnr, perBandSnr) -> {
+            band[0] = bandSnr;
+            System.arraycopy(perBandSnr, 0, perBand, 0, perBandSnr.length);
+        });
+        return band;
+    }
+
+    @Test
+    public void stftSpectrumSumsToSignalPower() {
+        StftAnalyzer stft = new StftAnalyzer(2048, 1024);
+        short[] samples = new short[8192];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (16384 * Math.sin(2 * Math.PI * 440 * i / SAMPLE_RATE));
+        }
+        double[] total = {0};
+        stft.process(samples, 0, samples.length, spectrum -> {
+            double sum = 0;
+            for (double p : spectrum) {
+                sum += p;
+            }
+            total[0] = sum;
+        });
+
+        assertEquals(7, stft.getFramesProduced());
+        assertEquals(0.125, total[0], 0.125 * 0.02);
+    }
+
+    @Test
+    public void stftFramesDoNotDependOnBlockSize() {
+        short[] samples = render(SAMPLE_RATE / 2, 3, true, false);
+        double[][] reference = new double[1][];
+        for (int blockSize : new int[]{samples.length, 333, 1024}) {
+            StftAnalyzer stft = new StftAnalyzer(1024, 256);
+            double[] last = new double[stft.getBinCount()];
+            for (int off = 0; off < samples.length; off += blockSize) {
+                stft.process(samples, off, Math.min(blockSize, samples.length - off),
+                        spectrum -> System.arraycopy(spectrum, 0, last, 0, spectrum.length));
+            }
+            if (reference[0] == null) {
+                reference[0] = last;
+            } else {
+                assertArrayEquals(reference[0], last, 0);
+            }
+        }
+    }
+
+    @Test
+    public void rumbleOutsideTheBandsDoesNotChangeBandSnr() {
+        BandSnrAnalyzer analyzer = new BandSnrAnalyzer(SAMPLE_RATE, 2048, 1024, EDGES, 0.15);
+        short[] baseline = render(SAMPLE_RATE * 2, 1, false, false);
+        analyzer.learnNoise(baseline, 0, baseline.length);
+        assertTrue(analyzer.hasNoiseSpectrum());
+
+        double[] perBand = new double[analyzer.getBandCount()];
+        double quietRoom = lastReading(analyzer, render(SAMPLE_RATE, 2, true, false), perBand)[0];
+        analyzer.reset();
+        double loudRumble = lastReading(analyzer, render(SAMPLE_RATE, 2, true, true), perBand)[0];
+
+        assertTrue("Buzz should be well above noise: " + quietRoom, quietRoom > 20);
+        assertEquals(quietRoom, loudRumble, 1.0);
+    }
+
+    @Test
+    public void perBandSnrReflectsWhereTheSignalIs() {
+        BandSnrAnalyzer analyzer = new BandSnrAnalyzer(SAMPLE_RATE, 2048, 1024, EDGES, 0.15);
+        short[] baseline = render(SAMPLE_RATE * 2, 1, false, false);
+        analyzer.learnNoise(baseline, 0, baseline.length);
+
+        Random random = new Random(9);
+        short[] tone = new short[SAMPLE_RATE];
+        for (int i = 0; i < tone.length; i++) {
+            tone[i] = (short) (roomNoise(random, i) + 4000 * Math.sin(2 * Math.PI * 700 * i / SAMPLE_RATE));
+        }
+        double[] perBand = new double[analyzer.getBandCount()];
+        lastReading(analyzer, tone, perBand);
+
+        // Only the 500-1000 Hz band contains the tone
+        for (int b = 0; b < perBand.length; b++) {
+            if (b == 2) {
+                assertTrue("band " + b + ": " + perBand[b], perBand[b] > 25);
+            } else {
+                assertEquals("band " + b, 0, perBand[b], 3);
+            }
+        }
+    }
+
+    @Test
+    public void noReadingsWithoutBaseline() {
+        BandSnrAnalyzer analyzer = new BandSnrAnalyzer(SAMPLE_RATE, 2048, 1024, EDGES, 0.15);
+        short[] samples = render(SAMPLE_RATE, 4, true, false);
+        analyzer.process(samples, 0, samples.length, (bandSnr, perBandSnr) -> fail("No noise spectrum yet"));
+    }
+}
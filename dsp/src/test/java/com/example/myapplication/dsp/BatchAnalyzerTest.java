@@ -0,0 +1,136 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+public class BatchAnalyzerTest {
+    private static final double[] BUZZ = {0.05, 0.15, 0.12, 0.08, 0.06, 0.04, 0.03, 0.02};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Two seconds of background noise, then two seconds of buzz over the same noise, repeated
+    private static short[] alternatingBuzz(int sampleRate, double f0Hz, double seconds, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[(int) (seconds * sampleRate)];
+        for (int i = 0; i < samples.length; i++) {
+            double t = (double) i / sampleRate;
+            double value = 0.003 * random.nextGaussian();
+            if (((int) (t / 2)) % 2 == 1) {
+                for (int h = 0; h < BUZZ.length; h++) {
+                    value += BUZZ[h] * Math.sin(2 * Math.PI * f0Hz * (h + 1) * t);
+                }
+            }
+            samples[i] = (short) Math.round(32767 * value);
+        }
+        return samples;
+    }
+
+    private File writeWav(String name, int sampleRate, short[] samples) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + 2 * samples.length).order(ByteOrder.LITTLE_ENDIAN);
+        int dataBytes = 2 * samples.length;
+        buffer.put("RIFF".getBytes()).putInt(36 + dataBytes).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) 1)
+                .putInt(sampleRate).putInt(sampleRate * 2).putShort((short) 2).putShort((short) 16);
+        buffer.put("data".getBytes()).putInt(dataBytes);
+        for (short s : samples) {
+            buffer.putShort(s);
+        }
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), buffer.array());
+        return file;
+    }
+
+    @Test
+    public void summarizesSnrDistributionPitchAndSpectrum() throws IOException {
+        File file = writeWav("buzz.wav", 44100, alternatingBuzz(44100, 150, 16, 1));
+
+        RecordingSummary summary = BatchAnalyzer.analyze(file);
+
+        assertNull(summary.getError());
+        assertEquals("buzz.wav", summary.getName());
+        assertEquals(44100, summary.getSampleRate());
+        assertEquals(16.0, summary.getDurationSeconds(), 1e-9);
+        assertTrue(summary.getSnrReadings() > 0);
+        // Noise-only stretches sit near 0 dB above the tracked floor, buzz stretches far above it
+        assertTrue("p10 " + summary.getSnrPercentile(10), summary.getSnrPercentile(10) < 5);
+        assertTrue("p90 " + summary.getSnrPercentile(90), summary.getSnrPercentile(90) > 25);
+        assertTrue(summary.getSnrPercentile(10) <= summary.getSnrPercentile(50));
+        assertTrue(summary.getSnrPercentile(50) <= summary.getSnrPercentile(90));
+        assertEquals(150, summary.getModalF0Hz(), summary.getF0HistogramBinHz());
+        assertEquals(0.5, summary.getVoicedFraction(), 0.1);
+        // The second harmonic carries the most energy
+        assertEquals(300, summary.getDominantFrequencyHz(), 2 * summary.getSpectrumBinHz());
+    }
+
+    @Test
+    public void decimatesHigherRatesToTheSameResult() throws IOException {
+        RecordingSummary at48k = BatchAnalyzer.analyze(writeWav("48k.wav", 48000, alternatingBuzz(48000, 185, 12, 2)));
+        RecordingSummary at16k = BatchAnalyzer.analyze(writeWav("16k.wav", 16000, alternatingBuzz(16000, 185, 12, 2)));
+
+        assertNull(at48k.getError());
+        assertNull(at16k.getError());
+        assertEquals(185, at48k.getModalF0Hz(), at48k.getF0HistogramBinHz());
+        assertEquals(at16k.getModalF0Hz(), at48k.getModalF0Hz(), 1e-9);
+        assertEquals(at16k.getSpectrumBinHz(), at48k.getSpectrumBinHz(), 1e-9);
+        // White noise above the decimated band is filtered out, so 48 kHz can only read higher
+        assertTrue(at48k.getSnrPercentile(90) >= at16k.getSnrPercentile(90) - 1);
+    }
+
+    @Test
+    public void parallelRunMatchesSequentialAndKeepsOrder() throws IOException {
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            files.add(writeWav("take" + i + ".wav", 44100, alternatingBuzz(44100, 100 + 40 * i, 6, i)));
+        }
+        File broken = folder.newFile("broken.wav");
+        Files.write(broken.toPath(), "not a wav file at all, just some text".getBytes());
+        files.add(2, broken);
+        files.add(new File(folder.getRoot(), "missing.wav"));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<RecordingSummary> parallel;
+        try {
+            parallel = new BatchAnalyzer(pool).analyzeAll(files);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertEquals(files.size(), parallel.size());
+        for (int i = 0; i < files.size(); i++) {
+            RecordingSummary expected = BatchAnalyzer.analyze(files.get(i));
+            assertEquals(files.get(i).getName(), parallel.get(i).getName());
+            assertEquals(expected.describe(), parallel.get(i).describe());
+            assertArrayEquals(expected.getF0Histogram(), parallel.get(i).getF0Histogram());
+        }
+        assertNotNull(parallel.get(2).getError());
+        assertNotNull(parallel.get(files.size() - 1).getError());
+        assertNull(parallel.get(0).getError());
+    }
+
+    @Test
+    public void directoriesExpandToTheirWavFilesInNameOrder() throws IOException {
+        writeWav("b.wav", 16000, new short[160]);
+        writeWav("a.wav", 16000, new short[160]);
+        folder.newFile("notes.txt");
+
+        List<File> files = BatchAnalyzer.collectWavFiles(folder.getRoot().getPath(), "extra.wav");
+
+        assertEquals(Arrays.asList("a.wav", "b.wav", "extra.wav"),
+                Arrays.asList(files.get(0).getName(), files.get(1).getName(), files.get(2).getName()));
+    }
+}
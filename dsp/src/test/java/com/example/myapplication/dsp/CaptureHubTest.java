@@ -0,0 +1,389 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.Assert.*;
+
+public class CaptureHubTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int BLOCK = 160;
+    // Stress tests run at the capture rate in blocks of a typical minimum AudioRecord buffer
+    private static final int CAPTURE_RATE = 44100;
+    private static final int CAPTURE_BLOCK = 1792;
+
+    // Publishes blocks whose first sample is their sequence number, like a capture loop would
+    private static void publish(CaptureHub hub, AudioBlockPool pool, int count, long pauseNanos) {
+        hub.open(SAMPLE_RATE);
+        for (int i = 0; i < count; i++) {
+            AudioBlock block = pool.acquire();
+            assertNotNull("Pool exhausted at block " + i, block);
+            block.buffer()[0] = (short) i;
+            block.setLength(BLOCK);
+            hub.accept(block);
+            block.release();
+            if (pauseNanos > 0) {
+                sleepNanos(pauseNanos);
+            }
+        }
+    }
+
+    private static void sleepNanos(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.onSpinWait();
+        }
+    }
+
+    // Records the sequence numbers and block identities it sees, optionally slowly
+    private static final class RecordingSink implements AudioSink {
+        final List<Integer> sequence = Collections.synchronizedList(new ArrayList<>());
+        final Set<AudioBlock> blocks = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        final long delayNanos;
+        volatile int openedAt;
+        volatile boolean closed;
+
+        RecordingSink(long delayNanos) {
+            this.delayNanos = delayNanos;
+        }
+
+        @Override
+        public void open(int sampleRate) {
+            openedAt = sampleRate;
+        }
+
+        @Override
+        public void accept(AudioBlock block) {
+            sequence.add((int) block.get(0));
+            blocks.add(block);
+            if (delayNanos > 0) {
+                sleepNanos(delayNanos);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void everySubscriberSeesTheSameBlocksWithoutCopies() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(20, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink first = new RecordingSink(0);
+        RecordingSink second = new RecordingSink(0);
+        CaptureHub.Subscription a = hub.subscribe("first", CaptureHub.Policy.BLOCK, 8, first);
+        CaptureHub.Subscription b = hub.subscribe("second", CaptureHub.Policy.BLOCK, 8, second);
+        assertEquals(2, hub.getSubscriberCount());
+
+        publish(hub, pool, 500, 0);
+        hub.close();
+
+        assertTrue(a.awaitClosed(2, TimeUnit.SECONDS));
+        assertTrue(b.awaitClosed(2, TimeUnit.SECONDS));
+        assertEquals(0, hub.getSubscriberCount());
+        for (RecordingSink sink : List.of(first, second)) {
+            assertEquals(SAMPLE_RATE, sink.openedAt);
+            assertTrue(sink.closed);
+            assertEquals(500, sink.sequence.size());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(i, (int) sink.sequence.get(i));
+            }
+            // Only pooled blocks, never copies
+            assertTrue(sink.blocks.size() <= 20);
+        }
+        assertEquals(first.blocks, second.blocks);
+        assertEquals("Every reference released", 20, pool.available());
+    }
+
+    @Test
+    public void dropOldestKeepsTheProducerAndTheNewestBlocksMoving() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(8, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink slow = new RecordingSink(2_000_000L);
+        CaptureHub.Subscription subscription = hub.subscribe("slow", CaptureHub.Policy.DROP_OLDEST, 4, slow);
+
+        publish(hub, pool, 400, 50_000L);
+        hub.close();
+        assertTrue(subscription.awaitClosed(2, TimeUnit.SECONDS));
+
+        // The publisher ran ahead of the 2 ms sink instead of waiting for it
+        assertTrue(subscription.getDroppedBlocks() > 0);
+        assertEquals(400, subscription.getDeliveredBlocks() + subscription.getDroppedBlocks());
+        assertEquals(399, (int) slow.sequence.get(slow.sequence.size() - 1));
+        for (int i = 1; i < slow.sequence.size(); i++) {
+            assertTrue(slow.sequence.get(i) > slow.sequence.get(i - 1));
+        }
+        assertEquals(8, pool.available());
+    }
+
+    @Test
+    public void blockLosesNothingBehindASlowSubscriber() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(6, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink slow = new RecordingSink(200_000L);
+        RecordingSink fast = new RecordingSink(0);
+        CaptureHub.Subscription slowSubscription = hub.subscribe("slow", CaptureHub.Policy.BLOCK, 4, slow);
+        CaptureHub.Subscription fastSubscription = hub.subscribe("fast", CaptureHub.Policy.LATEST, 8, fast);
+
+        publish(hub, pool, 300, 0);
+        hub.close();
+        assertTrue(slowSubscription.awaitClosed(2, TimeUnit.SECONDS));
+        assertTrue(fastSubscription.awaitClosed(2, TimeUnit.SECONDS));
+
+        assertEquals(300, slow.sequence.size());
+        assertEquals(0, slowSubscription.getDroppedBlocks());
+        for (int i = 0; i < 300; i++) {
+            assertEquals(i, (int) slow.sequence.get(i));
+        }
+        // The latest-only subscriber ends on the last block whatever it skipped
+        assertEquals(299, (int) fast.sequence.get(fast.sequence.size() - 1));
+        assertEquals(6, pool.available());
+    }
+
+    @Test
+    public void latestOnlyHoldsOneBlock() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(4, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink display = new RecordingSink(1_000_000L);
+        CaptureHub.Subscription subscription = hub.subscribe("display", CaptureHub.Policy.LATEST, 16, display);
+
+        // With a depth of 16 the pool of 4 would run dry
+        publish(hub, pool, 200, 20_000L);
+        assertTrue(subscription.getBacklog() <= 1);
+        hub.close();
+        assertTrue(subscription.awaitClosed(2, TimeUnit.SECONDS));
+
+        assertTrue(subscription.getDroppedBlocks() > 0);
+        assertEquals(199, (int) display.sequence.get(display.sequence.size() - 1));
+        assertEquals(4, pool.available());
+    }
+
+    @Test
+    public void subscriberClosedMidStreamReleasesEverything() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(12, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink stays = new RecordingSink(0);
+        RecordingSink leaves = new RecordingSink(100_000L);
+        CaptureHub.Subscription staying = hub.subscribe("stays", CaptureHub.Policy.BLOCK, 4, stays);
+        CaptureHub.Subscription leaving = hub.subscribe("leaves", CaptureHub.Policy.BLOCK, 4, leaves);
+
+        Thread closer = new Thread(() -> {
+            sleepNanos(5_000_000L);
+            leaving.close();
+        });
+        closer.start();
+        publish(hub, pool, 2000, 10_000L);
+        closer.join();
+
+        assertTrue(leaving.awaitClosed(2, TimeUnit.SECONDS));
+        assertTrue(leaves.closed);
+        assertTrue(leaves.sequence.size() < 2000);
+        assertEquals(1, hub.getSubscriberCount());
+        hub.close();
+        assertTrue(staying.awaitClosed(2, TimeUnit.SECONDS));
+        assertEquals(2000, stays.sequence.size());
+        assertEquals(12, pool.available());
+    }
+
+    @Test
+    public void failingSinkClosesOnlyItsOwnSubscription() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(12, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink healthy = new RecordingSink(0);
+        CaptureHub.Subscription failing = hub.subscribe("failing", CaptureHub.Policy.BLOCK, 4, block -> {
+            if (block.get(0) == 10) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+        CaptureHub.Subscription ok = hub.subscribe("healthy", CaptureHub.Policy.BLOCK, 4, healthy);
+
+        publish(hub, pool, 100, 0);
+        hub.close();
+
+        assertTrue(failing.awaitClosed(2, TimeUnit.SECONDS));
+        assertTrue(ok.awaitClosed(2, TimeUnit.SECONDS));
+        assertEquals("disk full", failing.getError().getMessage());
+        assertEquals(10, failing.getDeliveredBlocks());
+        assertEquals(100, healthy.sequence.size());
+        assertEquals(12, pool.available());
+    }
+
+    @Test
+    public void closingASnapshotLeavesLaterSubscribersRunning() throws InterruptedException {
+        AudioBlockPool pool = new AudioBlockPool(12, BLOCK);
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink early = new RecordingSink(0);
+        RecordingSink late = new RecordingSink(0);
+        CaptureHub.Subscription first = hub.subscribe("early", CaptureHub.Policy.BLOCK, 4, early);
+        CaptureHub.Subscription[] snapshot = hub.getSubscriptions();
+        CaptureHub.Subscription second = hub.subscribe("late", CaptureHub.Policy.BLOCK, 4, late);
+
+        assertArrayEquals(new CaptureHub.Subscription[] {first}, snapshot);
+        for (CaptureHub.Subscription subscription : snapshot) {
+            subscription.close();
+        }
+        assertTrue(first.awaitClosed(2, TimeUnit.SECONDS));
+        publish(hub, pool, 10, 0);
+
+        assertFalse(second.isClosed());
+        assertEquals(1, hub.getSubscriberCount());
+        hub.close();
+        assertTrue(second.awaitClosed(2, TimeUnit.SECONDS));
+        assertEquals(0, early.sequence.size());
+        assertEquals(10, late.sequence.size());
+    }
+
+    @Test(timeout = 10_000)
+    public void waitingForThePublisherIsAnUnderrunAndConsumesNothing() throws InterruptedException {
+        CaptureHub hub = new CaptureHub(SAMPLE_RATE);
+        RecordingSink sink = new RecordingSink(0);
+        CaptureHub.Subscription subscription = hub.subscribe("idle", CaptureHub.Policy.BLOCK, 4, sink);
+
+        while (subscription.getUnderruns() == 0) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, subscription.getDeliveredBlocks());
+        assertEquals(0, subscription.getBacklog());
+        assertEquals(0, subscription.getDroppedSamples());
+        hub.close();
+        assertTrue(subscription.awaitClosed(2, TimeUnit.SECONDS));
+        assertTrue(sink.sequence.isEmpty());
+    }
+
+    // Fills the next capture block with a running 16-bit sample sequence
+    private static AudioBlock sequenceBlock(AudioBlockPool pool, long firstSample) {
+        AudioBlock block = pool.acquire();
+        assertNotNull("Pool exhausted at sample " + firstSample, block);
+        short[] buffer = block.buffer();
+        for (int i = 0; i < CAPTURE_BLOCK; i++) {
+            buffer[i] = (short) (firstSample + i);
+        }
+        block.setLength(CAPTURE_BLOCK);
+        return block;
+    }
+
+    /**
+     * Five minutes of 44.1 kHz audio, unpaced, through a lossless subscription about a second
+     * deep: nothing may be lost, reordered or duplicated. The timeout bounds it well under real
+     * time.
+     */
+    @Test(timeout = 120_000)
+    public void losslessStressFasterThanRealTime() throws Exception {
+        long totalBlocks = CAPTURE_RATE * 60L * 5 / CAPTURE_BLOCK;
+        int depth = 32;
+        AudioBlockPool pool = new AudioBlockPool(depth + 2, CAPTURE_BLOCK);
+        CaptureHub hub = new CaptureHub(CAPTURE_RATE);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] received = {0};
+        CaptureHub.Subscription subscription = hub.subscribe("lossless", CaptureHub.Policy.BLOCK, depth, block -> {
+            for (int i = 0; i < block.length(); i++) {
+                short expected = (short) (received[0] + i);
+                if (block.get(i) != expected && failure.get() == null) {
+                    failure.set(new AssertionError("Expected " + expected + " at sample " + (received[0] + i)
+                            + " but got " + block.get(i)));
+                }
+            }
+            received[0] += block.length();
+        });
+
+        hub.open(CAPTURE_RATE);
+        for (long b = 0; b < totalBlocks && failure.get() == null; b++) {
+            AudioBlock block = sequenceBlock(pool, b * CAPTURE_BLOCK);
+            hub.accept(block);
+            block.release();
+        }
+        hub.close();
+        assertTrue(subscription.awaitClosed(10, TimeUnit.SECONDS));
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertEquals(totalBlocks * CAPTURE_BLOCK, received[0]);
+        assertEquals(totalBlocks, subscription.getDeliveredBlocks());
+        assertEquals(0, subscription.getDroppedBlocks());
+        assertEquals(0, subscription.getDroppedSamples());
+        assertEquals(depth + 2, pool.available());
+    }
+
+    /**
+     * A sink that stalls now and then behind DROP_OLDEST, for three minutes of audio published
+     * at 40x real time: every block it gets must be whole and untouched by buffer reuse, blocks
+     * must move strictly forward, and every sample must be accounted for as delivered or
+     * dropped. Block order is checked against the publisher's own count, so a long stall on a
+     * loaded machine cannot make the 16-bit sample sequence wrap ambiguously.
+     */
+    @Test(timeout = 120_000)
+    public void dropOldestStressWithStallingConsumer() throws Exception {
+        long totalBlocks = CAPTURE_RATE * 60L * 3 / CAPTURE_BLOCK;
+        int depth = 8;
+        AudioBlockPool pool = new AudioBlockPool(depth + 2, CAPTURE_BLOCK);
+        CaptureHub hub = new CaptureHub(CAPTURE_RATE);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Sequence number of the block currently in each pooled buffer
+        Map<AudioBlock, Long> sequenceOf = new ConcurrentHashMap<>();
+        long[] deliveredSamples = {0};
+        long[] last = {-1};
+        AtomicLong published = new AtomicLong();
+        CaptureHub.Subscription subscription = hub.subscribe("stalling", CaptureHub.Policy.DROP_OLDEST, depth,
+                block -> {
+                    long sequence = sequenceOf.get(block);
+                    for (int i = 1; i < block.length(); i++) {
+                        if ((short) (block.get(i - 1) + 1) != block.get(i) && failure.get() == null) {
+                            failure.set(new AssertionError("Torn block " + sequence + " at index " + i));
+                        }
+                    }
+                    if (block.get(0) != (short) (sequence * CAPTURE_BLOCK) && failure.get() == null) {
+                        failure.set(new AssertionError("Block " + sequence + " was overwritten"));
+                    }
+                    if (sequence <= last[0] && failure.get() == null) {
+                        failure.set(new AssertionError("Block moved backwards: " + last[0] + " -> " + sequence));
+                    }
+                    last[0] = sequence;
+                    deliveredSamples[0] += block.length();
+                    // Stall until more blocks have been published than the queue holds, however
+                    // the scheduler treats the publisher, so every stall forces drops
+                    if (sequence % 64 == 63) {
+                        long until = Math.min(sequence + depth + 4, totalBlocks);
+                        while (published.get() < until && failure.get() == null) {
+                            LockSupport.parkNanos(1_000_000L);
+                        }
+                    }
+                });
+
+        hub.open(CAPTURE_RATE);
+        long blockNanos = CAPTURE_BLOCK * 1_000_000_000L / CAPTURE_RATE / 40;
+        long deadline = System.nanoTime();
+        for (long b = 0; b < totalBlocks && failure.get() == null; b++) {
+            deadline += blockNanos;
+            LockSupport.parkNanos(deadline - System.nanoTime());
+            AudioBlock block = sequenceBlock(pool, b * CAPTURE_BLOCK);
+            sequenceOf.put(block, b);
+            hub.accept(block);
+            block.release();
+            published.set(b + 1);
+        }
+        hub.close();
+        assertTrue(subscription.awaitClosed(10, TimeUnit.SECONDS));
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(subscription.getDroppedBlocks() > 0);
+        assertEquals(totalBlocks, subscription.getDeliveredBlocks() + subscription.getDroppedBlocks());
+        assertEquals(totalBlocks * CAPTURE_BLOCK, deliveredSamples[0] + subscription.getDroppedSamples());
+        assertEquals(depth + 2, pool.available());
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+public class CaptureLoopTest {
+    private static final int BLOCK_SIZE = 3528; // a typical getMinBufferSize for 44.1 kHz mono
+
+    // Endless sine, written without allocating so it does not pollute the measurement
+    private static final class SineSource implements CaptureLoop.SampleSource {
+        private final short[] table = new short[441];
+        private int phase;
+
+        SineSource() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (short) (16000 * Math.sin(2 * Math.PI * i / table.length));
+            }
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = table[phase];
+                phase = phase + 1 == table.length ? 0 : phase + 1;
+            }
+            return length;
+        }
+    }
+
+    private static final class PowerConsumer implements CaptureLoop.BlockConsumer {
+        double lastPower;
+        long blocks;
+
+        @Override
+        public void onBlock(AudioBlock block) {
+            lastPower = block.power();
+            blocks++;
+        }
+    }
+
+    @Test
+    public void steadyStateCaptureDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeAllocationCounting(threads);
+
+        CaptureLoop loop = new CaptureLoop(new SineSource(), new AudioBlockPool(4, BLOCK_SIZE), BLOCK_SIZE);
+        PowerConsumer consumer = new PowerConsumer();
+        for (int i = 0; i < 20_000; i++) {
+            loop.readBlock(consumer);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int blocks = 10_000;
+        for (int i = 0; i < blocks; i++) {
+            loop.readBlock(consumer);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // Allow a little slack for the measurement call itself, far below one byte per block
+        assertTrue("Allocated " + allocated + " bytes over " + blocks + " blocks", allocated < blocks / 10);
+        assertEquals(0.5 * 16000 * 16000 / (32768.0 * 32768.0), consumer.lastPower, 1e-3);
+        assertEquals(0, loop.getDroppedBlocks());
+    }
+
+    @Test
+    public void retainedBlocksReturnToPoolOnRelease() {
+        AudioBlockPool pool = new AudioBlockPool(2, 16);
+        CaptureLoop loop = new CaptureLoop(new SineSource(), pool, 16);
+        AudioBlock[] held = new AudioBlock[2];
+        int[] count = {0};
+
+        loop.readBlock(block -> held[count[0]++] = block.retain());
+        loop.readBlock(block -> held[count[0]++] = block.retain());
+        assertEquals(0, pool.available());
+
+        // Every block is held, so the next read is drained and dropped rather than delivered
+        assertEquals(16, loop.readBlock(block -> fail("No pooled block should be available")));
+        assertEquals(1, loop.getDroppedBlocks());
+
+        held[0].release();
+        held[1].release();
+        assertEquals(2, pool.available());
+    }
+
+    @Test
+    public void failedReadsAreReportedAndNotDelivered() {
+        CaptureLoop loop = new CaptureLoop((buffer, offset, length) -> -3, new AudioBlockPool(1, 8), 8);
+
+        assertEquals(-3, loop.readBlock(block -> fail("Failed reads must not reach consumers")));
+        assertEquals(0, loop.getDroppedBlocks());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void blockRejectsReadsPastItsLength() {
+        CaptureLoop loop = new CaptureLoop((buffer, offset, length) -> 4, new AudioBlockPool(1, 8), 8);
+        loop.readBlock(block -> block.get(4));
+    }
+
+    @Test
+    public void pcmPowerMatchesNormalisedDoubleComputation() {
+        short[] samples = {32767, -32768, 1000, -1, 0, 12345};
+        double expected = 0;
+        for (short s : samples) {
+            double x = s / 32768.0;
+            expected += x * x;
+        }
+        expected /= samples.length;
+
+        assertEquals(expected, PcmMath.power(samples, 0, samples.length), 1e-15);
+        assertEquals((32767 + 32768 + 1000 + 1 + 12345) / 6.0, PcmMath.meanAbs(samples, 0, samples.length), 1e-12);
+    }
+
+    private static void assumeAllocationCounting(com.sun.management.ThreadMXBean threads) {
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+}
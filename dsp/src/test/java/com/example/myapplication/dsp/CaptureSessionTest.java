@@ -0,0 +1,234 @@
+package com.example.myapplication.dsp;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CaptureSessionTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    private CaptureSession session;
+
+    // Paced like a real device: each read blocks for the duration of the samples it returns
+    private static final class FakeInput implements AudioInput {
+        final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        volatile boolean running;
+        volatile boolean released;
+        volatile boolean misuse;
+
+        @Override
+        public int getSampleRate() {
+            return SAMPLE_RATE;
+        }
+
+        @Override
+        public void start() {
+            threads.add(Thread.currentThread());
+            events.add("start");
+            running = true;
+        }
+
+        @Override
+        public void stop() {
+            threads.add(Thread.currentThread());
+            events.add("stop");
+            running = false;
+        }
+
+        @Override
+        public void release() {
+            threads.add(Thread.currentThread());
+            events.add("release");
+            released = true;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            threads.add(Thread.currentThread());
+            if (!running || released) {
+                misuse = true;
+                return -3;
+            }
+            try {
+                Thread.sleep(Math.max(1, 1000L * length / SAMPLE_RATE));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return length;
+        }
+    }
+
+    // Reads blocks through a graph until maxSamples, or forever if maxSamples < 0
+    private static final class GraphTask implements CaptureSession.Task {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final long maxSamples;
+        ProcessingGraph graph;
+        long samples;
+
+        GraphTask(long maxSamples) {
+            this.maxSamples = maxSamples;
+        }
+
+        @Override
+        public void onStart(AudioInput input) {
+            graph = new ProcessingGraph(input, 160, block -> samples += block.length());
+            started.countDown();
+        }
+
+        @Override
+        public boolean step() {
+            graph.step();
+            return maxSamples < 0 || samples < maxSamples;
+        }
+
+        @Override
+        public void onFinish() {
+            graph.close();
+            finished.countDown();
+        }
+    }
+
+    @After
+    public void closeSession() throws InterruptedException {
+        if (session != null) {
+            session.close();
+            assertTrue(session.awaitClosed(2, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void tasksShareOneAudioThreadAndOneWarmInput() throws InterruptedException {
+        FakeInput input = new FakeInput();
+        session = new CaptureSession(input);
+
+        GraphTask baseline = new GraphTask(1600);
+        session.start(baseline);
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+        GraphTask measurement = new GraphTask(3200);
+        session.start(measurement);
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+
+        assertEquals(1600, baseline.samples);
+        assertEquals(3200, measurement.samples);
+        assertEquals(CaptureSession.State.IDLE, session.getState());
+        assertEquals(List.of("start", "stop", "start", "stop"), input.events);
+        assertEquals(1, input.threads.stream().distinct().count());
+        assertNotSame(Thread.currentThread(), input.threads.get(0));
+        assertFalse(input.misuse);
+        assertNull(session.getLastFailure());
+    }
+
+    @Test
+    public void stopEndsAnOpenEndedTaskWithoutTouchingTheInputFromOutside() throws InterruptedException {
+        FakeInput input = new FakeInput();
+        session = new CaptureSession(input);
+        GraphTask recording = new GraphTask(-1);
+
+        session.start(recording);
+        assertTrue(recording.started.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(CaptureSession.State.RUNNING, session.getState());
+        session.stop();
+
+        assertTrue(recording.finished.await(2, TimeUnit.SECONDS));
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+        assertTrue(recording.samples > 0);
+        assertFalse(input.running);
+        assertFalse(input.misuse);
+        assertEquals(1, input.threads.stream().distinct().count());
+    }
+
+    @Test
+    public void startWhileStoppingQueuesTheNextTask() throws InterruptedException {
+        FakeInput input = new FakeInput();
+        session = new CaptureSession(input);
+        GraphTask first = new GraphTask(-1);
+        session.start(first);
+        assertTrue(first.started.await(2, TimeUnit.SECONDS));
+
+        try {
+            session.start(new GraphTask(160));
+            fail("Started a second task while the first was running");
+        } catch (IllegalStateException expected) {
+            // One task at a time
+        }
+        long switchStart = System.nanoTime();
+        session.stop();
+        GraphTask second = new GraphTask(160);
+        session.start(second);
+        assertTrue(second.started.await(2, TimeUnit.SECONDS));
+        double switchMillis = (System.nanoTime() - switchStart) / 1e6;
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+
+        // At most one 10 ms read in progress when stop() was called
+        assertTrue("switch took " + switchMillis + " ms", switchMillis < 500);
+        assertEquals(160, second.samples);
+        assertEquals(List.of("start", "stop", "start", "stop"), input.events);
+    }
+
+    @Test
+    public void closeStopsTheTaskAndReleasesOnTheAudioThread() throws InterruptedException {
+        FakeInput input = new FakeInput();
+        session = new CaptureSession(input);
+        GraphTask recording = new GraphTask(-1);
+        session.start(recording);
+        assertTrue(recording.started.await(2, TimeUnit.SECONDS));
+
+        session.close();
+
+        assertTrue(session.awaitClosed(2, TimeUnit.SECONDS));
+        assertEquals(CaptureSession.State.CLOSED, session.getState());
+        assertEquals(List.of("start", "stop", "release"), input.events);
+        assertEquals(1, input.threads.stream().distinct().count());
+        assertEquals(0, recording.finished.getCount());
+        try {
+            session.start(new GraphTask(160));
+            fail("Started a task on a closed session");
+        } catch (IllegalStateException expected) {
+            // Closed for good
+        }
+    }
+
+    @Test
+    public void failingTaskIsFinishedAndTheSessionStaysUsable() throws InterruptedException {
+        FakeInput input = new FakeInput();
+        session = new CaptureSession(input);
+        CountDownLatch finished = new CountDownLatch(1);
+        List<RuntimeException> failures = new ArrayList<>();
+        session.start(new CaptureSession.Task() {
+            @Override
+            public boolean step() {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void onFailure(RuntimeException e) {
+                failures.add(e);
+            }
+
+            @Override
+            public void onFinish() {
+                finished.countDown();
+            }
+        });
+
+        assertTrue(finished.await(2, TimeUnit.SECONDS));
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+        assertEquals("boom", session.getLastFailure().getMessage());
+        assertEquals(List.of(session.getLastFailure()), failures);
+        GraphTask next = new GraphTask(320);
+        session.start(next);
+        assertTrue(session.awaitIdle(2, TimeUnit.SECONDS));
+        assertEquals(320, next.samples);
+        assertFalse(input.running);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FloatPcmReaderTest {
+
+    // Plays back fixed float chunks the way a non-blocking AudioRecord would
+    private static final class ScriptedDevice implements FloatPcmReader.ByteReader {
+        private final List<float[]> chunks = new ArrayList<>();
+        private final List<ByteBuffer> buffersSeen = new ArrayList<>();
+        private int next;
+
+        ScriptedDevice add(float... chunk) {
+            chunks.add(chunk);
+            return this;
+        }
+
+        @Override
+        public int read(ByteBuffer buffer, int sizeInBytes) {
+            buffersSeen.add(buffer);
+            if (next == chunks.size()) {
+                return 0;
+            }
+            float[] chunk = chunks.get(next++);
+            int samples = Math.min(chunk.length, sizeInBytes / Float.BYTES);
+            for (int i = 0; i < samples; i++) {
+                buffer.putFloat(i * Float.BYTES, chunk[i]);
+            }
+            return samples * Float.BYTES;
+        }
+    }
+
+    @Test
+    public void roundsToNearestSixteenBitValue() {
+        ScriptedDevice device = new ScriptedDevice()
+                .add(0f, 0.5f, -0.5f, 1f / 32768, -1f / 32768, 0.4f / 32768, 0.6f / 32768, 12345.4f / 32768);
+        FloatPcmReader reader = new FloatPcmReader(16, device);
+        short[] block = new short[10];
+
+        assertEquals(8, reader.read(block, 1, 10));
+        assertArrayEquals(new short[] {0, 0, 16384, -16384, 1, -1, 0, 1, 12345, 0}, block);
+        assertEquals(0, reader.getClippedSamples());
+    }
+
+    @Test
+    public void saturatesAndCountsSamplesBeyondFullScale() {
+        ScriptedDevice device = new ScriptedDevice().add(1.5f, 1f, 32767f / 32768, -1f, -2f, Float.NaN);
+        FloatPcmReader reader = new FloatPcmReader(8, device);
+        short[] block = new short[6];
+
+        assertEquals(6, reader.read(block, 0, 6));
+        assertArrayEquals(new short[] {32767, 32767, 32767, -32768, -32768, 0}, block);
+        // -1.0 maps exactly to -32768; +1.0 has no 16-bit value
+        assertEquals(3, reader.getClippedSamples());
+    }
+
+    @Test
+    public void passesEmptyReadsAndErrorsThrough() {
+        FloatPcmReader reader = new FloatPcmReader(8, (buffer, size) -> -3);
+        short[] block = {7, 7};
+        assertEquals(-3, reader.read(block, 0, 2));
+        assertArrayEquals(new short[] {7, 7}, block);
+
+        ScriptedDevice device = new ScriptedDevice().add(0.25f, 0.25f);
+        FloatPcmReader partial = new FloatPcmReader(8, device);
+        assertEquals(2, partial.read(block, 0, 2));
+        assertEquals(0, partial.read(block, 0, 2));
+        assertArrayEquals(new short[] {8192, 8192}, block);
+    }
+
+    @Test
+    public void readsIntoOneDirectBufferCappedAtItsCapacity() {
+        float[] chunk = new float[20];
+        ScriptedDevice device = new ScriptedDevice().add(chunk).add(chunk).add(chunk);
+        FloatPcmReader reader = new FloatPcmReader(12, device);
+        short[] block = new short[32];
+
+        assertEquals(12, reader.read(block, 0, 32));
+        assertEquals(12, reader.read(block, 0, 32));
+        assertEquals(5, reader.read(block, 0, 5));
+        assertEquals(3, device.buffersSeen.size());
+        for (ByteBuffer buffer : device.buffersSeen) {
+            assertSame(device.buffersSeen.get(0), buffer);
+            assertTrue(buffer.isDirect());
+        }
+    }
+}
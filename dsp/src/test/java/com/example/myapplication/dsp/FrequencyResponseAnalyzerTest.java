@@ -0,0 +1,195 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrequencyResponseAnalyzerTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int FRAME_SIZE = 4096;
+    private static final double AMPLITUDE = 0.5;
+
+    /**
+     * Speaker-room-microphone stand-in with a known transfer function: a delay, a gain, a
+     * second-order high-pass (RBJ cookbook), a static polynomial nonlinearity and white noise.
+     */
+    private static final class Loopback {
+        final int latency;
+        final double gain;
+        final double a2;
+        final double a3;
+        final double noiseRms;
+        final Random random;
+        // High-pass coefficients, normalised by a0
+        final double b0, b1, b2, c1, c2;
+        double x1, x2, y1, y2;
+
+        Loopback(int latency, double gain, double cutoffHz, double a2, double a3, double noiseRms, long seed) {
+            this.latency = latency;
+            this.gain = gain;
+            this.a2 = a2;
+            this.a3 = a3;
+            this.noiseRms = noiseRms;
+            this.random = new Random(seed);
+            double w0 = 2 * Math.PI * cutoffHz / SAMPLE_RATE;
+            double alpha = Math.sin(w0) / (2 / Math.sqrt(2));
+            double cos = Math.cos(w0);
+            double a0 = 1 + alpha;
+            b0 = (1 + cos) / 2 / a0;
+            b1 = -(1 + cos) / a0;
+            b2 = (1 + cos) / 2 / a0;
+            c1 = -2 * cos / a0;
+            c2 = (1 - alpha) / a0;
+        }
+
+        // |H| of gain and high-pass at the given frequency
+        double magnitude(double frequencyHz) {
+            double w = 2 * Math.PI * frequencyHz / SAMPLE_RATE;
+            double nr = b0 + b1 * Math.cos(w) + b2 * Math.cos(2 * w);
+            double ni = -b1 * Math.sin(w) - b2 * Math.sin(2 * w);
+            double dr = 1 + c1 * Math.cos(w) + c2 * Math.cos(2 * w);
+            double di = -c1 * Math.sin(w) - c2 * Math.sin(2 * w);
+            return gain * Math.sqrt((nr * nr + ni * ni) / (dr * dr + di * di));
+        }
+
+        short sample(double x) {
+            double y = b0 * x + b1 * x1 + b2 * x2 - c1 * y1 - c2 * y2;
+            x2 = x1;
+            x1 = x;
+            y2 = y1;
+            y1 = y;
+            double v = gain * y;
+            v = v + a2 * v * v + a3 * v * v * v + random.nextGaussian() * noiseRms;
+            return (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(v * PcmMath.FULL_SCALE)));
+        }
+
+        /** Noise-only lead, then the stimulus through the path, fed to the analyzer in uneven chunks. */
+        List<Integer> run(FrequencyResponseAnalyzer analyzer, SteppedSineStimulus stimulus, boolean muted) {
+            List<Integer> reported = new ArrayList<>();
+            analyzer.setListener(reported::add);
+            short[] lead = new short[SAMPLE_RATE / 2];
+            for (int i = 0; i < lead.length; i++) {
+                lead[i] = sample(0);
+            }
+            analyzer.learnNoise(lead, 0, lead.length);
+
+            stimulus.rewind();
+            short[] played = new short[(int) stimulus.getTotalSamples()];
+            stimulus.read(played, 0, played.length);
+            short[] captured = new short[latency + played.length + SAMPLE_RATE / 4];
+            for (int i = 0; i < captured.length; i++) {
+                int p = i - latency;
+                double x = !muted && p >= 0 && p < played.length ? played[p] / PcmMath.FULL_SCALE : 0;
+                captured[i] = sample(x);
+            }
+            Random chunks = new Random(7);
+            for (int off = 0; off < captured.length; ) {
+                int length = Math.min(captured.length - off, 1 + chunks.nextInt(3000));
+                analyzer.process(captured, off, length);
+                off += length;
+            }
+            analyzer.finish();
+            return reported;
+        }
+    }
+
+    private static SteppedSineStimulus stimulus() {
+        return new SteppedSineStimulus(SAMPLE_RATE, FRAME_SIZE, SteppedSineStimulus.ELECTROLARYNX_BAND_TONES_HZ, 4, AMPLITUDE);
+    }
+
+    @Test
+    public void stimulusTonesSitExactlyOnBins() {
+        SteppedSineStimulus stimulus = stimulus();
+        assertEquals(18, stimulus.getToneCount());
+        assertEquals(18L * 4 * FRAME_SIZE, stimulus.getTotalSamples());
+        short[] samples = new short[(int) stimulus.getTotalSamples()];
+        assertEquals(samples.length, stimulus.read(samples, 0, samples.length + 10));
+        assertTrue(stimulus.isFinished());
+
+        // Any frame inside a step holds its tone in one bin, whatever the offset
+        int step = 7;
+        int offset = step * 4 * FRAME_SIZE + 1234;
+        FrequencyResponseAnalyzer analyzer = new FrequencyResponseAnalyzer(stimulus);
+        analyzer.learnNoise(samples, offset, FRAME_SIZE);
+        assertEquals(10 * Math.log10(stimulus.getTonePower()), analyzer.getNoiseFloorDb(step), 0.001);
+        assertTrue(analyzer.getNoiseFloorDb(step + 1) < -150);
+        assertEquals(stimulus.getToneFrequencyHz(step), 400, SAMPLE_RATE / (2.0 * FRAME_SIZE));
+    }
+
+    @Test
+    public void measuresAKnownLinearPathWhateverTheLatency() {
+        double[][] responses = new double[2][];
+        int[] latencies = {1234, 9001};
+        for (int run = 0; run < 2; run++) {
+            SteppedSineStimulus stimulus = stimulus();
+            FrequencyResponseAnalyzer analyzer = new FrequencyResponseAnalyzer(stimulus);
+            Loopback loopback = new Loopback(latencies[run], 0.5, 150, 0, 0, 1e-4, run);
+            List<Integer> reported = loopback.run(analyzer, stimulus, false);
+
+            // Every tone measured, reported once, in order
+            assertEquals(stimulus.getToneCount(), reported.size());
+            responses[run] = new double[stimulus.getToneCount()];
+            for (int t = 0; t < stimulus.getToneCount(); t++) {
+                assertEquals(t, (int) reported.get(t));
+                assertTrue(analyzer.getMeasuredFrames(t) >= 1);
+                double expected = 20 * Math.log10(loopback.magnitude(stimulus.getToneFrequencyHz(t)));
+                assertEquals("tone " + stimulus.getToneFrequencyHz(t), expected, analyzer.getResponseDb(t), 0.05);
+                assertTrue(analyzer.getThdPercent(t) < 0.1);
+                responses[run][t] = analyzer.getResponseDb(t);
+            }
+            // -80 dBFS of white noise, and its share in one bin of 2049
+            assertEquals(-80, analyzer.getNoiseFloorDb(), 0.5);
+            assertEquals(-80 - 10 * Math.log10(FRAME_SIZE / 2.0), analyzer.getNoiseFloorDb(11), 6);
+            int reference = analyzer.getNearestTone(1000);
+            assertEquals(0, analyzer.getRelativeResponseDb(reference, reference), 0);
+            assertEquals(analyzer.getLevelDb(reference) - analyzer.getNoiseFloorDb(reference),
+                    analyzer.getSnrDb(reference), 1e-9);
+        }
+        assertArrayEquals(responses[0], responses[1], 0.05);
+    }
+
+    @Test
+    public void harmonicDistortionMatchesThePolynomial() {
+        SteppedSineStimulus stimulus = stimulus();
+        FrequencyResponseAnalyzer analyzer = new FrequencyResponseAnalyzer(stimulus);
+        double a2 = 0.2;
+        double a3 = 0.4;
+        Loopback loopback = new Loopback(3000, 0.5, 150, a2, a3, 1e-5, 3);
+        loopback.run(analyzer, stimulus, false);
+
+        for (int t = 0; t < stimulus.getToneCount(); t++) {
+            // Peak amplitude B at the nonlinearity: a2 B^2 / 2 at 2f, a3 B^3 / 4 at 3f
+            double b = AMPLITUDE * Short.MAX_VALUE / PcmMath.FULL_SCALE * loopback.magnitude(stimulus.getToneFrequencyHz(t));
+            double second = a2 * b * b / 2;
+            double third = a3 * b * b * b / 4;
+            double expected = 100 * Math.hypot(second, third) / (b + 0.75 * a3 * b * b * b);
+            assertEquals("tone " + stimulus.getToneFrequencyHz(t), expected, analyzer.getThdPercent(t),
+                    0.03 * expected + 0.01);
+        }
+    }
+
+    @Test
+    public void silentPathMeasuresNothing() {
+        SteppedSineStimulus stimulus = stimulus();
+        FrequencyResponseAnalyzer analyzer = new FrequencyResponseAnalyzer(stimulus);
+        Loopback loopback = new Loopback(0, 0.5, 150, 0, 0, 1e-3, 4);
+        List<Integer> reported = loopback.run(analyzer, stimulus, true);
+
+        assertTrue(reported.isEmpty());
+        for (int t = 0; t < stimulus.getToneCount(); t++) {
+            assertEquals(0, analyzer.getMeasuredFrames(t));
+            assertTrue(Double.isNaN(analyzer.getResponseDb(t)));
+            assertTrue(Double.isNaN(analyzer.getThdPercent(t)));
+        }
+        assertEquals(-60, analyzer.getNoiseFloorDb(), 0.5);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tonesMustFallInDistinctBins() {
+        new SteppedSineStimulus(SAMPLE_RATE, 1024, new double[] {100, 105}, 4, 0.5);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void bucketsResolveValuesWithinThreePercent() {
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (long) Math.exp(random.nextDouble() * Math.log(1L << 36));
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(index >= 0 && index < LatencyHistogram.BUCKET_COUNT);
+            long highest = LatencyHistogram.highestValueAt(index);
+            assertTrue(value + " -> " + highest, highest >= value);
+            assertTrue(value + " -> " + highest, highest - value <= Math.max(0, value / 32));
+        }
+        // Small values are exact
+        for (long value = 0; value < 64; value++) {
+            assertEquals(value, LatencyHistogram.highestValueAt(LatencyHistogram.indexOf(value)));
+        }
+    }
+
+    @Test
+    public void percentilesOfAKnownDistribution() {
+        LatencyHistogram histogram = new LatencyHistogram("stage");
+        // 1..10000 us, one each
+        for (int us = 1; us <= 10_000; us++) {
+            histogram.record(us * 1000L);
+        }
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_002, snapshot.getCount());
+        assertEquals(5_000_000, snapshot.getPercentileNanos(50), 5_000_000 * 0.04);
+        assertEquals(9_900_000, snapshot.getPercentileNanos(99), 9_900_000 * 0.04);
+        // Out-of-range values are clamped, not lost
+        assertEquals((1L << 36) - 1, snapshot.getMaxNanos());
+        assertEquals(0, snapshot.getPercentileNanos(0.001));
+
+        histogram.reset();
+        assertEquals(0, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getPercentileNanos(50));
+    }
+
+    @Test
+    public void concurrentWritersLoseNothing() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        LatencyHistogram histogram = registry.histogram("shared");
+        MetricsRegistry.Counter counter = registry.counter("events");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int seed = t;
+            threads[t] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 50_000; i++) {
+                    histogram.record(random.nextInt(1_000_000));
+                    counter.increment();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        MetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(200_000, snapshot.getValue("events"));
+        assertEquals(200_000, snapshot.getLatency("shared").getCount());
+        assertSame(histogram, registry.histogram("shared"));
+    }
+
+    @Test
+    public void snapshotSamplesGaugesAndDescribesEverything() {
+        MetricsRegistry registry = new MetricsRegistry();
+        long[] backlog = {42};
+        registry.gauge("ring.backlog", () -> backlog[0]);
+        registry.counter("capture.readFailures").add(3);
+        registry.histogram("capture.read").record(20_000);
+
+        MetricsRegistry.Snapshot first = registry.snapshot();
+        backlog[0] = 7;
+        MetricsRegistry.Snapshot second = registry.snapshot();
+        registry.removeGauge("ring.backlog");
+
+        assertEquals(42, first.getValue("ring.backlog"));
+        assertEquals(7, second.getValue("ring.backlog"));
+        assertEquals(0, registry.snapshot().getValue("ring.backlog"));
+        assertNull(second.getLatency("missing"));
+        String text = second.describe();
+        assertTrue(text, text.contains("capture.read") && text.contains("capture.readFailures") && text.contains("ring.backlog"));
+    }
+
+    @Test
+    public void timedSinkRecordsEveryBlock() {
+        LatencyHistogram histogram = new LatencyHistogram("sink");
+        int[] seen = {0};
+        ProcessingGraph graph = new ProcessingGraph(new SyntheticSource(16000, 1).tone(440, 0.5), 1600,
+                AudioSink.timed(histogram, block -> seen[0] += block.length()));
+        graph.run();
+        graph.close();
+
+        assertEquals(16000, seen[0]);
+        assertEquals(10, histogram.getCount());
+    }
+}
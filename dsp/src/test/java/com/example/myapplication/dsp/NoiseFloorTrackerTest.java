@@ -0,0 +1,96 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NoiseFloorTrackerTest {
+    private static final double FRAME_RATE = 30;
+    private static final double BIAS = 1.25;
+
+    private static NoiseFloorTracker newTracker() {
+        // Frames are already 250 ms window powers in the app, so no extra smoothing
+        return new NoiseFloorTracker(FRAME_RATE, 3.0, 6, 0, BIAS);
+    }
+
+    private static double db(double power) {
+        return 10 * Math.log10(power);
+    }
+
+    // Window powers of stationary noise fluctuate a little around their mean
+    private static double noiseFrame(Random random, double meanPower) {
+        return meanPower * (1 + 0.1 * random.nextGaussian());
+    }
+
+    @Test
+    public void noEstimateUntilFirstSubWindowWithoutSeed() {
+        NoiseFloorTracker tracker = newTracker();
+        for (int i = 0; i < tracker.getFramesPerSubWindow() - 1; i++) {
+            tracker.update(1e-4);
+        }
+        assertFalse(tracker.hasEstimate());
+
+        tracker.update(1e-4);
+        assertTrue(tracker.hasEstimate());
+        assertEquals(1e-4 * BIAS, tracker.getNoiseFloor(), 1e-9);
+    }
+
+    @Test
+    public void seedGivesImmediateEstimate() {
+        NoiseFloorTracker tracker = newTracker();
+        tracker.seed(2e-5);
+
+        assertTrue(tracker.hasEstimate());
+        assertEquals(2e-5, tracker.update(1e-2), 1e-12);
+    }
+
+    @Test
+    public void buzzBurstsDoNotLiftTheFloor() {
+        Random random = new Random(5);
+        NoiseFloorTracker tracker = newTracker();
+        double noise = 1e-5;
+
+        for (int frame = 0; frame < FRAME_RATE * 30; frame++) {
+            // 1.5 s of electrolarynx speech, then 0.5 s of pause
+            boolean speaking = frame % 60 < 45;
+            double power = noiseFrame(random, noise) + (speaking ? 1e-2 : 0);
+            tracker.update(power);
+        }
+
+        assertEquals(db(noise), db(tracker.getNoiseFloor()), 1.0);
+    }
+
+    @Test
+    public void followsRoomNoiseChangesInBothDirections() {
+        Random random = new Random(11);
+        NoiseFloorTracker tracker = newTracker();
+
+        for (int frame = 0; frame < FRAME_RATE * 5; frame++) {
+            tracker.update(noiseFrame(random, 1e-6));
+        }
+        assertEquals(-60, db(tracker.getNoiseFloor()), 1.0);
+
+        // HVAC turns on: the floor rises once the quiet frames leave the search window
+        for (int frame = 0; frame < FRAME_RATE * 4; frame++) {
+            tracker.update(noiseFrame(random, 1e-4));
+        }
+        assertEquals(-40, db(tracker.getNoiseFloor()), 1.0);
+
+        // And falls back almost immediately when it turns off again
+        for (int frame = 0; frame < FRAME_RATE; frame++) {
+            tracker.update(noiseFrame(random, 1e-6));
+        }
+        assertEquals(-60, db(tracker.getNoiseFloor()), 1.5);
+    }
+
+    @Test
+    public void silentInputKeepsFloorPositive() {
+        NoiseFloorTracker tracker = newTracker();
+        for (int frame = 0; frame < FRAME_RATE * 2; frame++) {
+            tracker.update(0);
+        }
+        assertTrue(tracker.getNoiseFloor() > 0);
+    }
+}
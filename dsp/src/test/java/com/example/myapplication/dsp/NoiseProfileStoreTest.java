@@ -0,0 +1,89 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NoiseProfileStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static NoiseProfile profile(double power, int bins) {
+        double[] spectrum = new double[bins];
+        for (int k = 0; k < bins; k++) {
+            spectrum[k] = power / (k + 1);
+        }
+        return new NoiseProfile(14700, power, spectrum);
+    }
+
+    @Test
+    public void roundTripsProfileAndLabels() throws IOException {
+        NoiseProfileStore store = new NoiseProfileStore(folder.getRoot());
+        NoiseProfile saved = profile(42.5, 513);
+
+        store.save("Pixel 7", "Lab 2 / bench", saved, 1234L);
+        NoiseProfileStore.Entry entry = store.load("Pixel 7", "Lab 2 / bench");
+
+        assertNotNull(entry);
+        assertEquals("Pixel 7", entry.getDevice());
+        assertEquals("Lab 2 / bench", entry.getRoom());
+        assertEquals(1234L, entry.getSavedAtMillis());
+        assertEquals(14700, entry.getProfile().getSampleRate());
+        assertEquals(42.5, entry.getProfile().getNoisePower(), 0);
+        assertEquals(1024, entry.getProfile().getFftSize());
+        assertArrayEquals(saved.getSpectrum(), entry.getProfile().getSpectrum(), 0);
+        assertNull(store.load("Pixel 7", "Kitchen"));
+    }
+
+    @Test
+    public void savingTheSameLabelsReplacesTheProfile() throws IOException {
+        NoiseProfileStore store = new NoiseProfileStore(folder.getRoot());
+        store.save("phone", "room", profile(1, 0), 1);
+        store.save("phone", "room", profile(2, 0), 2);
+
+        assertEquals(1, store.list().size());
+        assertEquals(2, store.load("phone", "room").getProfile().getNoisePower(), 0);
+        assertFalse(store.load("phone", "room").getProfile().hasSpectrum());
+    }
+
+    @Test
+    public void latestPicksTheNewestProfileForTheDevice() throws IOException {
+        NoiseProfileStore store = new NoiseProfileStore(folder.getRoot());
+        store.save("phone", "office", profile(1, 4), 100);
+        store.save("phone", "car", profile(2, 4), 300);
+        store.save("tablet", "office", profile(3, 4), 500);
+        store.save("phone", "lab", profile(4, 4), 200);
+
+        List<NoiseProfileStore.Entry> all = store.list();
+        assertEquals(4, all.size());
+        assertEquals(500, all.get(0).getSavedAtMillis());
+        assertEquals("car", store.latest("phone").getRoom());
+        assertNull(store.latest("watch"));
+    }
+
+    @Test
+    public void damagedFilesAreRejectedAndSkipped() throws IOException {
+        NoiseProfileStore store = new NoiseProfileStore(folder.getRoot());
+        store.save("phone", "room", profile(1, 8), 1);
+        File truncated = store.save("phone", "other", profile(1, 8), 2).getFile();
+        byte[] bytes = Files.readAllBytes(truncated.toPath());
+        Files.write(truncated.toPath(), Arrays.copyOf(bytes, bytes.length - 20));
+        Files.write(new File(folder.getRoot(), "notes" + NoiseProfileStore.EXTENSION).toPath(), "hello".getBytes());
+
+        try {
+            NoiseProfileStore.load(truncated);
+            fail("Truncated profile loaded");
+        } catch (IOException expected) {
+            // Reported, not silently zero-filled
+        }
+        assertEquals(1, store.list().size());
+    }
+}
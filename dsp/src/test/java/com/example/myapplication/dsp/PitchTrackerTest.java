@@ -0,0 +1,142 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PitchTrackerTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    /**
+     * Electrolarynx-like buzz: a harmonic series with the second and third harmonics louder
+     * than the fundamental, which is what fools a biggest-bin estimate.
+     */
+    private static short[] buzz(double f0, double seconds, double noiseLevel, long seed) {
+        Random random = new Random(seed);
+        int length = (int) (seconds * SAMPLE_RATE);
+        short[] samples = new short[length];
+        double[] amplitudes = {0.3, 1.0, 0.8, 0.5, 0.4, 0.3, 0.2, 0.15, 0.1, 0.08};
+        for (int i = 0; i < length; i++) {
+            double value = 0;
+            for (int h = 0; h < amplitudes.length; h++) {
+                value += amplitudes[h] * Math.sin(2 * Math.PI * f0 * (h + 1) * i / SAMPLE_RATE);
+            }
+            value = value * 4000 + random.nextGaussian() * noiseLevel;
+            samples[i] = (short) Math.max(-32768, Math.min(32767, Math.round(value)));
+        }
+        return samples;
+    }
+
+    private static final class Estimates implements PitchTracker.Listener {
+        final List<Double> f0 = new ArrayList<>();
+        final List<Double> confidence = new ArrayList<>();
+
+        @Override
+        public void onPitch(double f0Hz, double conf) {
+            f0.add(f0Hz);
+            confidence.add(conf);
+        }
+
+        double medianF0() {
+            double[] values = f0.stream().filter(v -> !Double.isNaN(v)).mapToDouble(Double::doubleValue).toArray();
+            Arrays.sort(values);
+            return values.length == 0 ? Double.NaN : values[values.length / 2];
+        }
+
+        double minConfidence() {
+            return confidence.stream().mapToDouble(Double::doubleValue).min().orElse(0);
+        }
+    }
+
+    private static Estimates track(short[] samples, int blockSize) {
+        PitchTracker tracker = new PitchTracker(SAMPLE_RATE, 60, 400, 0.01);
+        Estimates estimates = new Estimates();
+        for (int off = 0; off < samples.length; off += blockSize) {
+            tracker.process(samples, off, Math.min(blockSize, samples.length - off), estimates);
+        }
+        return estimates;
+    }
+
+    @Test
+    public void findsFundamentalOfHarmonicBuzz() {
+        for (double f0 : new double[]{70, 90, 110, 150, 200, 250}) {
+            Estimates estimates = track(buzz(f0, 1.0, 50, (long) f0), 3528);
+
+            for (double estimate : estimates.f0) {
+                assertEquals("f0 " + f0, f0, estimate, f0 * 0.01);
+            }
+            assertTrue("confidence for " + f0, estimates.minConfidence() > 0.8);
+        }
+    }
+
+    @Test
+    public void survivesModerateNoise() {
+        // Roughly 10 dB SNR
+        Estimates estimates = track(buzz(120, 1.0, 2500, 3), 1024);
+        assertEquals(120, estimates.medianF0(), 1.5);
+    }
+
+    @Test
+    public void emitsOneEstimatePerHop() {
+        PitchTracker tracker = new PitchTracker(SAMPLE_RATE, 60, 400, 0.01);
+        short[] samples = buzz(100, 2.0, 0, 1);
+        Estimates estimates = new Estimates();
+        tracker.process(samples, 0, samples.length, estimates);
+
+        int expected = (samples.length - tracker.getFrameLength()) / tracker.getHopSize() + 1;
+        assertEquals(441, tracker.getHopSize());
+        assertEquals(expected, estimates.f0.size());
+    }
+
+    @Test
+    public void resultsDoNotDependOnBlockSize() {
+        short[] samples = buzz(133, 0.5, 300, 8);
+        List<Double> reference = track(samples, samples.length).f0;
+        for (int blockSize : new int[]{1, 441, 1000, 3528}) {
+            assertEquals(reference, track(samples, blockSize).f0);
+        }
+    }
+
+    @Test
+    public void followsAPitchGlide() {
+        // Linear glide from 90 Hz to 180 Hz over one second
+        int length = SAMPLE_RATE;
+        short[] samples = new short[length];
+        double phase = 0;
+        for (int i = 0; i < length; i++) {
+            double f0 = 90 + 90.0 * i / length;
+            phase += 2 * Math.PI * f0 / SAMPLE_RATE;
+            samples[i] = (short) (8000 * (Math.sin(phase) + 0.7 * Math.sin(2 * phase) + 0.4 * Math.sin(3 * phase)));
+        }
+        PitchTracker tracker = new PitchTracker(SAMPLE_RATE, 60, 400, 0.01);
+        int[] frame = {0};
+        tracker.process(samples, 0, length, (f0Hz, confidence) -> {
+            // The estimate describes the frame, so compare against the glide at its centre
+            int centre = tracker.getFrameLength() / 2 + frame[0]++ * tracker.getHopSize();
+            double expected = 90 + 90.0 * centre / length;
+            assertEquals(expected, f0Hz, expected * 0.03);
+        });
+        assertTrue(frame[0] > 90);
+    }
+
+    @Test
+    public void silenceAndNoiseAreUnvoiced() {
+        Estimates silence = track(new short[SAMPLE_RATE / 2], 1024);
+        assertTrue(silence.f0.stream().allMatch(v -> Double.isNaN(v)));
+        assertEquals(0, silence.minConfidence(), 0);
+
+        Random random = new Random(4);
+        short[] noise = new short[SAMPLE_RATE / 2];
+        for (int i = 0; i < noise.length; i++) {
+            noise[i] = (short) (random.nextGaussian() * 3000);
+        }
+        Estimates estimates = track(noise, 1024);
+        double maxConfidence = estimates.confidence.stream().mapToDouble(Double::doubleValue).max().orElse(1);
+        assertTrue("White noise confidence " + maxConfidence, maxConfidence < 0.6);
+    }
+}
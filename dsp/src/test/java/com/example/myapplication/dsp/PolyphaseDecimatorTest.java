@@ -0,0 +1,110 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PolyphaseDecimatorTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    private static short[] tone(double frequency, double amplitude, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) Math.round(amplitude * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+
+    // RMS of the output after the filter has settled
+    private static double settledRms(PolyphaseDecimator decimator, short[] input) {
+        short[] out = new short[input.length / decimator.getFactor() + 1];
+        int produced = decimator.process(input, 0, input.length, out, 0);
+        int settle = decimator.getTapCount() / decimator.getFactor() + 1;
+        double sum = 0;
+        for (int i = settle; i < produced; i++) {
+            sum += (double) out[i] * out[i];
+        }
+        return Math.sqrt(sum / (produced - settle));
+    }
+
+    private static double gainDb(int factor, double frequency) {
+        short[] input = tone(frequency, 16000, SAMPLE_RATE);
+        double rms = settledRms(new PolyphaseDecimator(factor), input);
+        return 20 * Math.log10(rms / (16000 / Math.sqrt(2)));
+    }
+
+    @Test
+    public void passbandTonesKeepTheirLevel() {
+        for (double f : new double[]{100, 440, 1000, 3000, 6000}) {
+            assertEquals("gain at " + f + " Hz", 0, gainDb(3, f), 0.1);
+        }
+        assertEquals(0, gainDb(5, 3500), 0.1);
+    }
+
+    @Test
+    public void tonesAboveTheOutputNyquistAreRejected() {
+        // 14.7 kHz output: everything from 7.35 kHz up would alias back into the band
+        for (double f : new double[]{8000, 10000, 12500, 15000, 20000}) {
+            assertTrue("alias at " + f + " Hz", gainDb(3, f) < -60);
+        }
+    }
+
+    @Test
+    public void dcPassesUnchanged() {
+        short[] input = new short[3000];
+        Arrays.fill(input, (short) 1234);
+        PolyphaseDecimator decimator = new PolyphaseDecimator(3);
+        short[] out = new short[1000];
+        assertEquals(1000, decimator.process(input, 0, input.length, out, 0));
+        assertEquals(1234, out[999]);
+    }
+
+    @Test
+    public void outputIsIndependentOfBlockSize() {
+        short[] input = tone(523, 12000, 20000);
+        PolyphaseDecimator whole = new PolyphaseDecimator(4);
+        short[] expected = new short[5000];
+        assertEquals(5000, whole.process(input, 0, input.length, expected, 0));
+
+        PolyphaseDecimator chunked = new PolyphaseDecimator(4);
+        short[] actual = new short[5000];
+        int produced = 0;
+        int[] sizes = {1, 7, 333, 2, 1024, 19};
+        for (int off = 0, s = 0; off < input.length; s++) {
+            int length = Math.min(sizes[s % sizes.length], input.length - off);
+            produced += chunked.process(input, off, length, actual, produced);
+            off += length;
+        }
+        assertEquals(5000, produced);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void decimatingSourceReturnsFixedSizeReads() {
+        short[] input = tone(200, 8000, 3 * 512 * 4);
+        int[] position = {0};
+        CaptureLoop.SampleSource upstream = (buffer, offset, length) -> {
+            int n = Math.min(length, input.length - position[0]);
+            System.arraycopy(input, position[0], buffer, offset, n);
+            position[0] += n;
+            return n;
+        };
+        CaptureLoop.SampleSource source = new PolyphaseDecimator(3).decimating(upstream, 512);
+        short[] out = new short[512];
+        for (int i = 0; i < 4; i++) {
+            assertEquals(512, source.read(out, 0, 512));
+        }
+        assertEquals(input.length, position[0]);
+        assertEquals(0, source.read(out, 0, 512));
+    }
+
+    @Test
+    public void factorOneIsACopy() {
+        short[] input = tone(1000, 10000, 100);
+        short[] out = new short[100];
+        assertEquals(100, new PolyphaseDecimator(1).process(input, 0, 100, out, 0));
+        assertArrayEquals(input, out);
+    }
+}
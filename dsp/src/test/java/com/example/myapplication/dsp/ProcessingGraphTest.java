@@ -0,0 +1,192 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ProcessingGraphTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final double[] BUZZ = {0.05, 0.15, 0.12, 0.08, 0.06, 0.04, 0.03, 0.02};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Records what the graph pushed into it
+    private static final class RecordingSink implements AudioSink {
+        final List<Integer> openedAt = new ArrayList<>();
+        short[] samples = new short[0];
+        int length;
+        boolean closed;
+
+        @Override
+        public void open(int sampleRate) {
+            openedAt.add(sampleRate);
+        }
+
+        @Override
+        public void accept(AudioBlock block) {
+            if (length + block.length() > samples.length) {
+                samples = Arrays.copyOf(samples, Math.max(2 * samples.length, length + block.length()));
+            }
+            block.copyTo(0, samples, length, block.length());
+            length += block.length();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static File writeWav(File file, int sampleRate, int channels, short[] interleaved, boolean patchSizes)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(44 + 2 * interleaved.length).order(ByteOrder.LITTLE_ENDIAN);
+        int dataBytes = 2 * interleaved.length;
+        buffer.put("RIFF".getBytes()).putInt(patchSizes ? 36 + dataBytes : 0).put("WAVE".getBytes());
+        buffer.put("fmt ".getBytes()).putInt(16).putShort((short) 1).putShort((short) channels)
+                .putInt(sampleRate).putInt(sampleRate * channels * 2).putShort((short) (channels * 2)).putShort((short) 16);
+        buffer.put("data".getBytes()).putInt(patchSizes ? dataBytes : 0);
+        for (short s : interleaved) {
+            buffer.putShort(s);
+        }
+        Files.write(file.toPath(), buffer.array());
+        return file;
+    }
+
+    @Test
+    public void syntheticBuzzRunsThroughDecimationIntoPitchAndSnr() {
+        SyntheticSource source = new SyntheticSource(SAMPLE_RATE, 20).harmonics(110, BUZZ).noise(0.003, 1);
+        DecimatorStage decimator = new DecimatorStage(3, 3528);
+        RecordingSink tap = new RecordingSink();
+        PitchTracker pitchTracker = new PitchTracker(SAMPLE_RATE / 3, 60, 400, 0.01);
+        double[] pitch = new double[2];
+        PitchTracker.Listener pitchListener = (f0Hz, confidence) -> {
+            if (!Double.isNaN(f0Hz)) {
+                pitch[0] += f0Hz;
+                pitch[1]++;
+            }
+        };
+        SlidingWindowSnrEstimator snr = new SlidingWindowSnrEstimator(SAMPLE_RATE / 3, 0.25, 30, 0.1);
+        snr.setNoisePower(0.003 * 0.003);
+        double[] lastSnr = {Double.NaN};
+        SlidingWindowSnrEstimator.Listener snrListener = (snrDb, power) -> lastSnr[0] = snrDb;
+
+        ProcessingGraph graph = new ProcessingGraph(source, 3528, decimator.to(
+                tap,
+                block -> pitchTracker.process(block, pitchListener),
+                block -> snr.process(block, snrListener)));
+        assertTrue(graph.run() >= 0);
+
+        assertTrue(source.isFinished());
+        assertEquals(source.getTotalSamples(), graph.getSamplesProcessed());
+        assertEquals(List.of(SAMPLE_RATE / 3), tap.openedAt);
+        assertTrue(tap.closed);
+        assertEquals(source.getTotalSamples() / 3, tap.length, 2);
+        assertEquals(110, pitch[0] / pitch[1], 0.5);
+        // Sum of squared harmonic amplitudes / 2 over the noise power
+        double signalPower = 0;
+        for (double a : BUZZ) {
+            signalPower += a * a / 2;
+        }
+        assertEquals(10 * Math.log10(signalPower / (0.003 * 0.003) + 1), lastSnr[0], 1.0);
+    }
+
+    @Test
+    public void wavFileMatchesTheSamplesItWasWrittenFrom() throws IOException {
+        SyntheticSource synthetic = new SyntheticSource(16000, 1.5).tone(440, 0.5).noise(0.01, 7);
+        short[] expected = new short[24000];
+        assertEquals(24000, synthetic.read(expected, 0, expected.length));
+        File file = writeWav(folder.newFile("tone.wav"), 16000, 1, expected, true);
+
+        RecordingSink sink = new RecordingSink();
+        try (WavFileSource source = new WavFileSource(file)) {
+            assertEquals(16000, source.getSampleRate());
+            assertEquals(24000, source.getFrameCount());
+            new ProcessingGraph(source, 1000, sink).run();
+            assertTrue(source.isFinished());
+        }
+        assertEquals(List.of(16000), sink.openedAt);
+        assertEquals(24000, sink.length);
+        assertArrayEquals(expected, Arrays.copyOf(sink.samples, sink.length));
+    }
+
+    @Test
+    public void stereoWavIsMixedDownAndUnpatchedSizesRunToEndOfFile() throws IOException {
+        short[] interleaved = {100, 300, -200, -400, 32767, 32767, 5, 6};
+        File file = writeWav(folder.newFile("stereo.wav"), 8000, 2, interleaved, false);
+
+        RecordingSink sink = new RecordingSink();
+        try (WavFileSource source = new WavFileSource(file)) {
+            assertEquals(2, source.getChannelCount());
+            assertEquals(4, source.getFrameCount());
+            new ProcessingGraph(source, 3, sink).run();
+        }
+        assertArrayEquals(new short[]{200, -300, 32767, 5}, Arrays.copyOf(sink.samples, sink.length));
+    }
+
+    @Test(expected = IOException.class)
+    public void nonWavFilesAreRejected() throws IOException {
+        File file = folder.newFile("not.wav");
+        Files.write(file.toPath(), "definitely not audio".getBytes());
+        new WavFileSource(file).close();
+    }
+
+    @Test
+    public void decimatorKeepsItsStateWhenDownstreamHoldsEveryBlock() {
+        SyntheticSource synthetic = new SyntheticSource(SAMPLE_RATE, 3000.0 / SAMPLE_RATE).tone(500, 0.5);
+        short[] input = new short[3000];
+        new SyntheticSource(SAMPLE_RATE, 3000.0 / SAMPLE_RATE).tone(500, 0.5).read(input, 0, input.length);
+        short[] expected = new short[1000];
+        new PolyphaseDecimator(3).process(input, 0, input.length, expected, 0);
+
+        // The first two output blocks, everything in the stage's pool, are held until the fifth read
+        List<AudioBlock> held = new ArrayList<>();
+        int[] reads = {0};
+        AudioSource source = new AudioSource() {
+            @Override
+            public int getSampleRate() {
+                return SAMPLE_RATE;
+            }
+
+            @Override
+            public boolean isFinished() {
+                return synthetic.isFinished();
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                if (++reads[0] == 5) {
+                    held.forEach(AudioBlock::release);
+                    held.clear();
+                }
+                return synthetic.read(buffer, offset, length);
+            }
+        };
+        RecordingSink sink = new RecordingSink();
+        DecimatorStage stage = new DecimatorStage(3, 300);
+        stage.to(block -> {
+            if (reads[0] < 3) {
+                held.add(block.retain());
+            }
+        }, sink);
+        new ProcessingGraph(source, 300, stage).run();
+
+        assertEquals(2, stage.getDroppedBlocks());
+        assertEquals(800, sink.length);
+        // After the dropped blocks the output lines up with an uninterrupted decimator again
+        for (int i = 0; i < 100; i++) {
+            assertEquals(expected[900 + i], sink.samples[700 + i]);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SegmentalSnrEstimatorTest {
+    private static final int SAMPLE_RATE = 14700;
+    private static final double FRAME_SECONDS = 0.01;
+    private static final double HANGOVER_SECONDS = 0.2;
+    private static final double NOISE_RMS = 300;
+    private static final double BUZZ_AMPLITUDE = 6000;
+
+    private static VoiceActivityDetector detector() {
+        return new VoiceActivityDetector(SAMPLE_RATE, FRAME_SECONDS, 6, 0.3, HANGOVER_SECONDS);
+    }
+
+    // 110 Hz harmonic series with 1/h amplitudes, like the benchmarks' electrolarynx buzz
+    private static double buzz(int i) {
+        double value = 0;
+        for (int h = 1; h <= 20; h++) {
+            value += Math.sin(2 * Math.PI * 110 * h * i / SAMPLE_RATE) / h;
+        }
+        return value * BUZZ_AMPLITUDE;
+    }
+
+    // Buzz switched on for the first half of every period, over constant white noise
+    private static short[] gatedBuzz(double seconds, double periodSeconds, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[(int) (seconds * SAMPLE_RATE)];
+        int period = (int) (periodSeconds * SAMPLE_RATE);
+        for (int i = 0; i < samples.length; i++) {
+            double value = random.nextGaussian() * NOISE_RMS;
+            if (i % period < period / 2) {
+                value += buzz(i);
+            }
+            samples[i] = (short) Math.max(-32768, Math.min(32767, Math.round(value)));
+        }
+        return samples;
+    }
+
+    private static double noisePower() {
+        return NOISE_RMS * NOISE_RMS / (PcmMath.FULL_SCALE * PcmMath.FULL_SCALE);
+    }
+
+    @Test
+    public void labelsBuzzFramesAndHoldsThroughTheHangover() {
+        VoiceActivityDetector vad = detector();
+        vad.setNoisePower(noisePower());
+        short[] samples = gatedBuzz(8, 2.0, 1);
+        int frameLength = vad.getFrameLength();
+        int period = 2 * SAMPLE_RATE;
+        int hangoverFrames = (int) Math.round(HANGOVER_SECONDS / FRAME_SECONDS);
+        int[] onFrames = {0, 0};
+        int[] offFrames = {0, 0};
+        int[] hangoverFramesSeen = {0, 0};
+        long[] frame = {0};
+
+        vad.process(samples, 0, samples.length, (framePower, detected, active) -> {
+            int start = (int) (frame[0]++ * frameLength);
+            int phase = start % period;
+            int afterOff = (phase - period / 2) / frameLength;
+            if (phase + frameLength <= period / 2) {
+                onFrames[0]++;
+                onFrames[1] += detected ? 1 : 0;
+            } else if (phase >= period / 2 && afterOff < hangoverFrames - 1) {
+                hangoverFramesSeen[0]++;
+                hangoverFramesSeen[1] += active ? 1 : 0;
+            } else if (phase >= period / 2 && afterOff > hangoverFrames + 1) {
+                offFrames[0]++;
+                offFrames[1] += active ? 1 : 0;
+            }
+        });
+
+        assertTrue("buzz detected in " + onFrames[1] + "/" + onFrames[0],
+                onFrames[1] >= 0.98 * onFrames[0]);
+        assertEquals(hangoverFramesSeen[0], hangoverFramesSeen[1]);
+        assertEquals(0, offFrames[1]);
+        assertEquals(vad.getFrameCount(), frame[0]);
+    }
+
+    @Test
+    public void noiseAsLoudAsTheBuzzIsNotDetected() {
+        VoiceActivityDetector vad = detector();
+        vad.setNoisePower(noisePower());
+        Random random = new Random(2);
+        short[] hiss = new short[SAMPLE_RATE * 3];
+        double rms = BUZZ_AMPLITUDE * Math.sqrt(1.6449 / 2);
+        for (int i = 0; i < hiss.length; i++) {
+            hiss[i] = (short) Math.max(-32768, Math.min(32767, Math.round(random.nextGaussian() * rms)));
+        }
+
+        vad.process(hiss, 0, hiss.length, null);
+
+        assertTrue(vad.getFrameCount() > 250);
+        assertEquals(0, vad.getActiveFrameCount());
+    }
+
+    @Test
+    public void segmentalSnrIgnoresThePausesBetweenWords() {
+        SegmentalSnrEstimator segmental = new SegmentalSnrEstimator(detector(), 1.0, -10, 80);
+        segmental.setNoisePower(noisePower());
+        SlidingWindowSnrEstimator sliding = new SlidingWindowSnrEstimator(SAMPLE_RATE, 1.0, 30, 0);
+        sliding.setNoisePower(noisePower());
+        short[] samples = gatedBuzz(6, 0.8, 3);
+        double buzzPower = BUZZ_AMPLITUDE * BUZZ_AMPLITUDE * 1.5962 / 2 / (PcmMath.FULL_SCALE * PcmMath.FULL_SCALE);
+        double expectedDb = 10 * Math.log10((buzzPower + noisePower()) / noisePower());
+        double[] slidingSum = {0};
+        int[] slidingCount = {0};
+
+        int block = 1280;
+        double minSegmental = Double.POSITIVE_INFINITY;
+        double maxSegmental = Double.NEGATIVE_INFINITY;
+        for (int off = 0; off < samples.length; off += block) {
+            int length = Math.min(block, samples.length - off);
+            segmental.process(samples, off, length);
+            sliding.process(samples, off, length, (snrDb, signalPower) -> {
+                slidingSum[0] += snrDb;
+                slidingCount[0]++;
+            });
+            // Skip the first window while it fills
+            if (off >= SAMPLE_RATE) {
+                minSegmental = Math.min(minSegmental, segmental.getSnrDb());
+                maxSegmental = Math.max(maxSegmental, segmental.getSnrDb());
+            }
+        }
+
+        assertEquals(expectedDb, segmental.getSnrDb(), 1.0);
+        assertTrue("segmental SNR wandered " + minSegmental + ".." + maxSegmental,
+                maxSegmental - minSegmental < 1.5);
+        // Half the time is pause, which costs the all-frames reading 3 dB or more on average
+        double slidingMean = slidingSum[0] / slidingCount[0];
+        assertTrue("sliding " + slidingMean + " vs segmental " + segmental.getSnrDb(),
+                segmental.getSnrDb() - slidingMean > 2.5);
+        assertEquals(0.5, segmental.getDetectedFraction(), 0.1);
+    }
+
+    @Test
+    public void frameSnrIsClampedAndSilenceReadsNaN() {
+        SegmentalSnrEstimator segmental = new SegmentalSnrEstimator(detector(), 0.5, -10, 20);
+        short[] samples = gatedBuzz(1, 2.0, 4);
+
+        // No noise floor yet
+        segmental.process(samples, 0, samples.length);
+        assertTrue(Double.isNaN(segmental.getSnrDb()));
+
+        segmental.reset();
+        segmental.setNoisePower(noisePower());
+        segmental.process(samples, 0, samples.length);
+        assertEquals(20, segmental.getSnrDb(), 1e-9);
+
+        // Half a second of noise only flushes the window
+        short[] noise = gatedBuzz(2, 2.0, 5);
+        segmental.process(noise, SAMPLE_RATE, SAMPLE_RATE);
+        assertTrue(Double.isNaN(segmental.getSnrDb()));
+        assertFalse(segmental.isActive());
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SessionMetricsLogTest {
+    private static final double ROW_RATE_HZ = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Slowly wandering readings like a real session; every 50th row has no SNR or F0
+    private static double[][] session(int rows, long seed) {
+        Random random = new Random(seed);
+        double[][] columns = new double[4][rows];
+        double snr = 20;
+        double noise = -60;
+        double f0 = 110;
+        for (int i = 0; i < rows; i++) {
+            snr += 0.3 * random.nextGaussian();
+            noise += 0.05 * random.nextGaussian();
+            f0 += 0.5 * random.nextGaussian();
+            columns[0][i] = i % 50 == 0 ? Double.NaN : snr;
+            columns[1][i] = noise;
+            columns[2][i] = noise + snr;
+            columns[3][i] = i % 50 == 0 ? Double.NaN : f0;
+        }
+        return columns;
+    }
+
+    private static File write(File file, double[][] columns, int blockRows, int blockCount) throws InterruptedException {
+        SessionMetricsLog log = new SessionMetricsLog(file, ROW_RATE_HZ, 1_700_000_000_000L, blockRows, blockCount);
+        for (int i = 0; i < columns[0].length; i++) {
+            log.record(columns[0][i], columns[1][i], columns[2][i], columns[3][i]);
+        }
+        log.close();
+        assertTrue(log.awaitFinished(10, TimeUnit.SECONDS));
+        assertNull(log.getError());
+        assertEquals(0, log.getDroppedRows());
+        return file;
+    }
+
+    private static void assertFixedPoint(double[] expected, double[] actual, double step, int offset) {
+        for (int i = 0; i < actual.length; i++) {
+            double value = expected[offset + i];
+            if (Double.isNaN(value)) {
+                assertTrue("row " + (offset + i), Double.isNaN(actual[i]));
+            } else {
+                assertEquals("row " + (offset + i), value, actual[i], step / 2 + 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void threeHourSessionRoundTripsCompactly() throws Exception {
+        int rows = (int) (3 * 3600 * ROW_RATE_HZ);
+        double[][] columns = session(rows, 1);
+        File file = write(folder.newFile("session.smlog"), columns, SessionMetricsLog.DEFAULT_BLOCK_ROWS, 400);
+
+        try (SessionMetricsReader reader = new SessionMetricsReader(file)) {
+            assertEquals(rows, reader.getRowCount());
+            assertEquals(3 * 3600, reader.getDurationSeconds(), 1e-6);
+            assertEquals(1_700_000_000_000L, reader.getStartMillis());
+            assertFixedPoint(columns[0], reader.readColumn(SessionMetricsLog.Column.SNR_DB), 0.01, 0);
+            assertFixedPoint(columns[1], reader.readColumn(SessionMetricsLog.Column.NOISE_FLOOR_DBFS), 0.01, 0);
+            assertFixedPoint(columns[2], reader.readColumn(SessionMetricsLog.Column.LEVEL_DBFS), 0.01, 0);
+            assertFixedPoint(columns[3], reader.readColumn(SessionMetricsLog.Column.F0_HZ), 0.1, 0);
+        }
+        // Four doubles would be 32 bytes per row
+        assertTrue("file is " + file.length() + " bytes", file.length() < 8L * rows);
+    }
+
+    @Test
+    public void readsRowRangesAndScansRows() throws Exception {
+        double[][] columns = session(5000, 2);
+        File file = write(folder.newFile("range.smlog"), columns, 256, 32);
+
+        try (SessionMetricsReader reader = new SessionMetricsReader(file)) {
+            assertEquals(20, reader.getBlockCount());
+            assertFixedPoint(columns[3], reader.readColumn(SessionMetricsLog.Column.F0_HZ, 1000, 1300), 0.1, 1000);
+            assertEquals(0, reader.readColumn(SessionMetricsLog.Column.F0_HZ, 6000, 7000).length);
+
+            long[] count = {0};
+            reader.scan((row, snrDb, noiseFloorDbfs, levelDbfs, f0Hz) -> {
+                assertEquals(count[0], row);
+                assertEquals(columns[2][(int) row], levelDbfs, 0.005 + 1e-9);
+                count[0]++;
+            });
+            assertEquals(5000, count[0]);
+        }
+    }
+
+    @Test
+    public void truncatedLogReadsUpToTheLastCompleteBlock() throws Exception {
+        double[][] columns = session(1000, 3);
+        File file = write(folder.newFile("torn.smlog"), columns, 100, 16);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+
+        try (SessionMetricsReader reader = new SessionMetricsReader(file)) {
+            assertEquals(900, reader.getRowCount());
+            assertFixedPoint(columns[0], reader.readColumn(SessionMetricsLog.Column.SNR_DB), 0.01, 0);
+        }
+    }
+
+    @Test
+    public void extremeValuesAreClampedNotWrapped() throws Exception {
+        File file = folder.newFile("extreme.smlog");
+        SessionMetricsLog log = new SessionMetricsLog(file, ROW_RATE_HZ, 0);
+        log.record(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, -3.004, 0);
+        log.close();
+        assertTrue(log.awaitFinished(10, TimeUnit.SECONDS));
+
+        try (SessionMetricsReader reader = new SessionMetricsReader(file)) {
+            assertTrue(reader.readColumn(SessionMetricsLog.Column.SNR_DB)[0] > 1e7);
+            assertTrue(reader.readColumn(SessionMetricsLog.Column.NOISE_FLOOR_DBFS)[0] < -1e7);
+            assertEquals(-3.00, reader.readColumn(SessionMetricsLog.Column.LEVEL_DBFS)[0], 1e-9);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("other.smlog");
+        Files.write(file.toPath(), new byte[64]);
+        new SessionMetricsReader(file).close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SignalStatisticsTest {
+
+    @Test
+    public void sineHasCrestFactorOfThreeDecibels() {
+        short[] samples = new short[44100];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) Math.round(16384 * Math.sin(2 * Math.PI * 100 * i / 44100.0));
+        }
+        SignalStatistics levels = new SignalStatistics();
+        levels.process(samples, 0, samples.length);
+
+        assertEquals(samples.length, levels.getSampleCount());
+        assertEquals(0.5, levels.getPeak(), 1e-4);
+        assertEquals(0.5 / Math.sqrt(2), levels.getRms(), 1e-4);
+        assertEquals(16384 * 2 / Math.PI, levels.getMeanAbs(), 1);
+        assertEquals(10 * Math.log10(2), levels.getCrestFactorDb(), 0.01);
+        assertFalse(levels.hasFullScaleSamples());
+    }
+
+    @Test
+    public void blocksAccumulateLikeOneBuffer() {
+        short[] samples = {100, -300, 32767, -32768, 0, 5, -5, 1200};
+        SignalStatistics whole = new SignalStatistics();
+        whole.process(samples, 0, samples.length);
+        SignalStatistics pieces = new SignalStatistics();
+        pieces.process(samples, 0, 3);
+        pieces.process(samples, 3, 5);
+
+        assertEquals(whole.getPower(), pieces.getPower(), 0);
+        assertEquals(whole.getMeanAbs(), pieces.getMeanAbs(), 0);
+        assertEquals(1.0, pieces.getPeak(), 0);
+        assertTrue(pieces.hasFullScaleSamples());
+    }
+
+    @Test
+    public void silenceAndReset() {
+        SignalStatistics levels = new SignalStatistics();
+        assertEquals(0, levels.getRms(), 0);
+        assertTrue(Double.isNaN(levels.getCrestFactorDb()));
+
+        levels.process(new short[] {1000, -1000}, 0, 2);
+        assertEquals(0, levels.getCrestFactorDb(), 1e-9);
+        levels.reset();
+        assertEquals(0, levels.getSampleCount());
+        assertEquals(0, levels.getPeak(), 0);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bounds the single-precision spectrum paths against the double ones. Float rounding in the
+ * transform scales with the whole frame, so strong bins must agree to a tiny relative error
+ * and every bin to a tiny fraction of the frame; the total error energy has to sit far under
+ * the 16-bit quantisation noise of the input (about 101 dB under full scale). The float work
+ * arrays must also shrink the analyzer; speed is compared by the JMH benchmarks.
+ */
+public class SinglePrecisionAccuracyTest {
+    private static final int SAMPLE_RATE = 14700;
+    // The 3 s microphone test capture at the default analysis rate
+    private static final int TEST_LENGTH = SAMPLE_RATE * 3;
+
+    // Electrolarynx-like buzz with harmonics over low-level noise
+    private static short[] buzz(int length, double level, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            double t = (double) i / SAMPLE_RATE;
+            double v = 0;
+            for (int h = 1; h <= 20; h++) {
+                v += Math.sin(2 * Math.PI * 100 * h * t) / h;
+            }
+            samples[i] = (short) Math.round(level * 16000 * v / 3 + random.nextGaussian() * 30);
+        }
+        return samples;
+    }
+
+    private static double db(double power) {
+        return 10 * Math.log10(power);
+    }
+
+    @Test
+    public void spectrumMagnitudesMatchDoubleWellBelowQuantisationNoise() {
+        short[] samples = buzz(TEST_LENGTH, 1.0, 1);
+        double[] reference = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO)
+                .analyze(samples, TEST_LENGTH).clone();
+        double[] single = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO, FftPlans.Precision.SINGLE)
+                .analyze(samples, TEST_LENGTH);
+        assertEquals(reference.length, single.length);
+
+        double peak = 0;
+        for (double m : reference) {
+            peak = Math.max(peak, m);
+        }
+        double worstAbsolute = 0;
+        double worstStrongBinDb = 0;
+        double referenceEnergy = 0;
+        double errorEnergy = 0;
+        for (int k = 0; k < reference.length; k++) {
+            double error = single[k] - reference[k];
+            worstAbsolute = Math.max(worstAbsolute, Math.abs(error));
+            referenceEnergy += reference[k] * reference[k];
+            errorEnergy += error * error;
+            // Bins within 60 dB of the peak: harmonics and their skirts
+            if (reference[k] > peak * 1e-3) {
+                worstStrongBinDb = Math.max(worstStrongBinDb, Math.abs(20 * Math.log10(single[k] / reference[k])));
+            }
+        }
+        assertTrue("worst error " + 20 * Math.log10(worstAbsolute / peak) + " dB under the peak",
+                worstAbsolute < peak * 1e-6);
+        assertTrue("worst strong-bin error " + worstStrongBinDb + " dB", worstStrongBinDb < 1e-4);
+        assertTrue("error energy " + db(errorEnergy / referenceEnergy) + " dB", errorEnergy < referenceEnergy * 1e-12);
+    }
+
+    @Test
+    public void stftPowersAndBandSnrMatchDouble() {
+        short[] noise = buzz(SAMPLE_RATE, 0, 2);
+        short[] speech = buzz(SAMPLE_RATE * 2, 0.3, 3);
+        int fftSize = FftPlans.nextPowerOfTwo((int) Math.ceil(SAMPLE_RATE * 0.046));
+
+        double[] snr = new double[2];
+        double[][] bands = new double[2][];
+        FftPlans.Precision[] precisions = {FftPlans.Precision.DOUBLE, FftPlans.Precision.SINGLE};
+        for (int p = 0; p < 2; p++) {
+            BandSnrAnalyzer analyzer = new BandSnrAnalyzer(SAMPLE_RATE, fftSize, fftSize / 2,
+                    BandSnrAnalyzer.ELECTROLARYNX_BAND_EDGES_HZ, 0.15, precisions[p]);
+            analyzer.learnNoise(noise, 0, noise.length);
+            int index = p;
+            analyzer.process(speech, 0, speech.length, (bandSnrDb, perBandSnrDb) -> {
+                snr[index] = bandSnrDb;
+                bands[index] = perBandSnrDb.clone();
+            });
+        }
+        assertEquals(snr[0], snr[1], 1e-3);
+        for (int b = 0; b < bands[0].length; b++) {
+            assertEquals(bands[0][b], bands[1][b], 1e-3);
+        }
+
+        // Frame by frame, every bin's error against the frame's total power
+        StftAnalyzer reference = new StftAnalyzer(fftSize, fftSize / 2);
+        StftAnalyzer single = new StftAnalyzer(fftSize, fftSize / 2, FftPlans.Precision.SINGLE);
+        double[][] frames = new double[(speech.length - fftSize) / (fftSize / 2) + 1][];
+        int[] count = {0};
+        reference.process(speech, 0, speech.length, spectrum -> frames[count[0]++] = spectrum.clone());
+        count[0] = 0;
+        single.process(speech, 0, speech.length, spectrum -> {
+            double[] expected = frames[count[0]++];
+            double total = 0;
+            for (double v : expected) {
+                total += v;
+            }
+            // Each bin's amplitude is off by at most 1e-6 of the frame's, i.e. 120 dB down
+            for (int k = 0; k < expected.length; k++) {
+                assertEquals("bin " + k, Math.sqrt(expected[k]), Math.sqrt(spectrum[k]), Math.sqrt(total) * 1e-6);
+            }
+        });
+        assertEquals(frames.length, count[0]);
+    }
+
+    @Test
+    public void quietInputKeepsItsNoiseFloor() {
+        // A few LSB of hiss: the noise floor the band SNR is measured against
+        short[] samples = buzz(TEST_LENGTH, 0, 4);
+        double[] reference = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO)
+                .analyze(samples, TEST_LENGTH).clone();
+        double[] single = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO, FftPlans.Precision.SINGLE)
+                .analyze(samples, TEST_LENGTH);
+        double referencePower = 0;
+        double errorPower = 0;
+        for (int k = 1; k < reference.length; k++) {
+            referencePower += reference[k] * reference[k];
+            double error = single[k] - reference[k];
+            errorPower += error * error;
+        }
+        assertTrue("error " + db(errorPower / referencePower) + " dB under the floor",
+                errorPower < referencePower * 1e-10);
+    }
+
+    @Test
+    public void singlePrecisionShrinksTheAnalyzerFootprint() {
+        short[] samples = buzz(TEST_LENGTH, 1.0, 5);
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        long[] footprints = new long[FftPlans.Precision.values().length];
+        for (FftPlans.Precision precision : FftPlans.Precision.values()) {
+            // Plans are shared process-wide; build them first so only the analyzer's arrays count
+            if (precision == FftPlans.Precision.SINGLE) {
+                FftPlans.getSingle(FftPlans.nextPowerOfTwo(TEST_LENGTH));
+            } else {
+                FftPlans.get(FftPlans.nextPowerOfTwo(TEST_LENGTH));
+            }
+            long before = threads.getThreadAllocatedBytes(threadId);
+            SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO, precision);
+            analyzer.analyze(samples, TEST_LENGTH);
+            footprints[precision.ordinal()] = threads.getThreadAllocatedBytes(threadId) - before;
+        }
+        // Float work arrays; the output spectrum stays double in both
+        long doubleFootprint = footprints[FftPlans.Precision.DOUBLE.ordinal()];
+        long singleFootprint = footprints[FftPlans.Precision.SINGLE.ordinal()];
+        assertTrue("single " + singleFootprint + " B, double " + doubleFootprint + " B",
+                singleFootprint < doubleFootprint * 3 / 4);
+    }
+}
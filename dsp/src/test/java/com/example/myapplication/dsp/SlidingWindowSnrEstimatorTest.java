@@ -0,0 +1,112 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SlidingWindowSnrEstimatorTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    private static short[] noisyTone(int length, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            double envelope = i < length / 2 ? 0.1 : 0.5;
+            samples[i] = (short) (envelope * 32767 * Math.sin(2 * Math.PI * 120 * i / SAMPLE_RATE)
+                    + random.nextGaussian() * 200);
+        }
+        return samples;
+    }
+
+    private static List<Double> run(SlidingWindowSnrEstimator estimator, short[] samples, int blockSize) {
+        List<Double> readings = new ArrayList<>();
+        for (int offset = 0; offset < samples.length; offset += blockSize) {
+            int length = Math.min(blockSize, samples.length - offset);
+            estimator.process(samples, offset, length, (snrDb, power) -> readings.add(snrDb));
+        }
+        return readings;
+    }
+
+    @Test
+    public void readingsDoNotDependOnBlockSize() {
+        short[] samples = noisyTone(SAMPLE_RATE * 2, 1);
+        List<Double> reference = null;
+        for (int blockSize : new int[]{1, 160, 1764, 3528, 8192}) {
+            SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.25, 30, 0.1);
+            estimator.setNoisePower(1e-6);
+            List<Double> readings = run(estimator, samples, blockSize);
+            if (reference == null) {
+                reference = readings;
+            } else {
+                assertEquals("block size " + blockSize, reference, readings);
+            }
+        }
+    }
+
+    @Test
+    public void outputRateIsFixed() {
+        SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.05, 30, 0);
+        estimator.setNoisePower(1e-6);
+
+        assertEquals(300, run(estimator, new short[SAMPLE_RATE * 10], 3528).size());
+    }
+
+    @Test
+    public void windowPowerMatchesBruteForceAtEveryReading() {
+        short[] samples = noisyTone(SAMPLE_RATE, 7);
+        int window = (int) Math.round(0.05 * SAMPLE_RATE);
+        SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.05, 30, 0);
+        estimator.setNoisePower(1.0);
+
+        int[] index = {0};
+        for (int i = 0; i < samples.length; i++) {
+            final int end = i + 1;
+            estimator.process(samples, i, 1, (snrDb, power) -> {
+                int start = Math.max(0, end - window);
+                double expected = PcmMath.power(samples, start, end - start);
+                assertEquals(expected, power, 1e-15);
+                assertEquals(10 * Math.log10(expected), snrDb, 1e-9);
+                index[0]++;
+            });
+        }
+        assertEquals(30, index[0]);
+    }
+
+    @Test
+    public void snrSettlesToExpectedValueForSteadyTone() {
+        // Half-scale sine has power 0.125; against a 1e-4 noise floor that is ~31 dB
+        short[] samples = new short[SAMPLE_RATE * 2];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (0.5 * 32768 * Math.sin(2 * Math.PI * 150 * i / SAMPLE_RATE));
+        }
+        SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.25, 30, 0.1);
+        estimator.setNoisePower(1e-4);
+
+        List<Double> readings = run(estimator, samples, 3528);
+        assertEquals(10 * Math.log10(0.125 / 1e-4), readings.get(readings.size() - 1), 0.05);
+    }
+
+    @Test
+    public void readingsAreNaNWithoutNoiseReference() {
+        SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.25, 30, 0.1);
+        List<Double> readings = run(estimator, noisyTone(SAMPLE_RATE, 3), 1024);
+
+        assertEquals(30, readings.size());
+        for (double snr : readings) {
+            assertTrue(Double.isNaN(snr));
+        }
+    }
+
+    @Test
+    public void silenceGivesFiniteReading() {
+        SlidingWindowSnrEstimator estimator = new SlidingWindowSnrEstimator(SAMPLE_RATE, 0.05, 30, 0);
+        estimator.setNoisePower(1e-6);
+        for (double snr : run(estimator, new short[SAMPLE_RATE], 1024)) {
+            assertFalse(Double.isInfinite(snr) || Double.isNaN(snr));
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class SpectrogramColumnsTest {
+    private static final int SAMPLE_RATE = 14700;
+    private static final int FFT_SIZE = 512;
+    private static final int ROWS = 100;
+
+    private static short[] tone(double frequency, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) (16000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+
+    private static double luminance(int argb) {
+        return 0.299 * ((argb >> 16) & 0xFF) + 0.587 * ((argb >> 8) & 0xFF) + 0.114 * (argb & 0xFF);
+    }
+
+    @Test
+    public void colorMapIsOpaqueAndGetsBrighter() {
+        int[] lut = SpectrogramColumns.colorMap();
+        assertEquals(256, lut.length);
+        for (int i = 0; i < lut.length; i++) {
+            assertEquals(0xFF, lut[i] >>> 24);
+            if (i > 0) {
+                assertTrue("step " + i, luminance(lut[i]) >= luminance(lut[i - 1]) - 0.5);
+            }
+        }
+        assertTrue(luminance(lut[255]) - luminance(lut[0]) > 200);
+    }
+
+    @Test
+    public void toneLightsUpItsRowOnly() {
+        SpectrogramColumns columns = new SpectrogramColumns(SAMPLE_RATE, FFT_SIZE / 2 + 1, ROWS, 5000, -100, -20, 16);
+        StftAnalyzer stft = new StftAnalyzer(FFT_SIZE, FFT_SIZE / 2);
+        stft.process(tone(1000, FFT_SIZE * 4), 0, FFT_SIZE * 4, columns);
+        assertEquals(7, columns.getColumnsWritten());
+
+        int[] pixels = new int[ROWS];
+        columns.copyColumn(columns.getColumnsWritten() - 1, pixels, 0);
+        int brightest = 0;
+        for (int row = 1; row < ROWS; row++) {
+            if (luminance(pixels[row]) > luminance(pixels[brightest])) {
+                brightest = row;
+            }
+        }
+        // 1 kHz of a 5 kHz range, counted from the bottom row
+        int expectedRow = ROWS - 1 - (int) (1000.0 / 5000 * ROWS);
+        assertEquals(expectedRow, brightest, 2);
+        int[] lut = SpectrogramColumns.colorMap();
+        assertEquals(lut[255], pixels[brightest]);
+        assertEquals(lut[0], pixels[5]);
+    }
+
+    @Test
+    public void levelsMapLinearlyInDecibels() {
+        SpectrogramColumns columns = new SpectrogramColumns(SAMPLE_RATE, FFT_SIZE / 2 + 1, ROWS, 5000, -100, -20, 16);
+        assertEquals(0, columns.lutIndex(-120));
+        assertEquals(0, columns.lutIndex(-100));
+        assertEquals(128, columns.lutIndex(-60));
+        assertEquals(255, columns.lutIndex(-20));
+        assertEquals(255, columns.lutIndex(0));
+    }
+
+    @Test
+    public void ringKeepsTheNewestColumns() {
+        SpectrogramColumns columns = new SpectrogramColumns(SAMPLE_RATE, 5, 4, 7350, -100, 0, 4);
+        double[] spectrum = new double[5];
+        for (int c = 0; c < 10; c++) {
+            // Each column is uniformly c * 10 dB above the floor
+            Arrays.fill(spectrum, Math.pow(10, (c * 10 - 100) / 10.0));
+            columns.onFrame(spectrum);
+        }
+        int[] lut = SpectrogramColumns.colorMap();
+        int[] pixels = new int[8];
+        columns.copyColumn(8, pixels, 0);
+        columns.copyColumn(9, pixels, 4);
+        assertEquals(lut[columns.lutIndex(-20)], pixels[0]);
+        assertEquals(lut[columns.lutIndex(-10)], pixels[7]);
+    }
+
+    @Test
+    public void columnRateFitsTheDisplayWithoutAllocating() {
+        // Hop of half a 512 point frame at 14.7 kHz gives the display 57 columns per second
+        assertTrue(SAMPLE_RATE / (FFT_SIZE / 2.0) >= 30);
+
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        SpectrogramColumns columns = new SpectrogramColumns(SAMPLE_RATE, FFT_SIZE / 2 + 1, 128, 5000, -100, -20, 1024);
+        StftAnalyzer stft = new StftAnalyzer(FFT_SIZE, FFT_SIZE / 2);
+        short[] block = tone(440, 1176);
+        for (int i = 0; i < 2_000; i++) {
+            stft.process(block, 0, block.length, columns);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int blocks = 5_000;
+        for (int i = 0; i < blocks; i++) {
+            stft.process(block, 0, block.length, columns);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("Allocated " + allocated + " bytes over " + blocks + " blocks", allocated < blocks / 10);
+    }
+}
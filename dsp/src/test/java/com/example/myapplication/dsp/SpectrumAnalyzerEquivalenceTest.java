@@ -0,0 +1,53 @@
+package com.example.myapplication.dsp;
+
+import org.jtransforms.fft.DoubleFFT_1D;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the cached analyzer against the straightforward "allocate everything per call"
+ * approach on a full 3 second microphone test capture. SpectrumBenchmark.naive times the
+ * same naive spectrum against the cached one in the benchmarks module.
+ */
+public class SpectrumAnalyzerEquivalenceTest {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int LENGTH = SAMPLE_RATE * 3;
+
+    // What calculateFrequencySpectrum would look like written directly against JTransforms
+    private static double[] naiveSpectrum(short[] samples, int length) {
+        int size = Integer.highestOneBit(length - 1) << 1;
+        double[] data = new double[size];
+        double windowSum = 0;
+        for (int i = 0; i < length; i++) {
+            double w = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / length);
+            windowSum += w;
+            data[i] = samples[i] / 32768.0 * w;
+        }
+        new DoubleFFT_1D(size).realForward(data);
+        double[] spectrum = new double[size / 2];
+        spectrum[0] = Math.abs(data[0]) / windowSum;
+        for (int k = 1; k < size / 2; k++) {
+            spectrum[k] = Math.hypot(data[2 * k], data[2 * k + 1]) * 2.0 / windowSum;
+        }
+        return spectrum;
+    }
+
+    @Test
+    public void cachedAnalyzerMatchesNaive() {
+        short[] samples = new short[LENGTH];
+        java.util.Random random = new java.util.Random(42);
+        for (int i = 0; i < LENGTH; i++) {
+            double buzz = 0.4 * Math.sin(2 * Math.PI * 110 * i / SAMPLE_RATE);
+            samples[i] = (short) (buzz * 32767 + random.nextGaussian() * 300);
+        }
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO);
+        double[] expected = naiveSpectrum(samples, LENGTH);
+        double[] actual = analyzer.analyze(samples, LENGTH);
+        assertEquals(expected.length, actual.length);
+        for (int k = 0; k < expected.length; k++) {
+            assertEquals(expected[k], actual[k], 1e-9);
+        }
+    }
+}
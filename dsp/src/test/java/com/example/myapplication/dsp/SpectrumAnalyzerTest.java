@@ -0,0 +1,96 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SpectrumAnalyzerTest {
+
+    private static short[] sine(double frequency, double amplitude, int sampleRate, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) Math.round(amplitude * 32767 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    private static int argMax(double[] values) {
+        int best = 0;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] > values[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void powerOfTwoFraming_padsTestCaptureToNextPowerOfTwo() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO);
+        double[] spectrum = analyzer.analyze(new short[132300], 132300);
+
+        assertEquals(262144, analyzer.getFftSize());
+        assertEquals(131072, spectrum.length);
+    }
+
+    @Test
+    public void sineLandsInExpectedBinWithCalibratedAmplitude() {
+        int sampleRate = 44100;
+        int size = 4096;
+        int bin = 93; // ~1001 Hz, exactly on a bin centre
+        double frequency = SpectrumAnalyzer.binFrequency(bin, size, sampleRate);
+        short[] samples = sine(frequency, 0.5, sampleRate, size);
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO);
+        double[] spectrum = analyzer.analyze(samples, size);
+
+        assertEquals(bin, argMax(spectrum));
+        assertEquals(0.5, spectrum[bin], 0.01);
+    }
+
+    @Test
+    public void exactFramingMatchesDirectDft() {
+        int length = 90;
+        short[] samples = sine(1234, 0.3, 8000, length);
+        for (int i = 0; i < length; i++) {
+            samples[i] += (short) ((i * 7919) % 2000 - 1000);
+        }
+
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.EXACT);
+        double[] spectrum = analyzer.analyze(samples, length);
+        assertEquals(length / 2, spectrum.length);
+
+        double[] window = Windows.hann(length);
+        double scale = 2.0 / Windows.sum(window, length);
+        for (int k = 1; k < length / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int n = 0; n < length; n++) {
+                double x = samples[n] / 32768.0 * window[n];
+                re += x * Math.cos(2 * Math.PI * k * n / length);
+                im -= x * Math.sin(2 * Math.PI * k * n / length);
+            }
+            assertEquals("bin " + k, Math.sqrt(re * re + im * im) * scale, spectrum[k], 1e-9);
+        }
+    }
+
+    @Test
+    public void exactFramingRoundsOddLengthsUpToEven() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.EXACT);
+        double[] spectrum = analyzer.analyze(new short[101], 101);
+
+        assertEquals(102, analyzer.getFftSize());
+        assertEquals(51, spectrum.length);
+    }
+
+    @Test
+    public void repeatedCallsReuseTheOutputBuffer() {
+        SpectrumAnalyzer analyzer = new SpectrumAnalyzer(SpectrumAnalyzer.Framing.POWER_OF_TWO);
+        short[] samples = sine(440, 0.5, 44100, 2048);
+
+        double[] first = analyzer.analyze(samples, samples.length);
+        double[] second = analyzer.analyze(samples, samples.length);
+
+        assertSame(first, second);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class WavFileSinkTest {
+    private static final int SAMPLE_RATE = 44100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static short[] readAll(WavFileSource source) {
+        short[] samples = new short[(int) source.getFrameCount()];
+        int done = 0;
+        while (done < samples.length) {
+            done += source.read(samples, done, samples.length - done);
+        }
+        return samples;
+    }
+
+    @Test
+    public void streamsGraphOutputToAReadableWav() throws Exception {
+        File file = new File(folder.getRoot(), "session.wav");
+        AtomicReference<WavFileSink> finishedSink = new AtomicReference<>();
+        // Small chunks so the recording spans many writes and a partial last chunk. The synthetic
+        // source runs far faster than real time, so there are enough of them to hold it all.
+        WavFileSink sink = new WavFileSink(file, 80, 4096, finishedSink::set);
+        SyntheticSource source = new SyntheticSource(SAMPLE_RATE, 1.5).tone(440, 0.3).noise(0.01, 3);
+        SyntheticSource expectedSource = new SyntheticSource(SAMPLE_RATE, 1.5).tone(440, 0.3).noise(0.01, 3);
+        short[] expected = new short[(int) expectedSource.getTotalSamples()];
+        expectedSource.read(expected, 0, expected.length);
+
+        ProcessingGraph graph = new ProcessingGraph(source, 1000, sink);
+        graph.run();
+        graph.close();
+
+        assertTrue(sink.awaitFinished(5, TimeUnit.SECONDS));
+        assertNull(sink.getError());
+        assertSame(sink, finishedSink.get());
+        assertEquals(0, sink.getDroppedSamples());
+        assertEquals(2L * expected.length, sink.getDataBytes());
+        try (WavFileSource reread = new WavFileSource(file)) {
+            assertEquals(SAMPLE_RATE, reread.getSampleRate());
+            assertEquals(1, reread.getChannelCount());
+            assertArrayEquals(expected, readAll(reread));
+            assertNull(reread.getNoiseProfile());
+        }
+        // Header lengths are patched, not left at the provisional zero
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(file.length() - 8, header.getInt(4));
+        assertEquals(2 * expected.length, header.getInt(40));
+    }
+
+    @Test
+    public void storesTheNoiseProfileAfterTheAudio() throws Exception {
+        File file = new File(folder.getRoot(), "baseline.wav");
+        WavFileSink sink = new WavFileSink(file);
+        double[] spectrum = {4.0, 2.5, 1.0, 0.5, 0.25};
+        sink.setNoiseProfile(new NoiseProfile(14700, 123.5, spectrum));
+
+        ProcessingGraph graph = new ProcessingGraph(new SyntheticSource(SAMPLE_RATE, 0.5).noise(0.02, 7), 2048, sink);
+        graph.run();
+        graph.close();
+
+        assertTrue(sink.awaitFinished(5, TimeUnit.SECONDS));
+        try (WavFileSource reread = new WavFileSource(file)) {
+            assertEquals(SAMPLE_RATE / 2, reread.getFrameCount());
+            NoiseProfile profile = reread.getNoiseProfile();
+            assertNotNull(profile);
+            assertEquals(14700, profile.getSampleRate());
+            assertEquals(123.5, profile.getNoisePower(), 0);
+            assertEquals(8, profile.getFftSize());
+            assertArrayEquals(spectrum, profile.getSpectrum(), 0);
+        }
+    }
+
+    @Test
+    public void failedOpenDropsSamplesWithoutBlocking() throws Exception {
+        File file = new File(new File(folder.getRoot(), "missing-dir"), "take.wav");
+        WavFileSink sink = new WavFileSink(file, 2, 4096, null);
+
+        ProcessingGraph graph = new ProcessingGraph(new SyntheticSource(SAMPLE_RATE, 2).tone(200, 0.5), 1024, sink);
+        graph.run();
+        graph.close();
+
+        assertTrue(sink.awaitFinished(5, TimeUnit.SECONDS));
+        assertNotNull(sink.getError());
+        // Nothing was written, so at most the two preallocated chunks were filled before dropping
+        assertTrue(sink.getDroppedSamples() >= 2 * SAMPLE_RATE - 2 * 4096 / 2);
+        assertFalse(file.exists());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void recordsASingleStream() {
+        WavFileSink sink = new WavFileSink(new File(folder.getRoot(), "twice.wav"));
+        sink.open(SAMPLE_RATE);
+        sink.close();
+        sink.open(SAMPLE_RATE);
+    }
+}
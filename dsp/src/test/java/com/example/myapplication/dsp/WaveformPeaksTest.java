@@ -0,0 +1,93 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WaveformPeaksTest {
+
+    @Test
+    public void columnsHoldMinimumAndMaximumOfTheirSamples() {
+        WaveformPeaks peaks = new WaveformPeaks(16, 4);
+        short[] samples = {0, 16384, -8192, 100, 5, 6, 7, 8, -32768, 32767, 0, 0};
+        peaks.add(samples, 0, samples.length);
+        assertEquals(3, peaks.getColumnsWritten());
+
+        float[] points = new float[16];
+        int count = peaks.fillLines(points, 3, 4, 2f, 200f);
+        assertEquals(12, count);
+        // Requested window starts one column before the first written one
+        assertEquals(2f, points[0], 0);
+        assertEquals(100 - 0.5f * 100, points[1], 1e-3);
+        assertEquals(100 + 0.25f * 100 + 1, points[3], 1e-3);
+        assertEquals(100 - 8 / 32768f * 100, points[5], 1e-3);
+        assertEquals(100 - 5 / 32768f * 100 + 1, points[7], 1e-3);
+        assertEquals(0f, points[9], 1e-2);
+        assertEquals(201f, points[11], 1e-3);
+    }
+
+    @Test
+    public void blockBoundariesDoNotAffectColumns() {
+        short[] samples = new short[10_000];
+        Random random = new Random(5);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) random.nextInt(65536);
+        }
+        WaveformPeaks whole = new WaveformPeaks(256, 37);
+        whole.add(samples, 0, samples.length);
+        WaveformPeaks chunked = new WaveformPeaks(256, 37);
+        for (int off = 0, size = 1; off < samples.length; off += size, size = size * 3 % 101 + 1) {
+            chunked.add(samples, off, Math.min(size, samples.length - off));
+        }
+        assertEquals(whole.getColumnsWritten(), chunked.getColumnsWritten());
+
+        float[] expected = new float[4 * 100];
+        float[] actual = new float[4 * 100];
+        long last = whole.getColumnsWritten();
+        assertEquals(400, whole.fillLines(expected, last, 100, 1f, 100f));
+        assertEquals(400, chunked.fillLines(actual, last, 100, 1f, 100f));
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    @Test
+    public void columnsNotYetWrittenAreSkipped() {
+        WaveformPeaks peaks = new WaveformPeaks(64, 10);
+        peaks.add(new short[25], 0, 25);
+        float[] points = new float[4 * 8];
+        // Asking for a window that ends past the newest column only returns what exists
+        assertEquals(8, peaks.fillLines(points, 6, 8, 1f, 10f));
+    }
+
+    @Test
+    public void addingAndDrawingDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        WaveformPeaks peaks = new WaveformPeaks(2048, 44);
+        short[] block = new short[3528];
+        for (int i = 0; i < block.length; i++) {
+            block[i] = (short) (12000 * Math.sin(2 * Math.PI * i / 100.0));
+        }
+        float[] points = new float[4 * 1000];
+        for (int i = 0; i < 2_000; i++) {
+            peaks.add(block, 0, block.length);
+            peaks.fillLines(points, peaks.getColumnsWritten(), 1000, 1f, 300f);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        int rounds = 5_000;
+        for (int i = 0; i < rounds; i++) {
+            peaks.add(block, 0, block.length);
+            peaks.fillLines(points, peaks.getColumnsWritten(), 1000, 1f, 300f);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("Allocated " + allocated + " bytes over " + rounds + " rounds", allocated < rounds / 10);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.myapplication.dsp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WelchPsdEstimatorTest {
+    private static final int SAMPLE_RATE = 14700;
+    private static final int FFT_SIZE = 4096;
+
+    private static short[] sine(double frequencyHz, double amplitude, int length) {
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) Math.round(amplitude * 32767 * Math.sin(2 * Math.PI * frequencyHz * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+
+    private static short[] noise(double rms, int length, long seed) {
+        Random random = new Random(seed);
+        short[] samples = new short[length];
+        for (int i = 0; i < length; i++) {
+            samples[i] = (short) Math.round(random.nextGaussian() * rms * 32767);
+        }
+        return samples;
+    }
+
+    @Test
+    public void sinePeaksInItsBinAndPowersSumToTheMeanSquare() {
+        WelchPsdEstimator welch = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.SINGLE);
+        double binWidth = welch.getBinWidthHz();
+        short[] samples = sine(30 * binWidth, 0.5, SAMPLE_RATE * 3);
+        welch.process(samples, 0, samples.length);
+
+        // 3 s of 4096-sample frames at a 2048 hop
+        assertEquals((samples.length - FFT_SIZE) / (FFT_SIZE / 2) + 1, welch.getFrameCount());
+        assertEquals(30, welch.getPeakBin(50));
+        double[] psd = welch.getPowerSpectrum(new double[welch.getBinCount()]);
+        double total = 0;
+        for (double p : psd) {
+            total += p;
+        }
+        assertEquals(0.5 * 0.5 * 0.5, total, 0.125 * 0.01);
+        assertEquals(30 * binWidth, welch.binFrequency(welch.getPeakBin(50)), 1e-9);
+    }
+
+    @Test
+    public void blockSizeDoesNotChangeTheEstimate() {
+        short[] samples = noise(0.1, SAMPLE_RATE * 2, 1);
+        WelchPsdEstimator whole = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.DOUBLE);
+        WelchPsdEstimator pieces = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.DOUBLE);
+        whole.process(samples, 0, samples.length);
+        for (int off = 0; off < samples.length; off += 37) {
+            pieces.process(samples, off, Math.min(37, samples.length - off));
+        }
+        assertEquals(whole.getFrameCount(), pieces.getFrameCount());
+        assertArrayEquals(whole.getPowerSpectrum(new double[whole.getBinCount()]),
+                pieces.getPowerSpectrum(new double[pieces.getBinCount()]), 0);
+    }
+
+    @Test
+    public void averagingFlattensTheNoiseSpectrum() {
+        WelchPsdEstimator welch = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.SINGLE);
+        short[] samples = noise(0.1, SAMPLE_RATE * 30, 2);
+        welch.process(samples, 0, FFT_SIZE);
+        double oneFrame = relativeSpread(welch);
+        welch.process(samples, FFT_SIZE, samples.length - FFT_SIZE);
+        double averaged = relativeSpread(welch);
+
+        // About 215 frames: the spread shrinks roughly with the square root of the count
+        assertTrue(oneFrame > 0.8);
+        assertTrue("spread " + averaged, averaged < oneFrame / 8);
+    }
+
+    // Standard deviation over mean of the bins away from DC and Nyquist
+    private static double relativeSpread(WelchPsdEstimator welch) {
+        double[] psd = welch.getPowerSpectrum(new double[welch.getBinCount()]);
+        double sum = 0;
+        double sumOfSquares = 0;
+        int n = 0;
+        for (int k = 4; k < psd.length - 4; k++) {
+            sum += psd[k];
+            sumOfSquares += psd[k] * psd[k];
+            n++;
+        }
+        double mean = sum / n;
+        return Math.sqrt(sumOfSquares / n - mean * mean) / mean;
+    }
+
+    @Test
+    public void emptyEstimateAndReset() {
+        WelchPsdEstimator welch = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.SINGLE);
+        assertEquals(-1, welch.getPeakBin(0));
+        short[] samples = sine(440, 0.5, FFT_SIZE * 2);
+        welch.process(samples, 0, samples.length);
+        assertTrue(welch.getFrameCount() > 0);
+
+        welch.reset();
+        assertEquals(0, welch.getFrameCount());
+        double[] psd = welch.getPowerSpectrum(new double[welch.getBinCount()]);
+        for (double p : psd) {
+            assertEquals(0, p, 0);
+        }
+    }
+
+    @Test
+    public void longCapturesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        WelchPsdEstimator welch = new WelchPsdEstimator(SAMPLE_RATE, FFT_SIZE, FftPlans.Precision.SINGLE);
+        SignalStatistics levels = new SignalStatistics();
+        double[] partial = new double[welch.getBinCount()];
+        short[] block = noise(0.1, 1225, 3);
+        for (int i = 0; i < 200; i++) {
+            welch.process(block, 0, block.length);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        // A minute of audio in 83 ms blocks, with a partial spectrum every 3 blocks
+        for (int i = 0; i < 720; i++) {
+            welch.process(block, 0, block.length);
+            levels.process(block, 0, block.length);
+            if (i % 3 == 0) {
+                welch.getPowerSpectrum(partial);
+            }
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+}